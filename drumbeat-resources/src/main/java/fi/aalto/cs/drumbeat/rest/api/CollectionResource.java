@@ -36,11 +36,14 @@ public class CollectionResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getCollectionManager().getAll();
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getCollectionManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getCollectionManager().getAll(),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException exception) {
 			throw new DrumbeatWebException(
 					Status.NOT_FOUND,
@@ -60,11 +63,14 @@ public class CollectionResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getCollectionManager().getById(collectionId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getCollectionManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getCollectionManager().getById(collectionId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException exception) {
 			throw new DrumbeatWebException(
 					Status.NOT_FOUND,
@@ -20,6 +20,9 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
 import fi.aalto.cs.drumbeat.rest.managers.DataSetObjectManager;
+import fi.aalto.cs.drumbeat.rest.managers.FilterMode;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectCursor;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectPage;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.params.BooleanParam;
 
@@ -46,24 +49,48 @@ public class DataSetObjectResource extends DrumbeatApiBase {
 			@PathParam("collectionId") String collectionId,
 			@PathParam("dataSourceId") String dataSourceId,
 			@PathParam("dataSetId") String dataSetId,
+			@QueryParam("limit") String limit,
+			@QueryParam("cursor") String cursor,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
 	{
 		notifyRequest(uriInfo, headers, request);
 		
+		int pageLimit = getPageLimit(limit, cursor);
+		ObjectCursor after = parseCursor(cursor);
+		
 		try {		
-			Model model = getDataSetObjectManager().getAll(collectionId, dataSourceId, dataSetId);
-			String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					modelBaseUri,					
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSetObjectManager().getVersion(collectionId, dataSourceId, dataSetId),
+					version -> {
+						String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
+						Response response;
+						if (pageLimit > 0) {
+							ObjectPage page = getDataSetObjectManager().getAll(collectionId, dataSourceId, dataSetId, after, pageLimit);
+							response = DrumbeatResponseBuilder.build(
+									Status.OK,
+									page.getModel(),
+									modelBaseUri,
+									headers.getAcceptableMediaTypes());
+							response = addNextPageLink(response, page, pageLimit, uriInfo);
+						} else {
+							Model model = getDataSetObjectManager().getAll(collectionId, dataSourceId, dataSetId);
+							response = DrumbeatResponseBuilder.build(
+									Status.OK,
+									model,
+									modelBaseUri,					
+									headers.getAcceptableMediaTypes());
+						}
+						return response;
+					},
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
-		} catch (DrumbeatException e) {
-			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);			
+		} catch (IllegalArgumentException e) {
+			// the cursor does not belong to the listing
+			throw new DrumbeatWebException(Status.BAD_REQUEST, e);
 		}
 	}		
 
@@ -78,6 +105,7 @@ public class DataSetObjectResource extends DrumbeatApiBase {
 			@QueryParam("expandBlankObjects") String expandBlankObjects,
 			@QueryParam("filterProperties") String filterProperties,
 			@QueryParam("filterObjectTypes") String filterObjectTypes,
+			@QueryParam("filterMode") String filterMode,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
@@ -89,27 +117,40 @@ public class DataSetObjectResource extends DrumbeatApiBase {
 		
 		BooleanParam expandBlankObjectsParam = new BooleanParam();
 		expandBlankObjectsParam.setStringValue(expandBlankObjects);
+		
+		FilterMode filterModeParam = parseFilterMode(filterMode);
 
 		try {		
-			Model model = getDataSetObjectManager().getById(
-					collectionId,
-					dataSourceId,
-					dataSetId,
-					objectId,
-					excludePropertiesParam.getValue(),
-					expandBlankObjectsParam.getValue(),
-					filterProperties,
-					filterObjectTypes);
-			String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					modelBaseUri,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSetObjectManager().getVersion(collectionId, dataSourceId, dataSetId),
+					version -> {
+						String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
+						String cacheKey = String.format("dsobjects %s %s %s %s %s %s %s %s %s",
+								collectionId,
+								dataSourceId,
+								dataSetId,
+								objectId,
+								excludePropertiesParam.getValue(),
+								expandBlankObjectsParam.getValue(),
+								filterProperties,
+								filterObjectTypes,
+								filterModeParam);
+						return buildCachedResponse(cacheKey, version, modelBaseUri, headers, () ->
+								getDataSetObjectManager().getById(
+										collectionId,
+										dataSourceId,
+										dataSetId,
+										objectId,
+										excludePropertiesParam.getValue(),
+										expandBlankObjectsParam.getValue(),
+										filterProperties,
+										filterObjectTypes,
+										filterModeParam));
+					},
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
-		} catch (DrumbeatException e) {
-			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);			
 		}
 	}		
 
@@ -127,17 +168,18 @@ public class DataSetObjectResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getDataSetObjectManager().getObjectType(collectionId, dataSourceId, dataSetId, objectId);
-			String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					modelBaseUri,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSetObjectManager().getVersion(collectionId, dataSourceId, dataSetId),
+					version -> {
+						String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
+						String cacheKey = String.format("dsobjects %s %s %s %s type", collectionId, dataSourceId, dataSetId, objectId);
+						return buildCachedResponse(cacheKey, version, modelBaseUri, headers, () ->
+								getDataSetObjectManager().getObjectType(collectionId, dataSourceId, dataSetId, objectId));
+					},
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
-		} catch (DrumbeatException e) {
-			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);			
 		}
 	}
 	
@@ -1,13 +1,14 @@
 package fi.aalto.cs.drumbeat.rest.api;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
+import java.net.URLConnection;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
@@ -33,6 +34,8 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
 import fi.aalto.cs.drumbeat.rest.managers.DataSetManager;
 import fi.aalto.cs.drumbeat.rest.managers.DataSetObjectManager;
+import fi.aalto.cs.drumbeat.rest.managers.ErrorFactory;
+import fi.aalto.cs.drumbeat.rest.managers.upload.ServerFileInputStream;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.file.FileManager;
 import fi.aalto.cs.drumbeat.common.params.BooleanParam;
@@ -58,11 +61,14 @@ public class DataSetResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getDataSetManager().getAll(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSetManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getDataSetManager().getAll(collectionId, dataSourceId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -81,11 +87,14 @@ public class DataSetResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getDataSetManager().getById(collectionId, dataSourceId, dataSetId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSetManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getDataSetManager().getById(collectionId, dataSourceId, dataSetId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -150,7 +159,9 @@ public class DataSetResource extends DrumbeatApiBase {
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("") @FormParam("compressionFormat") String compressionFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("diff") String diff,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("filePath") String filePath,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -167,12 +178,13 @@ public class DataSetResource extends DrumbeatApiBase {
 		
 		InputStream in;
 		try {
-			in = new FileInputStream(filePath);
+			in = new ServerFileInputStream(new File(filePath));
 		} catch (FileNotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		long totalBytes = new File(filePath).length();
+		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diff, notifyRemote, async, in, totalBytes, false, uriInfo, headers);
 	}
 	
 	@POST
@@ -185,7 +197,9 @@ public class DataSetResource extends DrumbeatApiBase {
 			@FormParam("dataType") String dataType,
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("diff") String diff,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("url") String url,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -201,13 +215,16 @@ public class DataSetResource extends DrumbeatApiBase {
 		logger.info(String.format("UploadUrl: DataSet=%s, Url=%s", graphName, url));
 		
 		InputStream in;
+		long totalBytes;
 		try {
-			in = new URL(url).openStream();
+			URLConnection connection = new URL(url).openConnection();
+			in = connection.getInputStream();
+			totalBytes = connection.getContentLengthLong();
 		} catch (IOException e) {			
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diff, notifyRemote, async, in, totalBytes, false, uriInfo, headers);
 	}
 
 
@@ -221,7 +238,9 @@ public class DataSetResource extends DrumbeatApiBase {
 			@FormParam("dataType") String dataType,
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,			
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("diff") String diff,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("content") String content,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -236,8 +255,9 @@ public class DataSetResource extends DrumbeatApiBase {
 		String graphName = NameFormatter.formatDataSetGraphUri(collectionId, dataSourceId, dataSetId);			
 		logger.info(String.format("UploadContent: DataSet=%s, Content=%s", graphName, content));
 		
-		InputStream in = new ByteArrayInputStream(content.getBytes());
-		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		byte[] contentBytes = content.getBytes();
+		InputStream in = new ByteArrayInputStream(contentBytes);
+		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diff, notifyRemote, async, in, contentBytes.length, false, uriInfo, headers);
 	}
 
 	
@@ -251,7 +271,9 @@ public class DataSetResource extends DrumbeatApiBase {
 			@FormDataParam("dataType") String dataType,
 			@DefaultValue("") @FormDataParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormDataParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormDataParam("diff") String diff,
 			@DefaultValue("false") @FormDataParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormDataParam("async") String async,
 			@FormDataParam("file") InputStream in,
 	        @FormDataParam("file") FormDataContentDisposition fileDetail,
 			@Context UriInfo uriInfo,
@@ -271,7 +293,57 @@ public class DataSetResource extends DrumbeatApiBase {
 		String graphName = NameFormatter.formatDataSetGraphUri(collectionId, dataSourceId, dataSetId);
 		logger.info(String.format("UploadContent: DataSet=%s, FileName=%s", graphName, fileDetail.getFileName()));		
 
-		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diff, notifyRemote, async, in, -1, true, uriInfo, headers);
+	}
+	
+	@Path("/{collectionId}/{dataSourceId}/{dataSetId}/uploads")
+	public ResumableUploadResource getUploads(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@PathParam("dataSetId") String dataSetId)
+	{
+		return getResumableUploadResource(
+				NameFormatter.formatDataSetResourceUri(collectionId, dataSourceId, dataSetId),
+				() -> {
+					if (!getDataSetManager().checkExists(collectionId, dataSourceId, dataSetId)) {
+						throw new DrumbeatWebException(
+								Status.NOT_FOUND,
+								ErrorFactory.createDataSetNotFoundException(collectionId, dataSourceId, dataSetId));
+					}
+				});
+	}
+	
+	@POST
+	@Path("/{collectionId}/{dataSourceId}/{dataSetId}/uploads/{uploadId}/finish")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response finishUpload(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@PathParam("dataSetId") String dataSetId,
+			@PathParam("uploadId") String uploadId,
+			@FormParam("dataType") String dataType,
+			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
+			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("diff") String diff,
+			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		
+		if (StringUtils.isEmptyOrNull(dataFormat)) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Undefined param 'dataFormat'", null);
+		}
+		
+		String targetUri = NameFormatter.formatDataSetResourceUri(collectionId, dataSourceId, dataSetId);
+		
+		return finishResumableUpload(targetUri, uploadId, in -> {
+			logger.info(String.format("FinishResumableUpload: DataSet=%s, UploadId=%s, Size=%d", targetUri, uploadId, in.getLength()));
+			
+			return internalUploadDataSet(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diff, notifyRemote, async, in, in.getLength(), false, uriInfo, headers);
+		});
 	}
 	
 	private Response internalUploadDataSet(
@@ -281,20 +353,58 @@ public class DataSetResource extends DrumbeatApiBase {
 			String dataType,
 			String dataFormat,
 			String clearBefore,
+			String diff,
 			String notifyRemote,
+			String async,
 			InputStream in,
+			long totalBytes,
+			boolean isRequestBody,
+			UriInfo uriInfo,
 			HttpHeaders headers)
 	{	
 		
+		boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
+		
+		BooleanParam clearBeforeParam = new BooleanParam();
+		clearBeforeParam.setStringValue(clearBefore);
+
+		BooleanParam diffParam = new BooleanParam();
+		diffParam.setStringValue(diff);
+
+		BooleanParam notifyRemoteParam = new BooleanParam();
+		notifyRemoteParam.setStringValue(notifyRemote);
+		
+		if (isAsync(async)) {
+			if (!getDataSetManager().checkExists(collectionId, dataSourceId, dataSetId)) {
+				closeQuietly(in);
+				throw new DrumbeatWebException(
+						Status.NOT_FOUND,
+						ErrorFactory.createDataSetNotFoundException(collectionId, dataSourceId, dataSetId));
+			}
+			
+			return submitUploadJob(
+					NameFormatter.formatDataSetResourceUri(collectionId, dataSourceId, dataSetId),
+					in,
+					totalBytes,
+					isRequestBody,
+					(jobIn, progress) -> new DataSetObjectManager().upload(
+							collectionId,
+							dataSourceId,
+							dataSetId,
+							dataType,
+							dataFormat,
+							clearBeforeParam.getValue(),
+							diffParam.getValue(),
+							notifyRemoteParam.getValue(),
+							jobIn,
+							saveToFiles,
+							progress),
+					uriInfo,
+					headers);
+		}
+		
 		try {
 			DataSetObjectManager objectManager = new DataSetObjectManager();
-			boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
-			
-			BooleanParam clearBeforeParam = new BooleanParam();
-			clearBeforeParam.setStringValue(clearBefore);
-
-			BooleanParam notifyRemoteParam = new BooleanParam();
-			notifyRemoteParam.setStringValue(notifyRemote);
 
 			Model dataSetInfoModel = objectManager.upload(
 					collectionId,
@@ -303,6 +413,7 @@ public class DataSetResource extends DrumbeatApiBase {
 					dataType,
 					dataFormat,
 					clearBeforeParam.getValue(),
+					diffParam.getValue(),
 					notifyRemoteParam.getValue(),
 					in,
 					saveToFiles);
@@ -26,6 +26,9 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
 import fi.aalto.cs.drumbeat.rest.managers.DataSourceObjectManager;
+import fi.aalto.cs.drumbeat.rest.managers.FilterMode;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectCursor;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectPage;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.params.BooleanParam;
 import fi.aalto.cs.drumbeat.common.string.StringUtils;
@@ -79,24 +82,50 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 			@PathParam("collectionId") String collectionId,
 			@PathParam("dataSourceId") String dataSourceId,
 			@QueryParam("filterType") String filterType,
+			@QueryParam("filterMode") String filterMode,
+			@QueryParam("limit") String limit,
+			@QueryParam("cursor") String cursor,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
 	{
 		notifyRequest(uriInfo, headers, request);
 		
+		int pageLimit = getPageLimit(limit, cursor);
+		ObjectCursor after = parseCursor(cursor);
+		FilterMode filterModeParam = parseFilterMode(filterMode);
+		
 		try {		
-			Model model = getObjectManager().getAllNonBlank(collectionId, dataSourceId, filterType);
-			String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					modelBaseUri,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getObjectManager().getVersion(collectionId, dataSourceId, false),
+					version -> {
+						String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
+						Response response;
+						if (pageLimit > 0) {
+							ObjectPage page = getObjectManager().getAllNonBlank(collectionId, dataSourceId, filterType, filterModeParam, after, pageLimit);
+							response = DrumbeatResponseBuilder.build(
+									Status.OK,
+									page.getModel(),
+									modelBaseUri,
+									headers.getAcceptableMediaTypes());
+							response = addNextPageLink(response, page, pageLimit, uriInfo);
+						} else {
+							Model model = getObjectManager().getAllNonBlank(collectionId, dataSourceId, filterType, filterModeParam);
+							response = DrumbeatResponseBuilder.build(
+									Status.OK,
+									model,
+									modelBaseUri,
+									headers.getAcceptableMediaTypes());
+						}
+						return response;
+					},
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
-		} catch (DrumbeatException e) {
-			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);			
+		} catch (IllegalArgumentException e) {
+			// the cursor does not belong to the listing
+			throw new DrumbeatWebException(Status.BAD_REQUEST, e);
 		}
 	}
 	
@@ -113,6 +142,7 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 			@QueryParam("expandBlankObjects") String expandBlankObjects,
 			@QueryParam("filterProperties") String filterProperties,
 			@QueryParam("filterObjectTypes") String filterObjectTypes,
+			@QueryParam("filterMode") String filterMode,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
@@ -129,6 +159,8 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 				expandBlankObjects,				
 				filterProperties,
 				filterObjectTypes,
+				filterMode,
+				uriInfo,
 				headers);
 	}
 	
@@ -146,13 +178,14 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 			@QueryParam("expandBlankObjects") String expandBlankObjects,
 			@QueryParam("filterProperties") String filterProperties,
 			@QueryParam("filterObjectTypes") String filterObjectTypes,
+			@QueryParam("filterMode") String filterMode,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
 	{
 		notifyRequest(uriInfo, headers, request);
 		String objectUri = NameFormatter.formatBlankObjectResourceUri(collectionId, dataSourceId, dataSetId, objectId);
-		return internalGetByUri(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, excludeLinks, expandBlankObjects, filterProperties, filterObjectTypes, headers);
+		return internalGetByUri(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, excludeLinks, expandBlankObjects, filterProperties, filterObjectTypes, filterMode, uriInfo, headers);
 	}
 	
 	
@@ -166,6 +199,8 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 			String expandBlankObjects,
 			String filterProperties,
 			String filterObjectTypes,
+			String filterMode,
+			UriInfo uriInfo,
 			HttpHeaders headers)
 	{
 		BooleanParam excludePropertiesParam = new BooleanParam();
@@ -176,28 +211,39 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 		
 		BooleanParam expandBlankObjectsParam = new BooleanParam();
 		expandBlankObjectsParam.setStringValue(expandBlankObjects);		
+		
+		FilterMode filterModeParam = parseFilterMode(filterMode);
 
 		try {		
-			Model model = getObjectManager().getByUri(
-					collectionId,
-					dataSourceId,
-					null,
-					objectUri,
-					excludePropertiesParam.getValue(),
-					excludeLinksParam.getValue(),
-					expandBlankObjectsParam.getValue(),
-					filterProperties,
-					filterObjectTypes);
-			String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					modelBaseUri,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getObjectManager().getVersion(collectionId, dataSourceId, !excludeLinksParam.getValue()),
+					version -> {
+						String modelBaseUri = NameFormatter.formatObjectResourceBaseUri(collectionId, dataSourceId);
+						String cacheKey = String.format("objects %s %s %s %s %s %s %s",
+								objectUri,
+								excludePropertiesParam.getValue(),
+								excludeLinksParam.getValue(),
+								expandBlankObjectsParam.getValue(),
+								filterProperties,
+								filterObjectTypes,
+								filterModeParam);
+						return buildCachedResponse(cacheKey, version, modelBaseUri, headers, () ->
+								getObjectManager().getByUri(
+										collectionId,
+										dataSourceId,
+										null,
+										objectUri,
+										excludePropertiesParam.getValue(),
+										excludeLinksParam.getValue(),
+										expandBlankObjectsParam.getValue(),
+										filterProperties,
+										filterObjectTypes,
+										filterModeParam));
+					},
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
-		} catch (DrumbeatException e) {
-			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);			
 		}
 		
 	}
@@ -217,7 +263,7 @@ public class DataSourceObjectResource extends DrumbeatApiBase {
 	{
 		notifyRequest(uriInfo, headers, request);
 		String objectUri = NameFormatter.formatObjectResourceUri(collectionId, dataSourceId, objectId);
-		return internalGetByUri(collectionId, dataSourceId, null, objectUri, "true", "true", "false", null, null, headers);
+		return internalGetByUri(collectionId, dataSourceId, null, objectUri, "true", "true", "false", null, null, null, uriInfo, headers);
 	}
 	
 	
@@ -40,11 +40,14 @@ public class DataSourceResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getDataSourceManager().getAll(collectionId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSourceManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getDataSourceManager().getAll(collectionId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -62,11 +65,14 @@ public class DataSourceResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getDataSourceManager().getById(collectionId, dataSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getDataSourceManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getDataSourceManager().getById(collectionId, dataSourceId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
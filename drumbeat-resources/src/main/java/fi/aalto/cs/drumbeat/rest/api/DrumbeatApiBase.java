@@ -1,17 +1,94 @@
 package fi.aalto.cs.drumbeat.rest.api;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.NotFoundException;
 import org.apache.log4j.Logger;
 
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.common.params.BooleanParam;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
+import fi.aalto.cs.drumbeat.rest.common.EntityVersion;
+import fi.aalto.cs.drumbeat.rest.common.ResponseCache;
+import fi.aalto.cs.drumbeat.rest.common.ResponseCache.CachedResponse;
+import fi.aalto.cs.drumbeat.rest.managers.FilterMode;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectCursor;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectModel;
+import fi.aalto.cs.drumbeat.rest.managers.ObjectPage;
+import fi.aalto.cs.drumbeat.rest.managers.upload.ResumableUpload;
+import fi.aalto.cs.drumbeat.rest.managers.upload.ResumableUploadManager;
+import fi.aalto.cs.drumbeat.rest.managers.upload.SpooledFileInputStream;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadJob;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadJobManager;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadProgress;
 
 public abstract class DrumbeatApiBase {
 	
 	private static Logger logger = Logger.getLogger(DrumbeatApiBase.class);
 	
+	public static final String METRIC_NOT_MODIFIED = "responses.not.modified";
+	
+	private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("bytes\\s+(?:(\\d+)-(\\d+)|\\*)/(\\d+|\\*)");
+	
+	@Context
+	private Request conditionalRequest;
+	
+	/**
+	 * Loads the model to be returned in a response
+	 */
+	protected interface ModelLoader {
+		Model load() throws DrumbeatException;
+	}
+	
+	/**
+	 * Loads the object to be returned in a response, with its links
+	 */
+	protected interface ObjectModelLoader {
+		ObjectModel load() throws DrumbeatException;
+	}
+	
+	/**
+	 * Gets the version of the data to be returned in a response
+	 */
+	protected interface VersionSupplier {
+		EntityVersion get() throws DrumbeatException;
+	}
+	
+	/**
+	 * Builds a response from the data of the given version
+	 */
+	protected interface ResponseSupplier {
+		Response get(EntityVersion version) throws DrumbeatException;
+	}
+	
 	protected void notifyRequest(UriInfo uriInfo, HttpHeaders headers, HttpServletRequest request) {		
 		DrumbeatApplication.getInstance().notifyRequest(uriInfo);
 		
@@ -22,4 +99,614 @@ public abstract class DrumbeatApiBase {
 				uriInfo.getBaseUri()));
 
 	}
+
+	/**
+	 * Responds to a GET with 304 (Not Modified) if the client already has the current version of the data,
+	 * otherwise with the built response and the <code>ETag</code> and <code>Last-Modified</code> headers of the version.
+	 * The version is taken before the response is built, so the data is not queried for a 304.
+	 * @param versionSupplier
+	 * @param responseSupplier
+	 * @param uriInfo
+	 * @param headers
+	 * @return
+	 * @throws DrumbeatWebException 500 (Internal Server Error) if the version or the response cannot be built
+	 */
+	protected Response buildVersionedResponse(
+			VersionSupplier versionSupplier,
+			ResponseSupplier responseSupplier,
+			UriInfo uriInfo,
+			HttpHeaders headers)
+	{
+		try {
+			EntityVersion version = versionSupplier.get();
+			Response notModified = evaluatePreconditions(version, uriInfo, headers);
+			if (notModified != null) {
+				return notModified;
+			}
+			
+			Response response = responseSupplier.get(version);
+			if (isNoStore(response)) {
+				// the response is not of the version, e.g. links were left out of it
+				return response;
+			}
+			return addVersionHeaders(response, version, uriInfo, headers);
+		} catch (DrumbeatException e) {
+			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+		}
+	}
+
+	/**
+	 * Evaluates the <code>If-None-Match</code> and <code>If-Modified-Since</code> headers of a GET
+	 * against the version of the data, before the data is queried
+	 * @param version
+	 * @param uriInfo
+	 * @param headers
+	 * @return 304 (Not Modified) response, or <code>null</code> if the response must be built
+	 */
+	private Response evaluatePreconditions(EntityVersion version, UriInfo uriInfo, HttpHeaders headers) {
+		EntityTag entityTag = getEntityTag(version, uriInfo, headers);
+		Date lastModified = version.getLastModified();
+		
+		ResponseBuilder builder = lastModified != null ?
+				conditionalRequest.evaluatePreconditions(lastModified, entityTag) :
+				conditionalRequest.evaluatePreconditions(entityTag);
+		
+		if (builder == null) {
+			return null;
+		}
+		
+		DrumbeatMetrics.getInstance().increment(METRIC_NOT_MODIFIED);
+		return builder
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+				.build();
+	}
+	
+	/**
+	 * Adds the <code>ETag</code> and <code>Last-Modified</code> headers of the version of the data to a response
+	 * @param response
+	 * @param version
+	 * @param uriInfo
+	 * @param headers
+	 * @return
+	 */
+	private Response addVersionHeaders(Response response, EntityVersion version, UriInfo uriInfo, HttpHeaders headers) {
+		return Response.fromResponse(response)
+				.tag(getEntityTag(version, uriInfo, headers))
+				.lastModified(version.getLastModified())
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+				.build();
+	}
+	
+	private static boolean isNoStore(Response response) {
+		Object cacheControl = response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL);
+		return cacheControl instanceof CacheControl && ((CacheControl)cacheControl).isNoStore();
+	}
+	
+	private EntityTag getEntityTag(EntityVersion version, UriInfo uriInfo, HttpHeaders headers) {
+		// each representation has its own tag
+		return version.getEntityTag(uriInfo.getRequestUri() + " " + headers.getAcceptableMediaTypes());
+	}
+
+	/**
+	 * Responds with 200 (OK) and the model serialized in the first acceptable media type.
+	 * The serialized response is cached for the version of the data it is loaded from, so that
+	 * repeated requests of the same object neither query the store nor serialize the model.
+	 * @param cacheKey identifies the model, including all parameters the model depends on. The response is also
+	 * cached per base URI of the request, because the serialized URIs are built from it
+	 * @param version version of the data the model is loaded from, taken before loading so that
+	 * a model loaded while the data changes is not cached as current
+	 * @param baseUri base URI of the serialized model
+	 * @param headers
+	 * @param loader loads the model if the response is not cached
+	 * @return
+	 * @throws DrumbeatException
+	 */
+	protected Response buildCachedResponse(
+			String cacheKey,
+			EntityVersion version,
+			String baseUri,
+			HttpHeaders headers,
+			ModelLoader loader) throws DrumbeatException
+	{
+		ObjectModelLoader objectLoader = () -> new ObjectModel(loader.load(), true);
+		return buildCachedResponse(cacheKey, version, baseUri, headers, objectLoader);
+	}
+
+	/**
+	 * Responds like {@link #buildCachedResponse(String, EntityVersion, String, HttpHeaders, ModelLoader)}
+	 * with an object and its links. If the links of a source were left out, the response is neither cached
+	 * nor tagged with the version, and is sent with <code>Cache-Control: no-store</code>
+	 * @param cacheKey
+	 * @param version
+	 * @param baseUri
+	 * @param headers
+	 * @param loader
+	 * @return
+	 * @throws DrumbeatException
+	 */
+	protected Response buildCachedResponse(
+			String cacheKey,
+			EntityVersion version,
+			String baseUri,
+			HttpHeaders headers,
+			ObjectModelLoader loader) throws DrumbeatException
+	{
+		ResponseCache cache = ResponseCache.getInstance();
+		// URIs in the response are built from the base URI of the request unless it is fixed
+		String key = DrumbeatApplication.getInstance().getBaseUri() + " " + cacheKey + " " + headers.getAcceptableMediaTypes();
+		
+		if (cache.isEnabled()) {
+			CachedResponse cachedResponse = cache.get(key, version);
+			if (cachedResponse != null) {
+				return Response
+						.ok(cachedResponse.getContent())
+						.type(cachedResponse.getMediaType())
+						.build();
+			}
+		}
+		
+		ObjectModel objectModel = loader.load();
+		Response response = DrumbeatResponseBuilder.build(
+				Status.OK,
+				objectModel.getModel(),
+				baseUri,
+				headers.getAcceptableMediaTypes());
+		
+		if (!objectModel.isComplete()) {
+			CacheControl cacheControl = new CacheControl();
+			cacheControl.setNoStore(true);
+			return Response.fromResponse(response)
+					.cacheControl(cacheControl)
+					.header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+					.build();
+		}
+		
+		if (!cache.isEnabled()) {
+			return response;
+		}
+		
+		// the response is streamed to the client and copied to the cache unless it is too large
+		StreamingOutput output = (StreamingOutput)response.getEntity();
+		String mediaType = response.getMediaType().toString();
+		StreamingOutput cachingOutput = out -> {
+			CopyingOutputStream copyingOut = new CopyingOutputStream(out, cache.getMaxEntrySize());
+			output.write(copyingOut);
+			copyingOut.flush();
+			if (!copyingOut.isOverflowed()) {
+				cache.put(key, version, new CachedResponse(copyingOut.toByteArray(), mediaType));
+			}
+		};
+		
+		return Response.fromResponse(response)
+				.entity(cachingOutput)
+				.build();
+	}
+
+	/**
+	 * Gets the page size of an object listing
+	 * @param limit value of the <code>limit</code> parameter, or <code>null</code>
+	 * @param cursor value of the <code>cursor</code> parameter, or <code>null</code>
+	 * @return the number of objects in a page, at most the configured maximum,
+	 * or 0 if neither parameter is given and the listing is not paged
+	 */
+	protected int getPageLimit(String limit, String cursor) {
+		int maxLimit = DrumbeatApplication.getInstance().getObjectPageMaxLimit();
+		if (limit == null) {
+			return cursor != null ? maxLimit : 0;
+		}
+		
+		int limitValue;
+		try {
+			limitValue = Integer.parseInt(limit.trim());
+		} catch (NumberFormatException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid param 'limit': " + limit, e);
+		}
+		
+		if (limitValue < 1) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid param 'limit': " + limit, null);
+		}
+		return Math.min(limitValue, maxLimit);
+	}
+	
+	/**
+	 * Parses the <code>cursor</code> parameter of an object listing
+	 * @param cursor
+	 * @return the cursor, or <code>null</code> for the first page
+	 */
+	protected ObjectCursor parseCursor(String cursor) {
+		if (cursor == null) {
+			return null;
+		}
+		try {
+			return ObjectCursor.parse(cursor);
+		} catch (IllegalArgumentException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid param 'cursor': " + cursor, e);
+		}
+	}
+	
+	/**
+	 * Parses the <code>filterMode</code> parameter of an object GET
+	 * @param filterMode
+	 * @return
+	 */
+	protected FilterMode parseFilterMode(String filterMode) {
+		try {
+			return FilterMode.parse(filterMode);
+		} catch (IllegalArgumentException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid param 'filterMode': " + filterMode, e);
+		}
+	}
+	
+	/**
+	 * Adds the <code>Link</code> header of the next page to the response of a page, unless it is the last page
+	 * @param response
+	 * @param page
+	 * @param limit
+	 * @param uriInfo
+	 * @return
+	 */
+	protected Response addNextPageLink(Response response, ObjectPage page, int limit, UriInfo uriInfo) {
+		if (page.getNextCursor() == null) {
+			return response;
+		}
+		
+		URI nextUri = uriInfo.getRequestUriBuilder()
+				.replaceQueryParam("cursor", page.getNextCursor().format())
+				.replaceQueryParam("limit", limit)
+				.build();
+		
+		return Response.fromResponse(response)
+				.links(Link.fromUri(nextUri).rel("next").build())
+				.build();
+	}
+
+	/**
+	 * Upload run as a background job, reading the input stream given to the job
+	 */
+	protected interface UploadJobTask {
+		void run(InputStream in, UploadProgress progress) throws Exception;
+	}
+
+	/**
+	 * Runs an upload as a background job and responds with 202 (Accepted) and the job status.
+	 * The request body is not available after responding, so it is first saved to a temporary file,
+	 * which the job reads instead. The input stream is closed when the job finishes, also if it is cancelled while queued.
+	 * @param targetUri
+	 * @param in
+	 * @param totalBytes size of the input, or -1 if unknown
+	 * @param isRequestBody whether the input is read from the request body
+	 * @param task
+	 * @param uriInfo
+	 * @param headers
+	 * @return
+	 */
+	protected Response submitUploadJob(
+			String targetUri,
+			InputStream in,
+			long totalBytes,
+			boolean isRequestBody,
+			UploadJobTask task,
+			UriInfo uriInfo,
+			HttpHeaders headers)
+	{
+		if (isRequestBody) {
+			try {
+				SpooledFileInputStream spooledIn = new SpooledFileInputStream(UploadJobManager.spoolToFile(in));
+				in = spooledIn;
+				totalBytes = spooledIn.getLength();
+			} catch (IOException e) {
+				logger.error(e.getMessage(), e);
+				throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+			}
+		}
+
+		InputStream jobIn = in;
+		UploadJob job;
+		try {
+			job = UploadJobManager.getInstance().submit(
+					targetUri,
+					totalBytes,
+					progress -> task.run(jobIn, progress),
+					() -> closeQuietly(jobIn));
+		} catch (RejectedExecutionException e) {
+			closeQuietly(jobIn);
+			throw new DrumbeatWebException(Status.SERVICE_UNAVAILABLE, "Too many uploads are queued, try again later", e);
+		}
+
+		Model jobModel = UploadJobManager.getInstance().getById(job.getId());
+		URI jobUri = uriInfo.getBaseUriBuilder().path(UploadJobResource.class).path(job.getId()).build();
+
+		Response response = DrumbeatResponseBuilder.build(
+				Status.ACCEPTED,
+				jobModel,
+				headers.getAcceptableMediaTypes());
+
+		return Response.fromResponse(response).location(jobUri).build();
+	}
+
+	/**
+	 * Gets the sub-resource of the resumable uploads of a data set, link set or ontology
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param targetCheck throws {@link DrumbeatWebException} if the target does not exist
+	 * @return
+	 */
+	protected ResumableUploadResource getResumableUploadResource(String targetUri, Runnable targetCheck) {
+		return new ResumableUploadResource(targetUri, targetCheck);
+	}
+
+	/**
+	 * Starts a resumable upload and responds with 201 (Created), the upload status and its location
+	 * @param targetUri
+	 * @param totalBytes size of the whole upload, or -1 if not yet known
+	 * @param uriInfo
+	 * @param headers
+	 * @return
+	 */
+	protected Response createResumableUpload(
+			String targetUri,
+			String totalBytes,
+			UriInfo uriInfo,
+			HttpHeaders headers)
+	{
+		long totalBytesValue;
+		try {
+			totalBytesValue = Long.parseLong(totalBytes.trim());
+		} catch (NumberFormatException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid param 'totalBytes': " + totalBytes, e);
+		}
+
+		ResumableUpload upload;
+		try {
+			upload = ResumableUploadManager.getInstance().create(targetUri, totalBytesValue);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+		}
+
+		URI uploadUri = uriInfo.getAbsolutePathBuilder().path(upload.getId()).build();
+
+		Response response = DrumbeatResponseBuilder.build(
+				Status.CREATED,
+				ResumableUploadManager.getInstance().getStatus(upload),
+				headers.getAcceptableMediaTypes());
+
+		return Response.fromResponse(response).location(uploadUri).build();
+	}
+
+	/**
+	 * Writes a byte range of a resumable upload and responds with the upload status. The range is given
+	 * by the <code>Content-Range</code> header, e.g. <code>bytes 0-1048575/2147483648</code>, where the size
+	 * of the whole upload may be <code>*</code> if not yet known. The <code>Range</code> header of the response
+	 * tells the bytes received without gaps from the beginning.
+	 * @param targetUri
+	 * @param uploadId
+	 * @param contentRange
+	 * @param in
+	 * @param headers
+	 * @return
+	 */
+	protected Response writeResumableUploadRange(
+			String targetUri,
+			String uploadId,
+			String contentRange,
+			InputStream in,
+			HttpHeaders headers)
+	{
+		try {
+			Matcher matcher = contentRange != null ? CONTENT_RANGE_PATTERN.matcher(contentRange.trim()) : null;
+			if (matcher == null || !matcher.matches()) {
+				throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid header 'Content-Range': " + contentRange, null);
+			}
+
+			long start;
+			long length;
+			long totalBytes;
+			try {
+				start = matcher.group(1) != null ? Long.parseLong(matcher.group(1)) : 0;
+				length = matcher.group(1) != null ? Long.parseLong(matcher.group(2)) - start + 1 : 0;
+				totalBytes = !matcher.group(3).equals("*") ? Long.parseLong(matcher.group(3)) : -1;
+			} catch (NumberFormatException e) {
+				// the numbers do not fit in a long
+				throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid header 'Content-Range': " + contentRange, e);
+			}
+
+			if (length < 0) {
+				throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid header 'Content-Range': " + contentRange, null);
+			}
+
+			ResumableUploadManager manager = ResumableUploadManager.getInstance();
+			ResumableUpload upload = manager.get(targetUri, uploadId);
+
+			long written = manager.write(upload, start, length, totalBytes, in);
+			if (written < length) {
+				throw new DrumbeatWebException(
+						Status.BAD_REQUEST,
+						String.format("Request body ended after %d of %d bytes", written, length),
+						null);
+			}
+
+			return buildResumableUploadResponse(upload, headers);
+
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		} catch (IllegalArgumentException e) {
+			throw new DrumbeatWebException(Status.REQUESTED_RANGE_NOT_SATISFIABLE, e);
+		} catch (IllegalStateException e) {
+			throw new DrumbeatWebException(Status.CONFLICT, e);
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+		} finally {
+			closeQuietly(in);
+		}
+	}
+
+	/**
+	 * Responds with the status of a resumable upload
+	 * @param targetUri
+	 * @param uploadId
+	 * @param headers
+	 * @return
+	 */
+	protected Response getResumableUpload(
+			String targetUri,
+			String uploadId,
+			HttpHeaders headers)
+	{
+		try {
+			ResumableUpload upload = ResumableUploadManager.getInstance().get(targetUri, uploadId);
+			return buildResumableUploadResponse(upload, headers);
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		}
+	}
+
+	/**
+	 * Aborts a resumable upload
+	 * @param targetUri
+	 * @param uploadId
+	 */
+	protected void abortResumableUpload(
+			String targetUri,
+			String uploadId)
+	{
+		try {
+			ResumableUploadManager.getInstance().abort(targetUri, uploadId);
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		} catch (IllegalStateException e) {
+			throw new DrumbeatWebException(Status.CONFLICT, e);
+		}
+	}
+
+	/**
+	 * Upload of the file assembled by a resumable upload
+	 */
+	protected interface ResumableUploadTask {
+		Response run(SpooledFileInputStream in);
+	}
+
+	/**
+	 * Finishes a resumable upload whose bytes have all been received by running the upload of the assembled file.
+	 * The upload and its file are kept until the task has succeeded or has submitted a job, so that a failed
+	 * finish can be retried. After that, the file is deleted when the stream given to the task is closed.
+	 * @param targetUri
+	 * @param uploadId
+	 * @param task
+	 * @return the response of the task
+	 */
+	protected Response finishResumableUpload(
+			String targetUri,
+			String uploadId,
+			ResumableUploadTask task)
+	{
+		ResumableUploadManager manager = ResumableUploadManager.getInstance();
+
+		SpooledFileInputStream in;
+		try {
+			File file = manager.complete(targetUri, uploadId);
+			try {
+				in = new SpooledFileInputStream(file, false);
+			} catch (FileNotFoundException e) {
+				manager.reopen(targetUri, uploadId);
+				logger.error(e.getMessage(), e);
+				throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+			}
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		} catch (IllegalStateException e) {
+			throw new DrumbeatWebException(Status.CONFLICT, e);
+		}
+
+		Response response;
+		try {
+			response = task.run(in);
+		} catch (RuntimeException | Error e) {
+			closeQuietly(in);
+			manager.reopen(targetUri, uploadId);
+			throw e;
+		}
+
+		manager.remove(targetUri, uploadId);
+		in.setDeleteOnClose(true);
+		return response;
+	}
+
+	private Response buildResumableUploadResponse(ResumableUpload upload, HttpHeaders headers) {
+		Response response = DrumbeatResponseBuilder.build(
+				Status.OK,
+				ResumableUploadManager.getInstance().getStatus(upload),
+				headers.getAcceptableMediaTypes());
+
+		long contiguousBytesReceived = upload.getContiguousBytesReceived();
+		if (contiguousBytesReceived == 0) {
+			return response;
+		}
+
+		return Response.fromResponse(response)
+				.header("Range", String.format("bytes=0-%d", contiguousBytesReceived - 1))
+				.build();
+	}
+
+	/**
+	 * Writes to an output stream and keeps a copy of the bytes written, up to a maximum size
+	 */
+	private static class CopyingOutputStream extends FilterOutputStream {
+		
+		private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		private final long maxSize;
+		private boolean overflowed;
+		
+		CopyingOutputStream(OutputStream out, long maxSize) {
+			super(out);
+			this.maxSize = maxSize;
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			copy(new byte[] { (byte)b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			copy(b, off, len);
+		}
+		
+		boolean isOverflowed() {
+			return overflowed;
+		}
+		
+		byte[] toByteArray() {
+			return copy.toByteArray();
+		}
+		
+		private void copy(byte[] b, int off, int len) {
+			if (overflowed) {
+				return;
+			}
+			if (copy.size() + len > maxSize) {
+				overflowed = true;
+				copy.reset();
+			} else {
+				copy.write(b, off, len);
+			}
+		}
+		
+	}
+	
+	protected boolean isAsync(String async) {
+		BooleanParam asyncParam = new BooleanParam();
+		asyncParam.setStringValue(async);
+		return asyncParam.getValue();
+	}
+
+	protected void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			logger.error(e.getMessage(), e);
+		}
+	}
 }
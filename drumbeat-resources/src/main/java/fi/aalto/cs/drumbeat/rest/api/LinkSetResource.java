@@ -1,11 +1,12 @@
 package fi.aalto.cs.drumbeat.rest.api;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
@@ -31,6 +32,8 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
 import fi.aalto.cs.drumbeat.rest.managers.LinkSetManager;
 import fi.aalto.cs.drumbeat.rest.managers.LinkSetObjectManager;
+import fi.aalto.cs.drumbeat.rest.managers.ErrorFactory;
+import fi.aalto.cs.drumbeat.rest.managers.upload.ServerFileInputStream;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.file.FileManager;
 import fi.aalto.cs.drumbeat.common.params.BooleanParam;
@@ -56,11 +59,14 @@ public class LinkSetResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getLinkSetManager().getAll(collectionId, linkSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getLinkSetManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getLinkSetManager().getAll(collectionId, linkSourceId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -79,11 +85,14 @@ public class LinkSetResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getLinkSetManager().getById(collectionId, linkSourceId, linkSetId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getLinkSetManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getLinkSetManager().getById(collectionId, linkSourceId, linkSetId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -148,6 +157,7 @@ public class LinkSetResource extends DrumbeatApiBase {
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("filePath") String filePath,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -164,12 +174,13 @@ public class LinkSetResource extends DrumbeatApiBase {
 		
 		InputStream in;
 		try {
-			in = new FileInputStream(filePath);
+			in = new ServerFileInputStream(new File(filePath));
 		} catch (FileNotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		long totalBytes = new File(filePath).length();
+		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, async, in, totalBytes, false, uriInfo, headers);
 	}
 	
 	@POST
@@ -183,6 +194,7 @@ public class LinkSetResource extends DrumbeatApiBase {
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("url") String url,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -198,13 +210,16 @@ public class LinkSetResource extends DrumbeatApiBase {
 		logger.info(String.format("UploadUrl: LinkSet=%s, Url=%s", graphName, url));
 		
 		InputStream in;
+		long totalBytes;
 		try {
-			in = new URL(url).openStream();
+			URLConnection connection = new URL(url).openConnection();
+			in = connection.getInputStream();
+			totalBytes = connection.getContentLengthLong();
 		} catch (IOException e) {			
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, async, in, totalBytes, false, uriInfo, headers);
 	}
 
 
@@ -219,6 +234,7 @@ public class LinkSetResource extends DrumbeatApiBase {
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,			
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
 			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("content") String content,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -233,8 +249,9 @@ public class LinkSetResource extends DrumbeatApiBase {
 		String graphName = NameFormatter.formatLinkSetGraphUri(collectionId, linkSourceId, linkSetId);			
 		logger.info(String.format("UploadContent: LinkSet=%s, Content=%s", graphName, content));
 		
-		InputStream in = new ByteArrayInputStream(content.getBytes());
-		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		byte[] contentBytes = content.getBytes();
+		InputStream in = new ByteArrayInputStream(contentBytes);
+		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, async, in, contentBytes.length, false, uriInfo, headers);
 	}
 
 	
@@ -250,6 +267,7 @@ public class LinkSetResource extends DrumbeatApiBase {
 			@DefaultValue("") @FormDataParam("compressionFormat") String compressionFormat,
 			@DefaultValue("false") @FormDataParam("clearBefore") String clearBefore,
 			@DefaultValue("false") @FormDataParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormDataParam("async") String async,
 			@FormDataParam("file") InputStream in,
 	        @FormDataParam("file") FormDataContentDisposition fileDetail,
 			@Context UriInfo uriInfo,
@@ -269,7 +287,56 @@ public class LinkSetResource extends DrumbeatApiBase {
 		String graphName = NameFormatter.formatLinkSetGraphUri(collectionId, linkSourceId, linkSetId);
 		logger.info(String.format("UploadContent: LinkSet=%s, FileName=%s", graphName, fileDetail.getFileName()));		
 
-		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, in, headers);
+		return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, async, in, -1, true, uriInfo, headers);
+	}
+	
+	@Path("/{collectionId}/{linkSourceId}/{linkSetId}/uploads")
+	public ResumableUploadResource getUploads(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("linkSourceId") String linkSourceId,
+			@PathParam("linkSetId") String linkSetId)
+	{
+		return getResumableUploadResource(
+				NameFormatter.formatLinkSetResourceUri(collectionId, linkSourceId, linkSetId),
+				() -> {
+					if (!getLinkSetManager().checkExists(collectionId, linkSourceId, linkSetId)) {
+						throw new DrumbeatWebException(
+								Status.NOT_FOUND,
+								ErrorFactory.createLinkSetNotFoundException(collectionId, linkSourceId, linkSetId));
+					}
+				});
+	}
+	
+	@POST
+	@Path("/{collectionId}/{linkSourceId}/{linkSetId}/uploads/{uploadId}/finish")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response finishUpload(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("linkSourceId") String linkSourceId,
+			@PathParam("linkSetId") String linkSetId,
+			@PathParam("uploadId") String uploadId,
+			@FormParam("dataType") String dataType,
+			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
+			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("notifyRemote") String notifyRemote,
+			@DefaultValue("false") @FormParam("async") String async,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		
+		if (StringUtils.isEmptyOrNull(dataFormat)) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Undefined param 'dataFormat'", null);
+		}
+		
+		String targetUri = NameFormatter.formatLinkSetResourceUri(collectionId, linkSourceId, linkSetId);
+		
+		return finishResumableUpload(targetUri, uploadId, in -> {
+			logger.info(String.format("FinishResumableUpload: LinkSet=%s, UploadId=%s, Size=%d", targetUri, uploadId, in.getLength()));
+			
+			return internalUploadLinkSet(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, async, in, in.getLength(), false, uriInfo, headers);
+		});
 	}
 	
 	private Response internalUploadLinkSet(
@@ -280,19 +347,52 @@ public class LinkSetResource extends DrumbeatApiBase {
 			String dataFormat,
 			String clearBefore,
 			String notifyRemote,
+			String async,
 			InputStream in,
+			long totalBytes,
+			boolean isRequestBody,
+			UriInfo uriInfo,
 			HttpHeaders headers)
 	{	
 		
+		boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
+		
+		BooleanParam clearBeforeParam = new BooleanParam();
+		clearBeforeParam.setStringValue(clearBefore);
+
+		BooleanParam notifyRemoteParam = new BooleanParam();
+		notifyRemoteParam.setStringValue(notifyRemote);
+		
+		if (isAsync(async)) {
+			if (!getLinkSetManager().checkExists(collectionId, linkSourceId, linkSetId)) {
+				closeQuietly(in);
+				throw new DrumbeatWebException(
+						Status.NOT_FOUND,
+						ErrorFactory.createLinkSetNotFoundException(collectionId, linkSourceId, linkSetId));
+			}
+			
+			return submitUploadJob(
+					NameFormatter.formatLinkSetResourceUri(collectionId, linkSourceId, linkSetId),
+					in,
+					totalBytes,
+					isRequestBody,
+					(jobIn, progress) -> new LinkSetObjectManager().upload(
+							collectionId,
+							linkSourceId,
+							linkSetId,
+							dataType,
+							dataFormat,
+							clearBeforeParam.getValue(),
+							notifyRemoteParam.getValue(),
+							jobIn,
+							saveToFiles,
+							progress),
+					uriInfo,
+					headers);
+		}
+		
 		try {
 			LinkSetObjectManager objectManager = new LinkSetObjectManager();
-			boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
-			
-			BooleanParam clearBeforeParam = new BooleanParam();
-			clearBeforeParam.setStringValue(clearBefore);
-
-			BooleanParam notifyRemoteParam = new BooleanParam();
-			notifyRemoteParam.setStringValue(notifyRemote);
 
 			Model linkSetInfoModel = objectManager.upload(
 					collectionId,
@@ -40,11 +40,14 @@ public class LinkSourceResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getLinkSourceManager().getAll(collectionId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getLinkSourceManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getLinkSourceManager().getAll(collectionId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
@@ -62,11 +65,14 @@ public class LinkSourceResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getLinkSourceManager().getById(collectionId, linkSourceId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getLinkSourceManager().getMetaDataVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getLinkSourceManager().getById(collectionId, linkSourceId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
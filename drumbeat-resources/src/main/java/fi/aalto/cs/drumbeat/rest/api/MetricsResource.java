@@ -0,0 +1,53 @@
+package fi.aalto.cs.drumbeat.rest.api;
+
+import java.util.Map.Entry;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
+
+@Path("/metrics")
+public class MetricsResource extends DrumbeatApiBase {
+
+	private static final String METRICS_BASE_URI = "http://drumbeat.cs.hut.fi/metrics/";
+
+	@GET
+	public Response getMetrics(
+		@Context UriInfo uriInfo,
+		@Context HttpHeaders headers,
+		@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefix("metrics", METRICS_BASE_URI);
+
+		Resource resource = model.createResource(DrumbeatApplication.getInstance().getBaseUri());
+
+		for (Entry<String, Long> metric : DrumbeatMetrics.getInstance().getAll().entrySet()) {
+			model.add(
+					resource,
+					model.createProperty(METRICS_BASE_URI + metric.getKey()),
+					model.createTypedLiteral(metric.getValue()));
+		}
+
+		return DrumbeatResponseBuilder.build(
+				Status.OK,
+				model,
+				headers.getAcceptableMediaTypes());
+	}
+
+}
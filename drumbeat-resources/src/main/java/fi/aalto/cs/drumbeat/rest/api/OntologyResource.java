@@ -1,11 +1,12 @@
 package fi.aalto.cs.drumbeat.rest.api;
 
 import java.io.ByteArrayInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
@@ -30,6 +31,7 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
 import fi.aalto.cs.drumbeat.rest.managers.OntologyManager;
+import fi.aalto.cs.drumbeat.rest.managers.upload.ServerFileInputStream;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.file.FileManager;
 import fi.aalto.cs.drumbeat.common.params.BooleanParam;
@@ -51,11 +53,14 @@ public class OntologyResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getOntologyManager().getAll();
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getOntologyManager().getVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getOntologyManager().getAll(),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException exception) {
 			throw new DrumbeatWebException(
 					Status.NOT_FOUND,
@@ -75,11 +80,14 @@ public class OntologyResource extends DrumbeatApiBase {
 		notifyRequest(uriInfo, headers, request);
 		
 		try {		
-			Model model = getOntologyManager().getById(ontologyId);
-			return DrumbeatResponseBuilder.build(
-					Status.OK,
-					model,
-					headers.getAcceptableMediaTypes());			
+			return buildVersionedResponse(
+					() -> getOntologyManager().getVersion(),
+					version -> DrumbeatResponseBuilder.build(
+							Status.OK,
+							getOntologyManager().getById(ontologyId),
+							headers.getAcceptableMediaTypes()),
+					uriInfo,
+					headers);
 		} catch (NotFoundException exception) {
 			throw new DrumbeatWebException(
 					Status.NOT_FOUND,
@@ -153,6 +161,7 @@ public class OntologyResource extends DrumbeatApiBase {
 			@FormParam("dataType") String dataType,
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("filePath") String filePath,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -169,12 +178,13 @@ public class OntologyResource extends DrumbeatApiBase {
 		
 		InputStream in;
 		try {
-			in = new FileInputStream(filePath);
+			in = new ServerFileInputStream(new File(filePath));
 		} catch (FileNotFoundException e) {
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, in, headers);
+		long totalBytes = new File(filePath).length();
+		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, async, in, totalBytes, false, uriInfo, headers);
 	}
 	
 	@POST
@@ -185,6 +195,7 @@ public class OntologyResource extends DrumbeatApiBase {
 			@FormParam("dataType") String dataType,
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("url") String url,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -200,13 +211,16 @@ public class OntologyResource extends DrumbeatApiBase {
 		logger.info(String.format("UploadUrl: DataSet=%s, Url=%s", ontologyUri, url));
 		
 		InputStream in;
+		long totalBytes;
 		try {
-			in = new URL(url).openStream();
+			URLConnection connection = new URL(url).openConnection();
+			in = connection.getInputStream();
+			totalBytes = connection.getContentLengthLong();
 		} catch (IOException e) {			
 			throw new DrumbeatWebException(Status.NOT_FOUND, e);
 		}
 		
-		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, in, headers);
+		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, async, in, totalBytes, false, uriInfo, headers);
 	}
 
 
@@ -218,6 +232,7 @@ public class OntologyResource extends DrumbeatApiBase {
 			@FormParam("dataType") String dataType,
 			@DefaultValue("") @FormParam("dataFormat") String dataFormat,			
 			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("async") String async,
 			@FormParam("content") String content,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
@@ -232,8 +247,9 @@ public class OntologyResource extends DrumbeatApiBase {
 		String ontologyUri = NameFormatter.formatLocalOntologyUri(ontologyId);			
 		logger.info(String.format("UploadContent: DataSet=%s, Content=%s", ontologyUri, content));
 		
-		InputStream in = new ByteArrayInputStream(content.getBytes());
-		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, in, headers);
+		byte[] contentBytes = content.getBytes();
+		InputStream in = new ByteArrayInputStream(contentBytes);
+		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, async, in, contentBytes.length, false, uriInfo, headers);
 	}
 
 	
@@ -247,6 +263,7 @@ public class OntologyResource extends DrumbeatApiBase {
 			@FormDataParam("dataType") String dataType,
 			@DefaultValue("") @FormDataParam("dataFormat") String dataFormat,
 			@DefaultValue("false") @FormDataParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormDataParam("async") String async,
 			@Context UriInfo uriInfo,
 			@Context HttpHeaders headers,
 			@Context HttpServletRequest request)
@@ -264,7 +281,45 @@ public class OntologyResource extends DrumbeatApiBase {
 		String ontologyUri = NameFormatter.formatLocalOntologyUri(ontologyId);
 		logger.info(String.format("UploadContent: DataSet=%s, FileName=%s", ontologyUri, fileDetail.getFileName()));		
 
-		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, in, headers);
+		return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, async, in, -1, true, uriInfo, headers);
+	}
+	
+	@Path("/{ontologyId}/uploads")
+	public ResumableUploadResource getUploads(
+			@PathParam("ontologyId") String ontologyId)
+	{
+		return getResumableUploadResource(
+				NameFormatter.formatLocalOntologyUri(ontologyId),
+				() -> {});
+	}
+	
+	@POST
+	@Path("/{ontologyId}/uploads/{uploadId}/finish")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response finishUpload(
+			@PathParam("ontologyId") String ontologyId,
+			@PathParam("uploadId") String uploadId,
+			@FormParam("dataType") String dataType,
+			@DefaultValue("") @FormParam("dataFormat") String dataFormat,
+			@DefaultValue("false") @FormParam("clearBefore") String clearBefore,
+			@DefaultValue("false") @FormParam("async") String async,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		
+		if (StringUtils.isEmptyOrNull(dataFormat)) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Undefined param 'dataFormat'", null);
+		}
+		
+		String targetUri = NameFormatter.formatLocalOntologyUri(ontologyId);
+		
+		return finishResumableUpload(targetUri, uploadId, in -> {
+			logger.info(String.format("FinishResumableUpload: Ontology=%s, UploadId=%s, Size=%d", targetUri, uploadId, in.getLength()));
+			
+			return internalUploadDataSet(ontologyId, dataType, dataFormat, clearBefore, async, in, in.getLength(), false, uriInfo, headers);
+		});
 	}
 	
 	private Response internalUploadDataSet(
@@ -272,16 +327,39 @@ public class OntologyResource extends DrumbeatApiBase {
 			String dataType,
 			String dataFormat,
 			String clearBefore,
+			String async,
 			InputStream in,
+			long totalBytes,
+			boolean isRequestBody,
+			UriInfo uriInfo,
 			HttpHeaders headers)
 	{	
 		
+		boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
+		
+		BooleanParam clearBeforeParam = new BooleanParam();
+		clearBeforeParam.setStringValue(clearBefore);
+		
+		if (isAsync(async)) {
+			return submitUploadJob(
+					NameFormatter.formatLocalOntologyUri(ontologyId),
+					in,
+					totalBytes,
+					isRequestBody,
+					(jobIn, progress) -> new OntologyManager().upload(
+							ontologyId,
+							dataType,
+							dataFormat,
+							clearBeforeParam.getValue(),
+							jobIn,
+							saveToFiles,
+							progress),
+					uriInfo,
+					headers);
+		}
+		
 		try {
 			OntologyManager ontologyManager = new OntologyManager();
-			boolean saveToFiles = DrumbeatApplication.getInstance().isSavingUploadEnabled();
-			
-			BooleanParam clearBeforeParam = new BooleanParam();
-			clearBeforeParam.setStringValue(clearBefore);
 
 			Model dataSetInfoModel = ontologyManager.upload(
 					ontologyId,
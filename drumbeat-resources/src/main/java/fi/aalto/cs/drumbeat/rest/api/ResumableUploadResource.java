@@ -0,0 +1,98 @@
+package fi.aalto.cs.drumbeat.rest.api;
+
+import java.io.InputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * Resumable uploads of a data set, link set or ontology at <code>{target}/uploads</code>.
+ * The resource is located by the resource of the target, see {@link DrumbeatApiBase#getResumableUploadResource(String, Runnable)}.
+ * Finishing an upload is left to the resource of the target, because its params depend on the kind of the target.
+ */
+public class ResumableUploadResource extends DrumbeatApiBase {
+
+	private final String targetUri;
+	private final Runnable targetCheck;
+
+	/**
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param targetCheck throws {@link fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException} if the target does not exist
+	 */
+	ResumableUploadResource(String targetUri, Runnable targetCheck) {
+		this.targetUri = targetUri;
+		this.targetCheck = targetCheck;
+	}
+
+	@POST
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response startUpload(
+			@DefaultValue("-1") @FormParam("totalBytes") String totalBytes,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		targetCheck.run();
+
+		return createResumableUpload(targetUri, totalBytes, uriInfo, headers);
+	}
+
+	@PUT
+	@Path("/{uploadId}")
+	@Consumes(MediaType.APPLICATION_OCTET_STREAM)
+	public Response uploadRange(
+			@PathParam("uploadId") String uploadId,
+			@HeaderParam("Content-Range") String contentRange,
+			InputStream in,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		return writeResumableUploadRange(targetUri, uploadId, contentRange, in, headers);
+	}
+
+	@GET
+	@Path("/{uploadId}")
+	public Response getUpload(
+			@PathParam("uploadId") String uploadId,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		return getResumableUpload(targetUri, uploadId, headers);
+	}
+
+	@DELETE
+	@Path("/{uploadId}")
+	public void abortUpload(
+			@PathParam("uploadId") String uploadId,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		abortResumableUpload(targetUri, uploadId);
+	}
+
+}
@@ -0,0 +1,303 @@
+package fi.aalto.cs.drumbeat.rest.api;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.FormParam;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.shared.NotFoundException;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.common.string.StringUtils;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
+import fi.aalto.cs.drumbeat.rest.common.SparqlResultFormat;
+import fi.aalto.cs.drumbeat.rest.managers.SparqlQueryManager;
+import fi.aalto.cs.drumbeat.rest.managers.SparqlQueryManager.RunningQuery;
+
+/**
+ * SPARQL 1.1 query endpoint over all graphs (<code>/sparql</code>), over the graphs of a collection
+ * (<code>/sparql/{collectionId}</code>) or a data source (<code>/sparql/{collectionId}/{dataSourceId}</code>),
+ * or over the graph of one data set (<code>/sparql/{collectionId}/{dataSourceId}/{dataSetId}</code>).
+ * The query is given in the <code>query</code> parameter or as an <code>application/sparql-query</code> body,
+ * and the results are streamed to the response.
+ */
+@Path("/sparql")
+public class SparqlResource extends DrumbeatApiBase {
+
+	private static final Logger logger = Logger.getLogger(SparqlResource.class);
+
+	public static final String MEDIA_TYPE_SPARQL_QUERY = "application/sparql-query";
+
+	private static final String RETRY_AFTER_SECONDS = "5";
+
+	private SparqlQueryManager getSparqlQueryManager() {
+		try {
+			return new SparqlQueryManager();
+		} catch (DrumbeatException e) {
+			logger.error(e);
+			throw new DrumbeatWebException(
+					Status.INTERNAL_SERVER_ERROR,
+					"Error getting SparqlQueryManager instance: " + e.getMessage(),
+					e);
+		}
+	}
+
+	@GET
+	public Response query(
+			@QueryParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, null, null, null, headers);
+	}
+
+	@POST
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response queryForm(
+			@FormParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, null, null, null, headers);
+	}
+
+	@POST
+	@Consumes(MEDIA_TYPE_SPARQL_QUERY)
+	public Response queryBody(
+			String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, null, null, null, headers);
+	}
+
+	@GET
+	@Path("/{collectionId}")
+	public Response queryCollection(
+			@PathParam("collectionId") String collectionId,
+			@QueryParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, null, null, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response queryCollectionForm(
+			@PathParam("collectionId") String collectionId,
+			@FormParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, null, null, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}")
+	@Consumes(MEDIA_TYPE_SPARQL_QUERY)
+	public Response queryCollectionBody(
+			@PathParam("collectionId") String collectionId,
+			String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, null, null, headers);
+	}
+
+	@GET
+	@Path("/{collectionId}/{dataSourceId}")
+	public Response queryDataSource(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@QueryParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, null, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}/{dataSourceId}")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response queryDataSourceForm(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@FormParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, null, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}/{dataSourceId}")
+	@Consumes(MEDIA_TYPE_SPARQL_QUERY)
+	public Response queryDataSourceBody(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, null, headers);
+	}
+
+	@GET
+	@Path("/{collectionId}/{dataSourceId}/{dataSetId}")
+	public Response queryDataSet(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@PathParam("dataSetId") String dataSetId,
+			@QueryParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, dataSetId, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}/{dataSourceId}/{dataSetId}")
+	@Consumes(MediaType.APPLICATION_FORM_URLENCODED)
+	public Response queryDataSetForm(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@PathParam("dataSetId") String dataSetId,
+			@FormParam("query") String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, dataSetId, headers);
+	}
+
+	@POST
+	@Path("/{collectionId}/{dataSourceId}/{dataSetId}")
+	@Consumes(MEDIA_TYPE_SPARQL_QUERY)
+	public Response queryDataSetBody(
+			@PathParam("collectionId") String collectionId,
+			@PathParam("dataSourceId") String dataSourceId,
+			@PathParam("dataSetId") String dataSetId,
+			String query,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+		return runQuery(query, collectionId, dataSourceId, dataSetId, headers);
+	}
+
+	private Response runQuery(String queryString, String collectionId, String dataSourceId, String dataSetId, HttpHeaders headers) {
+		if (!DrumbeatApplication.getInstance().isSparqlEndpointEnabled()) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, "SPARQL endpoint is disabled", null);
+		}
+
+		if (StringUtils.isEmptyOrNull(queryString)) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Param 'query' is required", null);
+		}
+
+		Query query;
+		try {
+			query = SparqlQueryManager.parseQuery(queryString);
+		} catch (QueryParseException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, "Invalid query: " + e.getMessage(), e);
+		}
+
+		SparqlResultFormat format = SparqlResultFormat.negotiate(query, headers.getAcceptableMediaTypes());
+		if (format == null) {
+			throw new DrumbeatWebException(
+					Status.NOT_ACCEPTABLE,
+					String.format(
+							"Use supported media types: %s",
+							Arrays.stream(SparqlResultFormat.values())
+								.filter(x -> x.supports(query))
+								.map(x -> x.getMediaType().toString())
+								.collect(Collectors.toList())),
+					null);
+		}
+
+		RunningQuery runningQuery;
+		try {
+			runningQuery = getSparqlQueryManager().start(query, collectionId, dataSourceId, dataSetId);
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		} catch (IllegalArgumentException e) {
+			throw new DrumbeatWebException(Status.BAD_REQUEST, e);
+		} catch (DrumbeatException e) {
+			throw new DrumbeatWebException(Status.INTERNAL_SERVER_ERROR, e);
+		}
+
+		if (runningQuery == null) {
+			throw new WebApplicationException(
+					Response
+						.status(Status.SERVICE_UNAVAILABLE)
+						.header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+						.entity("Too many SPARQL queries are running, try again later")
+						.type(MediaType.TEXT_PLAIN)
+						.build());
+		}
+
+		// the results are written while they are read, after the headers have been sent,
+		// so a query cancelled after the timeout ends the response early
+		StreamingOutput entity = out -> {
+			try {
+				format.write(runningQuery.getExecution(), query, out);
+			} catch (QueryCancelledException e) {
+				DrumbeatMetrics.getInstance().increment(SparqlQueryManager.METRIC_TIMEOUTS);
+				logger.warn("SPARQL query cancelled after timeout: " + queryString);
+				throw new WebApplicationException(e, Status.SERVICE_UNAVAILABLE);
+			} finally {
+				runningQuery.close();
+			}
+		};
+
+		return Response
+				.ok(entity)
+				.type(format.getMediaType())
+				.build();
+	}
+
+}
@@ -0,0 +1,82 @@
+package fi.aalto.cs.drumbeat.rest.api;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriInfo;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.NotFoundException;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatResponseBuilder;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatWebException;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadJobManager;
+
+
+@Path("/jobs")
+public class UploadJobResource extends DrumbeatApiBase {
+
+	@GET
+	public Response getAll(
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		Model model = UploadJobManager.getInstance().getAll();
+		return DrumbeatResponseBuilder.build(
+				Status.OK,
+				model,
+				headers.getAcceptableMediaTypes());
+	}
+
+	@GET
+	@Path("/{jobId}")
+	public Response getById(
+			@PathParam("jobId") String jobId,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		try {
+			Model model = UploadJobManager.getInstance().getById(jobId);
+			return DrumbeatResponseBuilder.build(
+					Status.OK,
+					model,
+					headers.getAcceptableMediaTypes());
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		}
+	}
+
+	@DELETE
+	@Path("/{jobId}")
+	public Response cancel(
+			@PathParam("jobId") String jobId,
+			@Context UriInfo uriInfo,
+			@Context HttpHeaders headers,
+			@Context HttpServletRequest request)
+	{
+		notifyRequest(uriInfo, headers, request);
+
+		try {
+			Model model = UploadJobManager.getInstance().cancel(jobId);
+			return DrumbeatResponseBuilder.build(
+					Status.OK,
+					model,
+					headers.getAcceptableMediaTypes());
+		} catch (NotFoundException e) {
+			throw new DrumbeatWebException(Status.NOT_FOUND, e);
+		}
+	}
+
+}
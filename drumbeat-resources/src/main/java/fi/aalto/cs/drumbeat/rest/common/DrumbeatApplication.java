@@ -17,10 +17,10 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 
 import fi.aalto.cs.drumbeat.rest.api.DataSetResource;
+import fi.aalto.cs.drumbeat.rest.managers.upload.RdfCacheCompression;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.config.document.ConfigurationDocument;
 import fi.aalto.cs.drumbeat.common.config.document.ConfigurationParserException;
-import fi.aalto.cs.drumbeat.common.params.BooleanParam;
 import fi.aalto.cs.drumbeat.ifc.convert.ifc2ld.Ifc2RdfConversionContext;
 import fi.aalto.cs.drumbeat.ifc.convert.ifc2ld.config.Ifc2RdfConversionContextLoader;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.AbstractJenaProvider;
@@ -55,11 +55,92 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 		
 		public static final String JENA_PROVIDER_PREFIX = "jena.provider.";
 		
+		public static class MetaData {
+			public static final String CACHE_ENABLED = "metadata.cache.enabled";
+			public static final String CACHE_MAX_AGE_SECONDS = "metadata.cache.max.age.seconds";
+		}
+		
+		public static class Objects {
+			public static final String EXPAND_MAX_DEPTH = "objects.expand.max.depth";
+			public static final String EXPAND_MAX_OBJECTS = "objects.expand.max.objects";
+			public static final String EXPAND_BATCH_SIZE = "objects.expand.batch.size";
+			public static final String RESPONSE_CACHE_ENABLED = "objects.cache.enabled";
+			public static final String RESPONSE_CACHE_MAX_SIZE = "objects.cache.max.size";
+			public static final String PAGE_MAX_LIMIT = "objects.page.max.limit";
+			public static final String TYPE_INDEX_ENABLED = "objects.type.index.enabled";
+			public static final String VERSION_INDEX_ENABLED = "objects.version.index.enabled";
+			public static final String UNION_QUERY_ENABLED = "objects.union.query.enabled";
+			
+			public static final class Links {
+				public static final String THREAD_COUNT = "objects.links.threads";
+				public static final String QUEUE_SIZE = "objects.links.queue.size";
+				public static final String TIMEOUT_MILLIS = "objects.links.timeout.ms";
+			}
+		}
+		
+		public static class Models {
+			public static final String REQUEST_SCOPE_ENABLED = "models.request.scope.enabled";
+			
+			public static final class Pool {
+				public static final String ENABLED = "models.pool.enabled";
+				public static final String MAX_SIZE = "models.pool.max.size";
+				public static final String MAX_WAIT_MILLIS = "models.pool.max.wait.ms";
+				public static final String MAX_OVERFLOW = "models.pool.max.overflow";
+				public static final String IDLE_TIMEOUT_MILLIS = "models.pool.idle.timeout.ms";
+			}
+		}
+		
+		public static class Sparql {
+			public static final String ENABLED = "sparql.enabled";
+			public static final String MAX_CONCURRENT_QUERIES = "sparql.max.concurrent";
+			public static final String TIMEOUT_MILLIS = "sparql.timeout.ms";
+			public static final String MAX_ROWS = "sparql.max.rows";
+		}
+		
 		public static class Uploads {
 			public static final String SAVE_ENALBED = "uploads.save.enabled";
 			public static final String RDF_BULK_ENALBED = "uploads.rdf.bulk.enabled";
+			public static final String IFC_STREAMING_ENABLED = "uploads.ifc.streaming.enabled";
+			public static final String RDF_CACHE_COMPRESSION = "uploads.rdf.cache.compression";
+			public static final String RDF_DIRECT_ENABLED = "uploads.rdf.direct.enabled";
 			public static final String DIR_PATH = "uploads.dir.path";
 			
+			public static final class Batch {
+				public static final String SIZE = "uploads.rdf.batch.size";
+				public static final String RETRY_COUNT = "uploads.rdf.batch.retries";
+				public static final String RETRY_DELAY = "uploads.rdf.batch.retry.delay";
+			}
+			
+			public static final class Parallel {
+				public static final String WORKERS = "uploads.rdf.parallel.workers";
+				public static final String CHUNK_SIZE = "uploads.rdf.parallel.chunk.size";
+			}
+			
+			public static final class Diff {
+				public static final String ENABLED = "uploads.diff.enabled";
+				public static final String PARTITION_SIZE = "uploads.diff.partition.size";
+			}
+			
+			public static final class IfcCache {
+				public static final String ENABLED = "uploads.ifc.cache.enabled";
+				public static final String MAX_SIZE = "uploads.ifc.cache.max.size";
+			}
+			
+			public static final class Pipeline {
+				public static final String ENABLED = "uploads.pipeline.enabled";
+				public static final String QUEUE_SIZE = "uploads.pipeline.queue.size";
+			}
+			
+			public static final class Jobs {
+				public static final String THREAD_COUNT = "uploads.jobs.threads";
+				public static final String QUEUE_SIZE = "uploads.jobs.queue.size";
+				public static final String RETENTION_MINUTES = "uploads.jobs.retention.minutes";
+			}
+			
+			public static final class Resumable {
+				public static final String RETENTION_MINUTES = "uploads.resumable.retention.minutes";
+			}
+			
 			public static final class BimServer {
 				public static final String SAVE_ENABLED = "uploads.save.bimserver.enabled";
 				public static final String URL = "uploads.save.bimserver.url";
@@ -75,91 +156,95 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 	}
 	
 	
-	private static DrumbeatApplication instance;
+	private static volatile DrumbeatApplication instance;
 
 	public static DrumbeatApplication getInstance() {
 		return instance;
 	}	
 	
 	private static Logger logger;
-	private static AbstractJenaProvider jenaProvider;
+	private static volatile AbstractJenaProvider jenaProvider;
 	private static int nextApplicationId = 0;
 	
 	private final int applicationId;
-	private Properties configurationProperties;
-	private String baseUri;
-	private String realBaseUri;
-	private Boolean isBaseUriFixed;
-	private Boolean isSavingUploadEnabled;
-	private Boolean isRdfBulkUploadEnabled;
-	private String uploadsDirPath;
-	private Ifc2RdfConversionContext defaultConversionContext;
-	private String workingFolderPath;
+	private final DrumbeatConfiguration configuration;
+	private volatile ModelPool modelPool;
+	private volatile Ifc2RdfConversionContext defaultConversionContext;
+	private final String workingFolderPath;
 
 	protected DrumbeatApplication(String workingFolderPath) {
 		
-		applicationId = nextApplicationId++;
-		
-		instance = this;
-		
 		packages(Resources.PACKAGE_RESOURCES);
 		register(MultiPartFeature.class);
 		
 		this.workingFolderPath = workingFolderPath;
 		
+		Properties configurationProperties = new Properties();
 		synchronized (DrumbeatApplication.class) {
+			applicationId = nextApplicationId++;
+			
 			if (logger == null) {
 				logger = Logger.getRootLogger();
 				DOMConfigurator.configure(getRealServerPath(ResourcePaths.LOGGER_CONFIG_FILE_PATH));
 				logger.info("Starting Web API");
 			}
 			
-			if (configurationProperties == null) {
-				configurationProperties = new Properties();
-				try {
-					String configFilePath = getRealServerPath(ResourcePaths.COMMON_CONFIG_FILE_PATH);
-					logger.info("Config file: " + configFilePath);
-					FileInputStream in = new FileInputStream(configFilePath);
-					configurationProperties.load(in);
-				} catch (IOException e) {
-					throw new RuntimeException("Loading config file failed: " + e.getMessage(), e);
-				}
-				
-			}			
+			String configFilePath = getRealServerPath(ResourcePaths.COMMON_CONFIG_FILE_PATH);
+			logger.info("Config file: " + configFilePath);
+			try (FileInputStream in = new FileInputStream(configFilePath)) {
+				configurationProperties.load(in);
+			} catch (IOException e) {
+				throw new RuntimeException("Loading config file failed: " + e.getMessage(), e);
+			}
 		}		
 		
+		configuration = new DrumbeatConfiguration(configurationProperties, this::getRealServerPath);
+		
 		logger.info("ApplicationId: " + applicationId);
 		logger.info("BaseUri: " + getBaseUri());
+		logger.info("IsBaseUriFixed: " + isBaseUriFixed());
 		logger.info("Web API started");
+		
+		// published only after the configuration has been parsed
+		instance = this;
 	}
 	
 	public int getApplicationId() {
 		return applicationId;
 	}
 	
+	/**
+	 * Gets the configuration parsed when the application started
+	 * @return
+	 */
+	public DrumbeatConfiguration getDrumbeatConfiguration() {
+		return configuration;
+	}
+	
+	/**
+	 * Gets a copy of the configuration properties
+	 * @return
+	 */
 	public Properties getConfigurationProperties() {
-		return configurationProperties;
+		return configuration.getProperties();
 	}
 	
+	/**
+	 * Gets the base URI of the current request if the base URI is not fixed, otherwise the configured base URI
+	 * @return
+	 */
 	public String getBaseUri() {
-		if (baseUri == null) {
-			baseUri = getConfigurationProperties().getProperty(ConfigParams.WEB_BASE_URI);
-			if (baseUri != null) {
-				baseUri = baseUri.trim();
+		if (!isBaseUriFixed()) {
+			RequestContext context = RequestContext.getCurrent();
+			if (context != null) {
+				return context.getBaseUri();
 			}
 		}
-		return baseUri;
+		return configuration.getBaseUri();
 	}
 	
 	public boolean isBaseUriFixed() {
-		if (isBaseUriFixed == null) {
-			String value = getConfigurationProperties().getProperty(ConfigParams.WEB_BASE_URI_FIXED, "true").trim();
-			BooleanParam param = new BooleanParam();
-			param.setStringValue(value);
-			isBaseUriFixed = param.getValue();
-			logger.info("IsBaseUriFixed: " + isBaseUriFixed);
-		}
-		return isBaseUriFixed;		
+		return configuration.isBaseUriFixed();
 	}
 
 	public String getRealUri(String uri, boolean isRelative) {
@@ -173,39 +258,24 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 		}
 		
 		// uri is relative
-		if (realBaseUri != null) {
-			return realBaseUri + uri;
+		RequestContext context = RequestContext.getCurrent();
+		if (context != null) {
+			return context.getBaseUri() + uri;
 		} else {
-			return getBaseUri() + uri;
+			return baseUri + uri;
 		}
 	}
 	
+	/**
+	 * Starts the context of a request in the current thread
+	 * @param uriInfo
+	 */
 	public void notifyRequest(UriInfo uriInfo) {		
-		realBaseUri = uriInfo.getBaseUri().toString();
-		if (!isBaseUriFixed() && !realBaseUri.equals(baseUri)) {
-			logger.info("New BaseUri: " + realBaseUri);
-			this.baseUri = realBaseUri;
-		}
+		RequestContext.begin(uriInfo.getBaseUri().toString());
 	}
 		
 	public String getUploadsDirPath() {
-		if (uploadsDirPath == null) {
-			uploadsDirPath = getConfigurationProperties().getProperty(ConfigParams.Uploads.DIR_PATH);
-			if (uploadsDirPath != null) {				
-				uploadsDirPath = getRealServerPath(uploadsDirPath);
-			} else {
-				uploadsDirPath = System.getenv(SystemEnvironment.DRUMBEAT_SHARE_FOLDER);
-			}
-			
-			if (uploadsDirPath == null) {
-				throw new RuntimeException(
-						"The upload folder is not specified neither in config.properties file, nor as system environment variable " + 
-								SystemEnvironment.DRUMBEAT_SHARE_FOLDER);
-			}
-			
-			uploadsDirPath = uploadsDirPath.trim();
-		}
-		return uploadsDirPath;
+		return configuration.getUploadsDirPath();
 	}
 	
 	/**
@@ -213,13 +283,7 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 	 * @return
 	 */
 	public boolean isSavingUploadEnabled() {
-		if (isSavingUploadEnabled == null) {
-			String value = getConfigurationProperties().getProperty(ConfigParams.Uploads.SAVE_ENALBED, "false").trim();
-			BooleanParam param = new BooleanParam();
-			param.setStringValue(value);
-			isSavingUploadEnabled = param.getValue();
-		}
-		return isSavingUploadEnabled;
+		return configuration.isSavingUploadEnabled();
 	}
 	
 	/**
@@ -227,34 +291,388 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 	 * @return
 	 */
 	public boolean isRdfBulkUploadEnabled() {
-		if (isRdfBulkUploadEnabled == null) {
-			String value = getConfigurationProperties().getProperty(ConfigParams.Uploads.RDF_BULK_ENALBED, "false").trim();
-			BooleanParam param = new BooleanParam();
-			param.setStringValue(value);
-			isRdfBulkUploadEnabled = param.getValue();
+		return configuration.isRdfBulkUploadEnabled();
+	}
+	
+	/**
+	 * Gets value indicating whether uncompressed RDF files on the server are loaded directly,
+	 * by memory mapping or bulk loading them, instead of being copied to the uploads folder first
+	 * @return
+	 */
+	public boolean isRdfDirectUploadEnabled() {
+		return configuration.isRdfDirectUploadEnabled();
+	}
+	
+	/**
+	 * Gets value indicating whether converted IFC triples are streamed to the target
+	 * instead of being collected in an in-memory model
+	 * @return
+	 */
+	public boolean isIfcStreamingUploadEnabled() {
+		return configuration.isIfcStreamingUploadEnabled();
+	}
+	
+	/**
+	 * Gets value indicating whether data set uploads with diff=true replace the content of
+	 * a non-empty graph by applying only the difference. Otherwise they delete and reload it
+	 * @return
+	 */
+	public boolean isDiffUploadEnabled() {
+		return configuration.isDiffUploadEnabled();
+	}
+	
+	/**
+	 * Gets the approximate number of current or received triples of a graph per partition compared by a diff upload
+	 * @return
+	 */
+	public int getDiffUploadPartitionSize() {
+		return configuration.getDiffUploadPartitionSize();
+	}
+	
+	/**
+	 * Gets value indicating whether IFC models converted to RDF are cached by the hash of the uploaded file
+	 * @return
+	 */
+	public boolean isIfcConversionCacheEnabled() {
+		return configuration.isIfcConversionCacheEnabled();
+	}
+	
+	/**
+	 * Gets the maximum total size in bytes of cached converted IFC models
+	 * @return
+	 */
+	public long getIfcConversionCacheMaxSize() {
+		return configuration.getIfcConversionCacheMaxSize();
+	}
+	
+	/**
+	 * Gets the compression of temporary RDF files which are deleted after the upload
+	 * (none, fast or gzip). Files saved with the uploads are always gzipped
+	 * @return
+	 */
+	public RdfCacheCompression getRdfCacheCompression() {
+		return configuration.getRdfCacheCompression();
+	}
+	
+	
+	/**
+	 * Gets the number of triples loaded in one transaction when bulk upload is not used
+	 * @return
+	 */
+	public int getRdfUploadBatchSize() {
+		return configuration.getRdfUploadBatchSize();
+	}
+	
+	/**
+	 * Gets the number of times loading of a failed batch of triples is retried
+	 * @return
+	 */
+	public int getRdfUploadBatchRetryCount() {
+		return configuration.getRdfUploadBatchRetryCount();
+	}
+	
+	/**
+	 * Gets the delay in milliseconds before the first retry of a failed batch of triples,
+	 * doubled for every next retry
+	 * @return
+	 */
+	public long getRdfUploadBatchRetryDelay() {
+		return configuration.getRdfUploadBatchRetryDelay();
+	}
+	
+	/**
+	 * Gets the number of workers parsing line-based RDF uploads (N-Triples, N-Quads) in parallel.
+	 * Value 1 means sequential parsing, value 0 means one worker per available processor
+	 * @return
+	 */
+	public int getRdfUploadParallelism() {
+		return configuration.getRdfUploadParallelism();
+	}
+	
+	/**
+	 * Gets the approximate size in bytes of a chunk of lines parsed by one worker
+	 * @return
+	 */
+	public int getRdfUploadParallelChunkSize() {
+		return configuration.getRdfUploadParallelChunkSize();
+	}
+	
+	/**
+	 * Gets value indicating whether parsing or exporting of uploaded data runs concurrently
+	 * with writing or loading the produced triples
+	 * @return
+	 */
+	public boolean isUploadPipelineEnabled() {
+		return configuration.isUploadPipelineEnabled();
+	}
+	
+	/**
+	 * Gets the maximum number of triple batches waiting between two pipelined upload stages
+	 * @return
+	 */
+	public int getUploadPipelineQueueSize() {
+		return configuration.getUploadPipelineQueueSize();
+	}
+	
+	/**
+	 * Gets the number of threads running asynchronous upload jobs
+	 * @return
+	 */
+	public int getUploadJobThreadCount() {
+		return configuration.getUploadJobThreadCount();
+	}
+	
+	/**
+	 * Gets the maximum number of upload jobs waiting for a free thread
+	 * @return
+	 */
+	public int getUploadJobQueueSize() {
+		return configuration.getUploadJobQueueSize();
+	}
+	
+	/**
+	 * Gets the number of minutes the status of a finished upload job is kept
+	 * @return
+	 */
+	public int getUploadJobRetentionMinutes() {
+		return configuration.getUploadJobRetentionMinutes();
+	}
+	
+	/**
+	 * Gets the number of minutes an unfinished resumable upload is kept after its last received range
+	 * @return
+	 */
+	public int getResumableUploadRetentionMinutes() {
+		return configuration.getResumableUploadRetentionMinutes();
+	}
+	
+	/**
+	 * Gets the maximum nesting depth of blank objects expanded when getting an object
+	 * @return
+	 */
+	public int getBlankObjectExpansionMaxDepth() {
+		return configuration.getBlankObjectExpansionMaxDepth();
+	}
+	
+	/**
+	 * Gets the maximum number of blank objects expanded when getting an object
+	 * @return
+	 */
+	public int getBlankObjectExpansionMaxObjectCount() {
+		return configuration.getBlankObjectExpansionMaxObjectCount();
+	}
+	
+	/**
+	 * Gets the maximum number of blank objects queried at once
+	 * @return
+	 */
+	public int getBlankObjectExpansionBatchSize() {
+		return configuration.getBlankObjectExpansionBatchSize();
+	}
+	
+	/**
+	 * Gets whether reads of the collection, data source and data set hierarchy are served from an in-memory snapshot
+	 * @return
+	 */
+	public boolean isMetaDataCacheEnabled() {
+		return configuration.isMetaDataCacheEnabled();
+	}
+	
+	/**
+	 * Gets the time after which the metadata snapshot is reloaded even if no change has been made through the API
+	 * @return
+	 */
+	public int getMetaDataCacheMaxAgeSeconds() {
+		return configuration.getMetaDataCacheMaxAgeSeconds();
+	}
+	
+	/**
+	 * Gets whether serialized responses of object GETs are cached
+	 * @return
+	 */
+	public boolean isObjectResponseCacheEnabled() {
+		return configuration.isObjectResponseCacheEnabled();
+	}
+	
+	/**
+	 * Gets the maximum total size in bytes of cached object responses
+	 * @return
+	 */
+	public long getObjectResponseCacheMaxSize() {
+		return configuration.getObjectResponseCacheMaxSize();
+	}
+	
+	/**
+	 * Gets the maximum number of objects in a page of an object listing
+	 * @return
+	 */
+	public int getObjectPageMaxLimit() {
+		return configuration.getObjectPageMaxLimit();
+	}
+	
+	/**
+	 * Gets whether the types of non-blank objects are indexed in a separate graph when uploading data sets
+	 * @return
+	 */
+	public boolean isObjectTypeIndexEnabled() {
+		return configuration.isObjectTypeIndexEnabled();
+	}
+	
+	/**
+	 * Gets whether the data sets containing each object are indexed when uploading data sets,
+	 * so that objects of overwriting data sets are found without querying each data set
+	 * @return
+	 */
+	public boolean isObjectVersionIndexEnabled() {
+		return configuration.isObjectVersionIndexEnabled();
+	}
+	
+	/**
+	 * Gets whether an object of a data source and its links are read with one query over the named graphs
+	 * of the data source, its link sources and back links, instead of one query per graph.
+	 * Only a provider running queries in the store, such as Virtuoso, can query the named graphs at once
+	 * @return
+	 */
+	public boolean isObjectUnionQueryEnabled() {
+		return configuration.isObjectUnionQueryEnabled();
+	}
+	
+	/**
+	 * Gets the number of threads querying the link sources of an object in parallel,
+	 * or 0 to query them one by one in the request thread
+	 * @return
+	 */
+	public int getLinkQueryThreadCount() {
+		return configuration.getLinkQueryThreadCount();
+	}
+	
+	/**
+	 * Gets the maximum number of link source queries waiting for a free thread
+	 * @return
+	 */
+	public int getLinkQueryQueueSize() {
+		return configuration.getLinkQueryQueueSize();
+	}
+	
+	/**
+	 * Gets the time in milliseconds after which the links of a slow link source are left out of an object
+	 * @return
+	 */
+	public long getLinkQueryTimeoutMillis() {
+		return configuration.getLinkQueryTimeoutMillis();
+	}
+	
+	/**
+	 * Gets whether the <code>/sparql</code> resource runs queries
+	 * @return
+	 */
+	public boolean isSparqlEndpointEnabled() {
+		return configuration.isSparqlEndpointEnabled();
+	}
+	
+	/**
+	 * Gets the maximum number of SPARQL queries run at the same time, more queries are rejected
+	 * @return
+	 */
+	public int getSparqlMaxConcurrentQueries() {
+		return configuration.getSparqlMaxConcurrentQueries();
+	}
+	
+	/**
+	 * Gets the time in milliseconds after which a SPARQL query is cancelled
+	 * @return
+	 */
+	public long getSparqlTimeoutMillis() {
+		return configuration.getSparqlTimeoutMillis();
+	}
+	
+	/**
+	 * Gets the maximum number of results of a SPARQL query, applied as its LIMIT
+	 * @return
+	 */
+	public long getSparqlMaxRows() {
+		return configuration.getSparqlMaxRows();
+	}
+	
+	/**
+	 * Gets whether the models of the store are opened once per request and reused by all its managers
+	 * @return
+	 */
+	public boolean isRequestModelScopeEnabled() {
+		return configuration.isRequestModelScopeEnabled();
+	}
+	
+	/**
+	 * Gets the pool of models which the requests borrow their models from
+	 * @return the pool, or <code>null</code> if the pool or the request scope is disabled
+	 */
+	public ModelPool getModelPool() {
+		if (!configuration.isModelPoolEnabled() || !isRequestModelScopeEnabled()) {
+			return null;
+		}
+		
+		ModelPool pool = modelPool;
+		if (pool == null) {
+			synchronized (this) {
+				pool = modelPool;
+				if (pool == null) {
+					pool = new ModelPool(
+							this::openModel,
+							configuration.getModelPoolMaxSize(),
+							configuration.getModelPoolMaxWaitMillis(),
+							configuration.getModelPoolMaxOverflow(),
+							configuration.getModelPoolIdleTimeoutMillis());
+					pool.startEviction();
+					modelPool = pool;
+				}
+			}
 		}
-		return isRdfBulkUploadEnabled;
+		return pool;
+	}
+	
+	/**
+	 * Starts the model scope of the request of the current thread
+	 * @return the scope, which must be closed at the end of the request,
+	 * or <code>null</code> if the request scope is disabled
+	 */
+	public RequestModelScope beginRequestModelScope() {
+		if (!isRequestModelScopeEnabled()) {
+			return null;
+		}
+		return RequestModelScope.begin(this::openModel, getModelPool());
 	}
 	
 	
 	public String getBaseUri(String path) {
-		return getConfigurationProperties().getProperty(ConfigParams.WEB_BASE_URI) + path;
+		return configuration.getBaseUri() + path;
 	}
 	
+	/**
+	 * Gets the Jena provider, which is created once and shared by all threads
+	 * @return
+	 * @throws DrumbeatException
+	 */
 	public JenaProvider getJenaProvider() throws DrumbeatException {
+		AbstractJenaProvider provider = jenaProvider;
+		if (provider != null) {
+			return provider;
+		}
 		
-		if (jenaProvider == null) {		
-			String providerName = getConfigurationProperties().getProperty(ConfigParams.JENA_PROVIDER_PREFIX + AbstractJenaProvider.ARGUMENT_PROVIDER_NAME).trim();
-			String providerClassName = getConfigurationProperties().getProperty(ConfigParams.JENA_PROVIDER_PREFIX + AbstractJenaProvider.ARGUMENT_PROVIDER_CLASS).trim();
-			try {
-				jenaProvider = AbstractJenaProvider.getFactory(providerName, providerClassName, getConfigurationProperties(), ConfigParams.JENA_PROVIDER_PREFIX);
-			} catch (JenaProviderException e) {
-				String message = "Error getting Jena provider: " + e.getMessage();
-				logger.error(e.getMessage(), e);
-				throw new DrumbeatException(message, e);
+		synchronized (DrumbeatApplication.class) {
+			if (jenaProvider == null) {		
+				Properties properties = getConfigurationProperties();
+				String providerName = properties.getProperty(ConfigParams.JENA_PROVIDER_PREFIX + AbstractJenaProvider.ARGUMENT_PROVIDER_NAME).trim();
+				String providerClassName = properties.getProperty(ConfigParams.JENA_PROVIDER_PREFIX + AbstractJenaProvider.ARGUMENT_PROVIDER_CLASS).trim();
+				try {
+					jenaProvider = AbstractJenaProvider.getFactory(providerName, providerClassName, properties, ConfigParams.JENA_PROVIDER_PREFIX);
+				} catch (JenaProviderException e) {
+					String message = "Error getting Jena provider: " + e.getMessage();
+					logger.error(e.getMessage(), e);
+					throw new DrumbeatException(message, e);
+				}
 			}
+			return jenaProvider;
 		}
-		return jenaProvider;		
 	}
 	
 	/**
@@ -264,39 +682,47 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 	 * @throws IOException
 	 */
 	public Model getMetaDataModel() throws DrumbeatException {
-		try {
-			return getJenaProvider().openDefaultModel();
-		} catch (JenaProviderException e) {
-			String message = "Error opening default Jena model: " + e.getMessage();
-			logger.error(e.getMessage(), e);
-			throw new DrumbeatException(message, e);			
-		}
+		return getModel(ModelPool.DEFAULT_MODEL_NAME);
 	}
 	
 	public Model getDataModel(String name) throws DrumbeatException {
 		logger.debug("Getting data model: " + name);
-		try {
-			return getJenaProvider().openModel(name);
-		} catch (JenaProviderException e) {
-			String message = "Error opening Jena model: " + e.getMessage();
-			logger.error(e.getMessage(), e);
-			throw new DrumbeatException(message, e);			
-		}		
+		return getModel(name);
 	}
 	
 	public Model getOwlModel(String name, boolean ontModel) throws DrumbeatException {
+		Model ifcModel = getModel(DrumbeatOntology.GRAPH_NAME_IFC);
+		if (ontModel) {
+			return ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM, ifcModel);
+		}
+		return ifcModel;
+	}
+	
+	/**
+	 * Gets a model of the store from the model scope of the current request, or opens it if there is no scope
+	 * @param name name of the graph, or {@link ModelPool#DEFAULT_MODEL_NAME}
+	 * @return
+	 * @throws DrumbeatException
+	 */
+	private Model getModel(String name) throws DrumbeatException {
+		RequestModelScope scope = RequestModelScope.getCurrent();
+		if (scope != null) {
+			return scope.getModel(name);
+		}
+		return openModel(name);
+	}
+	
+	private Model openModel(String name) throws DrumbeatException {
 		try {
-			Model ifcModel = getJenaProvider().openModel(DrumbeatOntology.GRAPH_NAME_IFC);
-			if (ontModel) {
-				return ModelFactory.createOntologyModel(OntModelSpec.OWL_DL_MEM, ifcModel);
+			if (ModelPool.DEFAULT_MODEL_NAME.equals(name)) {
+				return getJenaProvider().openDefaultModel();
 			}
-			return ifcModel;
+			return getJenaProvider().openModel(name);
 		} catch (JenaProviderException e) {
-			String message = "Error opening Jena model: " + e.getMessage();
+			String message = (ModelPool.DEFAULT_MODEL_NAME.equals(name) ? "Error opening default Jena model: " : "Error opening Jena model: ") + e.getMessage();
 			logger.error(e.getMessage(), e);
 			throw new DrumbeatException(message, e);			
-		}	
-		
+		}
 	}
 	
 	public String getRealServerPath(String path) {
@@ -309,16 +735,36 @@ public abstract class DrumbeatApplication extends ResourceConfig {
 	
 	/**
 	 * Gets the default IFC-to-RDF conversion context loaded from the configuration file.
+	 * The context is shared, so it must not be modified; an upload uses its own copy
+	 * from {@link #createIfc2RdfConversionContext()}.
 	 * 
 	 * @return the default {@link Ifc2RdfConversionContext} object
 	 *  
 	 * @throws ConfigurationParserException
 	 */
 	public Ifc2RdfConversionContext getDefaultIfc2RdfConversionContext() throws ConfigurationParserException {
-		if (defaultConversionContext == null) {
-			defaultConversionContext = Ifc2RdfConversionContextLoader.loadFromConfigurationDocument(ConfigurationDocument.getInstance(), null); 
+		Ifc2RdfConversionContext context = defaultConversionContext;
+		if (context == null) {
+			synchronized (this) {
+				context = defaultConversionContext;
+				if (context == null) {
+					defaultConversionContext = context = Ifc2RdfConversionContextLoader.loadFromConfigurationDocument(ConfigurationDocument.getInstance(), null); 
+				}
+			}
 		}
-		return defaultConversionContext;
+		return context;
+	}
+	
+	/**
+	 * Creates a new IFC-to-RDF conversion context from the configuration file, which the caller
+	 * may modify, e.g. to set the namespaces of a data set.
+	 * 
+	 * @return a new {@link Ifc2RdfConversionContext} object
+	 *  
+	 * @throws ConfigurationParserException
+	 */
+	public Ifc2RdfConversionContext createIfc2RdfConversionContext() throws ConfigurationParserException {
+		return Ifc2RdfConversionContextLoader.loadFromConfigurationDocument(ConfigurationDocument.getInstance(), null);
 	}
 	
 	
@@ -0,0 +1,370 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.Properties;
+import java.util.function.UnaryOperator;
+
+import fi.aalto.cs.drumbeat.common.params.BooleanParam;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication.ConfigParams;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication.SystemEnvironment;
+import fi.aalto.cs.drumbeat.rest.managers.upload.RdfCacheCompression;
+
+/**
+ * Immutable snapshot of the configuration, parsed once when the application starts. <br />
+ * All values are final, so the snapshot can be read by any thread without locking
+ * once {@link DrumbeatApplication} has been published. The values are described by the getters
+ * of {@link DrumbeatApplication}.
+ */
+public final class DrumbeatConfiguration {
+
+	private final Properties properties;
+	private final String baseUri;
+	private final boolean isBaseUriFixed;
+	private final String uploadsDirPath;
+	private final boolean isSavingUploadEnabled;
+	private final boolean isRdfBulkUploadEnabled;
+	private final boolean isRdfDirectUploadEnabled;
+	private final boolean isIfcStreamingUploadEnabled;
+	private final boolean isDiffUploadEnabled;
+	private final int diffUploadPartitionSize;
+	private final boolean isIfcConversionCacheEnabled;
+	private final long ifcConversionCacheMaxSize;
+	private final RdfCacheCompression rdfCacheCompression;
+	private final int rdfUploadBatchSize;
+	private final int rdfUploadBatchRetryCount;
+	private final long rdfUploadBatchRetryDelay;
+	private final int rdfUploadParallelism;
+	private final int rdfUploadParallelChunkSize;
+	private final boolean isUploadPipelineEnabled;
+	private final int uploadPipelineQueueSize;
+	private final int uploadJobThreadCount;
+	private final int uploadJobQueueSize;
+	private final int uploadJobRetentionMinutes;
+	private final int resumableUploadRetentionMinutes;
+	private final int blankObjectExpansionMaxDepth;
+	private final int blankObjectExpansionMaxObjectCount;
+	private final int blankObjectExpansionBatchSize;
+	private final boolean isMetaDataCacheEnabled;
+	private final int metaDataCacheMaxAgeSeconds;
+	private final boolean isObjectResponseCacheEnabled;
+	private final long objectResponseCacheMaxSize;
+	private final int objectPageMaxLimit;
+	private final boolean isObjectTypeIndexEnabled;
+	private final boolean isObjectVersionIndexEnabled;
+	private final boolean isObjectUnionQueryEnabled;
+	private final int linkQueryThreadCount;
+	private final int linkQueryQueueSize;
+	private final long linkQueryTimeoutMillis;
+	private final boolean isSparqlEndpointEnabled;
+	private final int sparqlMaxConcurrentQueries;
+	private final long sparqlTimeoutMillis;
+	private final long sparqlMaxRows;
+	private final boolean isRequestModelScopeEnabled;
+	private final boolean isModelPoolEnabled;
+	private final int modelPoolMaxSize;
+	private final long modelPoolMaxWaitMillis;
+	private final int modelPoolMaxOverflow;
+	private final long modelPoolIdleTimeoutMillis;
+
+	/**
+	 * Parses the configuration
+	 * @param properties
+	 * @param pathResolver resolves paths relative to the server folder
+	 * @throws IllegalArgumentException if a value is invalid
+	 */
+	public DrumbeatConfiguration(Properties properties, UnaryOperator<String> pathResolver) {
+		this.properties = new Properties();
+		this.properties.putAll(properties);
+
+		baseUri = getString(ConfigParams.WEB_BASE_URI, null);
+		isBaseUriFixed = getBoolean(ConfigParams.WEB_BASE_URI_FIXED, true);
+		String uploadsDirPath = getString(ConfigParams.Uploads.DIR_PATH, null);
+		this.uploadsDirPath = uploadsDirPath != null ?
+				pathResolver.apply(uploadsDirPath) :
+				trim(System.getenv(SystemEnvironment.DRUMBEAT_SHARE_FOLDER));
+		isSavingUploadEnabled = getBoolean(ConfigParams.Uploads.SAVE_ENALBED, false);
+		isRdfBulkUploadEnabled = getBoolean(ConfigParams.Uploads.RDF_BULK_ENALBED, false);
+		isRdfDirectUploadEnabled = getBoolean(ConfigParams.Uploads.RDF_DIRECT_ENABLED, false);
+		isIfcStreamingUploadEnabled = getBoolean(ConfigParams.Uploads.IFC_STREAMING_ENABLED, false);
+		isDiffUploadEnabled = getBoolean(ConfigParams.Uploads.Diff.ENABLED, false);
+		diffUploadPartitionSize = getInt(ConfigParams.Uploads.Diff.PARTITION_SIZE, 500000);
+		isIfcConversionCacheEnabled = getBoolean(ConfigParams.Uploads.IfcCache.ENABLED, false);
+		ifcConversionCacheMaxSize = getLong(ConfigParams.Uploads.IfcCache.MAX_SIZE, 1073741824L);
+		rdfCacheCompression = RdfCacheCompression.valueOf(getString(ConfigParams.Uploads.RDF_CACHE_COMPRESSION, "gzip").toUpperCase());
+		rdfUploadBatchSize = getInt(ConfigParams.Uploads.Batch.SIZE, 50000);
+		rdfUploadBatchRetryCount = getInt(ConfigParams.Uploads.Batch.RETRY_COUNT, 3);
+		rdfUploadBatchRetryDelay = getLong(ConfigParams.Uploads.Batch.RETRY_DELAY, 500L);
+		int rdfUploadParallelism = getInt(ConfigParams.Uploads.Parallel.WORKERS, 1);
+		this.rdfUploadParallelism = rdfUploadParallelism > 0 ? rdfUploadParallelism : Runtime.getRuntime().availableProcessors();
+		rdfUploadParallelChunkSize = getInt(ConfigParams.Uploads.Parallel.CHUNK_SIZE, 1048576);
+		isUploadPipelineEnabled = getBoolean(ConfigParams.Uploads.Pipeline.ENABLED, false);
+		uploadPipelineQueueSize = getInt(ConfigParams.Uploads.Pipeline.QUEUE_SIZE, 64);
+		uploadJobThreadCount = getInt(ConfigParams.Uploads.Jobs.THREAD_COUNT, 2);
+		uploadJobQueueSize = getInt(ConfigParams.Uploads.Jobs.QUEUE_SIZE, 10);
+		uploadJobRetentionMinutes = getInt(ConfigParams.Uploads.Jobs.RETENTION_MINUTES, 60);
+		resumableUploadRetentionMinutes = getInt(ConfigParams.Uploads.Resumable.RETENTION_MINUTES, 1440);
+		blankObjectExpansionMaxDepth = getInt(ConfigParams.Objects.EXPAND_MAX_DEPTH, 32);
+		blankObjectExpansionMaxObjectCount = getInt(ConfigParams.Objects.EXPAND_MAX_OBJECTS, 10000);
+		blankObjectExpansionBatchSize = getInt(ConfigParams.Objects.EXPAND_BATCH_SIZE, 500);
+		isMetaDataCacheEnabled = getBoolean(ConfigParams.MetaData.CACHE_ENABLED, false);
+		metaDataCacheMaxAgeSeconds = getInt(ConfigParams.MetaData.CACHE_MAX_AGE_SECONDS, 300);
+		isObjectResponseCacheEnabled = getBoolean(ConfigParams.Objects.RESPONSE_CACHE_ENABLED, false);
+		objectResponseCacheMaxSize = getLong(ConfigParams.Objects.RESPONSE_CACHE_MAX_SIZE, 67108864L);
+		objectPageMaxLimit = getInt(ConfigParams.Objects.PAGE_MAX_LIMIT, 10000);
+		isObjectTypeIndexEnabled = getBoolean(ConfigParams.Objects.TYPE_INDEX_ENABLED, false);
+		isObjectVersionIndexEnabled = getBoolean(ConfigParams.Objects.VERSION_INDEX_ENABLED, false);
+		isObjectUnionQueryEnabled = getBoolean(ConfigParams.Objects.UNION_QUERY_ENABLED, false);
+		linkQueryThreadCount = getInt(ConfigParams.Objects.Links.THREAD_COUNT, 0);
+		linkQueryQueueSize = getInt(ConfigParams.Objects.Links.QUEUE_SIZE, 100);
+		linkQueryTimeoutMillis = getLong(ConfigParams.Objects.Links.TIMEOUT_MILLIS, 10000L);
+		isSparqlEndpointEnabled = getBoolean(ConfigParams.Sparql.ENABLED, false);
+		sparqlMaxConcurrentQueries = getInt(ConfigParams.Sparql.MAX_CONCURRENT_QUERIES, 2);
+		sparqlTimeoutMillis = getLong(ConfigParams.Sparql.TIMEOUT_MILLIS, 30000L);
+		sparqlMaxRows = getLong(ConfigParams.Sparql.MAX_ROWS, 10000L);
+		isRequestModelScopeEnabled = getBoolean(ConfigParams.Models.REQUEST_SCOPE_ENABLED, false);
+		isModelPoolEnabled = getBoolean(ConfigParams.Models.Pool.ENABLED, false);
+		modelPoolMaxSize = getInt(ConfigParams.Models.Pool.MAX_SIZE, 8);
+		modelPoolMaxWaitMillis = getLong(ConfigParams.Models.Pool.MAX_WAIT_MILLIS, 5000L);
+		modelPoolMaxOverflow = getInt(ConfigParams.Models.Pool.MAX_OVERFLOW, 8);
+		modelPoolIdleTimeoutMillis = getLong(ConfigParams.Models.Pool.IDLE_TIMEOUT_MILLIS, 60000L);
+	}
+
+	/**
+	 * Gets a copy of the configuration properties
+	 * @return
+	 */
+	public Properties getProperties() {
+		Properties copy = new Properties();
+		copy.putAll(properties);
+		return copy;
+	}
+
+	public String getBaseUri() {
+		return baseUri;
+	}
+	
+	public boolean isBaseUriFixed() {
+		return isBaseUriFixed;
+	}
+	
+	/**
+	 * @return
+	 * @throws RuntimeException if the folder is specified neither in the configuration nor in the environment
+	 */
+	public String getUploadsDirPath() {
+		if (uploadsDirPath == null) {
+			throw new RuntimeException(
+					"The upload folder is not specified neither in config.properties file, nor as system environment variable " + 
+							SystemEnvironment.DRUMBEAT_SHARE_FOLDER);
+		}
+		return uploadsDirPath;
+	}
+	
+	public boolean isSavingUploadEnabled() {
+		return isSavingUploadEnabled;
+	}
+	
+	public boolean isRdfBulkUploadEnabled() {
+		return isRdfBulkUploadEnabled;
+	}
+	
+	public boolean isRdfDirectUploadEnabled() {
+		return isRdfDirectUploadEnabled;
+	}
+	
+	public boolean isIfcStreamingUploadEnabled() {
+		return isIfcStreamingUploadEnabled;
+	}
+	
+	public boolean isDiffUploadEnabled() {
+		return isDiffUploadEnabled;
+	}
+	
+	public int getDiffUploadPartitionSize() {
+		return diffUploadPartitionSize;
+	}
+	
+	public boolean isIfcConversionCacheEnabled() {
+		return isIfcConversionCacheEnabled;
+	}
+	
+	public long getIfcConversionCacheMaxSize() {
+		return ifcConversionCacheMaxSize;
+	}
+	
+	public RdfCacheCompression getRdfCacheCompression() {
+		return rdfCacheCompression;
+	}
+	
+	public int getRdfUploadBatchSize() {
+		return rdfUploadBatchSize;
+	}
+	
+	public int getRdfUploadBatchRetryCount() {
+		return rdfUploadBatchRetryCount;
+	}
+	
+	public long getRdfUploadBatchRetryDelay() {
+		return rdfUploadBatchRetryDelay;
+	}
+	
+	public int getRdfUploadParallelism() {
+		return rdfUploadParallelism;
+	}
+	
+	public int getRdfUploadParallelChunkSize() {
+		return rdfUploadParallelChunkSize;
+	}
+	
+	public boolean isUploadPipelineEnabled() {
+		return isUploadPipelineEnabled;
+	}
+	
+	public int getUploadPipelineQueueSize() {
+		return uploadPipelineQueueSize;
+	}
+	
+	public int getUploadJobThreadCount() {
+		return uploadJobThreadCount;
+	}
+	
+	public int getUploadJobQueueSize() {
+		return uploadJobQueueSize;
+	}
+	
+	public int getUploadJobRetentionMinutes() {
+		return uploadJobRetentionMinutes;
+	}
+	
+	public int getResumableUploadRetentionMinutes() {
+		return resumableUploadRetentionMinutes;
+	}
+	
+	public int getBlankObjectExpansionMaxDepth() {
+		return blankObjectExpansionMaxDepth;
+	}
+	
+	public int getBlankObjectExpansionMaxObjectCount() {
+		return blankObjectExpansionMaxObjectCount;
+	}
+	
+	public int getBlankObjectExpansionBatchSize() {
+		return blankObjectExpansionBatchSize;
+	}
+	
+	public boolean isMetaDataCacheEnabled() {
+		return isMetaDataCacheEnabled;
+	}
+	
+	public int getMetaDataCacheMaxAgeSeconds() {
+		return metaDataCacheMaxAgeSeconds;
+	}
+	
+	public boolean isObjectResponseCacheEnabled() {
+		return isObjectResponseCacheEnabled;
+	}
+	
+	public long getObjectResponseCacheMaxSize() {
+		return objectResponseCacheMaxSize;
+	}
+	
+	public int getObjectPageMaxLimit() {
+		return objectPageMaxLimit;
+	}
+	
+	public boolean isObjectTypeIndexEnabled() {
+		return isObjectTypeIndexEnabled;
+	}
+	
+	public boolean isObjectVersionIndexEnabled() {
+		return isObjectVersionIndexEnabled;
+	}
+	
+	public boolean isObjectUnionQueryEnabled() {
+		return isObjectUnionQueryEnabled;
+	}
+	
+	public int getLinkQueryThreadCount() {
+		return linkQueryThreadCount;
+	}
+	
+	public int getLinkQueryQueueSize() {
+		return linkQueryQueueSize;
+	}
+	
+	public long getLinkQueryTimeoutMillis() {
+		return linkQueryTimeoutMillis;
+	}
+	
+	public boolean isSparqlEndpointEnabled() {
+		return isSparqlEndpointEnabled;
+	}
+	
+	public int getSparqlMaxConcurrentQueries() {
+		return sparqlMaxConcurrentQueries;
+	}
+	
+	public long getSparqlTimeoutMillis() {
+		return sparqlTimeoutMillis;
+	}
+	
+	public long getSparqlMaxRows() {
+		return sparqlMaxRows;
+	}
+	
+	public boolean isRequestModelScopeEnabled() {
+		return isRequestModelScopeEnabled;
+	}
+	
+	public boolean isModelPoolEnabled() {
+		return isModelPoolEnabled;
+	}
+	
+	public int getModelPoolMaxSize() {
+		return modelPoolMaxSize;
+	}
+	
+	public long getModelPoolMaxWaitMillis() {
+		return modelPoolMaxWaitMillis;
+	}
+	
+	public int getModelPoolMaxOverflow() {
+		return modelPoolMaxOverflow;
+	}
+	
+	public long getModelPoolIdleTimeoutMillis() {
+		return modelPoolIdleTimeoutMillis;
+	}
+
+	private String getString(String key, String defaultValue) {
+		return trim(properties.getProperty(key, defaultValue));
+	}
+
+	private boolean getBoolean(String key, boolean defaultValue) {
+		BooleanParam param = new BooleanParam();
+		param.setStringValue(getString(key, Boolean.toString(defaultValue)));
+		return param.getValue();
+	}
+
+	private int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		try {
+			return value != null ? Integer.parseInt(value) : defaultValue;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid value of %s: '%s'", key, value), e);
+		}
+	}
+
+	private long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		try {
+			return value != null ? Long.parseLong(value) : defaultValue;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(String.format("Invalid value of %s: '%s'", key, value), e);
+		}
+	}
+
+	private static String trim(String value) {
+		return value != null ? value.trim() : null;
+	}
+
+}
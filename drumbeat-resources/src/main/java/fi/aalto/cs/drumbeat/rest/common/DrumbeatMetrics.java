@@ -0,0 +1,57 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named counters of the application, exposed by the metrics resource.
+ *
+ * Counters are created on first use and live as long as the application.
+ */
+public class DrumbeatMetrics {
+
+	private static final DrumbeatMetrics instance = new DrumbeatMetrics();
+
+	public static DrumbeatMetrics getInstance() {
+		return instance;
+	}
+
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	private DrumbeatMetrics() {
+	}
+
+	public void increment(String name) {
+		add(name, 1);
+	}
+
+	public void add(String name, long delta) {
+		getCounter(name).addAndGet(delta);
+	}
+
+	public long get(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter != null ? counter.get() : 0;
+	}
+
+	/**
+	 * Gets current values of all counters, sorted by name
+	 * @return
+	 */
+	public SortedMap<String, Long> getAll() {
+		SortedMap<String, Long> values = new TreeMap<>();
+		for (Entry<String, AtomicLong> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().get());
+		}
+		return values;
+	}
+
+	private AtomicLong getCounter(String name) {
+		return counters.computeIfAbsent(name, key -> new AtomicLong());
+	}
+
+}
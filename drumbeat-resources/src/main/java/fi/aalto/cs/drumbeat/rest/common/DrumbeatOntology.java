@@ -35,8 +35,14 @@ public class DrumbeatOntology {
 		public static final Resource LinkSet = RdfVocabulary.DEFAULT_MODEL.createResource(ONTOLOGY_BASE_URI + "LinkSet");	
 		public static final Resource LinkSource = RdfVocabulary.DEFAULT_MODEL.createResource(ONTOLOGY_BASE_URI + "LinkSource");	
 		public static final Resource Ontology = RdfVocabulary.DEFAULT_MODEL.createResource(ONTOLOGY_BASE_URI + "Ontology");	
+		public static final Resource UploadJob = RdfVocabulary.DEFAULT_MODEL.createResource(ONTOLOGY_BASE_URI + "UploadJob");	
+		public static final Resource ResumableUpload = RdfVocabulary.DEFAULT_MODEL.createResource(ONTOLOGY_BASE_URI + "ResumableUpload");	
 		
+		public static final Property cachedInRdfFile = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "cachedInRdfFile");
 		public static final Property graphName = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "graphName");	
+		public static final Property graphBaseUri = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "graphBaseUri");
+		public static final Property graphUri = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "graphUri");
+		public static final Property typeIndexGraphUri = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "typeIndexGraphUri");
 		public static final Property hasDataSet = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "hasDataSet");	
 		public static final Property hasDataSource = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "hasDataSource");	
 	//	public static final Property hasLinkSet = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "hasLinkSet");	
@@ -46,6 +52,7 @@ public class DrumbeatOntology {
 		public static final Property hasOriginalDataSource = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "hasOriginalDataSource");	
 		public static final Property inCollection = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "inCollection");	
 		public static final Property inDataSource = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "inDataSource");
+		public static final Property inDataSet = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "inDataSet");
 	//	public static final Property inLinkSource = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "inLinkSource");
 		public static final Property lastModified = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "lastModified");	
 		public static final Property name = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "name");	
@@ -53,6 +60,19 @@ public class DrumbeatOntology {
 		public static final Property overwritingMethod = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "overwritingMethod");	
 		public static final Property replaces = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "replaces");	
 		public static final Property sizeInTriples = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "sizeInTriples");
+		public static final Property triplesInserted = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "triplesInserted");
+		public static final Property triplesDeleted = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "triplesDeleted");
+		
+		public static final Property uploadTarget = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "uploadTarget");
+		public static final Property uploadPhase = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "uploadPhase");
+		public static final Property bytesRead = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "bytesRead");
+		public static final Property bytesReceived = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "bytesReceived");
+		public static final Property bytesTotal = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "bytesTotal");
+		public static final Property triplesProcessed = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "triplesProcessed");
+		public static final Property estimatedTimeRemaining = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "estimatedTimeRemaining");
+		public static final Property submitted = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "submitted");
+		public static final Property finished = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "finished");
+		public static final Property errorMessage = RdfVocabulary.DEFAULT_MODEL.createProperty(ONTOLOGY_BASE_URI + "errorMessage");
 		
 	}
 	
@@ -1,17 +1,22 @@
 package fi.aalto.cs.drumbeat.rest.common;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
-import javax.ws.rs.NotSupportedException;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.jena.rdf.model.Model;
+import org.apache.log4j.Logger;
 
 public class DrumbeatResponseBuilder {
 	
+	private static final Logger logger = Logger.getLogger(DrumbeatResponseBuilder.class);
+	
 	public static Response build(
 			Status status,
 			Model model,
@@ -29,24 +34,26 @@ public class DrumbeatResponseBuilder {
 		
 		for (MediaType mediaType : acceptableMediaTypes) {
 			
-			try {
-			
-				String entity = MediaTypeConverter.convertModel(model, mediaType, baseUri);
+			if (MediaTypeConverter.isSupported(mediaType)) {
+				
+				// the model is written directly to the response stream, after the headers have been sent
+				StreamingOutput entity = out -> {
+					try {
+						MediaTypeConverter.writeModel(model, mediaType, baseUri, out);
+					} catch (IOException e) {
+						throw e;
+					} catch (Exception e) {
+						logger.error(String.format("Error writing response as %s: %s", mediaType, e.getMessage()), e);
+						throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
+					}
+				};
+				
 				return Response
 						.status(status)
 						.entity(entity)
 						.type(mediaType)
 						.build();
 				
-			} catch (NotSupportedException e) {
-				// do nothing
-			} catch (Exception e) {
-				throw new DrumbeatWebException(
-						Response.Status.INTERNAL_SERVER_ERROR,
-						String.format(
-								"Unexpected error: %s",
-								e.getMessage()),
-						null);
 			}
 			
 		}
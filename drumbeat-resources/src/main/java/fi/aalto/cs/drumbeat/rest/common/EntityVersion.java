@@ -0,0 +1,132 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * Version of the data returned by a GET, used as the validator of conditional requests. <br />
+ * The version is a digest of the URIs, last modification times and sizes of the data sets
+ * (and other metadata resources) the response is computed from, so it can be computed from the
+ * metadata without querying the data. The last modification time is known only if all data sets
+ * involved have one.
+ */
+public class EntityVersion {
+
+	private final String digest;
+	private final Date lastModified;
+
+	private EntityVersion(String digest, Date lastModified) {
+		this.digest = digest;
+		this.lastModified = lastModified;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	/**
+	 * Gets the latest modification time of the data, truncated to seconds as in HTTP dates
+	 * @return the time, or <code>null</code> if unknown
+	 */
+	public Date getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Gets a strong entity tag of one representation of the data
+	 * @param variant identifies the representation, e.g. the request URI and the acceptable media types
+	 * @return
+	 */
+	public EntityTag getEntityTag(String variant) {
+		return new EntityTag(digest(digest + "\n" + variant));
+	}
+
+	@Override
+	public String toString() {
+		return digest;
+	}
+
+	private static String digest(String value) {
+		try {
+			byte[] bytes = MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				builder.append(String.format("%02x", b));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static class Builder {
+
+		private final StringBuilder content = new StringBuilder();
+		private long lastModified = Long.MIN_VALUE;
+		private boolean lastModifiedKnown = true;
+
+		/**
+		 * Adds a data set or another resource
+		 * @param uri
+		 * @param lastModified modification time in milliseconds, or <code>null</code> if unknown
+		 * @param sizeInTriples size, or <code>null</code> if unknown
+		 * @return
+		 */
+		public Builder addResource(String uri, Long lastModified, Long sizeInTriples) {
+			content
+				.append(uri).append(' ')
+				.append(lastModified).append(' ')
+				.append(sizeInTriples).append('\n');
+
+			if (lastModified != null) {
+				addLastModified(lastModified);
+			} else {
+				lastModifiedKnown = false;
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a value the data depends on which is not described by the metadata
+		 * @param token
+		 * @return
+		 */
+		public Builder addToken(String token) {
+			content.append(token).append('\n');
+			return this;
+		}
+
+		/**
+		 * Adds a modification time of data which is not described by the metadata
+		 * @param lastModified modification time in milliseconds
+		 * @return
+		 */
+		public Builder addLastModified(long lastModified) {
+			this.lastModified = Math.max(this.lastModified, lastModified);
+			return this;
+		}
+
+		/**
+		 * Builds the version without a last modification time, e.g. when the resources
+		 * can be created or deleted without changing any modification time
+		 * @return
+		 */
+		public EntityVersion buildWithoutLastModified() {
+			return new EntityVersion(digest(content.toString()), null);
+		}
+
+		public EntityVersion build() {
+			Date date = null;
+			if (lastModifiedKnown && lastModified != Long.MIN_VALUE) {
+				date = new Date(lastModified / 1000 * 1000);
+			}
+			return new EntityVersion(digest(content.toString()), date);
+		}
+
+	}
+
+}
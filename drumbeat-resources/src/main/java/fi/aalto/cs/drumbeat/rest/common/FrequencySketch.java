@@ -0,0 +1,69 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+/**
+ * Count-min sketch estimating how often keys have been accessed recently (TinyLFU). <br />
+ * Counters are capped at 15 and all halved after a sample of accesses, so that the
+ * estimates follow changes in popularity.
+ */
+public class FrequencySketch {
+
+	private static final int DEPTH = 4;
+	private static final int MAX_COUNT = 15;
+	private static final long[] SEEDS = {
+		0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+	};
+
+	private final byte[][] table;
+	private final int mask;
+	private final int sampleSize;
+	private int additions;
+
+	/**
+	 * @param expectedKeys number of distinct keys expected to be tracked
+	 */
+	public FrequencySketch(int expectedKeys) {
+		int width = Integer.highestOneBit(Math.max(1024, Math.min(expectedKeys, 1 << 22)) - 1) << 1;
+		this.table = new byte[DEPTH][width];
+		this.mask = width - 1;
+		this.sampleSize = width * 10;
+	}
+
+	public void increment(int hash) {
+		boolean added = false;
+		for (int i = 0; i < DEPTH; ++i) {
+			int index = indexOf(hash, i);
+			if (table[i][index] < MAX_COUNT) {
+				++table[i][index];
+				added = true;
+			}
+		}
+
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	public int frequency(int hash) {
+		int frequency = MAX_COUNT;
+		for (int i = 0; i < DEPTH; ++i) {
+			frequency = Math.min(frequency, table[i][indexOf(hash, i)]);
+		}
+		return frequency;
+	}
+
+	private int indexOf(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return (int)h & mask;
+	}
+
+	private void reset() {
+		for (byte[] row : table) {
+			for (int i = 0; i < row.length; ++i) {
+				row[i] >>= 1;
+			}
+		}
+		additions /= 2;
+	}
+
+}
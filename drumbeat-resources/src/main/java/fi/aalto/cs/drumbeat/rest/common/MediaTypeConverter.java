@@ -12,8 +12,14 @@ import fi.aalto.cs.drumbeat.common.string.StringUtils;
 
 import static javax.ws.rs.core.MediaType.*;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -26,6 +32,7 @@ import javax.ws.rs.core.MediaType;
 
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFWriterRegistry;
 import org.apache.jena.riot.RIOT;
 import org.apache.jena.riot.system.PrefixMap;
 
@@ -39,6 +46,43 @@ public class MediaTypeConverter {
 	public static String convertModel(Model model, String mediaTypeString, String baseUri)
 		throws Exception
 	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeModel(model, mediaTypeString, baseUri, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Checks if a model can be written in the media type
+	 * @param mediaType
+	 * @return
+	 */
+	public static boolean isSupported(MediaType mediaType) {
+		String mediaTypeString = mediaType.getType() + "/" + mediaType.getSubtype();
+		switch (mediaTypeString) {
+		case TEXT_HTML:
+		case WILDCARD:
+			return true;
+		default:
+			Lang lang = RDFLanguages.contentTypeToLang(mediaTypeString);
+			return lang != null && RDFWriterRegistry.contains(lang);
+		}
+	}
+	
+	public static void writeModel(Model model, MediaType mediaType, String baseUri, OutputStream out) throws Exception {
+		writeModel(model, mediaType.getType() + "/" + mediaType.getSubtype(), baseUri, out);
+	}
+	
+	/**
+	 * Writes a model in UTF-8 directly to an output stream, without building the whole response in memory
+	 * @param model
+	 * @param mediaTypeString
+	 * @param baseUri
+	 * @param out
+	 * @throws Exception
+	 */
+	public static void writeModel(Model model, String mediaTypeString, String baseUri, OutputStream out)
+		throws Exception
+	{
 		
 		switch (mediaTypeString) {
 		
@@ -50,12 +94,15 @@ public class MediaTypeConverter {
 
 		case TEXT_HTML:
 		case WILDCARD:
-			return convertModelToHtml(model, baseUri);
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			writeModelToHtml(model, baseUri, true, writer);
+			writer.flush();
+			break;
 			
 		default:
 			Lang lang = RDFLanguages.contentTypeToLang(mediaTypeString);
 			if (lang != null) {
-				return convertModelToRdf(model, lang, baseUri);
+				writeModelToRdf(model, lang, baseUri, out);
 			} else {
 				throw new NotSupportedException(
 						"Unsupported media type: " + mediaTypeString);
@@ -91,6 +138,12 @@ public class MediaTypeConverter {
 //	}
 	
 	public static String convertModelToRdf(Model model, Lang lang, String baseUri) throws JsonParseException, IOException, JsonLdError {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeModelToRdf(model, lang, baseUri, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	public static void writeModelToRdf(Model model, Lang lang, String baseUri, OutputStream out) throws JsonParseException, IOException, JsonLdError {
 		
 //		if (lang.equals(Lang.JSONLD)) {
 //			JenaJSONLD.init();
@@ -100,8 +153,6 @@ public class MediaTypeConverter {
 			RIOT.init();			
 		}		
 		
-		StringWriter writer = new StringWriter();
-
 		model.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
 		
 		//if (StringUtils.isEmptyOrNull(baseUri) && !lang.equals(Lang.JSONLD)) {
@@ -114,7 +165,7 @@ public class MediaTypeConverter {
 			baseUri = null;
 		}	
 		
-		model.write(writer, lang.getName(), baseUri);
+		model.write(out, lang.getName(), baseUri);
 		
 //		if (lang.equals(Lang.JSONLD)) {
 //			assert(tempLang.equals(Lang.RDFJSON));
@@ -125,8 +176,6 @@ public class MediaTypeConverter {
 //			Object jsonCompact = JsonLdProcessor.compact(jsonObject, context, options);
 //			return JsonUtils.toPrettyString(jsonCompact);
 //		}
-		
-		return writer.toString();
 	}
 
 	public static String convertModelToHtml(Model model, String baseUri) {
@@ -134,9 +183,20 @@ public class MediaTypeConverter {
 	}
 
 	public static String convertModelToHtml(Model model, String baseUri, boolean supportSorting) {
+		StringWriter writer = new StringWriter();
+		try {
+			writeModelToHtml(model, baseUri, supportSorting, writer);
+		} catch (IOException e) {
+			// not thrown by StringWriter
+			throw new IllegalStateException(e);
+		}
+		return writer.toString();
+	}
+
+	public static void writeModelToHtml(Model model, String baseUri, boolean supportSorting, Writer writer) throws IOException {
 		// TODO: Use local style sheet file
 		
-		StringBuilder stringBuilder = new StringBuilder()
+		writer
 				.append("<html>")
 				.append("<head>")
 				.append("<style type=\"text/css\">")
@@ -155,7 +215,7 @@ public class MediaTypeConverter {
 		
 		if (supportSorting) {
 			// TODO: use local script files and use min .js versions
-			stringBuilder
+			writer
 				.append("<script type=\"text/javascript\" src=\"http://tablesorter.com/jquery-latest.js\"></script>")
 				.append("<script type=\"text/javascript\" src=\"http://tablesorter.com/__jquery.tablesorter.js\"></script>")
 				.append("<script type=\"text/javascript\">")
@@ -168,7 +228,7 @@ public class MediaTypeConverter {
 				.append("</script>");			
 		}
 		
-		stringBuilder
+		writer
 				.append("</head><body>")
 				.append("<table id=\"graph\" class=\"rdf tablesorter\">")
 				.append("<thead><tr><th>Subject</th><th>Predicate</th><th>Object</th></tr></thead>")
@@ -186,7 +246,7 @@ public class MediaTypeConverter {
 		StmtIterator stmtIterator = model.listStatements();
 		while(stmtIterator.hasNext()) {
 			Statement statement = stmtIterator.nextStatement();
-			stringBuilder
+			writer
 				.append("<tr><td>")
 				.append(convertRdfNodeToHtml(statement.getSubject(), baseUri, nsPrefixMap, usedNsPrefixSet))
 				.append("</td><td>")
@@ -196,12 +256,12 @@ public class MediaTypeConverter {
 				.append("</td></tr>");
 		}
 		
-		stringBuilder
+		writer
 				.append("</tbody>")
 				.append("</table>");
 		
 		if (!usedNsPrefixSet.isEmpty()) {
-			stringBuilder
+			writer
 				.append("<br/>")
 				.append("<h2>Prefixes</h2>")
 				.append("<table id=\"prefixes\" class=\"rdf\">")
@@ -218,7 +278,7 @@ public class MediaTypeConverter {
 					prefix += ":";
 				}
 					
-				stringBuilder
+				writer
 					.append("<tr><td>")
 					.append(prefix)
 					.append("</td><td>")
@@ -230,14 +290,13 @@ public class MediaTypeConverter {
 					.append("</td></tr>");
 			}
 			
-			stringBuilder
+			writer
 					.append("</tbody>")			
 					.append("</table>");			
 		}
 		
-		return stringBuilder
-				.append("</body></html>")
-				.toString();
+		writer
+				.append("</body></html>");
 	}
 	
 	private static String convertRdfNodeToHtml(RDFNode node, String baseUri, Map<String, String> nsPrefixMap, Set<String> usedNsPrefixSet) {
@@ -0,0 +1,360 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+
+/**
+ * Pool of open models of the store, so that requests reuse the models, and the store connections behind them,
+ * instead of opening new ones. <br />
+ * At most the maximum number of models are kept open by the pool, counting both borrowed and idle models.
+ * When all of them are borrowed, a request waits for a model until the maximum wait time, and then gets
+ * an overflow model, which is closed instead of kept when it is given back. When the maximum number of
+ * overflow models are borrowed too, the request fails. An idle model of another graph is closed to make room
+ * for a new one, and models idle longer than the idle timeout are closed by {@link #startEviction()}.
+ */
+public class ModelPool {
+
+	public static final String METRIC_BORROWED = "models.pool.borrowed";
+	public static final String METRIC_OPENED = "models.pool.opened";
+	public static final String METRIC_EVICTED = "models.pool.evicted";
+	public static final String METRIC_OVERFLOW = "models.pool.overflow";
+	public static final String METRIC_TIMEOUTS = "models.pool.timeouts";
+	public static final String METRIC_WAIT_MILLIS = "models.pool.wait.ms";
+	public static final String METRIC_IN_USE = "models.pool.in.use";
+	public static final String METRIC_IDLE = "models.pool.idle";
+
+	/**
+	 * Name of the default model, which contains the metadata
+	 */
+	public static final String DEFAULT_MODEL_NAME = "";
+
+	private static final Logger logger = Logger.getLogger(ModelPool.class);
+
+	/**
+	 * Opens a model of the store
+	 */
+	public interface ModelOpener {
+		/**
+		 * @param name name of the graph, or {@link ModelPool#DEFAULT_MODEL_NAME}
+		 * @return
+		 * @throws DrumbeatException
+		 */
+		Model open(String name) throws DrumbeatException;
+	}
+
+	private static class IdleModel {
+		final String name;
+		final Model model;
+		final long idleSince;
+
+		IdleModel(String name, Model model, long idleSince) {
+			this.name = name;
+			this.model = model;
+			this.idleSince = idleSince;
+		}
+	}
+
+	private final ModelOpener opener;
+	private final int maxSize;
+	private final long maxWaitMillis;
+	private final int maxOverflow;
+	private final long idleTimeoutMillis;
+	private final Map<String, Deque<IdleModel>> idleModels = new HashMap<>();
+	private final Set<Model> overflowModels = Collections.newSetFromMap(new IdentityHashMap<>());
+	private int idleCount;
+	private int inUseCount;
+	private int overflowCount;
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * @param opener
+	 * @param maxSize maximum number of models kept open
+	 * @param maxWaitMillis maximum time to wait for a model before opening an overflow model
+	 * @param maxOverflow maximum number of overflow models borrowed at the same time, or 0 to fail after the wait
+	 * @param idleTimeoutMillis time after which an idle model is closed
+	 */
+	public ModelPool(ModelOpener opener, int maxSize, long maxWaitMillis, int maxOverflow, long idleTimeoutMillis) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+		}
+		if (maxOverflow < 0) {
+			throw new IllegalArgumentException("Overflow size must not be negative: " + maxOverflow);
+		}
+		this.opener = opener;
+		this.maxSize = maxSize;
+		this.maxWaitMillis = maxWaitMillis;
+		this.maxOverflow = maxOverflow;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		logger.info(String.format("Starting model pool: maxSize=%d, maxWait=%d ms, maxOverflow=%d, idleTimeout=%d ms",
+				maxSize, maxWaitMillis, maxOverflow, idleTimeoutMillis));
+	}
+
+	/**
+	 * Starts closing the models idle longer than the idle timeout in the background,
+	 * so that they are closed even if no more models are borrowed
+	 */
+	public synchronized void startEviction() {
+		if (evictor != null) {
+			return;
+		}
+
+		evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "drumbeat-models-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long periodMillis = Math.max(100L, idleTimeoutMillis / 2);
+		evictor.scheduleWithFixedDelay(() -> {
+			try {
+				evictIdle();
+			} catch (RuntimeException e) {
+				logger.warn("Error evicting idle models: " + e.getMessage(), e);
+			}
+		}, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the background eviction started by {@link #startEviction()}
+	 */
+	public synchronized void stopEviction() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+			evictor = null;
+		}
+	}
+
+	/**
+	 * Borrows an idle model of a graph, or opens a new one. The model must be given back with {@link #release(String, Model)}.
+	 * When all models of the pool are borrowed, waits for one until the maximum wait time, and then opens an overflow model
+	 * @param name name of the graph, or {@link #DEFAULT_MODEL_NAME}
+	 * @return
+	 * @throws DrumbeatException if no model becomes free within the maximum wait time and the maximum number of
+	 * overflow models are borrowed, or the model cannot be opened
+	 */
+	public Model borrow(String name) throws DrumbeatException {
+		long startTime = System.currentTimeMillis();
+		long deadline = startTime + maxWaitMillis;
+		List<Model> closedModels = new ArrayList<>();
+
+		Model model = null;
+		boolean overflow = false;
+		try {
+			synchronized (this) {
+				while (true) {
+					long now = System.currentTimeMillis();
+					collectExpired(now, closedModels);
+
+					Deque<IdleModel> idleModelsOfName = idleModels.get(name);
+					if (idleModelsOfName != null && !idleModelsOfName.isEmpty()) {
+						model = idleModelsOfName.pollLast().model;
+						if (idleModelsOfName.isEmpty()) {
+							idleModels.remove(name);
+						}
+						--idleCount;
+						DrumbeatMetrics.getInstance().add(METRIC_IDLE, -1);
+						break;
+					}
+
+					if (inUseCount + idleCount < maxSize) {
+						break;
+					}
+
+					if (idleCount > 0) {
+						closedModels.add(removeOldestIdle().model);
+						continue;
+					}
+
+					long remaining = deadline - now;
+					if (remaining <= 0) {
+						if (overflowCount >= maxOverflow) {
+							DrumbeatMetrics.getInstance().increment(METRIC_TIMEOUTS);
+							throw new DrumbeatException(String.format("No free model of the store after %d ms, %d models and %d overflow models are in use",
+									maxWaitMillis, inUseCount, overflowCount));
+						}
+						overflow = true;
+						break;
+					}
+
+					try {
+						wait(remaining);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new DrumbeatException("Interrupted while waiting for a model of the store", e);
+					}
+				}
+
+				// the slot of a new model is reserved before opening it
+				if (overflow) {
+					++overflowCount;
+				} else {
+					++inUseCount;
+				}
+			}
+		} finally {
+			closeAll(closedModels);
+		}
+
+		DrumbeatMetrics metrics = DrumbeatMetrics.getInstance();
+		metrics.add(METRIC_WAIT_MILLIS, System.currentTimeMillis() - startTime);
+		metrics.increment(METRIC_BORROWED);
+
+		if (model != null) {
+			metrics.add(METRIC_IN_USE, 1);
+			return model;
+		}
+
+		try {
+			model = opener.open(name);
+		} catch (DrumbeatException | RuntimeException e) {
+			synchronized (this) {
+				if (overflow) {
+					--overflowCount;
+				} else {
+					--inUseCount;
+				}
+				notifyAll();
+			}
+			throw e;
+		}
+
+		if (overflow) {
+			synchronized (this) {
+				overflowModels.add(model);
+			}
+			metrics.increment(METRIC_OVERFLOW);
+			return model;
+		}
+
+		metrics.increment(METRIC_OPENED);
+		metrics.add(METRIC_IN_USE, 1);
+		return model;
+	}
+
+	/**
+	 * Gives back a borrowed model. An overflow model is closed
+	 * @param name name of the graph, or {@link #DEFAULT_MODEL_NAME}
+	 * @param model
+	 */
+	public void release(String name, Model model) {
+		synchronized (this) {
+			if (overflowModels.remove(model)) {
+				--overflowCount;
+			} else {
+				--inUseCount;
+				idleModels.computeIfAbsent(name, key -> new ArrayDeque<>()).addLast(new IdleModel(name, model, System.currentTimeMillis()));
+				++idleCount;
+				model = null;
+			}
+			notifyAll();
+		}
+
+		if (model != null) {
+			try {
+				model.close();
+			} catch (RuntimeException e) {
+				logger.warn("Error closing model: " + e.getMessage(), e);
+			}
+			return;
+		}
+
+		DrumbeatMetrics metrics = DrumbeatMetrics.getInstance();
+		metrics.add(METRIC_IN_USE, -1);
+		metrics.add(METRIC_IDLE, 1);
+	}
+
+	/**
+	 * Closes the models which have been idle longer than the idle timeout
+	 * @return number of closed models
+	 */
+	public int evictIdle() {
+		return evictIdle(System.currentTimeMillis());
+	}
+
+	int evictIdle(long now) {
+		List<Model> closedModels = new ArrayList<>();
+		synchronized (this) {
+			collectExpired(now, closedModels);
+		}
+		closeAll(closedModels);
+		return closedModels.size();
+	}
+
+	public synchronized int getInUseCount() {
+		return inUseCount;
+	}
+
+	public synchronized int getIdleCount() {
+		return idleCount;
+	}
+
+	public synchronized int getOverflowCount() {
+		return overflowCount;
+	}
+
+	private void collectExpired(long now, List<Model> closedModels) {
+		Iterator<Deque<IdleModel>> iterator = idleModels.values().iterator();
+		while (iterator.hasNext()) {
+			Deque<IdleModel> idleModelsOfName = iterator.next();
+			// the oldest models are first
+			while (!idleModelsOfName.isEmpty() && now - idleModelsOfName.peekFirst().idleSince >= idleTimeoutMillis) {
+				closedModels.add(idleModelsOfName.pollFirst().model);
+				--idleCount;
+			}
+			if (idleModelsOfName.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private IdleModel removeOldestIdle() {
+		Deque<IdleModel> oldestDeque = null;
+		for (Deque<IdleModel> idleModelsOfName : idleModels.values()) {
+			if (!idleModelsOfName.isEmpty() &&
+					(oldestDeque == null || idleModelsOfName.peekFirst().idleSince < oldestDeque.peekFirst().idleSince)) {
+				oldestDeque = idleModelsOfName;
+			}
+		}
+
+		IdleModel oldest = oldestDeque.pollFirst();
+		if (oldestDeque.isEmpty()) {
+			idleModels.remove(oldest.name);
+		}
+		--idleCount;
+		return oldest;
+	}
+
+	private void closeAll(List<Model> models) {
+		if (models.isEmpty()) {
+			return;
+		}
+
+		DrumbeatMetrics metrics = DrumbeatMetrics.getInstance();
+		metrics.add(METRIC_EVICTED, models.size());
+		metrics.add(METRIC_IDLE, -models.size());
+
+		for (Model model : models) {
+			try {
+				model.close();
+			} catch (RuntimeException e) {
+				logger.warn("Error closing model: " + e.getMessage(), e);
+			}
+		}
+	}
+
+}
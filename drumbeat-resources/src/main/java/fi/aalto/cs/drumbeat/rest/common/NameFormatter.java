@@ -76,16 +76,41 @@ public class NameFormatter {
 		return formatLocalOntologyUri(ontologyId) + "#";
 	}
 
+	public static String formatUploadJobUri(String jobId)
+	{
+		return String.format(
+				"%sjobs/%s",
+				DrumbeatApplication.getInstance().getBaseUri(),
+				jobId);
+	}
+
+	public static String formatResumableUploadUri(String targetUri, String uploadId)
+	{
+		return String.format(
+				"%s/uploads/%s",
+				targetUri,
+				uploadId);
+	}
+
 	public static String formatDataSetGraphUri(String collectionId, String dataSourceId, String dataSetId)
 	{
 		return formatDataSetResourceUri(collectionId, dataSourceId, dataSetId);
 	}
 	
+	public static String formatDataSetTypeIndexGraphUri(String collectionId, String dataSourceId, String dataSetId)
+	{
+		return formatDataSetGraphUri(collectionId, dataSourceId, dataSetId) + "_TYPE_INDEX";
+	}
+	
 	public static String formatLinkSetGraphUri(String collectionId, String dataSourceId, String dataSetId)
 	{
 		return formatLinkSetResourceUri(collectionId, dataSourceId, dataSetId);
 	}
 	
+	public static String formatObjectVersionIndexGraphUri(String collectionId, String dataSourceId) {
+		return formatDataSourceResourceUri(collectionId, dataSourceId) + "_OBJECT_INDEX";
+	}
+	
 	public static String formatBackLinkSourceUri(String collectionId, String originalDataSourceId) {
 		return formatDataSourceResourceUri(collectionId, originalDataSourceId + "_BACK_LINKS");
 	}
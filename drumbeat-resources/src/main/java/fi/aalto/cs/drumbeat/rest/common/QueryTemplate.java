@@ -0,0 +1,217 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.Template;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransform;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformSubst;
+import org.apache.jena.sparql.syntax.syntaxtransform.ExprTransformNodeElement;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+
+/**
+ * SPARQL query which is parsed once, together with the default prefixes and the base URI,
+ * and reused by all requests. Parameters are bound by substituting variables in a copy of
+ * the parsed query, so that the command text is not concatenated and parsed again per request. <br />
+ * Templates are registered by their command text, which therefore must not contain request values:
+ * <pre>
+ * Query query = QueryTemplate.get("ASK { ?collectionUri a lbdho:Collection }")
+ * 		.setIri("collectionUri", collectionUri)
+ * 		.asQuery();
+ * </pre>
+ */
+public class QueryTemplate {
+
+	private static final Map<String, QueryTemplate> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the template of the command text, registering it on first use
+	 * @param commandText SPARQL query, which can use the default prefixes
+	 * @return
+	 */
+	public static QueryTemplate get(String commandText) {
+		return templates.computeIfAbsent(commandText, QueryTemplate::new);
+	}
+
+	private final String commandText;
+	private volatile ParsedQuery parsedQuery;
+
+	private QueryTemplate(String commandText) {
+		this.commandText = commandText;
+	}
+
+	public String getCommandText() {
+		return commandText;
+	}
+
+	/**
+	 * Gets a copy of the query with no parameters bound
+	 * @return
+	 */
+	public Query asQuery() {
+		return QueryTransformOps.shallowCopy(getQuery(getBaseUri()));
+	}
+
+	/**
+	 * Gets an empty set of parameters, e.g. when the parameters to bind depend on the request
+	 * @return
+	 */
+	public Parameters createParameters() {
+		return new Parameters();
+	}
+
+	public Parameters setIri(String name, String iri) {
+		return new Parameters().setIri(name, iri);
+	}
+
+	public Parameters setLiteral(String name, String value) {
+		return new Parameters().setLiteral(name, value);
+	}
+
+	public Parameters setParam(String name, Node node) {
+		return new Parameters().setParam(name, node);
+	}
+
+	/**
+	 * Gets the parsed query, parsing it again only if the base URI has changed
+	 * @param baseUri
+	 * @return
+	 */
+	Query getQuery(String baseUri) {
+		ParsedQuery parsedQuery = this.parsedQuery;
+		if (parsedQuery == null || !parsedQuery.baseUri.equals(baseUri)) {
+			ParameterizedSparqlString sparql = new ParameterizedSparqlString(commandText);
+			sparql.setBaseUri(baseUri);
+			sparql.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+			parsedQuery = new ParsedQuery(baseUri, sparql.asQuery());
+			this.parsedQuery = parsedQuery;
+		}
+		return parsedQuery.query;
+	}
+
+	private static String getBaseUri() {
+		return DrumbeatApplication.getInstance().getBaseUri();
+	}
+
+	private static class ParsedQuery {
+
+		private final String baseUri;
+		private final Query query;
+
+		ParsedQuery(String baseUri, Query query) {
+			this.baseUri = baseUri;
+			this.query = query;
+		}
+
+	}
+
+	/**
+	 * Values bound to the variables of a template for one execution
+	 */
+	public class Parameters {
+
+		private final Map<Var, Node> values;
+
+		private Parameters() {
+			this.values = new HashMap<>();
+		}
+
+		private Parameters(Map<Var, Node> values) {
+			this.values = new HashMap<>(values);
+		}
+
+		public QueryTemplate getTemplate() {
+			return QueryTemplate.this;
+		}
+
+		public Parameters setIri(String name, String iri) {
+			return setParam(name, NodeFactory.createURI(iri));
+		}
+
+		public Parameters setLiteral(String name, String value) {
+			return setParam(name, NodeFactory.createLiteral(value));
+		}
+
+		public Parameters setParam(String name, Node node) {
+			values.put(Var.alloc(name), node);
+			return this;
+		}
+
+		public Parameters clearParam(String name) {
+			values.remove(Var.alloc(name));
+			return this;
+		}
+
+		public Parameters copy() {
+			return new Parameters(values);
+		}
+
+		/**
+		 * Gets a copy of the parsed query with the parameters substituted
+		 * @return
+		 */
+		public Query asQuery() {
+			return asQuery(getBaseUri());
+		}
+
+		Query asQuery(String baseUri) {
+			Query query = getQuery(baseUri);
+			if (values.isEmpty()) {
+				return QueryTransformOps.shallowCopy(query);
+			}
+
+			// graph names, expressions and the construct template are not substituted by
+			// QueryTransformOps.transform(query, values)
+			ElementTransform elementTransform = new ElementTransformSubst(values) {
+				@Override
+				public Element transform(ElementNamedGraph element, Node graphNode, Element subElement) {
+					return super.transform(element, substitute(graphNode), subElement);
+				}
+			};
+			Query result = QueryTransformOps.transform(
+					query,
+					elementTransform,
+					new ExprTransformNodeElement(this::substitute, elementTransform));
+
+			if (query.isConstructType()) {
+				BasicPattern pattern = new BasicPattern();
+				for (Triple triple : query.getConstructTemplate().getTriples()) {
+					pattern.add(Triple.create(
+							substitute(triple.getSubject()),
+							substitute(triple.getPredicate()),
+							substitute(triple.getObject())));
+				}
+				result.setConstructTemplate(new Template(pattern));
+			}
+
+			return result;
+		}
+
+		private Node substitute(Node node) {
+			if (node.isVariable()) {
+				Node value = values.get(Var.alloc(node));
+				if (value != null) {
+					return value;
+				}
+			}
+			return node;
+		}
+
+		@Override
+		public String toString() {
+			return commandText + "\n" + values;
+		}
+
+	}
+
+}
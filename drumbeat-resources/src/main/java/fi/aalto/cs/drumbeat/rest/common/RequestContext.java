@@ -0,0 +1,95 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Immutable state of the request handled by the current thread, such as the base URI the request was sent to. <br />
+ * The context is bound to the request thread by {@link DrumbeatApplication#notifyRequest(javax.ws.rs.core.UriInfo)}
+ * and is passed to the tasks run for the request on other threads by {@link #wrap(Callable)} and {@link #wrap(Runnable)}.
+ * Unlike {@link RequestModelScope}, it can be shared by several threads.
+ */
+public final class RequestContext {
+
+	private static final ThreadLocal<RequestContext> current = new ThreadLocal<>();
+
+	/**
+	 * Gets the context of the current thread
+	 * @return the context, or <code>null</code> if the thread is not handling a request
+	 */
+	public static RequestContext getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Starts the context of a request in the current thread, replacing the context of a previous request
+	 * @param baseUri base URI the request was sent to
+	 * @return
+	 */
+	public static RequestContext begin(String baseUri) {
+		RequestContext context = new RequestContext(baseUri);
+		current.set(context);
+		return context;
+	}
+
+	/**
+	 * Ends the context of the current thread
+	 */
+	public static void end() {
+		current.remove();
+	}
+
+	/**
+	 * Wraps a task so that it runs in the context of the current thread, whichever thread runs it
+	 * @param task
+	 * @return
+	 */
+	public static <T> Callable<T> wrap(Callable<T> task) {
+		RequestContext context = getCurrent();
+		return () -> {
+			RequestContext previous = current.get();
+			set(context);
+			try {
+				return task.call();
+			} finally {
+				set(previous);
+			}
+		};
+	}
+
+	/**
+	 * Wraps a task so that it runs in the context of the current thread, whichever thread runs it
+	 * @param task
+	 * @return
+	 */
+	public static Runnable wrap(Runnable task) {
+		RequestContext context = getCurrent();
+		return () -> {
+			RequestContext previous = current.get();
+			set(context);
+			try {
+				task.run();
+			} finally {
+				set(previous);
+			}
+		};
+	}
+
+	private static void set(RequestContext context) {
+		if (context != null) {
+			current.set(context);
+		} else {
+			current.remove();
+		}
+	}
+
+	private final String baseUri;
+
+	private RequestContext(String baseUri) {
+		this.baseUri = baseUri;
+	}
+
+	public String getBaseUri() {
+		return baseUri;
+	}
+
+}
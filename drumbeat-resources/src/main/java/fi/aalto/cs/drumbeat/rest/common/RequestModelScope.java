@@ -0,0 +1,125 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+
+/**
+ * Models of the store used by the request of the current thread. Each model is opened, or borrowed from
+ * the {@link ModelPool}, once per request and reused by all managers of the request. When the scope is closed
+ * at the end of the request, the models are given back to the pool, or closed if there is no pool. <br />
+ * The models of a scope are not shared by threads: the tasks run for the request on other threads get
+ * scopes of their own by {@link #wrap(Callable)}. Threads without a scope, such as the upload jobs,
+ * open their models themselves.
+ */
+public class RequestModelScope implements AutoCloseable {
+
+	public static final String METRIC_REUSED = "models.request.reused";
+
+	private static final Logger logger = Logger.getLogger(RequestModelScope.class);
+
+	private static final ThreadLocal<RequestModelScope> current = new ThreadLocal<>();
+
+	/**
+	 * Gets the scope of the current thread
+	 * @return the scope, or <code>null</code> if the thread has none
+	 */
+	public static RequestModelScope getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Starts a scope for the current thread. The scope the thread had before is restored when the new one is closed
+	 * @param opener opens the models if there is no pool
+	 * @param pool the pool, or <code>null</code>
+	 * @return the scope, which must be closed at the end of the request
+	 */
+	public static RequestModelScope begin(ModelPool.ModelOpener opener, ModelPool pool) {
+		RequestModelScope scope = new RequestModelScope(opener, pool, current.get());
+		current.set(scope);
+		return scope;
+	}
+
+	/**
+	 * Wraps a task so that it runs in a scope of its own, with the pool of the scope of the current thread,
+	 * whichever thread runs it. The scope is closed when the task ends
+	 * @param task
+	 * @return the wrapped task, or the task itself if the current thread has no scope
+	 */
+	public static <T> Callable<T> wrap(Callable<T> task) {
+		RequestModelScope scope = getCurrent();
+		if (scope == null) {
+			return task;
+		}
+
+		ModelPool.ModelOpener opener = scope.opener;
+		ModelPool pool = scope.pool;
+		return () -> {
+			try (RequestModelScope taskScope = begin(opener, pool)) {
+				return task.call();
+			}
+		};
+	}
+
+	private final ModelPool.ModelOpener opener;
+	private final ModelPool pool;
+	private final RequestModelScope previous;
+	private final Map<String, Model> models = new LinkedHashMap<>();
+
+	private RequestModelScope(ModelPool.ModelOpener opener, ModelPool pool, RequestModelScope previous) {
+		this.opener = opener;
+		this.pool = pool;
+		this.previous = previous;
+	}
+
+	/**
+	 * Gets the model of a graph opened by this request, or opens it
+	 * @param name name of the graph, or {@link ModelPool#DEFAULT_MODEL_NAME}
+	 * @return
+	 * @throws DrumbeatException
+	 */
+	public Model getModel(String name) throws DrumbeatException {
+		Model model = models.get(name);
+		if (model != null) {
+			DrumbeatMetrics.getInstance().increment(METRIC_REUSED);
+			return model;
+		}
+
+		model = pool != null ? pool.borrow(name) : opener.open(name);
+		models.put(name, model);
+		return model;
+	}
+
+	/**
+	 * Gives back or closes the models of the request and ends the scope of the current thread
+	 */
+	@Override
+	public void close() {
+		if (current.get() == this) {
+			if (previous != null) {
+				current.set(previous);
+			} else {
+				current.remove();
+			}
+		}
+
+		for (Map.Entry<String, Model> entry : models.entrySet()) {
+			if (pool != null) {
+				pool.release(entry.getKey(), entry.getValue());
+			} else {
+				try {
+					entry.getValue().close();
+				} catch (RuntimeException e) {
+					logger.warn("Error closing model: " + e.getMessage(), e);
+				}
+			}
+		}
+		models.clear();
+	}
+
+}
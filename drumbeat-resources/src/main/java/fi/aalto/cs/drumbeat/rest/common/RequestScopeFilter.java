@@ -0,0 +1,44 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Opens the {@link RequestModelScope} of each request and closes it after the response has been written,
+ * so that the models are also available to streamed responses. The {@link RequestContext} of the request
+ * is ended at the same time, so that it is not seen by the next request of the thread
+ */
+public class RequestScopeFilter implements Filter {
+
+	@Override
+	public void init(FilterConfig filterConfig) throws ServletException {
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+		DrumbeatApplication application = DrumbeatApplication.getInstance();
+		RequestModelScope scope = application != null ? application.beginRequestModelScope() : null;
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			try {
+				if (scope != null) {
+					scope.close();
+				}
+			} finally {
+				RequestContext.end();
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+}
@@ -0,0 +1,240 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of serialized responses with W-TinyLFU admission. <br />
+ * New entries enter a small LRU window (1% of the size). Entries leaving the window are admitted
+ * to the main LRU region only if they have been requested more often than the entries they would
+ * evict, estimated by a {@link FrequencySketch} of recent requests. This keeps the objects which
+ * viewers return to cached when many objects are requested only once. <br />
+ * Each entry is valid for the version of the data sets it was computed from, see {@link EntityVersion},
+ * so that changing a data set only makes the entries of that data set stale. A stale entry is removed
+ * when it is requested with the new version, or evicted as least recently used.
+ */
+public class ResponseCache {
+
+	public static final String METRIC_HITS = "objects.cache.hits";
+	public static final String METRIC_MISSES = "objects.cache.misses";
+	public static final String METRIC_EVICTIONS = "objects.cache.evictions";
+	public static final String METRIC_REJECTIONS = "objects.cache.rejections";
+
+	private static final int WINDOW_PERCENT = 1;
+	private static final int EXPECTED_ENTRY_SIZE = 8192;
+
+	private static ResponseCache instance;
+
+	public static synchronized ResponseCache getInstance() {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			instance = new ResponseCache(
+					application.isObjectResponseCacheEnabled(),
+					application.getObjectResponseCacheMaxSize());
+		}
+		return instance;
+	}
+
+	public static class CachedResponse {
+
+		private final byte[] content;
+		private final String mediaType;
+
+		public CachedResponse(byte[] content, String mediaType) {
+			this.content = content;
+			this.mediaType = mediaType;
+		}
+
+		public byte[] getContent() {
+			return content;
+		}
+
+		public String getMediaType() {
+			return mediaType;
+		}
+
+	}
+
+	private final boolean enabled;
+	private final long windowMaxSize;
+	private final long mainMaxSize;
+	private static class Entry {
+
+		final String version;
+		final CachedResponse response;
+
+		Entry(String version, CachedResponse response) {
+			this.version = version;
+			this.response = response;
+		}
+
+		int getLength() {
+			return response.getContent().length;
+		}
+
+	}
+
+	private final Map<String, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+	private final FrequencySketch sketch;
+	private final AtomicLong generation = new AtomicLong();
+	private volatile long invalidatedTime = System.currentTimeMillis();
+	private long windowSize;
+	private long mainSize;
+
+	/**
+	 * @param enabled
+	 * @param maxSize maximum total size in bytes of cached responses
+	 */
+	public ResponseCache(boolean enabled, long maxSize) {
+		this.enabled = enabled;
+		this.windowMaxSize = Math.max(1, maxSize * WINDOW_PERCENT / 100);
+		this.mainMaxSize = Math.max(1, maxSize - windowMaxSize);
+		this.sketch = new FrequencySketch((int)Math.min(Integer.MAX_VALUE, maxSize / EXPECTED_ENTRY_SIZE));
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the generation of changes which are not tracked by the metadata, e.g. created back-links.
+	 * Callers include it in the version of the data
+	 * @return
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Changes the generation after a change which is not tracked by the metadata,
+	 * so that the entries computed from the changed data become stale
+	 */
+	public void invalidate() {
+		invalidatedTime = System.currentTimeMillis();
+		generation.incrementAndGet();
+	}
+
+	/**
+	 * Gets the time of the last invalidation, or of creating the cache if not invalidated
+	 * @return
+	 */
+	public long getInvalidatedTime() {
+		return invalidatedTime;
+	}
+
+	/**
+	 * Gets the cached response and records the request for admission
+	 * @param key
+	 * @param version version of the data the response is computed from
+	 * @return the cached response, or <code>null</code> if not cached or cached for another version
+	 */
+	public synchronized CachedResponse get(String key, EntityVersion version) {
+		sketch.increment(key.hashCode());
+
+		Entry entry = window.get(key);
+		if (entry == null) {
+			entry = main.get(key);
+		}
+
+		if (entry != null && !entry.version.equals(version.getDigest())) {
+			remove(key);
+			entry = null;
+		}
+
+		DrumbeatMetrics.getInstance().increment(entry != null ? METRIC_HITS : METRIC_MISSES);
+		return entry != null ? entry.response : null;
+	}
+
+	/**
+	 * Adds a response computed for the given version of the data
+	 * @param key
+	 * @param version
+	 * @param response
+	 */
+	public synchronized void put(String key, EntityVersion version, CachedResponse response) {
+		if (response.getContent().length > mainMaxSize) {
+			return;
+		}
+
+		remove(key);
+		Entry entry = new Entry(version.getDigest(), response);
+		window.put(key, entry);
+		windowSize += entry.getLength();
+
+		Iterator<Map.Entry<String, Entry>> it = window.entrySet().iterator();
+		while (windowSize > windowMaxSize && it.hasNext()) {
+			Map.Entry<String, Entry> candidate = it.next();
+			it.remove();
+			windowSize -= candidate.getValue().getLength();
+			admit(candidate.getKey(), candidate.getValue());
+		}
+	}
+
+	/**
+	 * Gets the size of the largest response which can be cached
+	 * @return
+	 */
+	public long getMaxEntrySize() {
+		return mainMaxSize;
+	}
+
+	public synchronized long getSize() {
+		return windowSize + mainSize;
+	}
+
+	public synchronized int getCount() {
+		return window.size() + main.size();
+	}
+
+	public synchronized boolean contains(String key) {
+		return window.containsKey(key) || main.containsKey(key);
+	}
+
+	/**
+	 * Moves an entry from the window to the main region. The least recently used entries of the main region
+	 * which make room for the entry are evicted only if the entry is requested more often than each of them,
+	 * otherwise the entry is dropped and the main region is left as is
+	 */
+	private void admit(String key, Entry entry) {
+		int length = entry.getLength();
+		int frequency = sketch.frequency(key.hashCode());
+
+		List<String> victims = new ArrayList<>();
+		long freedSize = 0;
+		Iterator<Map.Entry<String, Entry>> it = main.entrySet().iterator();
+		while (mainSize - freedSize + length > mainMaxSize && it.hasNext()) {
+			Map.Entry<String, Entry> victim = it.next();
+			if (frequency <= sketch.frequency(victim.getKey().hashCode())) {
+				DrumbeatMetrics.getInstance().increment(METRIC_REJECTIONS);
+				return;
+			}
+			victims.add(victim.getKey());
+			freedSize += victim.getValue().getLength();
+		}
+
+		for (String victim : victims) {
+			mainSize -= main.remove(victim).getLength();
+		}
+		DrumbeatMetrics.getInstance().add(METRIC_EVICTIONS, victims.size());
+
+		main.put(key, entry);
+		mainSize += length;
+	}
+
+	private void remove(String key) {
+		Entry old = window.remove(key);
+		if (old != null) {
+			windowSize -= old.getLength();
+		}
+		old = main.remove(key);
+		if (old != null) {
+			mainSize -= old.getLength();
+		}
+	}
+
+}
@@ -0,0 +1,114 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.query.ResultSetFormatter;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+
+/**
+ * Formats of the results of SPARQL queries, which are written to the response while the results are read
+ * from the store: SELECT and ASK results as SPARQL-JSON, SPARQL-XML or TSV, CONSTRUCT and DESCRIBE results as N-Triples
+ */
+public enum SparqlResultFormat {
+
+	JSON("application/sparql-results+json", false),
+	XML("application/sparql-results+xml", false),
+	TSV("text/tab-separated-values", false),
+	NTRIPLES("application/n-triples", true);
+
+	private final MediaType mediaType;
+	private final boolean isGraphFormat;
+
+	private SparqlResultFormat(String mediaType, boolean isGraphFormat) {
+		this.mediaType = MediaType.valueOf(mediaType);
+		this.isGraphFormat = isGraphFormat;
+	}
+
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * Checks if the format can be used for the results of a query
+	 * @param query
+	 * @return
+	 */
+	public boolean supports(Query query) {
+		return isGraphFormat == (query.isConstructType() || query.isDescribeType());
+	}
+
+	/**
+	 * Gets the first format of the acceptable media types which can be used for the results of a query
+	 * @param query
+	 * @param acceptableMediaTypes
+	 * @return the format, or <code>null</code> if no format is acceptable
+	 */
+	public static SparqlResultFormat negotiate(Query query, List<MediaType> acceptableMediaTypes) {
+		for (MediaType acceptableMediaType : acceptableMediaTypes) {
+			for (SparqlResultFormat format : values()) {
+				if (format.supports(query) && acceptableMediaType.isCompatible(format.mediaType)) {
+					return format;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Executes a query and writes its results
+	 * @param execution
+	 * @param query
+	 * @param out
+	 */
+	public void write(QueryExecution execution, Query query, OutputStream out) {
+		if (isGraphFormat) {
+			Iterator<Triple> triples = query.isConstructType() ?
+					execution.execConstructTriples() :
+					execution.execDescribeTriples();
+			StreamRDF writer = StreamRDFLib.writer(out);
+			writer.start();
+			while (triples.hasNext()) {
+				writer.triple(triples.next());
+			}
+			writer.finish();
+			return;
+		}
+
+		if (query.isAskType()) {
+			boolean result = execution.execAsk();
+			switch (this) {
+			case JSON:
+				ResultSetFormatter.outputAsJSON(out, result);
+				break;
+			case XML:
+				ResultSetFormatter.outputAsXML(out, result);
+				break;
+			default:
+				ResultSetFormatter.outputAsTSV(out, result);
+			}
+			return;
+		}
+
+		ResultSet resultSet = execution.execSelect();
+		switch (this) {
+		case JSON:
+			ResultSetFormatter.outputAsJSON(out, resultSet);
+			break;
+		case XML:
+			ResultSetFormatter.outputAsXML(out, resultSet);
+			break;
+		default:
+			ResultSetFormatter.outputAsTSV(out, resultSet);
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ import org.apache.jena.vocabulary.RDF;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 
 public class CollectionManager extends DrumbeatManager {
 	
@@ -34,20 +35,17 @@ public class CollectionManager extends DrumbeatManager {
 	 */
 	public Model getAll()
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?collectionUri rdf:type lbdho:Collection \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection . \n" +
 					"} \n" + 
-					"ORDER BY ?collectionUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-		}}.asQuery();
+					"ORDER BY ?collectionUri")
+				.asQuery();
 	
 		Model result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		return result;
@@ -63,21 +61,18 @@ public class CollectionManager extends DrumbeatManager {
 	public Model getById(String collectionId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?collectionUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.asQuery();
 		
 		Model result =
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (result.isEmpty()) {
@@ -109,6 +104,8 @@ public class CollectionManager extends DrumbeatManager {
 				.addProperty(RDF.type, DrumbeatOntology.LBDHO.Collection)
 				.addLiteral(DrumbeatOntology.LBDHO.name, name);
 		
+		invalidateMetaDataCache();
+		
 		return ModelFactory
 				.createDefaultModel()
 				.add(collectionResource, RDF.type, DrumbeatOntology.LBDHO.Collection);
@@ -143,6 +140,8 @@ public class CollectionManager extends DrumbeatManager {
 		}}.asUpdate();
 		
 		UpdateAction.execute(updateRequest1, getMetaDataModel());
+		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -153,17 +152,15 @@ public class CollectionManager extends DrumbeatManager {
 	 * @return true if the collection exists
 	 */
 	public boolean checkExists(String collectionId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -177,17 +174,15 @@ public class CollectionManager extends DrumbeatManager {
 	 * @return
 	 */
 	public boolean checkHasChildren(String collectionId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -18,7 +18,9 @@ import org.apache.log4j.Logger;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.string.StringUtils;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
+import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProviderException;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 
 public class DataSetManager extends DrumbeatManager {	
 	
@@ -41,8 +43,7 @@ public class DataSetManager extends DrumbeatManager {
 	public Model getAll(String collectionId, String dataSourceId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?dataSetUri rdf:type lbdho:DataSet \n" +
 					"} WHERE { \n" + 
@@ -50,17 +51,15 @@ public class DataSetManager extends DrumbeatManager {
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" +
 					"	?dataSetUri a lbdho:DataSet . \n" +
 					"} \n" + 
-					"ORDER BY ?dataSetUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-		}}.asQuery();
+					"ORDER BY ?dataSetUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.asQuery();
 		
 		logger.debug("Running query \n" + query);
 
 		Model result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (result.isEmpty()) {
@@ -84,8 +83,7 @@ public class DataSetManager extends DrumbeatManager {
 	public Resource getLastDataSetResource(String collectionId, String dataSourceId)
 //		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"SELECT \n" +
 					"	?dataSetUri \n" +
 					"WHERE { \n" + 
@@ -93,17 +91,15 @@ public class DataSetManager extends DrumbeatManager {
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri ; lbdho:hasLastDataSet ?dataSetUri . \n" +
 					"	?dataSetUri a lbdho:DataSet . \n" +
 					"} \n" + 
-					"ORDER BY ?dataSetUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-		}}.asQuery();
+					"ORDER BY ?dataSetUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.asQuery();
 		
 		logger.debug("Running query \n" + query);
 		
 		ResultSet result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execSelect();
 		
 		if (!result.hasNext()) {
@@ -130,8 +126,7 @@ public class DataSetManager extends DrumbeatManager {
 	public Model getById(String collectionId, String dataSourceId, String dataSetId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?dataSetUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
@@ -139,18 +134,16 @@ public class DataSetManager extends DrumbeatManager {
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" +
 					"	?dataSetUri a lbdho:DataSet ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");			
-
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-			setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.asQuery();
 		
 		logger.debug("Running query \n" + query);
 
 		Model result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (result.isEmpty()) {
@@ -225,6 +218,8 @@ public class DataSetManager extends DrumbeatManager {
 			.addLiteral(DrumbeatOntology.LBDHO.name, name)
 			.addProperty(DrumbeatOntology.LBDHO.inDataSource, dataSourceResource);
 		
+		invalidateMetaDataCache();
+		
 		return ModelFactory
 				.createDefaultModel()
 				.add(dataSetResource, RDF.type, DrumbeatOntology.LBDHO.DataSet);
@@ -264,6 +259,16 @@ public class DataSetManager extends DrumbeatManager {
 
 		UpdateAction.execute(updateRequest1, getMetaDataModel());
 		UpdateAction.execute(updateRequest2, getMetaDataModel());		
+		
+		invalidateMetaDataCache();
+		
+		// the type index is derived from the data set, so it is not kept like the data graph
+		String typeIndexGraphUri = formatDataSetTypeIndexGraphUri(collectionId, dataSourceId, dataSetId);
+		try {
+			getJenaProvider().deleteModel(typeIndexGraphUri);
+		} catch (JenaProviderException e) {
+			logger.warn(String.format("Error deleting type index '%s': %s", typeIndexGraphUri, e.getMessage()), e);
+		}
 	}
 	
 	
@@ -276,22 +281,20 @@ public class DataSetManager extends DrumbeatManager {
 	 */
 	public boolean checkExists(String collectionId, String dataSourceId, String dataSetId) {
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" +
 					"	?dataSetUri a lbdho:DataSet . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-			setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));			
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.asQuery();
 		
 		logger.debug("Running query \n" + query);
 
-		boolean result = createQueryExecution(query, getMetaDataModel())
+		boolean result = createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -305,23 +308,21 @@ public class DataSetManager extends DrumbeatManager {
 	 * @return
 	 */
 	public boolean checkHasChildren(String collectionId, String dataSourceId, String dataSetId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" +
 					"	?dataSetUri a lbdho:DataSet . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-			setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));			
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.asQuery();
 		
 		logger.debug("Running query \n" + query);
 
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
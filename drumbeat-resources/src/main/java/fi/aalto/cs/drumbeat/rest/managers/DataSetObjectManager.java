@@ -2,26 +2,49 @@ package fi.aalto.cs.drumbeat.rest.managers;
 
 import static fi.aalto.cs.drumbeat.rest.common.NameFormatter.*;
 
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.NodeIterator;
 import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.shared.NotFoundException;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
 import org.apache.jena.update.UpdateAction;
+import org.apache.jena.vocabulary.RDF;
 
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.EntityVersion;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadManager;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadOptions;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadDelta;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadPhase;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadProgress;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.ws.rs.client.ClientBuilder;
@@ -35,10 +58,14 @@ import org.apache.log4j.Logger;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.string.StringUtils;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
+import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProviderException;
 
 public class DataSetObjectManager extends DrumbeatManager {
 	
 	private static final Logger logger = Logger.getLogger(DataSetObjectManager.class);	
+	
+	public static final String METRIC_EXPANSION_QUERIES = "objects.expand.queries";
+	public static final String METRIC_EXPANSION_TRUNCATED = "objects.expand.truncated";
 
 	public DataSetObjectManager() throws DrumbeatException {
 	}
@@ -52,6 +79,42 @@ public class DataSetObjectManager extends DrumbeatManager {
 		return DrumbeatApplication.getInstance().getDataModel(graphName);
 	}
 	
+	/**
+	 * Gets the index of the types of the non-blank objects of a data set. The index is looked up
+	 * by the lbdho:typeIndexGraphUri of the data set in the cached metadata, so the store is not queried
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param dataSetId
+	 * @return the index, or <code>null</code> if the index is disabled or the data set was uploaded without it
+	 * @throws DrumbeatException
+	 */
+	public Model getTypeIndexModel(String collectionId, String dataSourceId, String dataSetId) throws DrumbeatException {
+		if (!DrumbeatApplication.getInstance().isObjectTypeIndexEnabled()) {
+			return null;
+		}
+		
+		Statement typeIndexGraphUri = getCachedMetaDataModel()
+				.getResource(formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.getProperty(LBDHO.typeIndexGraphUri);
+		if (typeIndexGraphUri == null) {
+			return null;
+		}
+		return DrumbeatApplication.getInstance().getDataModel(typeIndexGraphUri.getString());
+	}
+	
+	/**
+	 * Gets the version of the objects of a data set
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param dataSetId
+	 * @return
+	 */
+	public EntityVersion getVersion(String collectionId, String dataSourceId, String dataSetId) {
+		EntityVersion.Builder builder = new EntityVersion.Builder();
+		addDataSetVersion(builder, formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
+		return builder.build();
+	}
+	
 	/**
 	 * Gets all attributes of a specified object 
 	 * @param collectionId
@@ -66,8 +129,7 @@ public class DataSetObjectManager extends DrumbeatManager {
 	{
 		Model dataModel = getDataModel(collectionId, dataSourceId, dataSetId);
 
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 						"CONSTRUCT { \n" +
 						"	?o rdf:type ?type \n" +
 						"} \n " +
@@ -80,13 +142,10 @@ public class DataSetObjectManager extends DrumbeatManager {
 //						"	GRAPH ?ifcOwlUri { \n " +
 //						"   	?type rdfs:subClassOf* ifc:IfcRoot . \n " +
 //						"	} \n " +
-						"} \n "
-					);
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
-			setIri("ifcOwlUri", DrumbeatOntology.formatDrumbeatOntologyBaseUri("ifc2x3"));
-		}}.asQuery();
+						"} \n ")
+				.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.setIri("ifcOwlUri", DrumbeatOntology.formatDrumbeatOntologyBaseUri("ifc2x3"))
+				.asQuery();
 		
 		logger.debug(String.format("%s.%s() is running query\n%s", getClass().getName(), LoggerUtil.getMethodName(1), query));
 
@@ -108,44 +167,58 @@ public class DataSetObjectManager extends DrumbeatManager {
 	 * @param collectionId
 	 * @param dataSourceId
 	 * @param dataSetId
+	 * @param filterType
+	 * @param filterMode
 	 * @return List of statements <<dataSet>> ?predicate ?object
 	 * @throws NotFoundException if the dataSet is not found
 	 * @throws DrumbeatException 
 	 */
-	public Model getAllNonBlank(String collectionId, String dataSourceId, String dataSetId, String filterType)
+	public Model getAllNonBlank(String collectionId, String dataSourceId, String dataSetId, String filterType, FilterMode filterMode)
 		throws NotFoundException, DrumbeatException
 	{
-		Model dataModel = getDataModel(collectionId, dataSourceId, dataSetId);
-		
 		String filter = "";
 		if (!StringUtils.isEmptyOrNull(filterType)) {
 			filter +=
-				"		FILTER REGEX( ?type , ?typeFilter ) . \n";				
+				"	" + filterMode.formatFilter("type", "typeFilter");
+		}
+		
+		Model model = getTypeIndexModel(collectionId, dataSourceId, dataSetId);
+		QueryTemplate.Parameters sparql;
+		
+		if (model != null) {
+			sparql = QueryTemplate.get(
+					"CONSTRUCT { \n" +
+					"	?o rdf:type ?type \n" +
+					"} \n " +
+					"WHERE { \n " +
+					"	?o a ?type . \n " +
+					filter +
+					"} \n ")
+				.createParameters();
+		} else {
+			// data sets uploaded without the index
+			model = getDataModel(collectionId, dataSourceId, dataSetId);
+			sparql = QueryTemplate.get(
+					"CONSTRUCT { \n" +
+					"	?o rdf:type ?type \n" +
+					"} \n " +
+					"WHERE { \n " +
+					"	GRAPH ?dataSetUri { \n " +
+					"		?o a ?type . \n " +
+					"		FILTER ( !STRSTARTS( STR(?o) , ?blankObjectBaseUri ) ) \n" +
+					"	} \n " +
+					filter +
+					"} \n ")
+				.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+				.setLiteral("blankObjectBaseUri", formatBlankObjectResourceBaseUri(collectionId, dataSourceId, dataSetId));
 		}
 		
-		String command = 
-				"CONSTRUCT { \n" +
-				"	?o rdf:type ?type \n" +
-				"} \n " +
-				"WHERE { \n " +
-				"	GRAPH ?dataSetUri { \n " +
-				"		?o a ?type . \n " +
-				"		FILTER ( !regex (str(?o), \"^.*/" + NameFormatter.BLANK_NODE_PATH + "/.*$\" ) ) \n" +
-				filter +
-				"	} \n " +
-				"} \n ";
-
-		ParameterizedSparqlString sparql = new ParameterizedSparqlString();
-		sparql.setCommandText(command);
-		DrumbeatOntology.fillParameterizedSparqlString(sparql);
-		sparql.setIri("dataSetUri", formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
-		sparql.setIri("ifcOwlUri", DrumbeatOntology.formatDrumbeatOntologyBaseUri("ifc2x3"));
 		if (!StringUtils.isEmptyOrNull(filterType)) {
-			sparql.setLiteral("typeFilter", filterType);
+			sparql.setParam("typeFilter", filterMode.createParameter(filterType));
 		}
 		
 		Model resultModel =
-				createQueryExecution(sparql.asQuery(), dataModel)
+				createQueryExecution(sparql.asQuery(), model)
 					.execConstruct();
 		
 		if (resultModel.isEmpty()) {
@@ -154,6 +227,213 @@ public class DataSetObjectManager extends DrumbeatManager {
 		
 		return resultModel;
 	}
+	
+	
+	/**
+	 * Gets a page of the typed objects of a data set, ordered by object URI and type
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param dataSetId
+	 * @param after cursor of the previous page, or <code>null</code> to get the first page
+	 * @param limit maximum number of statements <<object>> rdf:type ?type
+	 * @return
+	 * @throws NotFoundException if the first page is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another data set
+	 * @throws DrumbeatException 
+	 */
+	public ObjectPage getAll(String collectionId, String dataSourceId, String dataSetId, ObjectCursor after, int limit)
+		throws NotFoundException, DrumbeatException
+	{
+		return getObjectPage(
+				collectionId,
+				dataSourceId,
+				dataSetId,
+				getDataModel(collectionId, dataSourceId, dataSetId),
+				"	GRAPH ?dataSetUri { \n" +
+				"		?o a ?type ; ifc:globalId_IfcRoot _:globalId . \n" +
+				"	} \n",
+				Collections.singletonMap("dataSetUri", NodeFactory.createURI(formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))),
+				null,
+				null,
+				after,
+				limit);
+	}
+	
+	/**
+	 * Gets a page of the typed non-blank objects of a data set, ordered by object URI and type
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param dataSetId
+	 * @param filterType
+	 * @param filterMode
+	 * @param after cursor of the previous page, or <code>null</code> to get the first page
+	 * @param limit maximum number of statements <<object>> rdf:type ?type
+	 * @return
+	 * @throws NotFoundException if the first page is empty
+	 * @throws IllegalArgumentException if the cursor belongs to another data set
+	 * @throws DrumbeatException 
+	 */
+	public ObjectPage getAllNonBlank(String collectionId, String dataSourceId, String dataSetId, String filterType, FilterMode filterMode, ObjectCursor after, int limit)
+		throws NotFoundException, DrumbeatException
+	{
+		Model typeIndexModel = getTypeIndexModel(collectionId, dataSourceId, dataSetId);
+		if (typeIndexModel != null) {
+			return getObjectPage(
+					collectionId,
+					dataSourceId,
+					dataSetId,
+					typeIndexModel,
+					"	?o a ?type . \n",
+					Collections.emptyMap(),
+					filterType,
+					filterMode,
+					after,
+					limit);
+		}
+		
+		// data sets uploaded without the index
+		Map<String, Node> parameters = new HashMap<>();
+		parameters.put("dataSetUri", NodeFactory.createURI(formatDataSetResourceUri(collectionId, dataSourceId, dataSetId)));
+		parameters.put("blankObjectBaseUri", NodeFactory.createLiteral(formatBlankObjectResourceBaseUri(collectionId, dataSourceId, dataSetId)));
+		return getObjectPage(
+				collectionId,
+				dataSourceId,
+				dataSetId,
+				getDataModel(collectionId, dataSourceId, dataSetId),
+				"	GRAPH ?dataSetUri { \n" +
+				"		?o a ?type . \n" +
+				"		FILTER ( !STRSTARTS( STR(?o) , ?blankObjectBaseUri ) ) \n" +
+				"	} \n",
+				parameters,
+				filterType,
+				filterMode,
+				after,
+				limit);
+	}
+	
+	private ObjectPage getObjectPage(
+			String collectionId,
+			String dataSourceId,
+			String dataSetId,
+			Model model,
+			String pattern,
+			Map<String, Node> parameters,
+			String filterType,
+			FilterMode filterMode,
+			ObjectCursor after,
+			int limit)
+		throws NotFoundException, DrumbeatException
+	{
+		if (after != null && !after.getDataSetId().equals(dataSetId)) {
+			throw ErrorFactory.createInvalidCursorException(after, formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
+		}
+		
+		Query query = createObjectPageQuery(
+				pattern,
+				parameters,
+				filterType,
+				filterMode,
+				after,
+				limit);
+		
+		logger.debug(String.format("%s.%s() is running query\n%s", getClass().getName(), LoggerUtil.getMethodName(1), query));
+		
+		ObjectPage page = readObjectPage(
+				createQueryExecution(query, model).execSelect(),
+				dataSetId,
+				limit);
+		
+		if (after == null && page.getModel().isEmpty()) {
+			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, "");
+		}
+		
+		return page;
+	}
+	
+	/**
+	 * Creates a query of one page of objects and types. The query selects one row more than the limit
+	 * to tell if there is a next page, and continues after the cursor by comparing the keys, so that
+	 * the store skips the previous pages using the order instead of reading them. <br />
+	 * The rows are ordered by the terms ?o and ?type themselves. SPARQL has no <code>&gt;</code> on IRIs,
+	 * so the filter compares their strings, which are in the same order as the IRIs
+	 * @param pattern graph pattern binding ?o and ?type
+	 * @param parameters values of the other variables of the pattern
+	 * @param filterType type filter, or <code>null</code>
+	 * @param filterMode
+	 * @param after
+	 * @param limit
+	 * @return
+	 */
+	static Query createObjectPageQuery(String pattern, Map<String, Node> parameters, String filterType, FilterMode filterMode, ObjectCursor after, int limit) {
+		String command = formatObjectPageCommand(pattern, !StringUtils.isEmptyOrNull(filterType) ? filterMode : null, after != null);
+		
+		QueryTemplate.Parameters sparql = QueryTemplate.get(command).createParameters();
+		parameters.forEach(sparql::setParam);
+		if (!StringUtils.isEmptyOrNull(filterType)) {
+			sparql.setParam("typeFilter", filterMode.createParameter(filterType));
+		}
+		if (after != null) {
+			sparql.setLiteral("afterObject", after.getObjectUri());
+			sparql.setIri("afterObjectUri", after.getObjectUri());
+			sparql.setLiteral("afterType", after.getType());
+		}
+		
+		Query query = sparql.asQuery();
+		query.setLimit(limit + 1);
+		return query;
+	}
+	
+	/**
+	 * Formats the command of {@link #createObjectPageQuery}
+	 * @param pattern graph pattern binding ?o and ?type
+	 * @param filterMode mode of the type filter ?typeFilter, or <code>null</code> if the types are not filtered
+	 * @param continued whether the page continues after the object ?afterObject (a string) or ?afterObjectUri
+	 * and the type ?afterType (a string)
+	 * @return
+	 */
+	static String formatObjectPageCommand(String pattern, FilterMode filterMode, boolean continued) {
+		return
+				"SELECT ?o ?type \n" +
+				"WHERE { \n" +
+				pattern +
+				(filterMode != null ?
+				"	" + filterMode.formatFilter("type", "typeFilter") : "") +
+				(continued ?
+				"	FILTER ( STR(?o) > ?afterObject || ( ?o = ?afterObjectUri && STR(?type) > ?afterType ) ) \n" : "") +
+				"} \n" +
+				"ORDER BY ?o ?type";
+	}
+	
+	/**
+	 * Reads the rows of a page query to a model of statements <<object>> rdf:type ?type 
+	 */
+	static ObjectPage readObjectPage(ResultSet resultSet, String dataSetId, int limit) {
+		Model resultModel = ModelFactory.createDefaultModel();
+		
+		int count = 0;
+		ObjectCursor nextCursor = null;
+		String lastObjectUri = null;
+		String lastType = null;
+		
+		while (resultSet.hasNext()) {
+			QuerySolution row = resultSet.next();
+			if (count == limit) {
+				nextCursor = new ObjectCursor(dataSetId, lastObjectUri, lastType);
+				break;
+			}
+			
+			Resource object = row.getResource("o");
+			RDFNode type = row.get("type");
+			resultModel.add(object, RDF.type, type);
+			
+			lastObjectUri = object.getURI();
+			// the cursor keeps the type as the filter of the next page compares it, i.e. STR(?type)
+			lastType = type.isLiteral() ? type.asLiteral().getLexicalForm() : type.isURIResource() ? type.asResource().getURI() : type.toString();
+			++count;
+		}
+		
+		return new ObjectPage(resultModel, nextCursor);
+	}
 		
 	
 	
@@ -175,11 +455,12 @@ public class DataSetObjectManager extends DrumbeatManager {
 			boolean excludeProperties,
 			boolean expandBlankObjects,
 			String filterProperties,
-			String filterObjectTypes)			
+			String filterObjectTypes,
+			FilterMode filterMode)			
 		throws NotFoundException, DrumbeatException
 	{
 		String objectUri = formatObjectResourceUri(collectionId, dataSourceId, objectId);
-		return getByUri(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes);		
+		return getByUri(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes, filterMode);		
 	}
 	
 	
@@ -203,12 +484,13 @@ public class DataSetObjectManager extends DrumbeatManager {
 			boolean excludeProperties,
 			boolean expandBlankObjects,
 			String filterProperties,
-			String filterObjectTypes)
+			String filterObjectTypes,
+			FilterMode filterMode)
 		throws NotFoundException, DrumbeatException
 	{
 		Model dataModel = getDataModel(collectionId, dataSourceId, dataSetId);
 		
-		Model resultModel = getByUri(dataModel, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes);
+		Model resultModel = getByUri(dataModel, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes, filterMode);
 		
 		if (resultModel.isEmpty()) {
 			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, objectUri);
@@ -226,6 +508,7 @@ public class DataSetObjectManager extends DrumbeatManager {
 	 * @param expandBlankObjects
 	 * @param filterProperties
 	 * @param filterObjectTypes
+	 * @param filterMode
 	 * @return
 	 * @throws DrumbeatException
 	 */
@@ -235,21 +518,20 @@ public class DataSetObjectManager extends DrumbeatManager {
 			boolean excludeProperties,
 			boolean expandBlankObjects,
 			String filterProperties,
-			String filterObjectTypes)
+			String filterObjectTypes,
+			FilterMode filterMode)
 		throws DrumbeatException
 	{
-		ParameterizedSparqlString sparql;
-		
 		String filter = "";
 		if (!StringUtils.isEmptyOrNull(filterProperties)) {
 			filter +=
-					"	FILTER REGEX( ?predicate , ?predicateFilter ) . \n";				
+					"	" + filterMode.formatFilter("predicate", "predicateFilter");				
 		}
 		
 		if (!StringUtils.isEmptyOrNull(filterObjectTypes)) {
 			filter +=
-					"	?objet a ?objectType . \n" +
-					"	FILTER REGEX( ?objectType , ?objectTypeFilter ) . \n";				
+					"	?object a ?objectType . \n" +
+					"	" + filterMode.formatFilter("objectType", "objectTypeFilter");				
 		}
 		
 		String command;
@@ -278,18 +560,15 @@ public class DataSetObjectManager extends DrumbeatManager {
 					"ORDER BY ?object";
 		}
 		
-		sparql = new ParameterizedSparqlString();
-		
-		sparql.setCommandText(command);
-		DrumbeatOntology.fillParameterizedSparqlString(sparql);
-		sparql.setIri("objectUri", objectUri);
+		QueryTemplate.Parameters sparql = QueryTemplate.get(command)
+				.setIri("objectUri", objectUri);
 
 		if (!StringUtils.isEmptyOrNull(filterProperties)) {
-			sparql.setLiteral("predicateFilter", filterProperties);			
+			sparql.setParam("predicateFilter", filterMode.createParameter(filterProperties));			
 		}
 		
 		if (!StringUtils.isEmptyOrNull(filterObjectTypes)) {
-			sparql.setLiteral("objectTypeFilter", filterObjectTypes);			
+			sparql.setParam("objectTypeFilter", filterMode.createParameter(filterObjectTypes));			
 		}
 		
 		return internalGetByUri(dataModel, objectUri, sparql, expandBlankObjects, null);
@@ -310,7 +589,7 @@ public class DataSetObjectManager extends DrumbeatManager {
 	public Model internalGetByUri(
 			Model dataModel,
 			String objectUri,
-			ParameterizedSparqlString sparql,
+			QueryTemplate.Parameters sparql,
 			boolean expandBlankObjects,
 			Set<String> blankObjectUris)
 		throws DrumbeatException
@@ -330,33 +609,104 @@ public class DataSetObjectManager extends DrumbeatManager {
 			if (blankObjectUris == null) {
 				blankObjectUris = new HashSet<>();
 			}
+			
+			expandBlankObjects(dataModel, sparql, resultModel, blankObjectUris);
+			
+		}
+		
+		logger.debug(String.format("%s() returning: %d", LoggerUtil.getMethodName(1), resultModel.size()));		
+		
+		return resultModel;
+		
+	}
+	
+	
+	/**
+	 * Adds attributes of blank objects referred to from the result model, one nesting level at a time.
+	 * All blank objects of a level are queried together by binding <code>?objectUri</code> in a VALUES block,
+	 * so the number of queries grows with the nesting depth rather than with the number of blank objects.
+	 * Expansion stops at the configured maximum depth or number of blank objects.
+	 * @param dataModel
+	 * @param sparql query with the <code>?objectUri</code> parameter
+	 * @param resultModel
+	 * @param blankObjectUris blank objects which have already been expanded
+	 */
+	private void expandBlankObjects(
+			Model dataModel,
+			QueryTemplate.Parameters sparql,
+			Model resultModel,
+			Set<String> blankObjectUris)
+	{
+		DrumbeatApplication application = DrumbeatApplication.getInstance();
+		int maxDepth = application.getBlankObjectExpansionMaxDepth();
+		int maxObjectCount = application.getBlankObjectExpansionMaxObjectCount();
+		int batchSize = application.getBlankObjectExpansionBatchSize();
+		
+		Query levelQuery = sparql.copy().clearParam("objectUri").asQuery();
+		Var objectUriVar = Var.alloc("objectUri");
 		
-			Set<String> newBlankObjectUris = new HashSet<>();
-			NodeIterator nodeIterator = resultModel.listObjects();
+		List<String> levelObjectUris = getNewBlankObjectUris(resultModel, blankObjectUris);
+		int depth = 0;
+		int queryCount = 0;
+		
+		while (!levelObjectUris.isEmpty()) {
 			
-			while (nodeIterator.hasNext()) {
-				RDFNode node = nodeIterator.nextNode();
-				if (node.isURIResource()) {
-					String newBlankObjectUri = node.asResource().getURI();
-					if (!blankObjectUris.contains(newBlankObjectUri) && NameFormatter.isBlankNode(newBlankObjectUri)) {
-						newBlankObjectUris.add(node.asResource().getURI());
-					}
+			int remainingObjectCount = maxObjectCount - blankObjectUris.size();
+			if (depth >= maxDepth || remainingObjectCount < levelObjectUris.size()) {
+				logger.warn(String.format(
+						"Blank object expansion truncated: depth=%d, expandedObjects=%d, pendingObjects=%d",
+						depth,
+						blankObjectUris.size(),
+						levelObjectUris.size()));
+				DrumbeatMetrics.getInstance().increment(METRIC_EXPANSION_TRUNCATED);
+				
+				if (depth >= maxDepth || remainingObjectCount <= 0) {
+					break;
 				}
+				levelObjectUris = levelObjectUris.subList(0, remainingObjectCount);
 			}
 			
-			blankObjectUris.addAll(newBlankObjectUris);
+			blankObjectUris.addAll(levelObjectUris);
 			
-			for (String newBlankObjectUri : newBlankObjectUris) {
-				Model newResultModel = internalGetByUri(dataModel, newBlankObjectUri, sparql, expandBlankObjects, blankObjectUris);
-				resultModel.add(newResultModel);
+			Model levelModel = ModelFactory.createDefaultModel();
+			for (int i = 0; i < levelObjectUris.size(); i += batchSize) {
+				List<Binding> bindings = new ArrayList<>();
+				for (String blankObjectUri : levelObjectUris.subList(i, Math.min(i + batchSize, levelObjectUris.size()))) {
+					bindings.add(BindingFactory.binding(objectUriVar, NodeFactory.createURI(blankObjectUri)));
+				}
+				
+				Query query = QueryTransformOps.shallowCopy(levelQuery);
+				query.setValuesDataBlock(Collections.singletonList(objectUriVar), bindings);
+				
+				levelModel.add(createQueryExecution(query, dataModel).execConstruct());
+				++queryCount;
 			}
 			
+			resultModel.add(levelModel);
+			levelObjectUris = getNewBlankObjectUris(levelModel, blankObjectUris);
+			++depth;
 		}
 		
-		logger.debug(String.format("%s() returning: %d", LoggerUtil.getMethodName(1), resultModel.size()));		
+		DrumbeatMetrics.getInstance().add(METRIC_EXPANSION_QUERIES, queryCount);
+		logger.debug(String.format("Expanded %d blank objects in %d levels with %d queries", blankObjectUris.size(), depth, queryCount));
+	}
+	
+	
+	private static List<String> getNewBlankObjectUris(Model model, Set<String> blankObjectUris) {
+		List<String> newBlankObjectUris = new ArrayList<>();
+		NodeIterator nodeIterator = model.listObjects();
 		
-		return resultModel;
+		while (nodeIterator.hasNext()) {
+			RDFNode node = nodeIterator.nextNode();
+			if (node.isURIResource()) {
+				String newBlankObjectUri = node.asResource().getURI();
+				if (!blankObjectUris.contains(newBlankObjectUri) && NameFormatter.isBlankNode(newBlankObjectUri)) {
+					newBlankObjectUris.add(newBlankObjectUri);
+				}
+			}
+		}
 		
+		return newBlankObjectUris;
 	}
 	
 	
@@ -376,16 +726,13 @@ public class DataSetObjectManager extends DrumbeatManager {
 	{
 		Model dataModel = getDataModel(collectionId, dataSourceId, dataSetId);
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"SELECT (?objectUri AS ?subject) (rdf:type AS ?predicate) (?type AS ?object) { \n" + 
 					"	?objectUri a ?type . \n" +
 					"} \n" + 
-					"ORDER BY ?subject ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("objectUri", formatObjectResourceUri(collectionId, dataSourceId, objectId));
-		}}.asQuery();
+					"ORDER BY ?subject ?predicate ?object")
+				.setIri("objectUri", formatObjectResourceUri(collectionId, dataSourceId, objectId))
+				.asQuery();
 		
 		logger.debug("getObjectType() is running query\n" + query);
 		
@@ -495,10 +842,45 @@ public class DataSetObjectManager extends DrumbeatManager {
 			String dataType,
 			String dataFormat,
 			boolean clearBefore,
+			boolean diffUpload,
 			boolean notifyRemote,
 			InputStream in,
 			boolean saveToFiles)
 		throws NotFoundException, IllegalArgumentException, Exception
+	{
+		return upload(collectionId, dataSourceId, dataSetId, dataType, dataFormat, clearBefore, diffUpload, notifyRemote, in, saveToFiles, new UploadProgress());
+	}
+	
+
+	/**
+	 * Imports data set from an input stream and reports the progress
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param dataSetId
+	 * @param dataType
+	 * @param dataFormat
+	 * @param clearBefore
+	 * @param diffUpload whether the content of the data set is replaced by applying only the difference
+	 * @param notifyRemote
+	 * @param in
+	 * @param saveToFiles
+	 * @param progress
+	 * @return
+	 * @throws NotFoundException
+	 */
+	public Model upload(
+			String collectionId,
+			String dataSourceId,
+			String dataSetId,
+			String dataType,
+			String dataFormat,
+			boolean clearBefore,
+			boolean diffUpload,
+			boolean notifyRemote,
+			InputStream in,
+			boolean saveToFiles,
+			UploadProgress progress)
+		throws NotFoundException, IllegalArgumentException, Exception
 	{
 		//
 		// Checking if dataSet exists
@@ -531,11 +913,23 @@ public class DataSetObjectManager extends DrumbeatManager {
 				dataType,
 				dataFormat,
 				clearBefore,
-				saveToFiles);		
+				saveToFiles);
+		options.setDiffUpload(diffUpload);
+		options.setProgress(progress);
+		
+		// the indexes of the old content must not be read while the data set is loaded
+		deleteTypeIndex(collectionId, dataSourceId, dataSetId);
+		removeFromObjectVersionIndex(collectionId, dataSourceId, dataSetId);
+		
 		File savedRdfFile = new DataSetUploadManager().upload(in, options);
+		UploadDelta delta = options.getDelta();
 		
 		Model targetModel = DrumbeatApplication.getInstance().getDataModel(graphUri);
 		
+		String typeIndexGraphUri = buildTypeIndex(collectionId, dataSourceId, dataSetId, targetModel, progress);
+		buildObjectVersionIndex(collectionId, dataSourceId, dataSetId, targetModel, progress);
+		
+		progress.setPhase(UploadPhase.UPDATING_METADATA);
 		
 		if (notifyRemote) {
 			notifyRemote(targetModel);
@@ -545,12 +939,75 @@ public class DataSetObjectManager extends DrumbeatManager {
 		// Update meta data model
 		//
 		String dataSetUri = formatDataSetResourceUri(collectionId, dataSourceId, dataSetId);
-		updateMetaModelAfterUploading(dataSetUri, graphUri, objectBaseUri, targetModel.size(), savedRdfFile);
+		updateMetaModelAfterUploading(dataSetUri, graphUri, typeIndexGraphUri, objectBaseUri, targetModel.size(), delta, savedRdfFile);
 		
 		return dataSetManager.getById(collectionId, dataSourceId, dataSetId);
 	}
 	
 	
+	/**
+	 * Deletes the type index of a data set and its lbdho:typeIndexGraphUri, so that the objects are listed
+	 * from the data graph until the index is built again
+	 */
+	private void deleteTypeIndex(String collectionId, String dataSourceId, String dataSetId) throws DrumbeatException {
+		new MetaDataUpdate(formatDataSetResourceUri(collectionId, dataSourceId, dataSetId))
+			.remove(LBDHO.typeIndexGraphUri)
+			.execute(getMetaDataModel());
+		invalidateMetaDataCache();
+		
+		try {
+			getJenaProvider().deleteModel(formatDataSetTypeIndexGraphUri(collectionId, dataSourceId, dataSetId));
+		} catch (JenaProviderException e) {
+			throw new DrumbeatException("Error deleting type index: " + e.getMessage(), e);
+		}
+	}
+	
+	
+	/**
+	 * Builds the type index of an uploaded data set, after {@link #deleteTypeIndex} has deleted the old one
+	 * @return URI of the index graph, or <code>null</code> if the index is disabled
+	 */
+	private String buildTypeIndex(String collectionId, String dataSourceId, String dataSetId, Model dataModel, UploadProgress progress) throws DrumbeatException {
+		if (!DrumbeatApplication.getInstance().isObjectTypeIndexEnabled()) {
+			return null;
+		}
+		
+		progress.setPhase(UploadPhase.INDEXING);
+		String typeIndexGraphUri = formatDataSetTypeIndexGraphUri(collectionId, dataSourceId, dataSetId);
+		Model typeIndexModel = DrumbeatApplication.getInstance().getDataModel(typeIndexGraphUri);
+		long size = ObjectTypeIndex.build(dataModel, typeIndexModel);
+		logger.info(String.format("Indexed object types of graph '%s': size=%d", formatDataSetGraphUri(collectionId, dataSourceId, dataSetId), size));
+		return typeIndexGraphUri;
+	}
+	
+	
+	/**
+	 * Removes the entries of a data set from the object version index of its data source, so that
+	 * the data set is looked up from its data until it is indexed again
+	 */
+	private void removeFromObjectVersionIndex(String collectionId, String dataSourceId, String dataSetId) throws DrumbeatException {
+		Model objectVersionIndexModel = DrumbeatApplication.getInstance().getDataModel(formatObjectVersionIndexGraphUri(collectionId, dataSourceId));
+		ObjectVersionIndex.remove(objectVersionIndexModel, formatDataSetResourceUri(collectionId, dataSourceId, dataSetId));
+	}
+	
+	
+	/**
+	 * Indexes the objects of an uploaded data set in the object version index of its data source,
+	 * after {@link #removeFromObjectVersionIndex} has removed its old entries
+	 */
+	private void buildObjectVersionIndex(String collectionId, String dataSourceId, String dataSetId, Model dataModel, UploadProgress progress) throws DrumbeatException {
+		if (!DrumbeatApplication.getInstance().isObjectVersionIndexEnabled()) {
+			return;
+		}
+		
+		progress.setPhase(UploadPhase.INDEXING);
+		String dataSetUri = formatDataSetResourceUri(collectionId, dataSourceId, dataSetId);
+		Model objectVersionIndexModel = DrumbeatApplication.getInstance().getDataModel(formatObjectVersionIndexGraphUri(collectionId, dataSourceId));
+		long count = ObjectVersionIndex.update(dataModel, objectVersionIndexModel, dataSetUri);
+		logger.info(String.format("Indexed objects of data set '%s': objects=%d", dataSetUri, count));
+	}
+	
+	
 	private void notifyRemote(Model modelWithLinks) throws DrumbeatException {
 		
 		DataSourceObjectManager dataSourceObjectManager = new DataSourceObjectManager(getMetaDataModel(), getJenaProvider());
@@ -603,129 +1060,29 @@ public class DataSetObjectManager extends DrumbeatManager {
 	}
 	
 
-	private void updateMetaModelAfterUploading(String dataSetUri, String graphUri, String graphBaseUri, long sizeInTriples, File savedRdfFile) {
+	private void updateMetaModelAfterUploading(String dataSetUri, String graphUri, String typeIndexGraphUri, String graphBaseUri, long sizeInTriples, UploadDelta delta, File savedRdfFile) throws DrumbeatException {
 		
-		Model metaDataModel = getMetaDataModel();
-
-		try {
+		MetaDataUpdate update = new MetaDataUpdate(dataSetUri)
+			.set(LBDHO.graphUri, graphUri)
+			.set(LBDHO.typeIndexGraphUri, typeIndexGraphUri)
+			.set(LBDHO.graphBaseUri, graphBaseUri)
+			.set(LBDHO.lastModified, Calendar.getInstance())
+			.set(LBDHO.sizeInTriples, sizeInTriples)
+			.set(LBDHO.cachedInRdfFile, savedRdfFile != null ? savedRdfFile.getName() : null);
 		
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.begin();
-			}		
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?dataSetUri lbdho:graphUri ?o } \n" +
-								"WHERE { ?dataSetUri lbdho:graphUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?dataSetUri lbdho:graphUri ?graphUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-						setLiteral("graphUri", metaDataModel.createLiteral(graphUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?dataSetUri lbdho:graphBaseUri ?o } \n" +
-								"WHERE { ?dataSetUri lbdho:graphBaseUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?dataSetUri lbdho:graphBaseUri ?graphBaseUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-						setLiteral("graphBaseUri", metaDataModel.createLiteral(graphBaseUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?dataSetUri lbdho:lastModified ?o } \n" +
-								"WHERE { ?dataSetUri lbdho:lastModified ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?dataSetUri lbdho:lastModified ?lastModified }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-						setLiteral("lastModified", Calendar.getInstance());
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?dataSetUri lbdho:sizeInTriples ?o } \n" +
-								"WHERE { ?dataSetUri lbdho:sizeInTriples ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?dataSetUri lbdho:sizeInTriples ?sizeInTriples }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-						setLiteral("sizeInTriples", sizeInTriples);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?dataSetUri lbdho:cachedInRdfFile ?o } \n" +
-								"WHERE { ?dataSetUri lbdho:cachedInRdfFile ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("dataSetUri", dataSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			if (savedRdfFile != null) {
-				UpdateAction.execute(
-						new ParameterizedSparqlString() {{
-							setCommandText(
-									"INSERT DATA { ?dataSetUri lbdho:cachedInRdfFile ?cachedInRdfFile }");
-							DrumbeatOntology.fillParameterizedSparqlString(this);
-							setIri("dataSetUri", dataSetUri);
-							setLiteral("cachedInRdfFile", savedRdfFile.getName());
-						}}.asUpdate(),
-						metaDataModel);
-			}
-			
-			
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.commit();
-			}
-			
-		} catch (Exception exception) {
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.abort();
-			}						
+		if (delta != null) {
+			update
+				.set(LBDHO.triplesInserted, delta.getTriplesInserted())
+				.set(LBDHO.triplesDeleted, delta.getTriplesDeleted());
+		} else {
+			update
+				.remove(LBDHO.triplesInserted)
+				.remove(LBDHO.triplesDeleted);
 		}
 		
+		update.execute(getMetaDataModel());
+		
+		invalidateMetaDataCache();
 	}
 		
 	
@@ -734,16 +1091,14 @@ public class DataSetObjectManager extends DrumbeatManager {
 		String linkSetUri = formatLinkSetGraphUri(collectionId, linkSourceId, linkSetId);		
 		
 		Query query =
-				new ParameterizedSparqlString() {{
-					setCommandText(
+				QueryTemplate.get(
 							"CONSTRUCT { \n" +
 									"	?linkSetUri lbdho:cachedInRdfFile ?cachedInRdfFile \n" +
 									"} WHERE { \n" + 
 									"	?linkSetUri lbdho:cachedInRdfFile ?cachedInRdfFile . \n" +
-									"} \n");							
-					DrumbeatOntology.fillParameterizedSparqlString(this);
-					setIri("linkSetUri", linkSetUri);
-				}}.asQuery();
+									"} \n")
+				.setIri("linkSetUri", linkSetUri)
+				.asQuery();
 		
 		Model result =
 				createQueryExecution(query, getMetaDataModel())
@@ -772,6 +1127,7 @@ public class DataSetObjectManager extends DrumbeatManager {
 				}}.asUpdate(),
 				getMetaDataModel());
 		
+		invalidateMetaDataCache();
 	}
 
 	
@@ -17,6 +17,7 @@ import org.apache.jena.vocabulary.RDF;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 
 public class DataSourceManager extends DrumbeatManager {
 	
@@ -36,22 +37,19 @@ public class DataSourceManager extends DrumbeatManager {
 	public Model getAll(String collectionId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?dataSourceUri rdf:type lbdho:DataSource \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource . \n" +
 					"} \n" + 
-					"ORDER BY ?dataSourceUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-		}}.asQuery();
+					"ORDER BY ?dataSourceUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.asQuery();
 		
 		Model resultModel = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (resultModel.isEmpty()) {
@@ -75,23 +73,20 @@ public class DataSourceManager extends DrumbeatManager {
 	public Model getById(String collectionId, String dataSourceId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?dataSourceUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.asQuery();
 		
 		Model resultModel = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (resultModel.isEmpty()) {
@@ -138,6 +133,8 @@ public class DataSourceManager extends DrumbeatManager {
 			.addLiteral(DrumbeatOntology.LBDHO.name, metaDataModel.createTypedLiteral(name))
 			.addProperty(DrumbeatOntology.LBDHO.inCollection, collectionResource);		
 		
+		invalidateMetaDataCache();
+		
 		return ModelFactory
 				.createDefaultModel()
 				.add(dataSourceResource, RDF.type, DrumbeatOntology.LBDHO.DataSource);
@@ -181,6 +178,8 @@ public class DataSourceManager extends DrumbeatManager {
 
 		UpdateAction.execute(updateRequest1, getMetaDataModel());
 		UpdateAction.execute(updateRequest2, getMetaDataModel());		
+		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -192,19 +191,17 @@ public class DataSourceManager extends DrumbeatManager {
 	 */
 	public boolean checkExists(String collectionId, String dataSourceId) {
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -218,19 +215,17 @@ public class DataSourceManager extends DrumbeatManager {
 	 * @return
 	 */
 	public boolean checkHasChildren(String collectionId, String dataSourceId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatDataSourceResourceUri(collectionId, dataSourceId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
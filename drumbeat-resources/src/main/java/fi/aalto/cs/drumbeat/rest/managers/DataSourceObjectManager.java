@@ -1,21 +1,39 @@
 package fi.aalto.cs.drumbeat.rest.managers;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.shared.NotFoundException;
+import org.apache.jena.sparql.engine.QueryExecutionBase;
 import org.apache.log4j.Logger;
 
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatVocabulary;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.EntityVersion;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
-
-import org.apache.commons.lang3.NotImplementedException;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
+import fi.aalto.cs.drumbeat.rest.common.ResponseCache;
 
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.string.StringUtils;
@@ -25,6 +43,8 @@ public class DataSourceObjectManager extends DrumbeatManager {
 	
 	private static Logger logger = Logger.getLogger(DataSourceObjectManager.class);
 	
+	public static final String METRIC_UNION_QUERIES = "objects.union.queries";
+	
 	public DataSourceObjectManager() throws DrumbeatException {
 	}
 	
@@ -84,74 +104,220 @@ public class DataSourceObjectManager extends DrumbeatManager {
 //	}
 	
 	
-	public Model getAllNonBlank(String collectionId, String dataSourceId, String filterType) throws DrumbeatException {
-		Model metaDataModel = getMetaDataModel();
-
-		DataSetManager dataSetManager = new DataSetManager(metaDataModel, getJenaProvider());
+	public Model getAllNonBlank(String collectionId, String dataSourceId, String filterType, FilterMode filterMode) throws DrumbeatException {
+		DataSetObjectManager dataSetObjectManager = new DataSetObjectManager(getMetaDataModel(), getJenaProvider());
 		
-		Resource dataSetResource = dataSetManager.getLastDataSetResource(collectionId, dataSourceId);
-		if (dataSetResource != null) {
-			dataSetResource = dataSetResource.inModel(metaDataModel);
-		} else {
-			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId);			
+		Model resultModel = readLastDataSet(
+				collectionId,
+				dataSourceId,
+				dataSetId -> {
+					try {
+						return dataSetObjectManager.getAllNonBlank(collectionId, dataSourceId, dataSetId, filterType, filterMode);
+					} catch (NotFoundException e) {
+						return ModelFactory.createDefaultModel();
+					}
+				},
+				Model::isEmpty,
+				DataSourceObjectManager::mergeTriples);
+		
+		if (resultModel == null) {
+			resultModel = ModelFactory.createDefaultModel();
 		}
 		
-		DataSetObjectManager dataSetObjectManager = new DataSetObjectManager(metaDataModel, getJenaProvider());
 		
-		Model resultModel;
-
-		for (;;) {
-			
-			String overwritingMethod = null;
-			String overwrittenDataSetUri = null;
-			
-			if (dataSetResource.hasProperty(DrumbeatOntology.LBDHO.overwritingMethod)) {
-				overwritingMethod = dataSetResource
-					.getProperty(DrumbeatOntology.LBDHO.overwritingMethod)
-					.getObject()
-					.asLiteral()
-					.getString();
-				
-				overwrittenDataSetUri = dataSetResource
-						.getProperty(DrumbeatOntology.LBDHO.overwrites)
-						.getObject()
-						.asLiteral()
-						.getString();
+		
+		return resultModel;
+	}	
+	
+	/**
+	 * Gets a page of the non-blank objects of the last data set, ordered by object URI and type. <br />
+	 * Pages are read from one data set, so the objects of a data set which overwrites triples
+	 * are listed without the objects of the data sets it overwrites
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param filterType
+	 * @param filterMode
+	 * @param after cursor of the previous page, or <code>null</code> to get the first page
+	 * @param limit
+	 * @return
+	 * @throws IllegalArgumentException if the cursor belongs to a data set of another data source
+	 * @throws DrumbeatException
+	 */
+	public ObjectPage getAllNonBlank(String collectionId, String dataSourceId, String filterType, FilterMode filterMode, ObjectCursor after, int limit) throws DrumbeatException {
+		DataSetObjectManager dataSetObjectManager = new DataSetObjectManager(getMetaDataModel(), getJenaProvider());
+		
+		if (after != null) {
+			// the next pages are read from the data set which the first page was read from
+			DataSetManager dataSetManager = new DataSetManager(getMetaDataModel(), getJenaProvider());
+			if (!dataSetManager.checkExists(collectionId, dataSourceId, after.getDataSetId())) {
+				throw ErrorFactory.createInvalidCursorException(after, NameFormatter.formatDataSourceResourceUri(collectionId, dataSourceId));
 			}
+			return dataSetObjectManager.getAllNonBlank(collectionId, dataSourceId, after.getDataSetId(), filterType, filterMode, after, limit);
+		}
+		
+		return readLastDataSet(
+				collectionId,
+				dataSourceId,
+				dataSetId -> {
+					try {
+						return dataSetObjectManager.getAllNonBlank(collectionId, dataSourceId, dataSetId, filterType, filterMode, null, limit);
+					} catch (NotFoundException e) {
+						return new ObjectPage(ModelFactory.createDefaultModel(), null);
+					}
+				},
+				page -> page.getModel().isEmpty(),
+				null);
+	}
+	
+	/**
+	 * Reads the last data set of a data source, and the data sets it overwrites as needed
+	 */
+	private <T> T readLastDataSet(String collectionId, String dataSourceId, DataSetReader<T> reader, Predicate<T> isEmpty, BinaryOperator<T> merge) throws DrumbeatException {
+		List<Resource> dataSetResources = getOverwriteChain(collectionId, dataSourceId);
+		if (dataSetResources.isEmpty()) {
+			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId);			
+		}
+		return readDataSets(dataSetResources, reader, isEmpty, merge, null);
+	}
+	
+	/**
+	 * Gets the last data set of a data source and the data sets it overwrites objects or triples of, newest first.
+	 * The chain ends at a data set which overwrites the whole graph of the previous one
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @return the data sets, or an empty list if the data source has no data sets
+	 */
+	List<Resource> getOverwriteChain(String collectionId, String dataSourceId) {
+		List<Resource> dataSetResources = new ArrayList<>();
+		
+		DataSetManager dataSetManager = new DataSetManager(getMetaDataModel(), getJenaProvider());
+		Resource dataSetResource = dataSetManager.getLastDataSetResource(collectionId, dataSourceId);
+		if (dataSetResource == null) {
+			return dataSetResources;
+		}
+		dataSetResource = dataSetResource.inModel(getCachedMetaDataModel());
+		
+		Set<Resource> visited = new HashSet<>();
+		while (dataSetResource != null && visited.add(dataSetResource)) {
+			dataSetResources.add(dataSetResource);
 			
-			if (StringUtils.isEmptyOrNull(overwritingMethod)) {
-				overwritingMethod = DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_GRAPH;
+			String overwritingMethod = getOverwritingMethod(dataSetResource);
+			if (!overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_OBJECTS) &&
+					!overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_TRIPLES)) {
+				break;
 			}
 			
-			String dataSetId = dataSetResource.getLocalName();
-			
-			try {
-				resultModel = dataSetObjectManager.getAllNonBlank(collectionId, dataSourceId, dataSetId, filterType);
-			} catch (NotFoundException e) {
-				resultModel = ModelFactory.createDefaultModel();
+			// lbdho:overwrites is stored as a resource
+			dataSetResource = dataSetResource.getPropertyResourceValue(DrumbeatOntology.LBDHO.overwrites);
+		}
+		
+		return dataSetResources;
+	}
+	
+	/**
+	 * Gets how a data set overwrites the data set before it
+	 * @param dataSetResource
+	 * @return the overwriting method, {@link DrumbeatVocabulary#OVERWRITING_METHOD_OVERWRITE_GRAPH} by default
+	 */
+	static String getOverwritingMethod(Resource dataSetResource) {
+		Statement statement = dataSetResource.getProperty(DrumbeatOntology.LBDHO.overwritingMethod);
+		if (statement == null || !statement.getObject().isLiteral() || StringUtils.isEmptyOrNull(statement.getString())) {
+			return DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_GRAPH;
+		}
+		return statement.getString();
+	}
+	
+	/**
+	 * Reads the data sets of an overwrite chain, newest first, until the result is complete:
+	 * a data set which overwrites objects is read only if nothing was read from the newer data sets,
+	 * and a data set which overwrites triples is merged with the data sets it overwrites
+	 * @param dataSetResources overwrite chain
+	 * @param reader
+	 * @param isEmpty
+	 * @param merge merges a result with the result of an older data set, or <code>null</code> to read triples like objects 
+	 * @param dataSetFilter tells which data sets can contain the data, or <code>null</code> to read all of them
+	 * @return the result, or <code>null</code> if no data set was read
+	 * @throws DrumbeatException
+	 */
+	static <T> T readDataSets(
+			List<Resource> dataSetResources,
+			DataSetReader<T> reader,
+			Predicate<T> isEmpty,
+			BinaryOperator<T> merge,
+			Predicate<String> dataSetFilter)
+		throws DrumbeatException
+	{
+		T result = null;
+		
+		for (Resource dataSetResource : dataSetResources) {
+			if (dataSetFilter == null || dataSetFilter.test(dataSetResource.getURI())) {
+				T dataSetResult = reader.read(dataSetResource.getLocalName());
+				if (result == null || isEmpty.test(result)) {
+					result = dataSetResult;
+				} else {
+					result = merge.apply(result, dataSetResult);
+				}
 			}
 			
-			if (overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_GRAPH)) {
+			if (result != null && !isEmpty.test(result) &&
+					(merge == null || !getOverwritingMethod(dataSetResource).equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_TRIPLES))) {
 				break;
-			} else if (overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_OBJECTS)) {
-				if (!resultModel.isEmpty()) {
-					break;
-				}
-			} else {
-				throw new NotImplementedException(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_TRIPLES);
 			}
-			
-			dataSetResource = metaDataModel.getResource(overwrittenDataSetUri);	
 		}
 		
-		if (resultModel == null) {
-			resultModel = ModelFactory.createDefaultModel();
+		return result;
+	}
+	
+	/**
+	 * Merges the statements of a data set with those of an older data set which it overwrites triples of:
+	 * the statements of the older data set are added unless the newer one has values of the same property of the same subject
+	 * @param newerModel is changed
+	 * @param olderModel
+	 * @return the newer model
+	 */
+	static Model mergeTriples(Model newerModel, Model olderModel) {
+		List<Statement> statements = new ArrayList<>();
+		StmtIterator it = olderModel.listStatements();
+		try {
+			while (it.hasNext()) {
+				Statement statement = it.next();
+				if (!newerModel.contains(statement.getSubject(), statement.getPredicate())) {
+					statements.add(statement);
+				}
+			}
+		} finally {
+			it.close();
+		}
+		return newerModel.add(statements);
+	}
+	
+	/**
+	 * Gets the data sets of an overwrite chain which contain an object from the object version index
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param objectUri
+	 * @param dataSetResources
+	 * @return the data set URIs, or <code>null</code> if the index is disabled or does not cover all of the data sets
+	 * @throws DrumbeatException
+	 */
+	private Predicate<String> getDataSetsContainingObject(String collectionId, String dataSourceId, String objectUri, List<Resource> dataSetResources) throws DrumbeatException {
+		if (!DrumbeatApplication.getInstance().isObjectVersionIndexEnabled() || dataSetResources.size() < 2) {
+			return null;
 		}
 		
+		List<String> dataSetUris = new ArrayList<>(dataSetResources.size());
+		for (Resource dataSetResource : dataSetResources) {
+			dataSetUris.add(dataSetResource.getURI());
+		}
 		
-		
-		return resultModel;
-	}	
+		Model objectVersionIndexModel = DrumbeatApplication.getInstance().getDataModel(NameFormatter.formatObjectVersionIndexGraphUri(collectionId, dataSourceId));
+		Set<String> containingDataSetUris = ObjectVersionIndex.getDataSetsContaining(objectVersionIndexModel, objectUri, dataSetUris);
+		return containingDataSetUris != null ? containingDataSetUris::contains : null;
+	}
+	
+	interface DataSetReader<T> {
+		T read(String dataSetId) throws DrumbeatException;
+	}
 	
 	
 	
@@ -189,11 +355,12 @@ public class DataSourceObjectManager extends DrumbeatManager {
 	 * @param expandBlankObjects 
 	 * @param filterObjectTypes 
 	 * @param filterProperties 
-	 * @return List of statements <<dataSet>> ?predicate ?object
+	 * @param filterMode 
+	 * @return statements of the object, which are incomplete if the links of a source were left out after the timeout
 	 * @throws NotFoundException if the dataSet is not found
 	 * @throws DrumbeatException 
 	 */
-	public Model getByUri(
+	public ObjectModel getByUri(
 			String collectionId,
 			String dataSourceId,
 			String dataSetId,
@@ -202,78 +369,71 @@ public class DataSourceObjectManager extends DrumbeatManager {
 			boolean excludeLinks,
 			boolean expandBlankObjects,
 			String filterProperties,
-			String filterObjectTypes)
+			String filterObjectTypes,
+			FilterMode filterMode)
 		throws NotFoundException, DrumbeatException
 	{
-		Model metaDataModel = getMetaDataModel();
-
-		DataSetManager dataSetManager = new DataSetManager(metaDataModel, getJenaProvider());
-		
-		boolean loadFromAllDataSets = (dataSetId == null);
-
-		Resource dataSetResource;
-		
-		if (loadFromAllDataSets) {		
-			dataSetResource = dataSetManager.getLastDataSetResource(collectionId, dataSourceId);
-			if (dataSetResource != null) {
-				dataSetResource = dataSetResource.inModel(metaDataModel);
-			} else {
-				throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, objectUri);			
+		if (dataSetId == null && !expandBlankObjects && DrumbeatApplication.getInstance().isObjectUnionQueryEnabled()) {
+			Model unionResultModel = getByUriFromUnion(collectionId, dataSourceId, objectUri, excludeProperties, excludeLinks, filterProperties, filterObjectTypes, filterMode);
+			if (unionResultModel != null) {
+				return new ObjectModel(unionResultModel, true);
 			}
-		} else {
-			String dataSetUri = NameFormatter.formatDataSetGraphUri(collectionId, dataSourceId, dataSetId);
-			dataSetResource = ModelFactory.createDefaultModel().createResource(dataSetUri) ;
 		}
 		
+		return getByUriFromDataSets(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, excludeLinks, expandBlankObjects, filterProperties, filterObjectTypes, filterMode);
+	}
+	
+	
+	/**
+	 * Gets an object by reading each data set of the data source, link source and back-link source separately,
+	 * see {@link #getByUri(String, String, String, String, boolean, boolean, boolean, String, String, FilterMode)}
+	 */
+	ObjectModel getByUriFromDataSets(
+			String collectionId,
+			String dataSourceId,
+			String dataSetId,
+			String objectUri,
+			boolean excludeProperties,
+			boolean excludeLinks,
+			boolean expandBlankObjects,
+			String filterProperties,
+			String filterObjectTypes,
+			FilterMode filterMode)
+		throws NotFoundException, DrumbeatException
+	{
+		Model metaDataModel = getMetaDataModel();
+		
 		DataSetObjectManager dataSetObjectManager = new DataSetObjectManager(metaDataModel, getJenaProvider());
 		
+		DataSetReader<Model> reader = readDataSetId -> {
+			try {
+				return dataSetObjectManager.getByUri(collectionId, dataSourceId, readDataSetId, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes, filterMode);
+			} catch (NotFoundException e) {
+				return ModelFactory.createDefaultModel();
+			}
+		};
+		
 		Model resultModel;
 		
-
-
-		for (;;) {
-			
-			String overwritingMethod = null;
-			String overwrittenDataSetUri = null;
-			
-			if (dataSetResource.hasProperty(DrumbeatOntology.LBDHO.overwritingMethod)) {
-				overwritingMethod = dataSetResource
-					.getProperty(DrumbeatOntology.LBDHO.overwritingMethod)
-					.getObject()
-					.asLiteral()
-					.getString();
-				
-				overwrittenDataSetUri = dataSetResource
-						.getProperty(DrumbeatOntology.LBDHO.overwrites)
-						.getObject()
-						.asLiteral()
-						.getString();
-			}
-			
-			if (StringUtils.isEmptyOrNull(overwritingMethod)) {
-				overwritingMethod = DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_GRAPH;
+		if (dataSetId == null) {
+			List<Resource> dataSetResources = getOverwriteChain(collectionId, dataSourceId);
+			if (dataSetResources.isEmpty()) {
+				throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, objectUri);			
 			}
 			
-			dataSetId = dataSetResource.getLocalName();
+			resultModel = readDataSets(
+					dataSetResources,
+					reader,
+					Model::isEmpty,
+					DataSourceObjectManager::mergeTriples,
+					getDataSetsContainingObject(collectionId, dataSourceId, objectUri, dataSetResources));
 			
-			try {
-				resultModel = dataSetObjectManager.getByUri(collectionId, dataSourceId, dataSetId, objectUri, excludeProperties, expandBlankObjects, filterProperties, filterObjectTypes);
-			} catch (NotFoundException e) {
+			if (resultModel == null) {
 				resultModel = ModelFactory.createDefaultModel();
 			}
-			
-			if (overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_GRAPH) || !loadFromAllDataSets) {
-				break;
-			} else if (overwritingMethod.equals(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_OBJECTS)) {
-				if (!resultModel.isEmpty()) {
-					break;
-				}
-			} else {
-				throw new NotImplementedException(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_TRIPLES);
-			}
-			
-			dataSetResource = metaDataModel.getResource(overwrittenDataSetUri);	
-		} // end for
+		} else {
+			resultModel = reader.read(dataSetId);
+		}
 		
 		logger.debug(String.format("%s: Model size (before linking): %d", LoggerUtil.getMethodName(0), resultModel.size()));		
 		
@@ -283,11 +443,14 @@ public class DataSourceObjectManager extends DrumbeatManager {
 		}
 		
 		
-		if (!excludeLinks) {		
-		
+		if (!excludeLinks) {
+			
 			//
-			// get data from link sources
+			// get data from link sources and the back-linking dataset in parallel
 			//
+			LinkQueryExecutor linkQueryExecutor = LinkQueryExecutor.getInstance();
+			LinkedHashMap<String, LinkQueryExecutor.LinkQuery> linkQueries = new LinkedHashMap<>();
+			
 			LinkSourceManager linkSourceManager = new LinkSourceManager(metaDataModel, getJenaProvider());
 			Model linkSources = linkSourceManager.getAllLinkSourcesOfDataSource(collectionId, dataSourceId);
 			
@@ -298,44 +461,227 @@ public class DataSourceObjectManager extends DrumbeatManager {
 				while (resIterator.hasNext()) {
 					Resource linkSourceResource = resIterator.next();
 					String linkSourceId = linkSourceResource.getLocalName();
-					try {
-						logger.debug("Getting links from link source: " + NameFormatter.formatDataSourceResourceUri(collectionId, linkSourceId));
-						Model newResultModel = getByUri(collectionId, linkSourceId, null, objectUri, false, true, expandBlankObjects, filterProperties, filterObjectTypes);
-						resultModel.add(newResultModel);
-					} catch (NotFoundException e) {					
-					}
+					String linkSourceUri = NameFormatter.formatDataSourceResourceUri(collectionId, linkSourceId);
+					linkQueries.put(linkSourceUri, () -> {
+						try {
+							logger.debug("Getting links from link source: " + linkSourceUri);
+							// parallel queries do not share the connection to the store, each runs in a model scope of its own
+							DataSourceObjectManager linkSourceObjectManager = linkQueryExecutor.isParallel() ? new DataSourceObjectManager() : this;
+							return linkSourceObjectManager.getByUri(collectionId, linkSourceId, null, objectUri, false, true, expandBlankObjects, filterProperties, filterObjectTypes, filterMode).getModel();
+						} catch (NotFoundException e) {
+							return null;
+						}
+					});
 				}
 				
 			} else {
 				logger.debug("No link source found for data source: " + NameFormatter.formatDataSourceResourceUri(collectionId, dataSourceId));				
 			}
 			
-			logger.debug(String.format("%s: Model size (after adding direct links): %d", LoggerUtil.getMethodName(0), resultModel.size()));
+			String backLinkSourceUri = NameFormatter.formatBackLinkSourceUri(collectionId, dataSourceId);
+			linkQueries.put(backLinkSourceUri, () -> {
+				Model backLinkSourceModel = DrumbeatApplication.getInstance().getDataModel(backLinkSourceUri);
+				if (backLinkSourceModel == null) {
+					return null;
+				}
+				try {
+					DataSetObjectManager backLinkObjectManager = linkQueryExecutor.isParallel() ? new DataSetObjectManager() : dataSetObjectManager;
+					return backLinkObjectManager.getByUri(backLinkSourceModel, objectUri, false, expandBlankObjects, filterProperties, filterObjectTypes, filterMode);
+				} catch (NotFoundException e) {
+					return null;
+				}
+			});
 			
+			LinkQueryExecutor.Results linkResults = linkQueryExecutor.invokeAll(linkQueries);
+			for (Model newResultModel : linkResults.getModels()) {
+				if (newResultModel != null) {
+					resultModel.add(newResultModel);
+				}
+			}
 			
-			//
-			// get data from back-linking dataset
-			//
-			String backLinkSourceUri = NameFormatter.formatBackLinkSourceUri(collectionId, dataSourceId);
-			Model backLinkSourceModel = DrumbeatApplication.getInstance().getDataModel(backLinkSourceUri);
+			logger.debug(String.format("%s: Model size (after adding links and back links): %d", LoggerUtil.getMethodName(0), resultModel.size()));
 			
-			if (backLinkSourceModel != null) {
-				try {
-					Model newResultModel = dataSetObjectManager.getByUri(backLinkSourceModel, objectUri, false, expandBlankObjects, filterProperties, filterObjectTypes);
-					if (newResultModel != null) {
-						resultModel.add(newResultModel);
+			return new ObjectModel(resultModel, linkResults.isComplete());
+		}
+		
+		
+		return new ObjectModel(resultModel, true);
+	}
+	
+	
+	/**
+	 * Gets an object and its links with one query over the named graphs of the last data set of the data source,
+	 * the last link sets of its link sources and its back links, instead of querying each graph separately.
+	 * The query names the graphs with FROM NAMED and is run by the store of the provider within the link timeout.
+	 * A provider running the query with a local ARQ engine, which ignores FROM NAMED, cannot do this,
+	 * so the graphs are then queried separately
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param objectUri
+	 * @param excludeProperties
+	 * @param excludeLinks
+	 * @param filterProperties
+	 * @param filterObjectTypes
+	 * @param filterMode
+	 * @return the object, or <code>null</code> if a data set of the data source or of a link source overwrites
+	 * objects or triples of older data sets, if the provider cannot query named graphs in the store
+	 * or if the query times out, in which case the graphs are read one by one
+	 * @throws NotFoundException if the object is not found in the data set
+	 * @throws DrumbeatException
+	 */
+	Model getByUriFromUnion(
+			String collectionId,
+			String dataSourceId,
+			String objectUri,
+			boolean excludeProperties,
+			boolean excludeLinks,
+			String filterProperties,
+			String filterObjectTypes,
+			FilterMode filterMode)
+		throws NotFoundException, DrumbeatException
+	{
+		List<Resource> dataSetResources = getOverwriteChain(collectionId, dataSourceId);
+		if (dataSetResources.isEmpty()) {
+			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, objectUri);
+		}
+		if (dataSetResources.size() > 1) {
+			return null;
+		}
+		
+		String dataGraphUri = NameFormatter.formatDataSetGraphUri(collectionId, dataSourceId, dataSetResources.get(0).getLocalName());
+		List<String> graphUris = new ArrayList<>();
+		graphUris.add(dataGraphUri);
+		
+		if (!excludeLinks) {
+			LinkSourceManager linkSourceManager = new LinkSourceManager(getMetaDataModel(), getJenaProvider());
+			ResIterator resIterator = linkSourceManager.getAllLinkSourcesOfDataSource(collectionId, dataSourceId).listSubjects();
+			try {
+				while (resIterator.hasNext()) {
+					String linkSourceId = resIterator.next().getLocalName();
+					List<Resource> linkSetResources = getOverwriteChain(collectionId, linkSourceId);
+					if (linkSetResources.size() > 1) {
+						return null;
+					}
+					if (!linkSetResources.isEmpty()) {
+						graphUris.add(NameFormatter.formatDataSetGraphUri(collectionId, linkSourceId, linkSetResources.get(0).getLocalName()));
 					}
-				} catch (NotFoundException e) {				
 				}
+			} finally {
+				resIterator.close();
 			}
 			
-			logger.debug(String.format("%s: Model size (after adding back links): %d", LoggerUtil.getMethodName(0), resultModel.size()));			
+			graphUris.add(NameFormatter.formatBackLinkSourceUri(collectionId, dataSourceId));
+		}
+		
+		QueryTemplate.Parameters sparql =
+				QueryTemplate.get(formatUnionCommand(excludeProperties, filterProperties, filterObjectTypes, filterMode))
+					.setIri("objectUri", objectUri)
+					.setIri("dataGraphUri", dataGraphUri);
+		
+		if (!StringUtils.isEmptyOrNull(filterProperties)) {
+			sparql.setParam("predicateFilter", filterMode.createParameter(filterProperties));
 		}
 		
+		if (!StringUtils.isEmptyOrNull(filterObjectTypes)) {
+			sparql.setParam("objectTypeFilter", filterMode.createParameter(filterObjectTypes));
+		}
+		
+		Query query = sparql.asQuery();
+		for (String graphUri : graphUris) {
+			query.addNamedGraphURI(graphUri);
+		}
 		
+		QueryExecution queryExecution = createQueryExecution(query, getMetaDataModel());
+		if (queryExecution instanceof QueryExecutionBase) {
+			// a local ARQ engine would query the default graph instead of the named graphs
+			queryExecution.close();
+			return null;
+		}
+		
+		logger.debug(String.format("%s() is running query over %d graphs\n%s", LoggerUtil.getMethodName(0), graphUris.size(), query));
+		DrumbeatMetrics.getInstance().increment(METRIC_UNION_QUERIES);
+		
+		long timeoutMillis = LinkQueryExecutor.getInstance().getTimeoutMillis();
+		queryExecution.setTimeout(timeoutMillis);
+		
+		Model resultModel;
+		try {
+			resultModel = readUnionResults(queryExecution.execSelect(), objectUri, dataGraphUri);
+		} catch (QueryCancelledException e) {
+			DrumbeatMetrics.getInstance().increment(LinkQueryExecutor.METRIC_TIMEOUTS);
+			logger.warn(String.format("Query over the graphs of <%s> cancelled after %d ms", objectUri, timeoutMillis));
+			return null;
+		} finally {
+			queryExecution.close();
+		}
+		
+		if (resultModel == null) {
+			throw ErrorFactory.createObjectNotFoundException(collectionId, dataSourceId, objectUri);
+		}
 		return resultModel;
 	}
 	
+	/**
+	 * Formats the query of the statements of an object in the named graphs of the data set and its links.
+	 * The query binds <code>?objectUri</code>, <code>?dataGraphUri</code> and the filter parameters
+	 * of {@link DataSetObjectManager#getByUri(Model, String, boolean, boolean, String, String, FilterMode)}
+	 * @param excludeProperties only the types of the object are read from the data set, but all statements of the links
+	 * @param filterProperties
+	 * @param filterObjectTypes
+	 * @param filterMode
+	 * @return
+	 */
+	static String formatUnionCommand(boolean excludeProperties, String filterProperties, String filterObjectTypes, FilterMode filterMode) {
+		String filter = "";
+		if (!StringUtils.isEmptyOrNull(filterProperties)) {
+			filter +=
+					"		" + filterMode.formatFilter("predicate", "predicateFilter");
+		}
+		
+		if (!StringUtils.isEmptyOrNull(filterObjectTypes)) {
+			filter +=
+					"		?object a ?objectType . \n" +
+					"		" + filterMode.formatFilter("objectType", "objectTypeFilter");
+		}
+		
+		return
+				"SELECT ?graph ?predicate ?object \n" +
+				"WHERE { \n" +
+				"	GRAPH ?graph { \n" +
+				"		?objectUri ?predicate ?object . \n" +
+				filter +
+				"	} \n" +
+				(excludeProperties ?
+				"	FILTER ( ?graph != ?dataGraphUri || ?predicate = rdf:type ) \n" : "") +
+				"}";
+	}
+	
+	/**
+	 * Reads the results of a union query to a model
+	 * @param resultSet rows of <code>?graph ?predicate ?object</code>
+	 * @param objectUri
+	 * @param dataGraphUri
+	 * @return the statements of the object, or <code>null</code> if the object has no statements in the data graph
+	 */
+	static Model readUnionResults(ResultSet resultSet, String objectUri, String dataGraphUri) {
+		Model resultModel = ModelFactory.createDefaultModel();
+		Resource objectResource = resultModel.createResource(objectUri);
+		boolean isFoundInDataGraph = false;
+		
+		while (resultSet.hasNext()) {
+			QuerySolution row = resultSet.next();
+			if (dataGraphUri.equals(row.getResource("graph").getURI())) {
+				isFoundInDataGraph = true;
+			}
+			resultModel.add(
+					objectResource,
+					resultModel.createProperty(row.getResource("predicate").getURI()),
+					row.get("object"));
+		}
+		
+		return isFoundInDataGraph ? resultModel : null;
+	}
+	
 	
 //	/**
 //	 * Gets type of a specified object 
@@ -448,6 +794,42 @@ public class DataSourceObjectManager extends DrumbeatManager {
 //	}
 	
 	
+	/**
+	 * Gets the version of the data returned by {@link #getByUri} or {@link #getAllNonBlank}: the data sets of
+	 * the data source and, if links are included, the link sets of its link sources and the back-links
+	 * @param collectionId
+	 * @param dataSourceId
+	 * @param includeLinks
+	 * @return
+	 */
+	public EntityVersion getVersion(String collectionId, String dataSourceId, boolean includeLinks) {
+		EntityVersion.Builder builder = new EntityVersion.Builder();
+		addDataSourceVersion(builder, NameFormatter.formatDataSourceResourceUri(collectionId, dataSourceId));
+		
+		if (includeLinks) {
+			LinkSourceManager linkSourceManager = new LinkSourceManager(getMetaDataModel(), getJenaProvider());
+			Model linkSources = linkSourceManager.getAllLinkSourcesOfDataSource(collectionId, dataSourceId);
+			
+			List<String> linkSourceUris = new ArrayList<>();
+			ResIterator resIterator = linkSources.listSubjects();
+			while (resIterator.hasNext()) {
+				linkSourceUris.add(resIterator.next().getURI());
+			}
+			Collections.sort(linkSourceUris);
+			
+			for (String linkSourceUri : linkSourceUris) {
+				addDataSourceVersion(builder, linkSourceUri);
+			}
+			
+			// back-links are not described by the metadata, they are versioned by the link creations in this server
+			ResponseCache responseCache = ResponseCache.getInstance();
+			builder.addToken(String.format("back-links %d %d", responseCache.getInvalidatedTime(), responseCache.getGeneration()));
+			builder.addLastModified(responseCache.getInvalidatedTime());
+		}
+		
+		return builder.build();
+	}
+	
 	public boolean onLinkCreated(String subjectUri, String predicateUri, String objectUri) throws DrumbeatException {
 		
 		Property inversePredicateUri = null;
@@ -473,6 +855,8 @@ public class DataSourceObjectManager extends DrumbeatManager {
 					inversePredicateUri,
 					targetModel.createResource(subjectUri));
 			
+			ResponseCache.getInstance().invalidate();
+			
 			return true;
 		}
 		
@@ -1,11 +1,18 @@
 package fi.aalto.cs.drumbeat.rest.managers;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.apache.jena.datatypes.xsd.XSDDateTime;
+import org.apache.jena.graph.compose.MultiUnion;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Literal;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
@@ -13,7 +20,9 @@ import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
 
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.EntityVersion;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 
@@ -43,6 +52,160 @@ public abstract class DrumbeatManager {
 		return getJenaProvider().createQueryExecution(query, model);
 	}
 	
+	/**
+	 * Gets the metadata for reading the collection, data source and data set hierarchy:
+	 * the snapshot of {@link MetaDataCache} if it is enabled, otherwise the metadata model itself.
+	 * The returned model must not be changed
+	 * @return
+	 */
+	protected Model getCachedMetaDataModel() {
+		MetaDataCache cache = MetaDataCache.getInstance();
+		if (!cache.isEnabled()) {
+			return metaDataModel;
+		}
+		return cache.getSnapshot(() ->
+				createQueryExecution(
+						QueryTemplate.get(
+								"CONSTRUCT { \n" +
+								"	?s ?p ?o \n" +
+								"} WHERE { \n" +
+								"	?s a ?type ; ?p ?o . \n" +
+								"	FILTER ( ?type IN ( lbdho:Collection, lbdho:DataSource, lbdho:LinkSource, lbdho:DataSet, lbdho:LinkSet ) ) \n" +
+								"}")
+							.asQuery(),
+						metaDataModel)
+					.execConstruct());
+	}
+	
+	/**
+	 * Creates an execution of a query over the collection, data source and data set hierarchy,
+	 * which is run on the cached metadata if the cache is enabled
+	 * @param query
+	 * @return
+	 */
+	protected QueryExecution createMetaDataQueryExecution(Query query) {
+		if (!MetaDataCache.getInstance().isEnabled()) {
+			return createQueryExecution(query, metaDataModel);
+		}
+		return QueryExecutionFactory.create(query, getCachedMetaDataModel());
+	}
+	
+	/**
+	 * Gets the model of a graph of the store
+	 * @param graphUri
+	 * @return
+	 * @throws DrumbeatException
+	 */
+	protected Model getDataModel(String graphUri) throws DrumbeatException {
+		return DrumbeatApplication.getInstance().getDataModel(graphUri);
+	}
+	
+	/**
+	 * Creates a dataset of graphs of the store for queries with GRAPH patterns. ARQ ignores
+	 * the FROM NAMED of a query run on a model, so the named graphs must be given as a dataset
+	 * @param graphUris
+	 * @return the dataset of the named graphs, whose default graph is their union
+	 * @throws DrumbeatException
+	 */
+	protected Dataset createDataset(Collection<String> graphUris) throws DrumbeatException {
+		MultiUnion unionGraph = new MultiUnion();
+		
+		Dataset dataset = DatasetFactory.create(ModelFactory.createModelForGraph(unionGraph));
+		for (String graphUri : graphUris) {
+			Model model = getDataModel(graphUri);
+			unionGraph.addGraph(model.getGraph());
+			dataset.addNamedModel(graphUri, model);
+		}
+		return dataset;
+	}
+	
+	/**
+	 * Invalidates the cached metadata after a change
+	 */
+	protected void invalidateMetaDataCache() {
+		MetaDataCache.getInstance().invalidate();
+	}
+	
+	/**
+	 * Gets the version of the collection, data source, data set, link source and link set metadata.
+	 * The version has no last modification time, as creating and deleting resources does not change any
+	 * @return
+	 */
+	public EntityVersion getMetaDataVersion() {
+		Query query = QueryTemplate.get(
+					"SELECT ?resourceUri ?lastModified ?sizeInTriples \n" +
+					"WHERE { \n" +
+					"	?resourceUri a ?type . \n" +
+					"	FILTER ( ?type IN ( lbdho:Collection, lbdho:DataSource, lbdho:LinkSource, lbdho:DataSet, lbdho:LinkSet ) ) \n" +
+					"	OPTIONAL { ?resourceUri lbdho:lastModified ?lastModified } \n" +
+					"	OPTIONAL { ?resourceUri lbdho:sizeInTriples ?sizeInTriples } \n" +
+					"} \n" +
+					"ORDER BY ?resourceUri")
+				.asQuery();
+		
+		EntityVersion.Builder builder = new EntityVersion.Builder();
+		addResourceVersions(builder, createMetaDataQueryExecution(query).execSelect());
+		return builder.buildWithoutLastModified();
+	}
+	
+	/**
+	 * Adds the versions of all data sets of a data source, or of all link sets of a link source
+	 * @param builder
+	 * @param dataSourceUri
+	 */
+	protected void addDataSourceVersion(EntityVersion.Builder builder, String dataSourceUri) {
+		Query query = QueryTemplate.get(
+					"SELECT ?resourceUri ?lastModified ?sizeInTriples \n" +
+					"WHERE { \n" +
+					"	?dataSourceUri lbdho:hasDataSet ?resourceUri . \n" +
+					"	OPTIONAL { ?resourceUri lbdho:lastModified ?lastModified } \n" +
+					"	OPTIONAL { ?resourceUri lbdho:sizeInTriples ?sizeInTriples } \n" +
+					"} \n" +
+					"ORDER BY ?resourceUri")
+				.setIri("dataSourceUri", dataSourceUri)
+				.asQuery();
+		
+		builder.addToken(dataSourceUri);
+		addResourceVersions(builder, createMetaDataQueryExecution(query).execSelect());
+	}
+	
+	/**
+	 * Adds the version of a data set or link set
+	 * @param builder
+	 * @param dataSetUri
+	 */
+	protected void addDataSetVersion(EntityVersion.Builder builder, String dataSetUri) {
+		Query query = QueryTemplate.get(
+					"SELECT ?resourceUri ?lastModified ?sizeInTriples \n" +
+					"WHERE { \n" +
+					"	?resourceUri a ?type . \n" +
+					"	OPTIONAL { ?resourceUri lbdho:lastModified ?lastModified } \n" +
+					"	OPTIONAL { ?resourceUri lbdho:sizeInTriples ?sizeInTriples } \n" +
+					"}")
+				.setIri("resourceUri", dataSetUri)
+				.asQuery();
+		
+		builder.addToken(dataSetUri);
+		addResourceVersions(builder, createMetaDataQueryExecution(query).execSelect());
+	}
+	
+	protected static void addResourceVersions(EntityVersion.Builder builder, ResultSet resultSet) {
+		while (resultSet.hasNext()) {
+			QuerySolution row = resultSet.next();
+			
+			Long lastModified = null;
+			Literal lastModifiedLiteral = row.getLiteral("lastModified");
+			if (lastModifiedLiteral != null && lastModifiedLiteral.getValue() instanceof XSDDateTime) {
+				lastModified = ((XSDDateTime)lastModifiedLiteral.getValue()).asCalendar().getTimeInMillis();
+			}
+			
+			Literal sizeLiteral = row.getLiteral("sizeInTriples");
+			Long sizeInTriples = sizeLiteral != null ? sizeLiteral.getLong() : null;
+			
+			builder.addResource(row.getResource("resourceUri").getURI(), lastModified, sizeInTriples);
+		}
+	}
+	
 	public Resource getCollectionResource(String collectionId) {
 		return metaDataModel.createResource(
 				NameFormatter.formatCollectionResourceUri(
@@ -149,6 +149,20 @@ public class ErrorFactory {
 						NameFormatter.formatLocalOntologyUri(ontologyId)));
 	}
 
+	public static NotFoundException createUploadJobNotFoundException(String jobId) {
+		return new NotFoundException(
+				String.format(
+						"Upload job not found: <%s>",
+						NameFormatter.formatUploadJobUri(jobId)));
+	}
+
+	public static NotFoundException createResumableUploadNotFoundException(String targetUri, String uploadId) {
+		return new NotFoundException(
+				String.format(
+						"Upload not found: <%s>",
+						NameFormatter.formatResumableUploadUri(targetUri, uploadId)));
+	}
+
 	public static IllegalArgumentException createInvalidOverwritingMethodException(String overwritingMethod) {
 		return new IllegalArgumentException(String.format("Invalid overwriting method: %s", overwritingMethod));
 	}
@@ -156,6 +170,14 @@ public class ErrorFactory {
 	public static IllegalArgumentException createInvalidLinkType(String linkType) {
 		return new IllegalArgumentException(String.format("Invalid link type: %s", linkType));
 	}
+
+	public static IllegalArgumentException createInvalidCursorException(ObjectCursor cursor, String dataSetUri) {
+		return new IllegalArgumentException(String.format("Cursor of data set '%s' does not continue a listing of <%s>", cursor.getDataSetId(), dataSetUri));
+	}
+
+	public static IllegalArgumentException createServiceCallNotAllowedException() {
+		return new IllegalArgumentException("SERVICE calls to other endpoints are not allowed");
+	}
 	
 	
 }
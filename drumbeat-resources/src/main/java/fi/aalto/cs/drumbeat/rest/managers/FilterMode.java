@@ -0,0 +1,73 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.shared.PrefixMapping;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+
+/**
+ * How the values of the <code>filterType</code>, <code>filterProperties</code> and <code>filterObjectTypes</code>
+ * parameters are matched with the types and predicates of objects. <br />
+ * EXACT and PREFIX compare IRIs, which are given in full or with the default prefixes (e.g. <code>ifc:IfcWall</code>),
+ * so that the store can look them up from its indexes. REGEX matches regular expressions with the IRIs,
+ * which requires converting and testing every binding, and is therefore used only on request.
+ */
+public enum FilterMode {
+
+	EXACT,
+	PREFIX,
+	REGEX;
+
+	private static final PrefixMapping DEFAULT_PREFIXES =
+			PrefixMapping.Factory.create()
+				.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes())
+				.lock();
+
+	/**
+	 * Formats a FILTER clause which matches a variable with the parameter bound by {@link #createParameter(String)}
+	 * @param variable name of the filtered variable
+	 * @param parameter name of the parameter
+	 * @return
+	 */
+	public String formatFilter(String variable, String parameter) {
+		switch (this) {
+		case EXACT:
+			return String.format("FILTER ( ?%s = ?%s ) . \n", variable, parameter);
+		case PREFIX:
+			return String.format("FILTER STRSTARTS( STR(?%s) , ?%s ) . \n", variable, parameter);
+		default:
+			return String.format("FILTER REGEX( STR(?%s) , ?%s ) . \n", variable, parameter);
+		}
+	}
+
+	/**
+	 * Creates the value of the parameter of the FILTER clause
+	 * @param value IRI, prefixed name, IRI prefix or regular expression
+	 * @return
+	 */
+	public Node createParameter(String value) {
+		switch (this) {
+		case EXACT:
+			return NodeFactory.createURI(DEFAULT_PREFIXES.expandPrefix(value.trim()));
+		case PREFIX:
+			return NodeFactory.createLiteral(DEFAULT_PREFIXES.expandPrefix(value.trim()));
+		default:
+			return NodeFactory.createLiteral(value);
+		}
+	}
+
+	/**
+	 * Parses the <code>filterMode</code> parameter
+	 * @param value <code>exact</code>, <code>prefix</code> or <code>regex</code>, or <code>null</code> for <code>exact</code>
+	 * @return
+	 * @throws IllegalArgumentException if the value is not a filter mode
+	 */
+	public static FilterMode parse(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return EXACT;
+		}
+		return valueOf(value.trim().toUpperCase());
+	}
+
+}
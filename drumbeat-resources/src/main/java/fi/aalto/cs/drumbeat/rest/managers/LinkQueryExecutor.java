@@ -0,0 +1,193 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.RequestContext;
+import fi.aalto.cs.drumbeat.rest.common.RequestModelScope;
+
+/**
+ * Runs the queries of the links of an object to its link sources and back-link source in parallel
+ * on a bounded thread pool, so that the latency of an object GET is that of the slowest source
+ * instead of the sum of all. <br />
+ * The links of a source which does not answer within the timeout are left out of the result,
+ * which is then marked incomplete.
+ * When the queue is full, the queries are run in the request thread.
+ */
+public class LinkQueryExecutor {
+
+	private static final Logger logger = Logger.getLogger(LinkQueryExecutor.class);
+
+	public static final String METRIC_TIMEOUTS = "objects.links.timeouts";
+
+	/**
+	 * Query of the links from one source
+	 */
+	public interface LinkQuery {
+		Model run() throws DrumbeatException;
+	}
+
+	/**
+	 * Results of the queries of one call of {@link LinkQueryExecutor#invokeAll(LinkedHashMap)}
+	 */
+	public static class Results {
+
+		private final List<Model> models;
+		private final boolean complete;
+
+		Results(List<Model> models, boolean complete) {
+			this.models = models;
+			this.complete = complete;
+		}
+
+		/**
+		 * Gets the results of the queries which completed in time, in the order of the queries
+		 */
+		public List<Model> getModels() {
+			return models;
+		}
+
+		/**
+		 * Checks if all queries completed in time
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+	}
+
+	private static LinkQueryExecutor instance;
+
+	public static synchronized LinkQueryExecutor getInstance() {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			instance = new LinkQueryExecutor(
+					application.getLinkQueryThreadCount(),
+					application.getLinkQueryQueueSize(),
+					application.getLinkQueryTimeoutMillis());
+		}
+		return instance;
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final long timeoutMillis;
+
+	/**
+	 * Creates an executor
+	 * @param threadCount number of threads, or 0 to run the queries one by one in the calling thread
+	 * @param queueSize
+	 * @param timeoutMillis
+	 */
+	public LinkQueryExecutor(int threadCount, int queueSize, long timeoutMillis) {
+		this.timeoutMillis = timeoutMillis;
+
+		if (threadCount <= 0) {
+			executor = null;
+			return;
+		}
+
+		logger.info(String.format("Starting link queries: threads=%d, queueSize=%d, timeout=%d ms", threadCount, queueSize, timeoutMillis));
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "drumbeat-links-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		executor = new ThreadPoolExecutor(
+				threadCount,
+				threadCount,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				threadFactory,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	public boolean isParallel() {
+		return executor != null;
+	}
+
+	/**
+	 * Gets the time to wait for the links of an object
+	 * @return
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
+	}
+
+	/**
+	 * Runs the queries and waits for their results until the timeout
+	 * @param queries queries by the names of their sources
+	 * @return results of the queries which completed in time
+	 * @throws DrumbeatException if a query fails
+	 */
+	public Results invokeAll(LinkedHashMap<String, LinkQuery> queries) throws DrumbeatException {
+		List<Model> results = new ArrayList<>(queries.size());
+
+		if (executor == null) {
+			for (LinkQuery query : queries.values()) {
+				results.add(query.run());
+			}
+			return new Results(results, true);
+		}
+
+		Map<String, Future<Model>> futures = new LinkedHashMap<>();
+		for (Map.Entry<String, LinkQuery> entry : queries.entrySet()) {
+			LinkQuery query = entry.getValue();
+			// each query gets models of its own, which are given back when it ends
+			futures.put(entry.getKey(), executor.submit(RequestContext.wrap(RequestModelScope.wrap(query::run))));
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		boolean complete = true;
+		try {
+			for (Map.Entry<String, Future<Model>> entry : futures.entrySet()) {
+				Future<Model> future = entry.getValue();
+				try {
+					results.add(future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+				} catch (TimeoutException e) {
+					future.cancel(true);
+					complete = false;
+					DrumbeatMetrics.getInstance().increment(METRIC_TIMEOUTS);
+					logger.warn(String.format("Links from <%s> left out after %d ms", entry.getKey(), timeoutMillis));
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof DrumbeatException) {
+						throw (DrumbeatException)cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException)cause;
+					}
+					throw new DrumbeatException("Error getting links from <" + entry.getKey() + ">: " + cause.getMessage(), cause);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DrumbeatException("Interrupted while getting links", e);
+		} finally {
+			for (Future<Model> future : futures.values()) {
+				future.cancel(true);
+			}
+		}
+
+		return new Results(results, complete);
+	}
+
+}
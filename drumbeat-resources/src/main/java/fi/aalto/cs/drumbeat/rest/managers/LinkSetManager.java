@@ -18,6 +18,7 @@ import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.string.StringUtils;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 
 public class LinkSetManager extends DrumbeatManager {
 	
@@ -40,8 +41,7 @@ public class LinkSetManager extends DrumbeatManager {
 	public Model getAll(String collectionId, String linkSourceId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?linkSetUri rdf:type lbdho:LinkSet \n" +
 					"} WHERE { \n" + 
@@ -49,15 +49,13 @@ public class LinkSetManager extends DrumbeatManager {
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri . \n" +
 					"	?linkSetUri a lbdho:LinkSet . \n" +
 					"} \n" + 
-					"ORDER BY ?linkSetUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId));
-		}}.asQuery();
+					"ORDER BY ?linkSetUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId))
+				.asQuery();
 		
 		Model result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (result.isEmpty()) {
@@ -81,8 +79,7 @@ public class LinkSetManager extends DrumbeatManager {
 	public Resource getLastLinkSetResource(String collectionId, String linkSourceId)
 //		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"SELECT \n" +
 					"	?linkSetUri \n" +
 					"WHERE { \n" + 
@@ -90,15 +87,13 @@ public class LinkSetManager extends DrumbeatManager {
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri ; lbdho:hasLastDataSet ?linkSetUri . \n" +
 					"	?linkSetUri a lbdho:LinkSet . \n" +
 					"} \n" + 
-					"ORDER BY ?linkSetUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId));
-		}}.asQuery();
+					"ORDER BY ?linkSetUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId))
+				.asQuery();
 		
 		ResultSet result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execSelect();
 		
 		if (!result.hasNext()) {
@@ -125,8 +120,7 @@ public class LinkSetManager extends DrumbeatManager {
 	public Model getById(String collectionId, String linkSourceId, String linkSetId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?linkSetUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
@@ -134,16 +128,14 @@ public class LinkSetManager extends DrumbeatManager {
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri . \n" +
 					"	?linkSetUri a lbdho:LinkSet ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId));
-			setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId))
+				.setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId))
+				.asQuery();
 		
 		Model result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (result.isEmpty()) {
@@ -219,6 +211,8 @@ public class LinkSetManager extends DrumbeatManager {
 			.addLiteral(DrumbeatOntology.LBDHO.name, name)
 			.addProperty(DrumbeatOntology.LBDHO.inDataSource, linkSourceResource);
 		
+		invalidateMetaDataCache();
+		
 		return ModelFactory
 				.createDefaultModel()
 				.add(linkSetResource, RDF.type, DrumbeatOntology.LBDHO.LinkSet);
@@ -258,6 +252,8 @@ public class LinkSetManager extends DrumbeatManager {
 
 		UpdateAction.execute(updateRequest1, getMetaDataModel());
 		UpdateAction.execute(updateRequest2, getMetaDataModel());		
+		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -270,20 +266,18 @@ public class LinkSetManager extends DrumbeatManager {
 	 */
 	public boolean checkExists(String collectionId, String linkSourceId, String linkSetId) {
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri . \n" +
 					"	?linkSetUri a lbdho:LinkSet . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId));
-			setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId));			
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId))
+				.setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId))
+				.asQuery();
 		
-		boolean result = createQueryExecution(query, getMetaDataModel())
+		boolean result = createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -297,21 +291,19 @@ public class LinkSetManager extends DrumbeatManager {
 	 * @return
 	 */
 	public boolean checkHasChildren(String collectionId, String linkSourceId, String linkSetId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri . \n" +
 					"	?linkSetUri a lbdho:LinkSet . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId));
-			setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId));			
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatDataSourceResourceUri(collectionId, linkSourceId))
+				.setIri("linkSetUri", formatDataSetResourceUri(collectionId, linkSourceId, linkSetId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -11,8 +11,12 @@ import org.apache.jena.update.UpdateAction;
 
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadManager;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadOptions;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadPhase;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadProgress;
 
 import static fi.aalto.cs.drumbeat.rest.common.NameFormatter.*;
 
@@ -63,8 +67,7 @@ public class LinkSetObjectManager extends DrumbeatManager {
 	{
 		Model dataModel = getDataModel(collectionId, linkSourceId, linkSetId);
 
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 						"CONSTRUCT { \n" +
 						"	?o rdf:type ?type \n" +
 						"} \n " +
@@ -77,13 +80,10 @@ public class LinkSetObjectManager extends DrumbeatManager {
 //						"	GRAPH ?ifcOwlUri { \n " +
 //						"   	?type rdfs:subClassOf* ifc:IfcRoot . \n " +
 //						"	} \n " +
-						"} \n "
-					);
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("linkSetUri", formatLinkSetResourceUri(collectionId, linkSourceId, linkSetId));
-			setIri("ifcOwlUri", DrumbeatOntology.formatDrumbeatOntologyBaseUri("ifc2x3"));
-		}}.asQuery();
+						"} \n ")
+				.setIri("linkSetUri", formatLinkSetResourceUri(collectionId, linkSourceId, linkSetId))
+				.setIri("ifcOwlUri", DrumbeatOntology.formatDrumbeatOntologyBaseUri("ifc2x3"))
+				.asQuery();
 		
 		Model resultModel = 
 				createQueryExecution(query, dataModel)
@@ -127,18 +127,15 @@ public class LinkSetObjectManager extends DrumbeatManager {
 	{
 		Model dataModel = getDataModel(collectionId, linkSourceId, linkSetId);
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?objectUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
 					"	?objectUri ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("objectUri", objectUri);
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("objectUri", objectUri)
+				.asQuery();
 		
 		Model resultModel = 
 				createQueryExecution(query, dataModel)
@@ -166,16 +163,13 @@ public class LinkSetObjectManager extends DrumbeatManager {
 	{
 		Model dataModel = getDataModel(collectionId, linkSourceId, linkSetId);
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"SELECT (?objectUri AS ?subject) (rdf:type AS ?predicate) (?type AS ?object) { \n" + 
 					"	?objectUri a ?type . \n" +
 					"} \n" + 
-					"ORDER BY ?subject ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("objectUri", formatObjectResourceUri(collectionId, linkSourceId, objectId));
-		}}.asQuery();
+					"ORDER BY ?subject ?predicate ?object")
+				.setIri("objectUri", formatObjectResourceUri(collectionId, linkSourceId, objectId))
+				.asQuery();
 		
 		Model resultModel = 
 				createQueryExecution(query, dataModel)
@@ -288,6 +282,23 @@ public class LinkSetObjectManager extends DrumbeatManager {
 			InputStream in,
 			boolean saveToFiles)
 		throws NotFoundException, IllegalArgumentException, Exception
+	{
+		return upload(collectionId, linkSourceId, linkSetId, dataType, dataFormat, clearBefore, notifyRemote, in, saveToFiles, new UploadProgress());
+	}
+	
+	
+	public Model upload(
+			String collectionId,
+			String linkSourceId,
+			String linkSetId,
+			String dataType,
+			String dataFormat,
+			boolean clearBefore,
+			boolean notifyRemote,
+			InputStream in,
+			boolean saveToFiles,
+			UploadProgress progress)
+		throws NotFoundException, IllegalArgumentException, Exception
 	{
 		//
 		// Checking if linkSet exists
@@ -318,10 +329,13 @@ public class LinkSetObjectManager extends DrumbeatManager {
 				dataType,
 				dataFormat,
 				clearBefore,
-				saveToFiles);		
+				saveToFiles);
+		options.setProgress(progress);
 		File savedRdfFile = new DataSetUploadManager().upload(in, options);
 		Model targetModel = DrumbeatApplication.getInstance().getDataModel(graphUri);
 		
+		progress.setPhase(UploadPhase.UPDATING_METADATA);
+		
 		if (notifyRemote) {
 			notifyRemote(targetModel);
 		}
@@ -534,129 +548,17 @@ public class LinkSetObjectManager extends DrumbeatManager {
 	
 	
 	
-	private void updateMetaModelAfterUploading(String linkSetUri, String graphUri, String graphBaseUri, long sizeInTriples, File savedRdfFile) {
+	private void updateMetaModelAfterUploading(String linkSetUri, String graphUri, String graphBaseUri, long sizeInTriples, File savedRdfFile) throws DrumbeatException {
 		
-		Model metaDataModel = getMetaDataModel();
-
-		try {
-		
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.begin();
-			}		
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?linkSetUri lbdho:graphUri ?o } \n" +
-								"WHERE { ?linkSetUri lbdho:graphUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?linkSetUri lbdho:graphUri ?graphUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-						setLiteral("graphUri", metaDataModel.createLiteral(graphUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?linkSetUri lbdho:graphBaseUri ?o } \n" +
-								"WHERE { ?linkSetUri lbdho:graphBaseUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?linkSetUri lbdho:graphBaseUri ?graphBaseUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-						setLiteral("graphBaseUri", metaDataModel.createLiteral(graphBaseUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?linkSetUri lbdho:lastModified ?o } \n" +
-								"WHERE { ?linkSetUri lbdho:lastModified ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?linkSetUri lbdho:lastModified ?lastModified }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-						setLiteral("lastModified", Calendar.getInstance());
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?linkSetUri lbdho:sizeInTriples ?o } \n" +
-								"WHERE { ?linkSetUri lbdho:sizeInTriples ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?linkSetUri lbdho:sizeInTriples ?sizeInTriples }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-						setLiteral("sizeInTriples", sizeInTriples);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?linkSetUri lbdho:cachedInRdfFile ?o } \n" +
-								"WHERE { ?linkSetUri lbdho:cachedInRdfFile ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("linkSetUri", linkSetUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			if (savedRdfFile != null) {
-				UpdateAction.execute(
-						new ParameterizedSparqlString() {{
-							setCommandText(
-									"INSERT DATA { ?linkSetUri lbdho:cachedInRdfFile ?cachedInRdfFile }");
-							DrumbeatOntology.fillParameterizedSparqlString(this);
-							setIri("linkSetUri", linkSetUri);
-							setLiteral("cachedInRdfFile", savedRdfFile.getName());
-						}}.asUpdate(),
-						metaDataModel);
-			}
-			
-			
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.commit();
-			}
-			
-		} catch (Exception exception) {
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.abort();
-			}						
-		}
+		new MetaDataUpdate(linkSetUri)
+			.set(LBDHO.graphUri, graphUri)
+			.set(LBDHO.graphBaseUri, graphBaseUri)
+			.set(LBDHO.lastModified, Calendar.getInstance())
+			.set(LBDHO.sizeInTriples, sizeInTriples)
+			.set(LBDHO.cachedInRdfFile, savedRdfFile != null ? savedRdfFile.getName() : null)
+			.execute(getMetaDataModel());
 		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -665,16 +567,14 @@ public class LinkSetObjectManager extends DrumbeatManager {
 		String linkSetUri = formatLinkSetGraphUri(collectionId, linkSourceId, linkSetId);		
 		
 		Query query =
-				new ParameterizedSparqlString() {{
-					setCommandText(
+				QueryTemplate.get(
 							"CONSTRUCT { \n" +
 									"	?linkSetUri lbdho:cachedInRdfFile ?cachedInRdfFile \n" +
 									"} WHERE { \n" + 
 									"	?linkSetUri lbdho:cachedInRdfFile ?cachedInRdfFile . \n" +
-									"} \n");							
-					DrumbeatOntology.fillParameterizedSparqlString(this);
-					setIri("linkSetUri", linkSetUri);
-				}}.asQuery();
+									"} \n")
+				.setIri("linkSetUri", linkSetUri)
+				.asQuery();
 		
 		Model result =
 				createQueryExecution(query, getMetaDataModel())
@@ -703,6 +603,7 @@ public class LinkSetObjectManager extends DrumbeatManager {
 				}}.asUpdate(),
 				getMetaDataModel());
 		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -18,6 +18,7 @@ import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
 import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 
 public class LinkSourceManager extends DrumbeatManager {
 	
@@ -37,22 +38,19 @@ public class LinkSourceManager extends DrumbeatManager {
 	public Model getAll(String collectionId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?linkSourceUri rdf:type lbdho:LinkSource \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource . \n" +
 					"} \n" + 
-					"ORDER BY ?linkSourceUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-		}}.asQuery();
+					"ORDER BY ?linkSourceUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.asQuery();
 		
 		Model resultModel = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (resultModel.isEmpty()) {
@@ -73,8 +71,7 @@ public class LinkSourceManager extends DrumbeatManager {
 	 */
 	public Model getAllLinkSourcesOfDataSource(String collectionId, String originalDataSetId)
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?linkSourceUri rdf:type lbdho:LinkSource \n" +
 					"} WHERE { \n" + 
@@ -82,15 +79,13 @@ public class LinkSourceManager extends DrumbeatManager {
 					"	?dataSourceUri a lbdho:DataSource ; lbdho:hasLinkSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource . \n" +
 					"} \n" + 
-					"ORDER BY ?linkSourceUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("dataSourceUri", formatLinkSourceResourceUri(collectionId, originalDataSetId));
-		}}.asQuery();
+					"ORDER BY ?linkSourceUri")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("dataSourceUri", formatLinkSourceResourceUri(collectionId, originalDataSetId))
+				.asQuery();
 		
 		Model resultModel = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		return resultModel;
@@ -106,23 +101,20 @@ public class LinkSourceManager extends DrumbeatManager {
 	public Model getById(String collectionId, String linkSourceId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?linkSourceUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId))
+				.asQuery();
 		
 		Model resultModel = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execConstruct();
 		
 		if (resultModel.isEmpty()) {
@@ -177,6 +169,8 @@ public class LinkSourceManager extends DrumbeatManager {
 			.addProperty(DrumbeatOntology.LBDHO.inCollection, collectionResource)
 			.addProperty(DrumbeatOntology.LBDHO.hasOriginalDataSource, originalDataSourceResource);		
 		
+		invalidateMetaDataCache();
+		
 		return ModelFactory
 				.createDefaultModel()
 				.add(linkSourceResource, RDF.type, DrumbeatOntology.LBDHO.LinkSource);
@@ -220,6 +214,8 @@ public class LinkSourceManager extends DrumbeatManager {
 
 		UpdateAction.execute(updateRequest1, getMetaDataModel());
 		UpdateAction.execute(updateRequest2, getMetaDataModel());		
+		
+		invalidateMetaDataCache();
 	}
 	
 	
@@ -231,19 +227,17 @@ public class LinkSourceManager extends DrumbeatManager {
 	 */
 	public boolean checkExists(String collectionId, String linkSourceId) {
 		
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
@@ -257,19 +251,17 @@ public class LinkSourceManager extends DrumbeatManager {
 	 * @return
 	 */
 	public boolean checkHasChildren(String collectionId, String linkSourceId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?linkSourceUri . \n" +
 					"	?linkSourceUri a lbdho:LinkSource ; lbdho:hasDataSet ?linkSetUri . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("collectionUri", formatCollectionResourceUri(collectionId));
-			setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId));
-		}}.asQuery();
+					"}")
+				.setIri("collectionUri", formatCollectionResourceUri(collectionId))
+				.setIri("linkSourceUri", formatLinkSourceResourceUri(collectionId, linkSourceId))
+				.asQuery();
 		
 		boolean result = 
-				createQueryExecution(query, getMetaDataModel())
+				createMetaDataQueryExecution(query)
 					.execAsk();
 		
 		return result;
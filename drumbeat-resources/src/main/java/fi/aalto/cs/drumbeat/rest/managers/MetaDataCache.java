@@ -0,0 +1,148 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+
+/**
+ * In-memory snapshot of the collection, data source, data set, link source and link set
+ * metadata, so that existence checks and overwriting chain walks do not query the store. <br />
+ * Reads of a valid snapshot are lock-free. Every change of the metadata made by the managers
+ * invalidates the snapshot by increasing the generation, and the next read loads a new snapshot.
+ * A snapshot loaded while the generation changed is never served as valid. Snapshots older than
+ * the maximum age are reloaded to pick up changes made to the store outside the API.
+ */
+public class MetaDataCache {
+
+	public static final String METRIC_HITS = "metadata.cache.hits";
+	public static final String METRIC_MISSES = "metadata.cache.misses";
+	public static final String METRIC_INVALIDATIONS = "metadata.cache.invalidations";
+
+	private static final Logger logger = Logger.getLogger(MetaDataCache.class);
+
+	private static MetaDataCache instance;
+
+	public static synchronized MetaDataCache getInstance() {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			instance = new MetaDataCache(
+					application.isMetaDataCacheEnabled(),
+					application.getMetaDataCacheMaxAgeSeconds() * 1000L);
+		}
+		return instance;
+	}
+
+	private final boolean enabled;
+	private final long maxAgeMillis;
+	private final AtomicLong generation = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final Object loadLock = new Object();
+	private volatile Snapshot snapshot;
+
+	/**
+	 * @param enabled
+	 * @param maxAgeMillis time after which a snapshot is reloaded
+	 */
+	public MetaDataCache(boolean enabled, long maxAgeMillis) {
+		this.enabled = enabled;
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the current snapshot, loading a new one if it has been invalidated or has expired
+	 * @param loader loads the metadata from the store
+	 * @return read-only snapshot model
+	 */
+	public Model getSnapshot(Supplier<Model> loader) {
+		Snapshot current = snapshot;
+		if (isValid(current)) {
+			hitCount.incrementAndGet();
+			DrumbeatMetrics.getInstance().increment(METRIC_HITS);
+			return current.model;
+		}
+
+		synchronized (loadLock) {
+			current = snapshot;
+			if (isValid(current)) {
+				hitCount.incrementAndGet();
+				DrumbeatMetrics.getInstance().increment(METRIC_HITS);
+				return current.model;
+			}
+
+			missCount.incrementAndGet();
+			DrumbeatMetrics.getInstance().increment(METRIC_MISSES);
+
+			long loadedGeneration = generation.get();
+			long startTime = System.currentTimeMillis();
+			Model model = loader.get();
+			snapshot = new Snapshot(loadedGeneration, startTime, model);
+
+			logger.debug(String.format("Loaded metadata snapshot: generation=%d, triples=%d, time=%d ms",
+					loadedGeneration,
+					model.size(),
+					System.currentTimeMillis() - startTime));
+			return model;
+		}
+	}
+
+	/**
+	 * Invalidates the current snapshot. Must be called after every change of the metadata
+	 */
+	public void invalidate() {
+		generation.incrementAndGet();
+		DrumbeatMetrics.getInstance().increment(METRIC_INVALIDATIONS);
+	}
+
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Gets the ratio of reads served from a valid snapshot
+	 * @return ratio between 0 and 1, or 0 if there have been no reads
+	 */
+	public double getHitRatio() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total > 0 ? (double)hits / total : 0;
+	}
+
+	private boolean isValid(Snapshot snapshot) {
+		return snapshot != null
+				&& snapshot.generation == generation.get()
+				&& System.currentTimeMillis() - snapshot.loadedTime < maxAgeMillis;
+	}
+
+	private static class Snapshot {
+
+		private final long generation;
+		private final long loadedTime;
+		private final Model model;
+
+		Snapshot(long generation, long loadedTime, Model model) {
+			this.generation = generation;
+			this.loadedTime = loadedTime;
+			this.model = model;
+		}
+
+	}
+
+}
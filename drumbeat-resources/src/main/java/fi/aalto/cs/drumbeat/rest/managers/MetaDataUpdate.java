@@ -0,0 +1,125 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.modify.request.UpdateModify;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementOptional;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.update.UpdateAction;
+import org.apache.jena.update.UpdateRequest;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+
+/**
+ * Replaces the values of properties of one resource in the metadata with a
+ * DELETE/INSERT WHERE update, executed in a transaction if the model supports them:
+ * <pre>
+ * DELETE { ?s p1 ?o1 . ?s p2 ?o2 } INSERT { ?s p1 v1 . ?s p2 v2 }
+ * WHERE { OPTIONAL { ?s p1 ?o1 } OPTIONAL { ?s p2 ?o2 } }
+ * </pre>
+ * The update is built from the syntax tree, so that it is not parsed per upload. It is evaluated by ARQ
+ * against the model, so the store still receives a find per property and the removed and added triples;
+ * the transaction, not the number of calls to the store, keeps the values consistent.
+ */
+public class MetaDataUpdate {
+
+	private final Node subject;
+	private final Map<Property, Node> values = new LinkedHashMap<>();
+
+	public MetaDataUpdate(String resourceUri) {
+		this.subject = NodeFactory.createURI(resourceUri);
+	}
+
+	/**
+	 * Sets the value of a property, or removes its values if the value is <code>null</code>
+	 * @param property
+	 * @param value
+	 * @return
+	 */
+	public MetaDataUpdate set(Property property, Node value) {
+		values.put(property, value);
+		return this;
+	}
+
+	public MetaDataUpdate set(Property property, String value) {
+		return set(property, value != null ? NodeFactory.createLiteral(value) : null);
+	}
+
+	public MetaDataUpdate set(Property property, long value) {
+		return set(property, NodeFactory.createLiteral(Long.toString(value), XSDDatatype.XSDinteger));
+	}
+
+	public MetaDataUpdate set(Property property, Calendar value) {
+		return set(property, ResourceFactory.createTypedLiteral(value).asNode());
+	}
+
+	public MetaDataUpdate remove(Property property) {
+		return set(property, (Node)null);
+	}
+
+	public UpdateRequest asUpdate() {
+		UpdateModify update = new UpdateModify();
+		ElementGroup where = new ElementGroup();
+
+		int index = 0;
+		for (Map.Entry<Property, Node> entry : values.entrySet()) {
+			Node predicate = entry.getKey().asNode();
+			Triple oldTriple = Triple.create(subject, predicate, Var.alloc("o" + index++));
+
+			update.getDeleteAcc().addTriple(oldTriple);
+
+			ElementTriplesBlock block = new ElementTriplesBlock();
+			block.addTriple(oldTriple);
+			where.addElement(new ElementOptional(block));
+
+			if (entry.getValue() != null) {
+				update.getInsertAcc().addTriple(Triple.create(subject, predicate, entry.getValue()));
+			}
+		}
+
+		update.setElement(where);
+		return new UpdateRequest(update);
+	}
+
+	/**
+	 * Executes the update
+	 * @param metaDataModel
+	 * @throws DrumbeatException if the update fails, in which case the transaction is aborted
+	 */
+	public void execute(Model metaDataModel) throws DrumbeatException {
+		UpdateRequest updateRequest = asUpdate();
+		boolean supportsTransactions = metaDataModel.supportsTransactions();
+
+		try {
+			if (supportsTransactions) {
+				metaDataModel.begin();
+			}
+
+			UpdateAction.execute(updateRequest, metaDataModel);
+
+			if (supportsTransactions) {
+				metaDataModel.commit();
+			}
+
+		} catch (RuntimeException exception) {
+			if (supportsTransactions) {
+				metaDataModel.abort();
+			}
+			throw new DrumbeatException(
+					String.format("Error updating metadata of <%s>: %s", subject.getURI(), exception.getMessage()),
+					exception);
+		}
+	}
+
+}
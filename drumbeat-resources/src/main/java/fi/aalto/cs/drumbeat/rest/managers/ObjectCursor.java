@@ -0,0 +1,66 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a listing of objects ordered by object URI and type: the last object of a page
+ * and the data set the listing is read from. <br />
+ * Clients get the cursor as an opaque string and pass it back to get the next page.
+ */
+public class ObjectCursor {
+
+	private static final String SEPARATOR = "\n";
+
+	private final String dataSetId;
+	private final String objectUri;
+	private final String type;
+
+	public ObjectCursor(String dataSetId, String objectUri, String type) {
+		this.dataSetId = dataSetId;
+		this.objectUri = objectUri;
+		this.type = type;
+	}
+
+	public String getDataSetId() {
+		return dataSetId;
+	}
+
+	public String getObjectUri() {
+		return objectUri;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Formats the cursor as an opaque URL-safe string
+	 * @return
+	 */
+	public String format() {
+		String value = dataSetId + SEPARATOR + objectUri + SEPARATOR + type;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Parses a cursor formatted by {@link #format()}
+	 * @param value
+	 * @return
+	 * @throws IllegalArgumentException if the value is not a valid cursor
+	 */
+	public static ObjectCursor parse(String value) {
+		String decoded = new String(Base64.getUrlDecoder().decode(value.trim()), StandardCharsets.UTF_8);
+		String[] parts = decoded.split(SEPARATOR, -1);
+		if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty()) {
+			throw new IllegalArgumentException("Invalid cursor: " + value);
+		}
+		return new ObjectCursor(parts[0], parts[1], parts[2]);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s <%s> <%s>", dataSetId, objectUri, type);
+	}
+
+}
@@ -0,0 +1,30 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Object read with its links, see {@link DataSourceObjectManager#getByUri}
+ */
+public class ObjectModel {
+
+	private final Model model;
+	private final boolean complete;
+
+	public ObjectModel(Model model, boolean complete) {
+		this.model = model;
+		this.complete = complete;
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Checks if the model contains the links of all sources
+	 * @return <code>false</code> if the links of a source were left out after the timeout
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+}
@@ -0,0 +1,30 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * Page of an object listing, see {@link ObjectCursor}
+ */
+public class ObjectPage {
+
+	private final Model model;
+	private final ObjectCursor nextCursor;
+
+	public ObjectPage(Model model, ObjectCursor nextCursor) {
+		this.model = model;
+		this.nextCursor = nextCursor;
+	}
+
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Gets the cursor of the next page
+	 * @return the cursor, or <code>null</code> if this is the last page
+	 */
+	public ObjectCursor getNextCursor() {
+		return nextCursor;
+	}
+
+}
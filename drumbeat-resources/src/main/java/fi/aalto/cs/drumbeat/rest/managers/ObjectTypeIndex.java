@@ -0,0 +1,68 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+
+/**
+ * Index of the statements <<object>> rdf:type ?type of the non-blank objects of a data set. <br />
+ * The index is a separate graph built when the data set is uploaded, so that listing and filtering
+ * objects by type does not need to tell blank objects from the others by their URIs.
+ */
+public class ObjectTypeIndex {
+
+	private static final int BATCH_SIZE = 10000;
+
+	private static final String BLANK_OBJECT_PATH = "/" + NameFormatter.BLANK_NODE_PATH + "/";
+
+	/**
+	 * Replaces the contents of the index with the types of the non-blank objects of the data model
+	 * @param dataModel
+	 * @param indexModel
+	 * @return number of statements in the index
+	 */
+	public static long build(Model dataModel, Model indexModel) {
+		indexModel.removeAll();
+
+		long count = 0;
+		List<Statement> batch = new ArrayList<>(BATCH_SIZE);
+		StmtIterator it = dataModel.listStatements(null, RDF.type, (Resource)null);
+		try {
+			while (it.hasNext()) {
+				Statement statement = it.next();
+				if (!isNonBlankObject(statement.getSubject())) {
+					continue;
+				}
+
+				batch.add(statement);
+				if (batch.size() == BATCH_SIZE) {
+					indexModel.add(batch);
+					count += batch.size();
+					batch.clear();
+				}
+			}
+		} finally {
+			it.close();
+		}
+
+		indexModel.add(batch);
+		return count + batch.size();
+	}
+
+	/**
+	 * Checks if the resource is an object which is listed, i.e. it has a URI outside of the blank object paths
+	 * @param resource
+	 * @return
+	 */
+	public static boolean isNonBlankObject(Resource resource) {
+		return resource.isURIResource() && !resource.getURI().contains(BLANK_OBJECT_PATH);
+	}
+
+}
@@ -0,0 +1,116 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.NodeIterator;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.vocabulary.RDF;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+
+/**
+ * Index of the data sets of a data source which contain each object:
+ * statements <<object>> lbdho:inDataSet <<dataSet>>, and <<dataSet>> rdf:type lbdho:DataSet for each indexed data set. <br />
+ * The index is a separate graph beside the metadata, updated when a data set is uploaded, so that the data set
+ * which has the latest version of an object is found with one lookup instead of querying each data set it overwrites.
+ */
+public class ObjectVersionIndex {
+
+	private static final int BATCH_SIZE = 10000;
+
+	/**
+	 * Replaces the entries of a data set with the non-blank objects of its data model
+	 * @param dataModel
+	 * @param indexModel
+	 * @param dataSetUri
+	 * @return number of objects in the data set
+	 */
+	public static long update(Model dataModel, Model indexModel, String dataSetUri) {
+		remove(indexModel, dataSetUri);
+
+		Resource dataSetResource = indexModel.createResource(dataSetUri);
+
+		long count = 0;
+		List<Statement> batch = new ArrayList<>(BATCH_SIZE);
+		ResIterator it = dataModel.listSubjects();
+		try {
+			while (it.hasNext()) {
+				Resource object = it.next();
+				if (!ObjectTypeIndex.isNonBlankObject(object)) {
+					continue;
+				}
+
+				batch.add(indexModel.createStatement(object, LBDHO.inDataSet, dataSetResource));
+				if (batch.size() == BATCH_SIZE) {
+					indexModel.add(batch);
+					count += batch.size();
+					batch.clear();
+				}
+			}
+		} finally {
+			it.close();
+		}
+		indexModel.add(batch);
+
+		// the data set is marked as indexed after all of its objects
+		indexModel.add(dataSetResource, RDF.type, LBDHO.DataSet);
+		return count + batch.size();
+	}
+
+	/**
+	 * Removes the entries of a data set, before its data graph is changed
+	 * @param indexModel
+	 * @param dataSetUri
+	 */
+	public static void remove(Model indexModel, String dataSetUri) {
+		Resource dataSetResource = indexModel.createResource(dataSetUri);
+		indexModel.remove(dataSetResource, RDF.type, LBDHO.DataSet);
+		indexModel.removeAll(null, LBDHO.inDataSet, dataSetResource);
+	}
+
+	/**
+	 * Gets which of the data sets contain an object
+	 * @param indexModel
+	 * @param objectUri
+	 * @param dataSetUris data sets to look up
+	 * @return the data sets which contain the object, or <code>null</code> if some of the data sets are not indexed
+	 */
+	public static Set<String> getDataSetsContaining(Model indexModel, String objectUri, Collection<String> dataSetUris) {
+		Set<String> indexedDataSetUris = new HashSet<>();
+		ResIterator dataSetIterator = indexModel.listSubjectsWithProperty(RDF.type, LBDHO.DataSet);
+		try {
+			while (dataSetIterator.hasNext()) {
+				indexedDataSetUris.add(dataSetIterator.next().getURI());
+			}
+		} finally {
+			dataSetIterator.close();
+		}
+
+		if (!indexedDataSetUris.containsAll(dataSetUris)) {
+			return null;
+		}
+
+		Set<String> containingDataSetUris = new HashSet<>();
+		NodeIterator objectIterator = indexModel.listObjectsOfProperty(indexModel.createResource(objectUri), LBDHO.inDataSet);
+		try {
+			while (objectIterator.hasNext()) {
+				RDFNode dataSet = objectIterator.next();
+				if (dataSet.isURIResource()) {
+					containingDataSetUris.add(dataSet.asResource().getURI());
+				}
+			}
+		} finally {
+			objectIterator.close();
+		}
+		return containingDataSetUris;
+	}
+
+}
@@ -23,8 +23,13 @@ import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
 import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.EntityVersion;
+import fi.aalto.cs.drumbeat.rest.common.QueryTemplate;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadManager;
 import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadOptions;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadPhase;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadProgress;
 
 public class OntologyManager extends DrumbeatManager {
 	
@@ -35,6 +40,31 @@ public class OntologyManager extends DrumbeatManager {
 		super(metaDataModel, jenaProvider);
 	}
 
+	/**
+	 * Gets the version of the ontology metadata
+	 * @return
+	 */
+	public EntityVersion getVersion()
+	{
+		Query query = QueryTemplate.get(
+					"SELECT ?resourceUri ?lastModified ?sizeInTriples \n" +
+					"WHERE { \n" + 
+					"	?resourceUri a lbdho:Ontology . \n" +
+					"	OPTIONAL { ?resourceUri lbdho:lastModified ?lastModified } \n" +
+					"	OPTIONAL { ?resourceUri lbdho:sizeInTriples ?sizeInTriples } \n" +
+					"} \n" + 
+					"ORDER BY ?resourceUri")
+				.asQuery();
+		
+		EntityVersion.Builder builder = new EntityVersion.Builder();
+		addResourceVersions(
+				builder,
+				createQueryExecution(query, getMetaDataModel())
+					.execSelect());
+		return builder.buildWithoutLastModified();
+	}
+	
+	
 	/**
 	 * Gets all ontologys that belong to the specified ontology
 	 * @return List of statements <<ontology>> rdf:type lbdho:Ontology
@@ -42,17 +72,14 @@ public class OntologyManager extends DrumbeatManager {
 	 */
 	public Model getAll()
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?ontologyUri rdf:type lbdho:Ontology \n" +
 					"} WHERE { \n" + 
 					"	?ontologyUri a lbdho:Ontology . \n" +
 					"} \n" + 
-					"ORDER BY ?ontologyUri");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-		}}.asQuery();
+					"ORDER BY ?ontologyUri")
+				.asQuery();
 	
 		Model result = 
 				createQueryExecution(query, getMetaDataModel())
@@ -71,18 +98,15 @@ public class OntologyManager extends DrumbeatManager {
 	public Model getById(String ontologyId)
 		throws NotFoundException
 	{
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"CONSTRUCT { \n" +
 					"	?ontologyUri ?predicate ?object \n" +
 					"} WHERE { \n" + 
 					"	?ontologyUri a lbdho:Ontology ; ?predicate ?object . \n" +
 					"} \n" + 
-					"ORDER BY ?predicate ?object");
-			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("ontologyUri", formatLocalOntologyUri(ontologyId));
-		}}.asQuery();
+					"ORDER BY ?predicate ?object")
+				.setIri("ontologyUri", formatLocalOntologyUri(ontologyId))
+				.asQuery();
 		
 		Model result =
 				createQueryExecution(query, getMetaDataModel())
@@ -156,14 +180,12 @@ public class OntologyManager extends DrumbeatManager {
 	 * @return true if the ontology exists
 	 */
 	public boolean checkExists(String ontologyId) {
-		Query query = new ParameterizedSparqlString() {{
-			setCommandText(
+		Query query = QueryTemplate.get(
 					"ASK { \n" + 
 					"	?ontologyUri a lbdho:Ontology . \n" + 
-					"}");			
-			DrumbeatOntology.fillParameterizedSparqlString(this);
-			setIri("ontologyUri", formatLocalOntologyUri(ontologyId));
-		}}.asQuery();
+					"}")
+				.setIri("ontologyUri", formatLocalOntologyUri(ontologyId))
+				.asQuery();
 		
 		boolean result = 
 				createQueryExecution(query, getMetaDataModel())
@@ -193,6 +215,20 @@ public class OntologyManager extends DrumbeatManager {
 			InputStream in,
 			boolean saveToFiles)
 		throws NotFoundException, IllegalArgumentException, Exception
+	{
+		return upload(ontologyId, dataType, dataFormat, clearBefore, in, saveToFiles, new UploadProgress());
+	}
+	
+	
+	public Model upload(
+			String ontologyId,
+			String dataType,
+			String dataFormat,
+			boolean clearBefore,
+			InputStream in,
+			boolean saveToFiles,
+			UploadProgress progress)
+		throws NotFoundException, IllegalArgumentException, Exception
 	{
 		//
 		// Format graphUri
@@ -216,10 +252,13 @@ public class OntologyManager extends DrumbeatManager {
 				dataType,
 				dataFormat,
 				clearBefore,
-				saveToFiles);		
+				saveToFiles);
+		options.setProgress(progress);
 		File savedRdfFile = new DataSetUploadManager().upload(in, options);
 		Model targetModel = DrumbeatApplication.getInstance().getDataModel(graphUri);
 		
+		progress.setPhase(UploadPhase.UPDATING_METADATA);
+		
 		//
 		// Update meta data model
 		//
@@ -229,128 +268,15 @@ public class OntologyManager extends DrumbeatManager {
 	}
 	
 	
-	private void updateMetaModelAfterUploading(String ontologyUri, String graphUri, String graphBaseUri, long sizeInTriples, File savedRdfFile) {
+	private void updateMetaModelAfterUploading(String ontologyUri, String graphUri, String graphBaseUri, long sizeInTriples, File savedRdfFile) throws DrumbeatException {
 		
-		Model metaDataModel = getMetaDataModel();
-
-		try {
-		
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.begin();
-			}		
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?ontologyUri lbdho:graphUri ?o } \n" +
-								"WHERE { ?ontologyUri lbdho:graphUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?ontologyUri lbdho:graphUri ?graphUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-						setLiteral("graphUri", metaDataModel.createLiteral(graphUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?ontologyUri lbdho:graphBaseUri ?o } \n" +
-								"WHERE { ?ontologyUri lbdho:graphBaseUri ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?ontologyUri lbdho:graphBaseUri ?graphBaseUri }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-						setLiteral("graphBaseUri", metaDataModel.createLiteral(graphBaseUri));
-					}}.asUpdate(),
-					metaDataModel);
-	
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?ontologyUri lbdho:lastModified ?o } \n" +
-								"WHERE { ?ontologyUri lbdho:lastModified ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?ontologyUri lbdho:lastModified ?lastModified }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-						setLiteral("lastModified", Calendar.getInstance());
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?ontologyUri lbdho:sizeInTriples ?o } \n" +
-								"WHERE { ?ontologyUri lbdho:sizeInTriples ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"INSERT DATA { ?ontologyUri lbdho:sizeInTriples ?sizeInTriples }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-						setLiteral("sizeInTriples", sizeInTriples);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			UpdateAction.execute(
-					new ParameterizedSparqlString() {{
-						setCommandText(
-								"DELETE { ?ontologyUri lbdho:cachedInRdfFile ?o } \n" +
-								"WHERE { ?ontologyUri lbdho:cachedInRdfFile ?o }");
-						DrumbeatOntology.fillParameterizedSparqlString(this);
-						setIri("ontologyUri", ontologyUri);
-					}}.asUpdate(),
-					metaDataModel);
-			
-			if (savedRdfFile != null) {
-				UpdateAction.execute(
-						new ParameterizedSparqlString() {{
-							setCommandText(
-									"INSERT DATA { ?ontologyUri lbdho:cachedInRdfFile ?cachedInRdfFile }");
-							DrumbeatOntology.fillParameterizedSparqlString(this);
-							setIri("ontologyUri", ontologyUri);
-							setLiteral("cachedInRdfFile", savedRdfFile.getName());
-						}}.asUpdate(),
-						metaDataModel);
-			}
-			
-			
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.commit();
-			}
-			
-		} catch (Exception exception) {
-			if (metaDataModel.supportsTransactions()) {
-				metaDataModel.abort();
-			}						
-		}
+		new MetaDataUpdate(ontologyUri)
+			.set(LBDHO.graphUri, graphUri)
+			.set(LBDHO.graphBaseUri, graphBaseUri)
+			.set(LBDHO.lastModified, Calendar.getInstance())
+			.set(LBDHO.sizeInTriples, sizeInTriples)
+			.set(LBDHO.cachedInRdfFile, savedRdfFile != null ? savedRdfFile.getName() : null)
+			.execute(getMetaDataModel());
 		
 	}
 	
@@ -360,16 +286,14 @@ public class OntologyManager extends DrumbeatManager {
 		String ontologyUri = formatLocalOntologyUri(ontologyId);		
 		
 		Query query =
-				new ParameterizedSparqlString() {{
-					setCommandText(
+				QueryTemplate.get(
 							"CONSTRUCT { \n" +
 									"	?ontologyUri lbdho:cachedInRdfFile ?cachedInRdfFile \n" +
 									"} WHERE { \n" + 
 									"	?ontologyUri lbdho:cachedInRdfFile ?cachedInRdfFile . \n" +
-									"} \n");							
-					DrumbeatOntology.fillParameterizedSparqlString(this);
-					setIri("ontologyUri", ontologyUri);
-				}}.asQuery();
+									"} \n")
+				.setIri("ontologyUri", ontologyUri)
+				.asQuery();
 		
 		Model result =
 				createQueryExecution(query, getMetaDataModel())
@@ -0,0 +1,304 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static fi.aalto.cs.drumbeat.rest.common.NameFormatter.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.NotFoundException;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.expr.ExprVisitorBase;
+import org.apache.jena.sparql.expr.ExprWalker;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementService;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+
+/**
+ * Runs read-only SPARQL queries of clients on the store, over all graphs or over the graphs of a collection,
+ * a data source or a data set. Queries calling other endpoints with SERVICE are rejected. <br />
+ * At most the configured number of queries run at the same time, so that analytic queries cannot take
+ * all connections of the store from the object resources. Each query is cancelled after the timeout
+ * and returns at most the configured number of rows.
+ */
+public class SparqlQueryManager extends DrumbeatManager {
+
+	private static final Logger logger = Logger.getLogger(SparqlQueryManager.class);
+
+	public static final String METRIC_QUERIES = "sparql.queries";
+	public static final String METRIC_REJECTED = "sparql.rejected";
+	public static final String METRIC_TIMEOUTS = "sparql.timeouts";
+
+	private static Semaphore sharedPermits;
+
+	private static synchronized Semaphore getPermits() {
+		if (sharedPermits == null) {
+			sharedPermits = new Semaphore(DrumbeatApplication.getInstance().getSparqlMaxConcurrentQueries());
+		}
+		return sharedPermits;
+	}
+
+	/**
+	 * Query holding one of the permits until it is closed
+	 */
+	public static class RunningQuery implements AutoCloseable {
+
+		private final QueryExecution execution;
+		private final Semaphore permits;
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		RunningQuery(QueryExecution execution, Semaphore permits) {
+			this.execution = execution;
+			this.permits = permits;
+		}
+
+		public QueryExecution getExecution() {
+			return execution;
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				try {
+					execution.close();
+				} finally {
+					permits.release();
+				}
+			}
+		}
+
+	}
+
+	private final Semaphore permits;
+
+	public SparqlQueryManager() throws DrumbeatException {
+		this.permits = getPermits();
+	}
+
+	public SparqlQueryManager(Model metaDataModel, JenaProvider jenaProvider) {
+		this(metaDataModel, jenaProvider, getPermits());
+	}
+
+	SparqlQueryManager(Model metaDataModel, JenaProvider jenaProvider, Semaphore permits) {
+		super(metaDataModel, jenaProvider);
+		this.permits = permits;
+	}
+
+	/**
+	 * Parses a query of a client, which can use the default prefixes and IRIs relative to the base URI
+	 * @param queryString
+	 * @return
+	 * @throws QueryParseException if the query is invalid, e.g. an update
+	 */
+	public static Query parseQuery(String queryString) {
+		ParameterizedSparqlString sparql = new ParameterizedSparqlString(queryString);
+		sparql.setBaseUri(DrumbeatApplication.getInstance().getBaseUri());
+		sparql.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+		return sparql.asQuery();
+	}
+
+	/**
+	 * Limits the number of rows of a query, keeping a smaller LIMIT of the query
+	 * @param query
+	 * @param maxRows maximum number of rows, or 0 for no limit
+	 */
+	public static void limitRows(Query query, long maxRows) {
+		if (maxRows > 0 && !query.isAskType() && (!query.hasLimit() || query.getLimit() > maxRows)) {
+			query.setLimit(maxRows);
+		}
+	}
+
+	/**
+	 * Checks if a query calls other endpoints with SERVICE, anywhere in its pattern,
+	 * including sub-queries and EXISTS expressions
+	 * @param query
+	 * @return
+	 */
+	public static boolean hasServiceCall(Query query) {
+		if (hasServiceCall(query.getQueryPattern())) {
+			return true;
+		}
+		for (Expr expr : query.getProject().getExprs().values()) {
+			if (hasServiceCall(expr)) {
+				return true;
+			}
+		}
+		if (query.hasHaving()) {
+			for (Expr expr : query.getHavingExprs()) {
+				if (hasServiceCall(expr)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasServiceCall(Element element) {
+		if (element == null) {
+			return false;
+		}
+
+		AtomicBoolean found = new AtomicBoolean();
+		ElementWalker.walk(element, new ElementVisitorBase() {
+			@Override
+			public void visit(ElementService el) {
+				found.set(true);
+			}
+
+			// the walker does not enter sub-queries and expressions
+			@Override
+			public void visit(ElementSubQuery el) {
+				if (hasServiceCall(el.getQuery())) {
+					found.set(true);
+				}
+			}
+
+			@Override
+			public void visit(ElementFilter el) {
+				if (hasServiceCall(el.getExpr())) {
+					found.set(true);
+				}
+			}
+
+			@Override
+			public void visit(ElementBind el) {
+				if (hasServiceCall(el.getExpr())) {
+					found.set(true);
+				}
+			}
+		});
+		return found.get();
+	}
+
+	private static boolean hasServiceCall(Expr expr) {
+		AtomicBoolean found = new AtomicBoolean();
+		ExprWalker.walk(new ExprVisitorBase() {
+			@Override
+			public void visit(ExprFunctionOp func) {
+				if (hasServiceCall(func.getElement())) {
+					found.set(true);
+				}
+			}
+		}, expr);
+		return found.get();
+	}
+
+	/**
+	 * Starts a query over all graphs, or over the graphs of a collection, a data source or a data set.
+	 * The graphs of a collection or a data source are the data sets of the overwrite chain of each data source
+	 * and link source, given as named graphs whose union is the default graph
+	 * @param query
+	 * @param collectionId the collection, or <code>null</code> to query all graphs
+	 * @param dataSourceId the data source or link source, or <code>null</code> to query the whole collection
+	 * @param dataSetId the data set, or <code>null</code> to query the whole data source
+	 * @return the running query, which must be closed after reading the results,
+	 * or <code>null</code> if the maximum number of queries are running
+	 * @throws NotFoundException if the collection, data source or data set is not found
+	 * @throws IllegalArgumentException if the query calls other endpoints with SERVICE
+	 * @throws DrumbeatException
+	 */
+	public RunningQuery start(Query query, String collectionId, String dataSourceId, String dataSetId)
+		throws NotFoundException, DrumbeatException
+	{
+		if (hasServiceCall(query)) {
+			throw ErrorFactory.createServiceCallNotAllowedException();
+		}
+
+		Model model = null;
+		Dataset dataset = null;
+		if (collectionId == null) {
+			model = getMetaDataModel();
+		} else if (dataSetId != null) {
+			if (!new DataSetManager(getMetaDataModel(), getJenaProvider()).checkExists(collectionId, dataSourceId, dataSetId)) {
+				throw ErrorFactory.createDataSetNotFoundException(collectionId, dataSourceId, dataSetId);
+			}
+			model = getDataModel(formatDataSetGraphUri(collectionId, dataSourceId, dataSetId));
+		} else {
+			dataset = createDataset(getGraphUris(collectionId, dataSourceId));
+		}
+
+		if (!permits.tryAcquire()) {
+			DrumbeatMetrics.getInstance().increment(METRIC_REJECTED);
+			return null;
+		}
+
+		try {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			limitRows(query, application.getSparqlMaxRows());
+
+			QueryExecution execution = model != null ?
+					createQueryExecution(query, model) :
+					QueryExecutionFactory.create(query, dataset);
+			execution.setTimeout(application.getSparqlTimeoutMillis());
+
+			DrumbeatMetrics.getInstance().increment(METRIC_QUERIES);
+			logger.debug("Running query \n" + query);
+			return new RunningQuery(execution, permits);
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Gets the graphs of the overwrite chains of a data source, or of all data sources and link sources of a collection
+	 */
+	private List<String> getGraphUris(String collectionId, String dataSourceId) {
+		Set<String> sourceIds = new LinkedHashSet<>();
+		if (dataSourceId != null) {
+			if (!new DataSourceManager(getMetaDataModel(), getJenaProvider()).checkExists(collectionId, dataSourceId) &&
+					!new LinkSourceManager(getMetaDataModel(), getJenaProvider()).checkExists(collectionId, dataSourceId)) {
+				throw ErrorFactory.createDataSourceNotFoundException(collectionId, dataSourceId);
+			}
+			sourceIds.add(dataSourceId);
+		} else {
+			addLocalNames(sourceIds, new DataSourceManager(getMetaDataModel(), getJenaProvider()).getAll(collectionId));
+			addLocalNames(sourceIds, new LinkSourceManager(getMetaDataModel(), getJenaProvider()).getAll(collectionId));
+		}
+
+		DataSourceObjectManager dataSourceObjectManager = new DataSourceObjectManager(getMetaDataModel(), getJenaProvider());
+		List<String> graphUris = new ArrayList<>();
+		for (String sourceId : sourceIds) {
+			for (Resource dataSetResource : dataSourceObjectManager.getOverwriteChain(collectionId, sourceId)) {
+				graphUris.add(formatDataSetGraphUri(collectionId, sourceId, dataSetResource.getLocalName()));
+			}
+		}
+		return graphUris;
+	}
+
+	private static void addLocalNames(Set<String> localNames, Model model) {
+		ResIterator it = model.listSubjects();
+		try {
+			while (it.hasNext()) {
+				localNames.add(it.next().getLocalName());
+			}
+		} finally {
+			it.close();
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+
+/**
+ * Stream whose content can be discarded when its producer fails.
+ *
+ * Parsers and exporters finish their stream even when they fail, so a sink which commits on
+ * {@link #finish()} would commit a truncated graph. Producers are therefore run by {@link #send(StreamRDF, Producer)},
+ * which finishes the stream only if the producer succeeds and aborts it otherwise.
+ */
+public interface AbortableStreamRDF extends StreamRDF {
+
+	/**
+	 * Sends triples to a stream
+	 */
+	interface Producer {
+		void send(StreamRDF stream) throws Exception;
+	}
+
+	/**
+	 * Ends the stream without finishing it: the triples which have not been committed yet are discarded.
+	 * Called instead of {@link #finish()}, possibly before {@link #start()}, and may be called more than once
+	 */
+	void abort();
+
+	/**
+	 * Runs a producer of triples. The stream is finished if the producer succeeds, and aborted if it fails
+	 * @param stream
+	 * @param producer
+	 * @throws Exception the failure of the producer
+	 */
+	static void send(StreamRDF stream, Producer producer) throws Exception {
+		StreamRDF producerStream = new StreamRDFWrapper(stream) {
+			@Override
+			public void finish() {
+			}
+		};
+
+		try {
+			producer.send(producerStream);
+		} catch (Throwable t) {
+			abort(stream);
+			throw t;
+		}
+		stream.finish();
+	}
+
+	/**
+	 * Aborts a stream if it supports aborting, otherwise leaves it unfinished
+	 * @param stream
+	 */
+	static void abort(StreamRDF stream) {
+		if (stream instanceof AbortableStreamRDF) {
+			((AbortableStreamRDF)stream).abort();
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.io.AWriter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * Stream that loads triples into a model in batches.
+ *
+ * Each batch is added in its own transaction if the model supports transactions.
+ * A failed batch is rolled back and retried with exponential backoff; when the retries are used up,
+ * the upload fails. When the stream is aborted, the batch not yet added is discarded.
+ *
+ * A loader given a work directory can also roll back the batches committed before: each batch is written
+ * to a journal file before it is added, and when the loading fails or is aborted, the journaled triples are
+ * deleted again. A loader which replaces the content of the model first saves the content to a file, so that
+ * it can be inserted again. Triples which were in the model before are not journaled, so they are kept.
+ * Without a work directory, batches committed before a failure stay in the model.
+ *
+ * Prefixes are added to the prefix mapping of the model, base URIs are ignored.
+ */
+public class BatchedModelLoader implements AbortableStreamRDF {
+
+	private static final Logger logger = Logger.getLogger(BatchedModelLoader.class);
+
+	private static final String JOURNAL_FILE_NAME = "loaded.nt";
+	private static final String CONTENT_FILE_NAME = "content.nt";
+
+	private final Model targetModel;
+	private final int batchSize;
+	private final int retryCount;
+	private final long retryDelayMillis;
+	private final boolean useTransactions;
+	private final File workDir;
+	private final boolean replace;
+
+	private List<Triple> batch;
+	private long tripleCount;
+	private int batchCount;
+	private long startTime;
+	private AWriter journal;
+	private boolean checkExisting;
+
+	/**
+	 * @param targetModel
+	 * @param batchSize number of triples added in one transaction
+	 * @param retryCount number of times a failed batch is retried
+	 * @param retryDelayMillis delay before the first retry, doubled for every next one
+	 */
+	public BatchedModelLoader(Model targetModel, int batchSize, int retryCount, long retryDelayMillis) {
+		this(targetModel, batchSize, retryCount, retryDelayMillis, null, false);
+	}
+
+	/**
+	 * @param targetModel
+	 * @param batchSize number of triples added in one transaction
+	 * @param retryCount number of times a failed batch is retried
+	 * @param retryDelayMillis delay before the first retry, doubled for every next one
+	 * @param workDir directory for the journal of the loaded triples, deleted when finished,
+	 * or <code>null</code> if the committed batches are not rolled back
+	 * @param replace whether the content of the model is removed when the loading starts, and restored if it fails
+	 */
+	public BatchedModelLoader(Model targetModel, int batchSize, int retryCount, long retryDelayMillis, File workDir, boolean replace) {
+		if (replace && workDir == null) {
+			throw new IllegalArgumentException("Replacing the content of the model requires a work directory");
+		}
+		this.targetModel = targetModel;
+		this.batchSize = batchSize;
+		this.retryCount = retryCount;
+		this.retryDelayMillis = retryDelayMillis;
+		this.useTransactions = targetModel.supportsTransactions();
+		this.workDir = workDir;
+		this.replace = replace;
+	}
+
+	@Override
+	public void start() {
+		batch = new ArrayList<>(batchSize);
+		tripleCount = 0;
+		batchCount = 0;
+		startTime = System.nanoTime();
+
+		if (workDir != null) {
+			workDir.mkdirs();
+			if (replace) {
+				saveContent();
+				checkExisting = false;
+			} else {
+				// triples which are already in the model must not be deleted on rollback
+				checkExisting = !targetModel.isEmpty();
+			}
+			journal = TripleFiles.open(new File(workDir, JOURNAL_FILE_NAME));
+		}
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		batch.add(triple);
+		if (batch.size() == batchSize) {
+			flush();
+		}
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	@Override
+	public void base(String base) {
+	}
+
+	@Override
+	public void prefix(String prefix, String iri) {
+		targetModel.setNsPrefix(prefix, iri);
+	}
+
+	@Override
+	public void finish() {
+		if (!batch.isEmpty()) {
+			try {
+				flush();
+			} catch (RuntimeException | Error e) {
+				rollBack(e);
+				throw e;
+			}
+		}
+		closeJournal();
+		if (workDir != null) {
+			FileUtils.deleteQuietly(workDir);
+		}
+
+		long elapsed = System.nanoTime() - startTime;
+		logger.info(String.format("Loaded %d triples in %d batches (%d ms, %.0f triples/s, transactions=%s)",
+				tripleCount,
+				batchCount,
+				elapsed / 1000000,
+				elapsed > 0 ? tripleCount * 1e9 / elapsed : 0.0,
+				useTransactions));
+	}
+
+	@Override
+	public void abort() {
+		if (batch != null && !batch.isEmpty()) {
+			logger.info(String.format("Loading aborted, discarded %d triples, %d triples in %d batches were loaded before",
+					batch.size(),
+					tripleCount,
+					batchCount));
+		}
+		batch = new ArrayList<>(batchSize);
+		rollBack(null);
+	}
+
+	public long getTripleCount() {
+		return tripleCount;
+	}
+
+	private void flush() {
+		long batchStartTime = System.nanoTime();
+
+		if (journal != null) {
+			// journaled before it is added, so that a batch which is partly added when it fails is rolled back too
+			Graph graph = targetModel.getGraph();
+			for (Triple triple : batch) {
+				if (!checkExisting || !graph.contains(triple)) {
+					TripleFiles.write(journal, triple);
+				}
+			}
+		}
+
+		for (int attempt = 0; ; ++attempt) {
+			try {
+				addBatch();
+				break;
+			} catch (JenaException e) {
+				if (attempt >= retryCount) {
+					logger.error(String.format("Loading batch %d failed after %d attempts", batchCount + 1, attempt + 1), e);
+					throw e;
+				}
+
+				long delay = retryDelayMillis << attempt;
+				logger.warn(String.format("Loading batch %d failed, retrying in %d ms: %s", batchCount + 1, delay, e.getMessage()));
+				sleep(delay);
+			}
+		}
+
+		tripleCount += batch.size();
+		++batchCount;
+
+		if (logger.isDebugEnabled()) {
+			long elapsed = System.nanoTime() - batchStartTime;
+			logger.debug(String.format("Loaded batch %d: %d triples (%d ms), %d triples in total",
+					batchCount, batch.size(), elapsed / 1000000, tripleCount));
+		}
+
+		batch = new ArrayList<>(batchSize);
+	}
+
+	private void addBatch() {
+		if (!useTransactions) {
+			apply(targetModel.getGraph(), batch);
+			return;
+		}
+
+		targetModel.begin();
+		try {
+			apply(targetModel.getGraph(), batch);
+			targetModel.commit();
+		} catch (RuntimeException | Error e) {
+			abortTransaction();
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies a batch of triples to the graph, by default adds them
+	 * @param graph
+	 * @param triples
+	 */
+	protected void apply(Graph graph, List<Triple> triples) {
+		GraphUtil.add(graph, triples);
+	}
+
+	/**
+	 * Writes the content of the model to a file and removes it from the model
+	 */
+	private void saveContent() {
+		AWriter out = TripleFiles.open(new File(workDir, CONTENT_FILE_NAME));
+		ExtendedIterator<Triple> it = targetModel.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				TripleFiles.write(out, it.next());
+			}
+		} finally {
+			it.close();
+			out.close();
+		}
+
+		if (!useTransactions) {
+			targetModel.removeAll();
+			return;
+		}
+
+		targetModel.begin();
+		try {
+			targetModel.removeAll();
+			targetModel.commit();
+		} catch (RuntimeException | Error e) {
+			abortTransaction();
+			throw e;
+		}
+	}
+
+	/**
+	 * Deletes the journaled triples and inserts the saved content again, if any. Deleting and inserting
+	 * are both idempotent, so the triples of a batch which was not added do no harm
+	 * @param failure the failure of the loading, or <code>null</code> if the loading is aborted
+	 */
+	private void rollBack(Throwable failure) {
+		if (journal == null) {
+			return;
+		}
+		closeJournal();
+
+		logger.warn(String.format("Loading %s, rolling back %d triples in %d batches",
+				failure != null ? "failed: " + failure.getMessage() : "aborted",
+				tripleCount,
+				batchCount));
+		try {
+			BatchedModelLoader deleter = new BatchedModelLoader(targetModel, batchSize, retryCount, retryDelayMillis) {
+				@Override
+				protected void apply(Graph graph, List<Triple> triples) {
+					GraphUtil.delete(graph, triples);
+				}
+			};
+			resend(JOURNAL_FILE_NAME, deleter);
+
+			if (replace) {
+				resend(CONTENT_FILE_NAME, new BatchedModelLoader(targetModel, batchSize, retryCount, retryDelayMillis));
+			}
+			logger.info("Rolled back the loading");
+		} catch (RuntimeException | Error e) {
+			logger.error("Rolling back the loading failed", e);
+			if (failure != null) {
+				failure.addSuppressed(e);
+			}
+		} finally {
+			FileUtils.deleteQuietly(workDir);
+		}
+	}
+
+	private void resend(String fileName, BatchedModelLoader loader) {
+		loader.start();
+		TripleFiles.read(new File(workDir, fileName), loader::triple);
+		loader.finish();
+	}
+
+	private void closeJournal() {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
+
+	private void abortTransaction() {
+		try {
+			targetModel.abort();
+		} catch (RuntimeException e) {
+			logger.warn("Aborting transaction failed: " + e.getMessage(), e);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JenaException("Interrupted while waiting to retry loading", e);
+		}
+	}
+
+}
@@ -10,21 +10,25 @@ import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamOps;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
 import org.apache.log4j.Logger;
 
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
 import fi.aalto.cs.drumbeat.common.config.ComplexProcessorConfiguration;
 import fi.aalto.cs.drumbeat.common.config.document.ConfigurationDocument;
 import fi.aalto.cs.drumbeat.common.file.FileManager;
@@ -49,6 +53,8 @@ public class DataSetUploadManager {
 	private static final Logger logger = Logger.getLogger(DataSetUploadManager.class);
 	private static final Lang DEFAULT_RDF_LANG = Lang.NTRIPLES;
 	
+	private static ParallelNTriplesParser parallelParser;
+	
 	/**
 	 * Imports data set from an input stream
 	 * @param collectionId
@@ -73,6 +79,12 @@ public class DataSetUploadManager {
 		
 		File savedRdfFile;
 		
+		if (in instanceof ServerFileInputStream) {
+			options.setSourceFile(((ServerFileInputStream)in).getFile());
+		}
+		
+		in = new UploadProgressInputStream(in, options.getProgress());
+		
 		//
 		// Open target model and begin transactions (if supported)
 		//
@@ -84,7 +96,14 @@ public class DataSetUploadManager {
 		try {
 			long oldSize = targetModel.size();		
 			
-			if (options.isClearBefore()) {
+			if (options.isDiffUpload() && (oldSize == 0 || !DrumbeatApplication.getInstance().isDiffUploadEnabled())) {
+				// there is nothing to compare with, or diff uploads are disabled, so the graph is replaced as a whole
+				options.setDiffUpload(false);
+				options.setClearBefore(true);
+			}
+			
+			if (options.isClearBefore() && isBulkLoadingUsed(options)) {
+				// a bulk load cannot be rolled back, other loaders replace the content themselves, see createModelLoader()
 				DrumbeatApplication.getInstance().getJenaProvider().deleteModel(options.getDataSetGraphUri());
 //				targetModel.removeAll();
 			}
@@ -101,7 +120,7 @@ public class DataSetUploadManager {
 			
 			long newSize = targetModel.size();
 				
-			logger.info(String.format("Uploaded data to graph '%s': oldSize=%d, newSize=%d", options.getDataSetGraphUri(), oldSize, newSize));
+			logger.info(String.format("Uploaded data to graph '%s': oldSize=%d, newSize=%d, delta=%s", options.getDataSetGraphUri(), oldSize, newSize, options.getDelta()));
 			
 		} catch (Exception e) {
 			logger.error(e);
@@ -118,6 +137,30 @@ public class DataSetUploadManager {
 	{
 		logger.info("Uploading IFC model");
 		try {			
+			// look up the converted model by the hash of the uploaded bytes
+			IfcConversionCache cache = null;
+			String cacheKey = null;
+			if (DrumbeatApplication.getInstance().isIfcConversionCacheEnabled()) {
+				cache = IfcConversionCache.getInstance();
+				options.getProgress().setPhase(UploadPhase.CACHING);
+				DigestInputStream digestIn = new DigestInputStream(in, IfcConversionCache.createDigest());
+				SpooledFileInputStream spooledIn = new SpooledFileInputStream(UploadJobManager.spoolToFile(digestIn));
+				in = spooledIn;
+				cacheKey = cache.createKey(digestIn.getMessageDigest().digest());
+				
+				File cachedFile = cache.get(cacheKey, spooledIn.getLength());
+				if (cachedFile != null) {
+					File savedRdfFile;
+					try {
+						savedRdfFile = internalUploadCachedIfcModel(cachedFile, options);
+					} finally {
+						cache.release(cachedFile);
+					}
+					logger.info("Uploading IFC model completed successfully");
+					return savedRdfFile;
+				}
+			}
+			
 			// loading schemas and config files
 			synchronized (DataSetUploadManager.class) {
 				if (IfcSchemaPool.size() == 0) {
@@ -128,26 +171,51 @@ public class DataSetUploadManager {
 			
 			// parse model
 			logger.debug("Parsing model");
+			options.getProgress().setPhase(UploadPhase.PARSING);
 			IfcModel ifcModel = IfcModelParser.parse(new SerializedInputStream(in, options.getDataFormat()));			
 
 			// ground nodes in the model
 			logger.debug("Grounding nodes");
+			options.getProgress().setPhase(UploadPhase.GROUNDING);
 			IfcModelAnalyser modelAnalyser = new IfcModelAnalyser(ifcModel);			
 			ComplexProcessorConfiguration groundingConfiguration = IfcModelAnalyser.getDefaultGroundingRuleSets();		
 			modelAnalyser.groundNodes(groundingConfiguration);
 
 			// export model
 			logger.debug("exporting model");
-			Ifc2RdfConversionContext conversionContext = DrumbeatApplication.getInstance().getDefaultIfc2RdfConversionContext();
-			conversionContext.setModelNamespaceUriFormat(options.getDataSourceObjectBaseUri());
+			options.getProgress().setPhase(UploadPhase.EXPORTING);
+			// the namespaces are set per upload, so the shared default context is not used
+			Ifc2RdfConversionContext conversionContext = DrumbeatApplication.getInstance().createIfc2RdfConversionContext();
 			
-			conversionContext.setModelBlankNodeNamespaceUriFormat(options.getDataSetBlankObjectBaseUri());
+			File savedRdfFile;
 			
-			Model targetModel = ModelFactory.createDefaultModel();
-			Ifc2RdfModelExporter modelExporter = new Ifc2RdfModelExporter(ifcModel, conversionContext, targetModel);			
-			targetModel = modelExporter.export();
-			
-			File savedRdfFile = internalUploadJenaModel(targetModel, options);
+			if (cache != null) {
+				// cached models use placeholder namespaces, which are replaced when the model is loaded
+				conversionContext.setModelNamespaceUriFormat(IfcConversionCache.OBJECT_BASE_URI_PLACEHOLDER);
+				conversionContext.setModelBlankNodeNamespaceUriFormat(IfcConversionCache.BLANK_OBJECT_BASE_URI_PLACEHOLDER);
+				
+				File cachedFile = internalCacheIfcModel(ifcModel, conversionContext, cache, cacheKey);
+				try {
+					savedRdfFile = internalUploadCachedIfcModel(cachedFile, options);
+				} finally {
+					cache.release(cachedFile);
+				}
+				
+			} else {
+				conversionContext.setModelNamespaceUriFormat(options.getDataSourceObjectBaseUri());
+				
+				conversionContext.setModelBlankNodeNamespaceUriFormat(options.getDataSetBlankObjectBaseUri());
+				
+				if (DrumbeatApplication.getInstance().isIfcStreamingUploadEnabled()) {
+					savedRdfFile = internalStreamIfcModel(ifcModel, conversionContext, options);				
+				} else {			
+					Model targetModel = ModelFactory.createDefaultModel();
+					Ifc2RdfModelExporter modelExporter = new Ifc2RdfModelExporter(ifcModel, conversionContext, targetModel);			
+					targetModel = modelExporter.export();
+					
+					savedRdfFile = internalUploadJenaModel(targetModel, options);
+				}
+			}
 			
 			logger.info("Uploading IFC model completed successfully");
 			
@@ -164,9 +232,222 @@ public class DataSetUploadManager {
 		}		
 	}
 	
+	/**
+	 * Exports the IFC model triple by triple without materialising the whole RDF model in memory.
+	 * 
+	 * If the RDF file must be kept or bulk-loaded, triples are written to an N-Triples file,
+	 * which is then uploaded as usual. Otherwise, triples are added directly to the target graph.  
+	 * 
+	 * @param ifcModel
+	 * @param conversionContext
+	 * @param options
+	 * @return the saved RDF file or <code>null</code>
+	 * @throws Exception
+	 */
+	private File internalStreamIfcModel(IfcModel ifcModel, Ifc2RdfConversionContext conversionContext, DataSetUploadOptions options) throws Exception {
+		return internalUploadTriples(stream -> internalExportIfcModel(ifcModel, conversionContext, stream), options);
+	}
+	
+	/**
+	 * Exports the IFC model to a new entry of the conversion cache
+	 * @param ifcModel
+	 * @param conversionContext
+	 * @param cache
+	 * @param cacheKey
+	 * @return the entry file, pinned until it is released
+	 * @throws Exception
+	 */
+	private File internalCacheIfcModel(IfcModel ifcModel, Ifc2RdfConversionContext conversionContext, IfcConversionCache cache, String cacheKey) throws Exception {
+		
+		long startTime = System.currentTimeMillis();
+		File tempFile = cache.createTempFile();
+		
+		try {
+			OutputStream out = RdfCacheCompression.FAST.openOutputStream(tempFile);
+			try {
+				StreamRDF stream = createPipelineStage(StreamRDFLib.writer(out), "writer");
+				long tripleCount = internalExportIfcModel(ifcModel, conversionContext, stream);
+				logger.info(String.format("Cached %d triples (%d ms)", tripleCount, System.currentTimeMillis() - startTime));
+			} finally {
+				out.close();
+			}
+			
+			return cache.put(cacheKey, tempFile);
+			
+		} finally {
+			tempFile.delete();
+		}
+	}
+	
+	/**
+	 * Uploads a converted IFC model from the conversion cache 
+	 * @param cachedFile
+	 * @param options
+	 * @return the saved RDF file or <code>null</code>
+	 * @throws Exception
+	 */
+	private File internalUploadCachedIfcModel(File cachedFile, DataSetUploadOptions options) throws Exception {
+		options.getProgress().setPhase(UploadPhase.LOADING);
+		return internalUploadTriples(
+				stream -> IfcConversionCache.send(cachedFile, stream, options.getDataSourceObjectBaseUri(), options.getDataSetBlankObjectBaseUri()),
+				options);
+	}
+	
+	/**
+	 * Uploads triples sent by the source.
+	 * 
+	 * If the RDF file must be kept or bulk-loaded, triples are written to an N-Triples file,
+	 * which is then uploaded as usual. Otherwise, triples are added directly to the target graph.  
+	 * 
+	 * @param source
+	 * @param options
+	 * @return the saved RDF file or <code>null</code>
+	 * @throws Exception
+	 */
+	private File internalUploadTriples(TripleSource source, DataSetUploadOptions options) throws Exception {
+		
+		long startTime = System.currentTimeMillis();
+		long oldTripleCount = options.getProgress().getTriplesProcessed();
+		
+		if (options.isSaveToFiles() || isBulkLoadingUsed(options)) {
+			
+			RdfCacheCompression compression = getRdfCacheCompression(options);
+			File outputFile = createRdfCacheFile(DEFAULT_RDF_LANG, compression);
+			OutputStream out = compression.openOutputStream(outputFile);
+			
+			try {
+				StreamRDF stream = createPipelineStage(
+						new UploadProgressStreamRDF(StreamRDFLib.writer(out), options.getProgress()),
+						"writer");
+				AbortableStreamRDF.send(stream, source::send);
+				long tripleCount = options.getProgress().getTriplesProcessed() - oldTripleCount;
+				logger.info(String.format("Streamed %d triples to file: %s (%d ms)", tripleCount, outputFile, System.currentTimeMillis() - startTime));
+			} finally {
+				out.close();
+			}
+			
+			options.setDataType(DATA_TYPE_RDF);
+			options.setDataFormat(outputFile.getName());			
+			return internalUploadRdf(null, options, outputFile);
+			
+		} else {
+			
+			Model targetModel = DrumbeatApplication.getInstance().getDataModel(options.getDataSetGraphUri());
+			StreamRDF stream = createPipelineStage(
+					new UploadProgressStreamRDF(createModelLoader(targetModel, options), options.getProgress()),
+					"loader");
+			AbortableStreamRDF.send(stream, source::send);
+			long tripleCount = options.getProgress().getTriplesProcessed() - oldTripleCount;
+			logger.info(String.format("Streamed %d triples to graph: %s (%d ms)", tripleCount, options.getDataSetGraphUri(), System.currentTimeMillis() - startTime));
+			return null;
+			
+		}
+		
+	}
+	
+	private long internalExportIfcModel(IfcModel ifcModel, Ifc2RdfConversionContext conversionContext, StreamRDF stream) throws Exception {
+		StreamRdfGraph streamGraph = new StreamRdfGraph(stream);
+		Model streamModel = ModelFactory.createModelForGraph(streamGraph);
+		
+		stream.start();
+		try {
+			new Ifc2RdfModelExporter(ifcModel, conversionContext, streamModel).export();
+		} catch (Throwable t) {
+			AbortableStreamRDF.abort(stream);
+			throw t;
+		}
+		stream.finish();
+		
+		return streamGraph.getTripleCount();
+	}
+	
+	/**
+	 * Creates a stream which loads triples into the model in batches, each in its own transaction.
+	 * If the loading fails or is aborted, the committed batches are rolled back and the content replaced
+	 * by a clearBefore upload is restored.
+	 * For a diff upload, the stream replaces the content of the model by applying only the difference
+	 * and stores it in the options
+	 * @param targetModel
+	 * @param options
+	 * @return
+	 */
+	private static StreamRDF createModelLoader(Model targetModel, DataSetUploadOptions options) {
+		DrumbeatApplication application = DrumbeatApplication.getInstance();
+		
+		if (options.isDiffUpload()) {
+			File workDir = new File(application.getUploadsDirPath(), "diff-" + UUID.randomUUID().toString());
+			
+			return new DiffModelLoader(
+					targetModel,
+					workDir,
+					application.getDiffUploadPartitionSize(),
+					application.getRdfUploadBatchSize(),
+					application.getRdfUploadBatchRetryCount(),
+					application.getRdfUploadBatchRetryDelay()) {
+				@Override
+				public void finish() {
+					super.finish();
+					options.setDelta(getDelta());
+				}
+			};
+		}
+		
+		return new BatchedModelLoader(
+				targetModel,
+				application.getRdfUploadBatchSize(),
+				application.getRdfUploadBatchRetryCount(),
+				application.getRdfUploadBatchRetryDelay(),
+				new File(application.getUploadsDirPath(), "load-" + UUID.randomUUID().toString()),
+				options.isClearBefore());
+	}
+	
+	/**
+	 * Gets the parser shared by all uploads of line-based RDF formats
+	 * @return
+	 */
+	private static synchronized ParallelNTriplesParser getParallelParser() {
+		if (parallelParser == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			parallelParser = new ParallelNTriplesParser(
+					application.getRdfUploadParallelism(),
+					application.getRdfUploadParallelChunkSize());
+		}
+		return parallelParser;
+	}
+	
+	/**
+	 * Runs the sink on its own thread if upload pipelining is enabled, so that the producer of triples
+	 * (parser or exporter) does not wait while they are written or loaded
+	 * @param sink
+	 * @param stageName
+	 * @return
+	 */
+	private static StreamRDF createPipelineStage(StreamRDF sink, String stageName) {
+		DrumbeatApplication application = DrumbeatApplication.getInstance();
+		if (!application.isUploadPipelineEnabled()) {
+			return sink;
+		}
+		
+		String threadName = String.format("%s-%s", Thread.currentThread().getName(), stageName);
+		return new PipelinedStreamRDF(sink, application.getUploadPipelineQueueSize(), threadName);
+	}
+	
 	public File internalUploadJenaModel(Model model, DataSetUploadOptions options) throws Exception {
 		
-		File outputFile = saveModelToGzippedFile(model);
+		if (!options.isSaveToFiles() && !isBulkLoadingUsed(options)) {
+			// no file is needed, load the model straight into the target graph
+			logger.info("Uploading RDF model");
+			options.getProgress().setPhase(UploadPhase.LOADING);
+			Model targetModel = DrumbeatApplication.getInstance().getDataModel(options.getDataSetGraphUri());
+			AbortableStreamRDF.send(
+					new UploadProgressStreamRDF(createModelLoader(targetModel, options), options.getProgress()),
+					stream -> StreamOps.graphToStream(model.getGraph(), stream));
+			logger.info("Uploading RDF model completed successfully");
+			return null;
+		}
+		
+		options.getProgress().setPhase(UploadPhase.CACHING);
+		File outputFile = saveModelToCacheFile(model, getRdfCacheCompression(options));
 		options.setDataType(DATA_TYPE_RDF);
 		String outputFileName = Paths.get(outputFile.getAbsolutePath()).getFileName().toString();
 		options.setDataFormat(outputFileName);
@@ -178,13 +459,33 @@ public class DataSetUploadManager {
 	private File internalUploadRdf(InputStream in, DataSetUploadOptions options, File rdfCacheFile) throws Exception
 	{		
 		JenaProvider jenaProvider = DrumbeatApplication.getInstance().getJenaProvider();	
-		boolean useBulkLoading = jenaProvider.supportsBulkLoading() && DrumbeatApplication.getInstance().isRdfBulkUploadEnabled();
+		boolean useBulkLoading = isBulkLoadingUsed(options);
+		
+		File sourceFile = rdfCacheFile == null ? getDirectSourceFile(options, useBulkLoading) : null;
+		File bulkLoadedFile = null;
+		InputStream sourceIn = in;
 		
 		Lang rdfLang;
 
 		try {
 			
-			if (rdfCacheFile == null) {
+			if (sourceFile != null) {
+				
+				rdfLang = outputFormatToRdfLang(options.getDataFormat());
+				
+				if (!useBulkLoading) {
+					logger.info("Reading RDF file directly: " + sourceFile);
+					in = new UploadProgressInputStream(new MappedFileInputStream(sourceFile), options.getProgress());
+				} else if (isInUploadsDir(sourceFile)) {
+					logger.info("Bulk loading RDF file directly: " + sourceFile);
+					bulkLoadedFile = sourceFile;
+				} else {
+					options.getProgress().setPhase(UploadPhase.CACHING);
+					rdfCacheFile = copyFileToCacheFile(sourceFile, rdfLang);
+					bulkLoadedFile = rdfCacheFile;
+				}
+				
+			} else if (rdfCacheFile == null) {
 				
 				logger.info("Caching RDF file");
 				
@@ -196,36 +497,47 @@ public class DataSetUploadManager {
 				}
 
 				if (options.isSaveToFiles() || useBulkLoading) {
-					rdfCacheFile = saveInputStreamToGzippedFile(sis.getInputStream(), rdfLang);
-					in = new GZIPInputStream(new FileInputStream(rdfCacheFile));
+					options.getProgress().setPhase(UploadPhase.CACHING);
+					rdfCacheFile = saveInputStreamToCacheFile(sis.getInputStream(), rdfLang, getRdfCacheCompression(options));
+					in = RdfCacheCompression.openInputStream(rdfCacheFile);
+					bulkLoadedFile = rdfCacheFile;
 				}
 				
+				in = new BufferedInputStream(in);
+				
 			} else {
 				
-				in = new GZIPInputStream(new FileInputStream(rdfCacheFile));
+				in = new BufferedInputStream(RdfCacheCompression.openInputStream(rdfCacheFile));
 				rdfLang = DEFAULT_RDF_LANG;				
+				bulkLoadedFile = rdfCacheFile;
 				
 			}
-			
-			if (!(in instanceof BufferedInputStream)) {
-				in = new BufferedInputStream(in);
-			}
 		
 
 			logger.info("Uploading RDF model");
+			options.getProgress().setPhase(UploadPhase.LOADING);
 			
 			if (useBulkLoading) {
 				
-				boolean loaded = jenaProvider.bulkLoadFile(rdfCacheFile.getCanonicalPath(), options.getDataSetGraphUri());
+				boolean loaded = jenaProvider.bulkLoadFile(bulkLoadedFile.getCanonicalPath(), options.getDataSetGraphUri());
 				if (!loaded) {
-					throw new JenaException("File is not loaded: " + rdfCacheFile.getCanonicalPath());
+					throw new JenaException("File is not loaded: " + bulkLoadedFile.getCanonicalPath());
 				}
 				
 			} else {
 	
 				Model targetModel = DrumbeatApplication.getInstance().getDataModel(options.getDataSetGraphUri());
 				
-				RDFDataMgr.read(targetModel, in, options.getDataSourceObjectBaseUri(), rdfLang);
+				StreamRDF stream = createPipelineStage(
+						new UploadProgressStreamRDF(createModelLoader(targetModel, options), options.getProgress()),
+						"loader");
+				InputStream parsedIn = in;
+				Lang parsedLang = rdfLang;
+				if (ParallelNTriplesParser.supports(rdfLang) && DrumbeatApplication.getInstance().getRdfUploadParallelism() > 1) {
+					AbortableStreamRDF.send(stream, producerStream -> getParallelParser().parse(producerStream, parsedIn, options.getDataSourceObjectBaseUri(), parsedLang));
+				} else {
+					AbortableStreamRDF.send(stream, producerStream -> RDFDataMgr.parse(producerStream, parsedIn, options.getDataSourceObjectBaseUri(), parsedLang));
+				}
 		
 			}
 			
@@ -234,6 +546,9 @@ public class DataSetUploadManager {
 			
 		} finally {
 			in.close();
+			if (sourceIn != null && sourceIn != in) {
+				sourceIn.close();
+			}
 		}
 		
 		if (rdfCacheFile != null && !options.isSaveToFiles()) {
@@ -245,6 +560,56 @@ public class DataSetUploadManager {
 		
 	}
 	
+	/**
+	 * Gets the uploaded server file if it can be loaded without reading it through the upload stream:
+	 * the file must be uncompressed RDF of a known language, which is not saved with the upload.
+	 * A file which is bulk loaded must be in the uploads folder, which the triple store can read,
+	 * or otherwise it is copied there if cached files are not compressed.
+	 * @param options
+	 * @param useBulkLoading
+	 * @return the file or <code>null</code> if the upload stream must be used
+	 * @throws IOException
+	 */
+	private static File getDirectSourceFile(DataSetUploadOptions options, boolean useBulkLoading) throws IOException {
+		File sourceFile = options.getSourceFile();
+		if (sourceFile == null || options.isSaveToFiles() || !DrumbeatApplication.getInstance().isRdfDirectUploadEnabled()) {
+			return null;
+		}
+		
+		if (outputFormatToRdfLang(options.getDataFormat()) == null || isCompressedFile(sourceFile)) {
+			return null;
+		}
+		
+		if (useBulkLoading && !isInUploadsDir(sourceFile) && getRdfCacheCompression(options) != RdfCacheCompression.NONE) {
+			return null;
+		}
+		
+		return sourceFile;
+	}
+	
+	/**
+	 * Checks the signature of gzip, zip and bzip2 files
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	private static boolean isCompressedFile(File file) throws IOException {
+		byte[] header = new byte[3];
+		int length;
+		try (InputStream in = new FileInputStream(file)) {
+			length = IOUtils.read(in, header);
+		}
+		
+		return (length >= 2 && header[0] == (byte)0x1F && header[1] == (byte)0x8B)
+				|| (length >= 2 && header[0] == 'P' && header[1] == 'K')
+				|| (length >= 3 && header[0] == 'B' && header[1] == 'Z' && header[2] == 'h');
+	}
+	
+	private static boolean isInUploadsDir(File file) throws IOException {
+		String uploadsDirPath = new File(DrumbeatApplication.getInstance().getUploadsDirPath()).getCanonicalPath();
+		return file.getCanonicalPath().startsWith(uploadsDirPath + File.separator);
+	}
+	
 	
 	private static Lang outputFormatToRdfLang(String outputFormat) {
 		Lang lang = RDFLanguages.nameToLang(outputFormat);
@@ -277,6 +642,7 @@ public class DataSetUploadManager {
 		try {			
 			// parse model
 			logger.debug("Parsing model");
+			options.getProgress().setPhase(UploadPhase.PARSING);
 			
 			Model targetModel = new Xml2RdfConverter().convertXml2Rdf(in, options);
 			
@@ -295,19 +661,47 @@ public class DataSetUploadManager {
 	}	
 	
 
-	private File saveInputStreamToGzippedFile(InputStream in, Lang lang) throws IOException {
+	private static boolean isBulkLoadingUsed(DataSetUploadOptions options) throws DrumbeatException {
+		if (options.isDiffUpload()) {
+			return false;
+		}
+		JenaProvider jenaProvider = DrumbeatApplication.getInstance().getJenaProvider();
+		return jenaProvider.supportsBulkLoading() && DrumbeatApplication.getInstance().isRdfBulkUploadEnabled();
+	}
+	
+	/**
+	 * Gets the compression of the cached RDF file: files saved with the upload are always gzipped,
+	 * temporary files use the configured compression
+	 * @param options
+	 * @return
+	 */
+	private static RdfCacheCompression getRdfCacheCompression(DataSetUploadOptions options) {
+		if (options.isSaveToFiles()) {
+			return RdfCacheCompression.GZIP;
+		}
+		return DrumbeatApplication.getInstance().getRdfCacheCompression();
+	}
+	
+
+	private File createRdfCacheFile(Lang lang, RdfCacheCompression compression) throws IOException {
 		
 		String fileName = UUID.randomUUID().toString();		
-		String outputFilePath = String.format("%s/%s.%s.gz",
+		String outputFilePath = String.format("%s/%s.%s%s",
 				DrumbeatApplication.getInstance().getUploadsDirPath(),
 				fileName,
-				lang.getFileExtensions().get(0));
+				lang.getFileExtensions().get(0),
+				compression.getFileSuffix());
 
 		logger.info("Saving data to file: " + outputFilePath);
 		
-		File outputFile = FileManager.createFile(outputFilePath);		
-		OutputStream out = new FileOutputStream(outputFile);
-		out = new GZIPOutputStream(out);
+		return FileManager.createFile(outputFilePath);		
+	}
+	
+
+	private File saveInputStreamToCacheFile(InputStream in, Lang lang, RdfCacheCompression compression) throws IOException {
+		
+		File outputFile = createRdfCacheFile(lang, compression);		
+		OutputStream out = compression.openOutputStream(outputFile);
 		
 		IOUtils.copy(in, out);
 		in.close();
@@ -317,21 +711,38 @@ public class DataSetUploadManager {
 	}
 	
 	
-	private File saveModelToGzippedFile(Model model) throws IOException {
+	/**
+	 * Copies an uncompressed file to an uncompressed cache file, letting the file system transfer
+	 * the bytes without copying them through the JVM
+	 * @param file
+	 * @param lang
+	 * @return
+	 * @throws IOException
+	 */
+	private File copyFileToCacheFile(File file, Lang lang) throws IOException {
+		
+		File outputFile = createRdfCacheFile(lang, RdfCacheCompression.NONE);
+		
+		try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				FileChannel target = FileChannel.open(outputFile.toPath(), StandardOpenOption.WRITE))
+		{
+			long size = source.size();
+			long position = 0;
+			while (position < size) {
+				position += source.transferTo(position, size - position, target);
+			}
+		}
+		
+		return outputFile;
+	}
+	
+	
+	private File saveModelToCacheFile(Model model, RdfCacheCompression compression) throws IOException {
 		
 		Lang lang = DEFAULT_RDF_LANG;
 
-		String fileName = UUID.randomUUID().toString();		
-		String outputFilePath = String.format("%s/%s.%s.gz",
-				DrumbeatApplication.getInstance().getUploadsDirPath(),
-				fileName,
-				lang.getFileExtensions().get(0));
-
-		logger.info("Saving data to file: " + outputFilePath);
-		
-		File outputFile = FileManager.createFile(outputFilePath);		
-		OutputStream out = new FileOutputStream(outputFile);
-		out = new GZIPOutputStream(out);		
+		File outputFile = createRdfCacheFile(lang, compression);		
+		OutputStream out = compression.openOutputStream(outputFile);
 		
 		RDFDataMgr.write(out, model, lang);
 		
@@ -341,6 +752,13 @@ public class DataSetUploadManager {
 	}
 	
 	
+	/**
+	 * Source of triples sent to a stream, which it starts and finishes
+	 */
+	private interface TripleSource {
+		void send(StreamRDF stream) throws Exception;
+	}
+	
 	public boolean deleteCachedRdfFile(String fileName) {
 		File file = new File(DrumbeatApplication.getInstance().getUploadsDirPath(), fileName);
 		return file.exists() && file.delete();
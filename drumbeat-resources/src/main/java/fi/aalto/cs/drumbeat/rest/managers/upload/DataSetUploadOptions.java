@@ -1,5 +1,7 @@
 package fi.aalto.cs.drumbeat.rest.managers.upload;
 
+import java.io.File;
+
 public class DataSetUploadOptions {
 	
 	private final String collectionId;
@@ -14,6 +16,10 @@ public class DataSetUploadOptions {
 	private String dataFormat;
 	private boolean clearBefore;
 	private boolean saveToFiles;
+	private UploadProgress progress = new UploadProgress();
+	private boolean diffUpload;
+	private UploadDelta delta;
+	private File sourceFile;
 	
 	public DataSetUploadOptions(
 		String collectionId,
@@ -108,6 +114,50 @@ public class DataSetUploadOptions {
 	public void setDataSetBlankObjectBaseUri(String dataSetBlankObjectBaseUri) {
 		this.dataSetBlankObjectBaseUri = dataSetBlankObjectBaseUri;
 	}
+
+	public UploadProgress getProgress() {
+		return progress;
+	}
+
+	public void setProgress(UploadProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Gets value indicating whether the content of the graph is replaced by applying only the difference
+	 * @return
+	 */
+	public boolean isDiffUpload() {
+		return diffUpload;
+	}
+
+	public void setDiffUpload(boolean diffUpload) {
+		this.diffUpload = diffUpload;
+	}
+
+	/**
+	 * Gets the numbers of inserted and deleted triples of a diff upload, or <code>null</code>
+	 * @return
+	 */
+	public UploadDelta getDelta() {
+		return delta;
+	}
+
+	public void setDelta(UploadDelta delta) {
+		this.delta = delta;
+	}
+
+	/**
+	 * Gets the server file which is uploaded, or <code>null</code> if the input is only available as a stream
+	 * @return
+	 */
+	public File getSourceFile() {
+		return sourceFile;
+	}
+
+	public void setSourceFile(File sourceFile) {
+		this.sourceFile = sourceFile;
+	}
 	
 	
 //	public String getDataSetUri() {
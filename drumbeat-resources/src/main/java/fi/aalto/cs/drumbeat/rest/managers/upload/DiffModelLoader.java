@@ -0,0 +1,294 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.atlas.io.AWriter;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.log4j.Logger;
+
+/**
+ * Stream that replaces the content of a model with the received triples by applying only the difference.
+ *
+ * Received triples and the current triples of the model are written to partition files by the hash of
+ * their subject, so all triples about one object end up in the same partition. The partitions are then
+ * compared one at a time, which keeps only one partition in memory. The number of partitions is chosen from
+ * the larger of the current and the received triple counts, and the received triples are split into more
+ * partitions if there are more of them than expected.
+ *
+ * All deleted triples are applied before the inserted ones, in batches like {@link BatchedModelLoader} does.
+ * If applying the difference fails, the batches applied so far are reverted from the partition files, so that
+ * the model keeps its previous content. When the stream is aborted, nothing is applied.
+ *
+ * Blank nodes of the received triples never equal the blank nodes of the model, so triples with blank nodes
+ * are always replaced.
+ */
+public class DiffModelLoader implements AbortableStreamRDF {
+
+	private static final Logger logger = Logger.getLogger(DiffModelLoader.class);
+
+	private static final String NEW_PARTITION_PREFIX = "new-";
+	private static final String OLD_PARTITION_PREFIX = "old-";
+	private static final String UNSPLIT_PARTITION_PREFIX = "unsplit-";
+	private static final String PARTITION_SUFFIX = ".nt";
+
+	private final Model targetModel;
+	private final File workDir;
+	private final long partitionSize;
+	private final int batchSize;
+	private final int retryCount;
+	private final long retryDelayMillis;
+
+	private int partitionCount;
+	private AWriter[] newPartitions;
+	private long newTripleCount;
+	private UploadDelta delta;
+
+	/**
+	 * @param targetModel
+	 * @param workDir directory for partition files, deleted when finished
+	 * @param partitionSize approximate number of triples per partition
+	 * @param batchSize number of triples inserted or deleted in one transaction
+	 * @param retryCount number of times a failed batch is retried
+	 * @param retryDelayMillis delay before the first retry, doubled for every next one
+	 */
+	public DiffModelLoader(Model targetModel, File workDir, long partitionSize, int batchSize, int retryCount, long retryDelayMillis) {
+		if (partitionSize < 1) {
+			throw new IllegalArgumentException("Partition size must be positive: " + partitionSize);
+		}
+		this.targetModel = targetModel;
+		this.workDir = workDir;
+		this.partitionSize = partitionSize;
+		this.batchSize = batchSize;
+		this.retryCount = retryCount;
+		this.retryDelayMillis = retryDelayMillis;
+	}
+
+	/**
+	 * Gets the numbers of inserted and deleted triples, available after {@link #finish()}
+	 * @return
+	 */
+	public UploadDelta getDelta() {
+		return delta;
+	}
+
+	@Override
+	public void start() {
+		workDir.mkdirs();
+		partitionCount = getPartitionCount(targetModel.size());
+		newTripleCount = 0;
+		newPartitions = openPartitions(NEW_PARTITION_PREFIX);
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		write(newPartitions, triple);
+		++newTripleCount;
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	@Override
+	public void base(String base) {
+	}
+
+	@Override
+	public void prefix(String prefix, String iri) {
+		targetModel.setNsPrefix(prefix, iri);
+	}
+
+	@Override
+	public void finish() {
+		long startTime = System.currentTimeMillis();
+
+		try {
+			close(newPartitions);
+			newPartitions = null;
+
+			int requiredPartitionCount = getPartitionCount(Math.max(targetModel.size(), newTripleCount));
+			if (requiredPartitionCount > partitionCount) {
+				splitNewPartitions(requiredPartitionCount);
+			}
+
+			writeOldPartitions();
+
+			BatchedModelLoader deleter = createLoader(true);
+			BatchedModelLoader inserter = createLoader(false);
+			try {
+				sendDifference(OLD_PARTITION_PREFIX, NEW_PARTITION_PREFIX, deleter);
+				sendDifference(NEW_PARTITION_PREFIX, OLD_PARTITION_PREFIX, inserter);
+			} catch (RuntimeException | Error e) {
+				revert(e);
+				throw e;
+			}
+
+			delta = new UploadDelta(inserter.getTripleCount(), deleter.getTripleCount());
+			logger.info(String.format("Applied diff %s in %d partitions (%d ms)", delta, partitionCount, System.currentTimeMillis() - startTime));
+
+		} finally {
+			FileUtils.deleteQuietly(workDir);
+		}
+	}
+
+	@Override
+	public void abort() {
+		if (newPartitions != null) {
+			close(newPartitions);
+			newPartitions = null;
+		}
+		FileUtils.deleteQuietly(workDir);
+	}
+
+	private int getPartitionCount(long tripleCount) {
+		return (int)Math.max(1, (tripleCount + partitionSize - 1) / partitionSize);
+	}
+
+	private BatchedModelLoader createLoader(boolean deleting) {
+		if (!deleting) {
+			return new BatchedModelLoader(targetModel, batchSize, retryCount, retryDelayMillis);
+		}
+
+		return new BatchedModelLoader(targetModel, batchSize, retryCount, retryDelayMillis) {
+			@Override
+			protected void apply(Graph graph, List<Triple> triples) {
+				GraphUtil.delete(graph, triples);
+			}
+		};
+	}
+
+	/**
+	 * Writes the received triples again into more partitions
+	 * @param newPartitionCount
+	 */
+	private void splitNewPartitions(int newPartitionCount) {
+		int oldPartitionCount = partitionCount;
+		for (int i = 0; i < oldPartitionCount; ++i) {
+			File file = getPartitionFile(NEW_PARTITION_PREFIX, i);
+			if (!file.renameTo(getPartitionFile(UNSPLIT_PARTITION_PREFIX, i))) {
+				throw new JenaException("Renaming diff partition file failed: " + file);
+			}
+		}
+
+		partitionCount = newPartitionCount;
+		AWriter[] partitions = openPartitions(NEW_PARTITION_PREFIX);
+		try {
+			for (int i = 0; i < oldPartitionCount; ++i) {
+				for (Triple triple : readPartition(UNSPLIT_PARTITION_PREFIX, i)) {
+					write(partitions, triple);
+				}
+				FileUtils.deleteQuietly(getPartitionFile(UNSPLIT_PARTITION_PREFIX, i));
+			}
+		} finally {
+			close(partitions);
+		}
+
+		logger.debug(String.format("Split received triples from %d into %d partitions", oldPartitionCount, newPartitionCount));
+	}
+
+	private void writeOldPartitions() {
+		AWriter[] oldPartitions = openPartitions(OLD_PARTITION_PREFIX);
+		ExtendedIterator<Triple> it = targetModel.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+		try {
+			while (it.hasNext()) {
+				write(oldPartitions, it.next());
+			}
+		} finally {
+			it.close();
+			close(oldPartitions);
+		}
+	}
+
+	/**
+	 * Passes the triples of each partition which are not in the other partition of the same index to the loader
+	 * @param prefix
+	 * @param otherPrefix
+	 * @param loader
+	 */
+	private void sendDifference(String prefix, String otherPrefix, BatchedModelLoader loader) {
+		loader.start();
+		for (int i = 0; i < partitionCount; ++i) {
+			Set<Triple> triples = readPartition(prefix, i);
+			Set<Triple> otherTriples = readPartition(otherPrefix, i);
+
+			for (Triple triple : triples) {
+				if (!otherTriples.contains(triple)) {
+					loader.triple(triple);
+				}
+			}
+		}
+		loader.finish();
+	}
+
+	/**
+	 * Restores the previous content of the model after applying the difference has failed: the inserted triples
+	 * are deleted and the deleted triples are inserted again. Both are idempotent, so the batches which were not
+	 * applied do no harm
+	 * @param failure
+	 */
+	private void revert(Throwable failure) {
+		logger.warn("Applying diff failed, restoring the previous content of the model: " + failure.getMessage());
+		try {
+			sendDifference(NEW_PARTITION_PREFIX, OLD_PARTITION_PREFIX, createLoader(true));
+			sendDifference(OLD_PARTITION_PREFIX, NEW_PARTITION_PREFIX, createLoader(false));
+			logger.info("Restored the previous content of the model");
+		} catch (RuntimeException | Error e) {
+			logger.error("Restoring the previous content of the model failed", e);
+			failure.addSuppressed(e);
+		}
+	}
+
+	private AWriter[] openPartitions(String prefix) {
+		AWriter[] partitions = new AWriter[partitionCount];
+		try {
+			for (int i = 0; i < partitionCount; ++i) {
+				partitions[i] = TripleFiles.open(getPartitionFile(prefix, i));
+			}
+		} catch (JenaException e) {
+			close(partitions);
+			throw e;
+		}
+		return partitions;
+	}
+
+	private void write(AWriter[] partitions, Triple triple) {
+		TripleFiles.write(partitions[Math.floorMod(triple.getSubject().hashCode(), partitionCount)], triple);
+	}
+
+	private static void close(AWriter[] partitions) {
+		for (AWriter partition : partitions) {
+			if (partition != null) {
+				partition.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads a partition file, keeping blank nodes as they were written
+	 * @param prefix
+	 * @param index
+	 * @return
+	 */
+	private Set<Triple> readPartition(String prefix, int index) {
+		Set<Triple> triples = new HashSet<>();
+		TripleFiles.read(getPartitionFile(prefix, index), triples::add);
+		return triples;
+	}
+
+	private File getPartitionFile(String prefix, int index) {
+		return new File(workDir, prefix + index + PARTITION_SUFFIX);
+	}
+
+}
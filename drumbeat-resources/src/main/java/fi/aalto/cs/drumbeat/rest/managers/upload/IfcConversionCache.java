@@ -0,0 +1,275 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+
+/**
+ * Content-addressed store of IFC models converted to N-Triples.
+ *
+ * Entries are keyed by the SHA-256 hash of the uploaded IFC bytes and of the IFC-to-RDF conversion config,
+ * so a repeated upload of the same file can skip parsing, grounding and exporting. Models are converted
+ * with placeholder namespaces, which are replaced with the namespaces of the target data set when
+ * an entry is read, so an entry can be reused by any data set.
+ *
+ * The total size of entries is limited; the least recently used entries are evicted first.
+ * An entry returned by {@link #get(String, long)} or {@link #put(String, File)} is pinned, so that it is
+ * not evicted while it is being read, until it is given back with {@link #release(File)}. A released entry
+ * over the size limit is evicted by the next {@link #put(String, File)}.
+ */
+public class IfcConversionCache {
+
+	private static final Logger logger = Logger.getLogger(IfcConversionCache.class);
+
+	public static final String OBJECT_BASE_URI_PLACEHOLDER = "urn:drumbeat:ifc-cache:objects/";
+	public static final String BLANK_OBJECT_BASE_URI_PLACEHOLDER = "urn:drumbeat:ifc-cache:blank/";
+
+	public static final String METRIC_HITS = "uploads.ifc.cache.hits";
+	public static final String METRIC_MISSES = "uploads.ifc.cache.misses";
+	public static final String METRIC_BYTES_SAVED = "uploads.ifc.cache.bytesSaved";
+	public static final String METRIC_EVICTIONS = "uploads.ifc.cache.evictions";
+
+	private static final String DIRECTORY_NAME = "ifc-cache";
+	private static final String ENTRY_SUFFIX = ".nt.gz";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+
+	private static IfcConversionCache instance;
+
+	public static synchronized IfcConversionCache getInstance() throws IOException {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			File configFile = new File(application.getRealServerPath(DrumbeatApplication.ResourcePaths.IFC2LD_CONFIG_FILE_PATH));
+			instance = new IfcConversionCache(
+					new File(application.getUploadsDirPath(), DIRECTORY_NAME),
+					application.getIfcConversionCacheMaxSize(),
+					createDigest().digest(Files.readAllBytes(configFile.toPath())));
+		}
+		return instance;
+	}
+
+	private final File directory;
+	private final long maxSize;
+	private final byte[] contextFingerprint;
+	private final DrumbeatMetrics metrics = DrumbeatMetrics.getInstance();
+	private final Map<File, Integer> pinCounts = new HashMap<>();
+
+	/**
+	 * @param directory
+	 * @param maxSize maximum total size of entries in bytes
+	 * @param contextFingerprint hash of the conversion settings
+	 */
+	public IfcConversionCache(File directory, long maxSize, byte[] contextFingerprint) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.contextFingerprint = contextFingerprint;
+		directory.mkdirs();
+	}
+
+	public static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates the key of the entry for the IFC content with the given hash
+	 * @param contentDigest
+	 * @return
+	 */
+	public String createKey(byte[] contentDigest) {
+		MessageDigest digest = createDigest();
+		digest.update(contextFingerprint);
+		digest.update(contentDigest);
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Gets the entry with the given key
+	 * @param key
+	 * @param contentLength size of the IFC content, counted as saved on a hit
+	 * @return the pinned entry file or <code>null</code> if there is no such entry
+	 */
+	public synchronized File get(String key, long contentLength) {
+		File entry = getEntryFile(key);
+		if (!entry.exists()) {
+			metrics.increment(METRIC_MISSES);
+			return null;
+		}
+
+		pin(entry);
+		entry.setLastModified(System.currentTimeMillis());
+		metrics.increment(METRIC_HITS);
+		metrics.add(METRIC_BYTES_SAVED, contentLength);
+		logger.info(String.format("IFC conversion cache hit: %s", key));
+		return entry;
+	}
+
+	/**
+	 * Creates a file for a converted model to be passed to {@link #put(String, File)}
+	 * @return
+	 */
+	public File createTempFile() {
+		return new File(directory, UUID.randomUUID().toString() + ENTRY_SUFFIX + TEMP_SUFFIX);
+	}
+
+	/**
+	 * Moves the converted model into the cache and evicts the least recently used entries if the cache is full
+	 * @param key
+	 * @param tempFile
+	 * @return the pinned entry file
+	 * @throws IOException
+	 */
+	public synchronized File put(String key, File tempFile) throws IOException {
+		File entry = getEntryFile(key);
+		Files.move(tempFile.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		pin(entry);
+		entry.setLastModified(System.currentTimeMillis());
+		evict();
+		return entry;
+	}
+
+	/**
+	 * Gives back an entry returned by {@link #get(String, long)} or {@link #put(String, File)}
+	 * @param entry
+	 */
+	public synchronized void release(File entry) {
+		Integer count = pinCounts.get(entry);
+		if (count == null) {
+			return;
+		}
+
+		if (count > 1) {
+			pinCounts.put(entry, count - 1);
+		} else {
+			pinCounts.remove(entry);
+		}
+	}
+
+	/**
+	 * Sends triples of the entry to the stream, replacing placeholder namespaces with the given ones
+	 * @param entry
+	 * @param stream
+	 * @param objectBaseUri
+	 * @param blankObjectBaseUri
+	 * @throws IOException
+	 */
+	public static void send(File entry, StreamRDF stream, String objectBaseUri, String blankObjectBaseUri) throws IOException {
+		try (InputStream in = RdfCacheCompression.openInputStream(entry)) {
+			RDFDataMgr.parse(
+					new NamespaceRewritingStreamRDF(stream, objectBaseUri, blankObjectBaseUri),
+					in,
+					Lang.NTRIPLES);
+		}
+	}
+
+	private File getEntryFile(String key) {
+		return new File(directory, key + ENTRY_SUFFIX);
+	}
+
+	private void pin(File entry) {
+		pinCounts.merge(entry, 1, Integer::sum);
+	}
+
+	private void evict() {
+		File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+		if (entries == null) {
+			return;
+		}
+
+		long totalSize = 0;
+		for (File entry : entries) {
+			totalSize += entry.length();
+		}
+
+		Arrays.sort(entries, Comparator.comparingLong(File::lastModified));
+
+		for (File entry : entries) {
+			if (totalSize <= maxSize) {
+				break;
+			}
+
+			if (!pinCounts.containsKey(entry)) {
+				long length = entry.length();
+				if (entry.delete()) {
+					totalSize -= length;
+					metrics.increment(METRIC_EVICTIONS);
+					logger.info(String.format("Evicted IFC conversion cache entry: %s (%d bytes)", entry.getName(), length));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces placeholder namespaces of URIs
+	 */
+	private static class NamespaceRewritingStreamRDF extends StreamRDFWrapper {
+
+		private final String objectBaseUri;
+		private final String blankObjectBaseUri;
+
+		NamespaceRewritingStreamRDF(StreamRDF sink, String objectBaseUri, String blankObjectBaseUri) {
+			super(sink);
+			this.objectBaseUri = objectBaseUri;
+			this.blankObjectBaseUri = blankObjectBaseUri;
+		}
+
+		@Override
+		public void triple(Triple triple) {
+			sink.triple(Triple.create(
+					rewrite(triple.getSubject()),
+					rewrite(triple.getPredicate()),
+					rewrite(triple.getObject())));
+		}
+
+		@Override
+		public void quad(Quad quad) {
+			triple(quad.asTriple());
+		}
+
+		private Node rewrite(Node node) {
+			if (!node.isURI()) {
+				return node;
+			}
+
+			String uri = node.getURI();
+			if (uri.startsWith(BLANK_OBJECT_BASE_URI_PLACEHOLDER)) {
+				return NodeFactory.createURI(blankObjectBaseUri + uri.substring(BLANK_OBJECT_BASE_URI_PLACEHOLDER.length()));
+			} else if (uri.startsWith(OBJECT_BASE_URI_PLACEHOLDER)) {
+				return NodeFactory.createURI(objectBaseUri + uri.substring(OBJECT_BASE_URI_PLACEHOLDER.length()));
+			}
+			return node;
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream which reads a file through memory mapping, so that bytes are copied from the page cache
+ * straight into the reader's buffer without read calls. Files larger than one mapping are mapped
+ * segment by segment.
+ */
+public class MappedFileInputStream extends InputStream {
+
+	private static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+	private final long length;
+	private final long segmentSize;
+	private long segmentStart;
+	private MappedByteBuffer segment;
+
+	public MappedFileInputStream(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * @param file
+	 * @param segmentSize maximum number of bytes mapped at once
+	 * @throws IOException
+	 */
+	public MappedFileInputStream(File file, long segmentSize) throws IOException {
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.length = channel.size();
+		this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+		this.segmentStart = 0;
+		this.segment = map(0);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextSegmentIfNeeded()) {
+			return -1;
+		}
+		return segment.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		if (count == 0) {
+			return 0;
+		}
+		if (!nextSegmentIfNeeded()) {
+			return -1;
+		}
+		count = Math.min(count, segment.remaining());
+		segment.get(buffer, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		long position = Math.min(length, getPosition() + Math.max(0, count));
+		long skipped = position - getPosition();
+		segmentStart = position - position % segmentSize;
+		segment = map(segmentStart);
+		segment.position((int)(position - segmentStart));
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int)Math.min(Integer.MAX_VALUE, length - getPosition());
+	}
+
+	@Override
+	public void close() throws IOException {
+		segment = null;
+		channel.close();
+	}
+
+	private long getPosition() {
+		return segmentStart + segment.position();
+	}
+
+	/**
+	 * Maps the next segment if the current one has been read
+	 * @return <code>false</code> if the end of the file has been reached
+	 * @throws IOException
+	 */
+	private boolean nextSegmentIfNeeded() throws IOException {
+		if (segment == null) {
+			throw new IOException("Stream closed");
+		}
+		if (segment.hasRemaining()) {
+			return true;
+		}
+		if (segmentStart + segment.capacity() >= length) {
+			return false;
+		}
+		segmentStart += segment.capacity();
+		segment = map(segmentStart);
+		return true;
+	}
+
+	private MappedByteBuffer map(long start) throws IOException {
+		return channel.map(MapMode.READ_ONLY, start, Math.min(segmentSize, length - start));
+	}
+
+}
@@ -0,0 +1,217 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangNQuads;
+import org.apache.jena.riot.lang.LangNTriples;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.tokens.Tokenizer;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.log4j.Logger;
+
+/**
+ * Parser for line-based RDF formats (N-Triples, N-Quads) which parses chunks of lines on a fork/join pool.
+ *
+ * The input is split at line boundaries into chunks of about the configured size. Chunks are parsed
+ * concurrently and their triples are passed to the sink on the calling thread, in the order of the input.
+ * The number of chunks in progress is limited to twice the parallelism, which keeps memory use flat.
+ *
+ * Blank node labels are mapped to nodes by a hash of the label and a seed shared by all chunks of one input,
+ * so the same label gets the same node in every chunk. Line numbers in parse errors are relative to the chunk.
+ */
+public class ParallelNTriplesParser {
+
+	private static final Logger logger = Logger.getLogger(ParallelNTriplesParser.class);
+
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+
+	/**
+	 * @param parallelism number of workers
+	 * @param chunkSize approximate size in bytes of a chunk of lines
+	 */
+	public ParallelNTriplesParser(int parallelism, int chunkSize) {
+		this.pool = new ForkJoinPool(parallelism);
+		this.chunkSize = chunkSize;
+	}
+
+	public static boolean supports(Lang lang) {
+		return RDFLanguages.sameLang(lang, Lang.NTRIPLES) || RDFLanguages.sameLang(lang, Lang.NQUADS);
+	}
+
+	public int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	/**
+	 * Parses the input and passes its triples to the sink. The sink is finished when the whole input
+	 * has been parsed, and aborted if parsing fails
+	 * @param sink
+	 * @param in
+	 * @param baseUri
+	 * @param lang N-Triples or N-Quads
+	 * @throws IOException
+	 */
+	public void parse(StreamRDF sink, InputStream in, String baseUri, Lang lang) throws IOException {
+		if (!supports(lang)) {
+			throw new IllegalArgumentException("Unsupported RDF lang for parallel parsing: " + lang);
+		}
+
+		boolean isQuads = RDFLanguages.sameLang(lang, Lang.NQUADS);
+		UUID seed = UUID.randomUUID();
+		int maxPendingChunks = 2 * pool.getParallelism();
+
+		ChunkReader reader = new ChunkReader(in);
+		Deque<ForkJoinTask<List<Object>>> pendingChunks = new ArrayDeque<>(maxPendingChunks);
+
+		long startTime = System.currentTimeMillis();
+		int chunkCount = 0;
+
+		sink.start();
+		try {
+			for (Chunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+				final Chunk currentChunk = chunk;
+				pendingChunks.addLast(pool.submit(() -> parseChunk(currentChunk, baseUri, isQuads, seed)));
+				++chunkCount;
+
+				if (pendingChunks.size() >= maxPendingChunks) {
+					send(pendingChunks.removeFirst().join(), sink);
+				}
+			}
+
+			while (!pendingChunks.isEmpty()) {
+				send(pendingChunks.removeFirst().join(), sink);
+			}
+		} catch (Throwable t) {
+			for (ForkJoinTask<List<Object>> task : pendingChunks) {
+				task.cancel(false);
+			}
+			// the sink is not finished, so that a truncated input is not committed
+			AbortableStreamRDF.abort(sink);
+			throw t;
+		}
+		sink.finish();
+
+		logger.info(String.format("Parsed %d chunks with %d workers (%d ms)", chunkCount, pool.getParallelism(), System.currentTimeMillis() - startTime));
+	}
+
+	/**
+	 * Stops the workers after the chunks in progress are parsed
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private static List<Object> parseChunk(Chunk chunk, String baseUri, boolean isQuads, UUID seed) {
+		List<Object> items = new ArrayList<>();
+		StreamRDF collector = new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				items.add(triple);
+			}
+
+			@Override
+			public void quad(Quad quad) {
+				items.add(quad);
+			}
+		};
+
+		ParserProfile profile = RiotLib.profile(isQuads ? Lang.NQUADS : Lang.NTRIPLES, baseUri);
+		profile.setLabelToNode(LabelToNode.createScopeByDocumentHash(seed));
+
+		Tokenizer tokenizer = TokenizerFactory.makeTokenizerUTF8(new ByteArrayInputStream(chunk.data, 0, chunk.length));
+		if (isQuads) {
+			new LangNQuads(tokenizer, profile, collector).parse();
+		} else {
+			new LangNTriples(tokenizer, profile, collector).parse();
+		}
+
+		return items;
+	}
+
+	private static void send(List<Object> items, StreamRDF sink) {
+		for (Object item : items) {
+			if (item instanceof Triple) {
+				sink.triple((Triple)item);
+			} else {
+				sink.quad((Quad)item);
+			}
+		}
+	}
+
+	private static class Chunk {
+		final byte[] data;
+		final int length;
+
+		Chunk(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Reads the input in chunks which end at a line boundary
+	 */
+	private class ChunkReader {
+
+		private final InputStream in;
+		private byte[] remainder = new byte[0];
+		private boolean endOfInput;
+
+		ChunkReader(InputStream in) {
+			this.in = in;
+		}
+
+		Chunk next() throws IOException {
+			byte[] buffer = Arrays.copyOf(remainder, remainder.length + chunkSize);
+			int length = remainder.length;
+			remainder = new byte[0];
+
+			for (;;) {
+				if (!endOfInput) {
+					int count = IOUtils.read(in, buffer, length, buffer.length - length);
+					length += count;
+					endOfInput = length < buffer.length;
+				}
+
+				if (endOfInput) {
+					return length > 0 ? new Chunk(buffer, length) : null;
+				}
+
+				int end = length;
+				while (end > 0 && buffer[end - 1] != '\n') {
+					--end;
+				}
+
+				if (end > 0) {
+					remainder = Arrays.copyOfRange(buffer, end, length);
+					return new Chunk(buffer, end);
+				}
+
+				// no line ends in the buffer yet
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+
+	}
+
+}
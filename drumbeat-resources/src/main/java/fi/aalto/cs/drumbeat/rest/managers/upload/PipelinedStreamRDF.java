@@ -0,0 +1,199 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.log4j.Logger;
+
+/**
+ * Stream that passes triples to a sink running on its own thread, so that the producer
+ * (parser or exporter) and the sink (writer or loader) work concurrently.
+ *
+ * Triples are handed over in batches through a bounded queue. When the queue is full, the producer
+ * waits for the sink, which keeps memory use flat. A failure of the sink is rethrown to the producer
+ * on its next triple or on {@link #finish()}. When the stream is aborted, the batches not yet passed
+ * to the sink are dropped and the sink is aborted instead of finished.
+ * Triples and prefixes are passed on in order, base URIs are ignored.
+ */
+public class PipelinedStreamRDF implements AbortableStreamRDF {
+
+	private static final Logger logger = Logger.getLogger(PipelinedStreamRDF.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private static final List<Object> END_OF_STREAM = Collections.unmodifiableList(new ArrayList<>());
+	private static final List<Object> ABORT = Collections.unmodifiableList(new ArrayList<>());
+	private static final long POLL_INTERVAL_MILLIS = 100;
+
+	private final StreamRDF sink;
+	private final BlockingQueue<List<Object>> queue;
+	private final int batchSize;
+	private final String name;
+
+	private List<Object> batch;
+	private Thread sinkThread;
+	private volatile Throwable sinkFailure;
+
+	/**
+	 * @param sink
+	 * @param queueSize maximum number of batches waiting for the sink
+	 * @param name name of the sink thread
+	 */
+	public PipelinedStreamRDF(StreamRDF sink, int queueSize, String name) {
+		this(sink, queueSize, DEFAULT_BATCH_SIZE, name);
+	}
+
+	public PipelinedStreamRDF(StreamRDF sink, int queueSize, int batchSize, String name) {
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		this.batchSize = batchSize;
+		this.name = name;
+	}
+
+	@Override
+	public void start() {
+		batch = new ArrayList<>(batchSize);
+		sinkThread = new Thread(this::runSink, name);
+		sinkThread.setDaemon(true);
+		sinkThread.start();
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		add(triple);
+	}
+
+	@Override
+	public void quad(Quad quad) {
+		triple(quad.asTriple());
+	}
+
+	@Override
+	public void base(String base) {
+	}
+
+	@Override
+	public void prefix(String prefix, String iri) {
+		add(new Prefix(prefix, iri));
+	}
+
+	@Override
+	public void finish() {
+		List<Object> lastBatch = batch;
+		batch = null;
+		if (!lastBatch.isEmpty()) {
+			put(lastBatch);
+		}
+		put(END_OF_STREAM);
+
+		try {
+			sinkThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JenaException("Interrupted while waiting for " + name, e);
+		}
+
+		checkSinkFailure();
+	}
+
+	@Override
+	public void abort() {
+		if (sinkThread == null || batch == null) {
+			return;
+		}
+		batch = null;
+
+		try {
+			queue.clear();
+			// the sink has stopped if it failed, otherwise it takes the marker at the latest after its current batch
+			while (sinkFailure == null && !queue.offer(ABORT, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+				queue.clear();
+			}
+			sinkThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warn("Interrupted while aborting " + name);
+		}
+	}
+
+	private void add(Object item) {
+		batch.add(item);
+		if (batch.size() == batchSize) {
+			put(batch);
+			batch = new ArrayList<>(batchSize);
+		}
+	}
+
+	private void put(List<Object> items) {
+		try {
+			while (!queue.offer(items, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+				checkSinkFailure();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JenaException("Interrupted while waiting for " + name, e);
+		}
+		checkSinkFailure();
+	}
+
+	private void checkSinkFailure() {
+		Throwable failure = sinkFailure;
+		if (failure == null) {
+			return;
+		}
+
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException)failure;
+		} else if (failure instanceof Error) {
+			throw (Error)failure;
+		}
+		throw new JenaException(name + " failed: " + failure.getMessage(), failure);
+	}
+
+	private void runSink() {
+		try {
+			sink.start();
+			for (List<Object> items = queue.take(); items != END_OF_STREAM; items = queue.take()) {
+				if (items == ABORT) {
+					AbortableStreamRDF.abort(sink);
+					return;
+				}
+
+				for (Object item : items) {
+					if (item instanceof Triple) {
+						sink.triple((Triple)item);
+					} else {
+						Prefix prefix = (Prefix)item;
+						sink.prefix(prefix.prefix, prefix.iri);
+					}
+				}
+			}
+			sink.finish();
+		} catch (Throwable t) {
+			logger.debug(name + " failed", t);
+			AbortableStreamRDF.abort(sink);
+			sinkFailure = t;
+			// unblock the producer, the remaining batches are dropped
+			queue.clear();
+		}
+	}
+
+	private static class Prefix {
+		final String prefix;
+		final String iri;
+
+		Prefix(String prefix, String iri) {
+			this.prefix = prefix;
+			this.iri = iri;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of RDF files cached during uploads.
+ *
+ * Both compressed formats are gzip, so they can be read back and bulk-loaded the same way;
+ * {@link #FAST} only trades file size for a lower deflate level.
+ */
+public enum RdfCacheCompression {
+
+	NONE,
+	FAST,
+	GZIP;
+
+	private static final String GZIP_FILE_EXTENSION = ".gz";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Gets the suffix appended to the name of a file with this compression
+	 * @return
+	 */
+	public String getFileSuffix() {
+		return this == NONE ? "" : GZIP_FILE_EXTENSION;
+	}
+
+	public OutputStream openOutputStream(File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		switch (this) {
+		case NONE:
+			return new BufferedOutputStream(out, BUFFER_SIZE);
+		case FAST:
+			return new GZIPOutputStream(out, BUFFER_SIZE) {
+				{
+					def.setLevel(Deflater.BEST_SPEED);
+				}
+			};
+		default:
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+	}
+
+	/**
+	 * Opens a cached file for reading, decompressing it if its name ends with the gzip extension
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static InputStream openInputStream(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (file.getName().endsWith(GZIP_FILE_EXTENSION)) {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		return new BufferedInputStream(in, BUFFER_SIZE);
+	}
+
+}
@@ -0,0 +1,169 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Upload assembled from byte ranges sent in separate requests, see {@link ResumableUploadManager}
+ */
+public class ResumableUpload {
+
+	private final String id;
+	private final String targetUri;
+	private final File file;
+	private final long createdTime;
+	private long totalBytes;
+	private long lastModifiedTime;
+	private boolean closed;
+	private boolean finishing;
+
+	/**
+	 * Ranges are written under the read lock, so that several ranges can be written at the same time,
+	 * and the upload is completed or aborted under the write lock, so that no range is being written then
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Received ranges by their start, merged so that they never overlap or touch
+	 */
+	private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+	ResumableUpload(String id, String targetUri, File file, long totalBytes) {
+		this.id = id;
+		this.targetUri = targetUri;
+		this.file = file;
+		this.totalBytes = totalBytes;
+		this.createdTime = System.currentTimeMillis();
+		this.lastModifiedTime = createdTime;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Gets URI of the data set, link set or ontology which is uploaded
+	 * @return
+	 */
+	public String getTargetUri() {
+		return targetUri;
+	}
+
+	/**
+	 * Gets the file into which the ranges are written
+	 * @return
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	public long getCreatedTime() {
+		return createdTime;
+	}
+
+	public synchronized long getLastModifiedTime() {
+		return lastModifiedTime;
+	}
+
+	/**
+	 * Gets the size of the whole upload, or -1 if not yet known
+	 * @return
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	synchronized void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * Gets the number of distinct bytes received so far
+	 * @return
+	 */
+	public synchronized long getBytesReceived() {
+		long bytesReceived = 0;
+		for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+			bytesReceived += range.getValue() - range.getKey();
+		}
+		return bytesReceived;
+	}
+
+	/**
+	 * Gets the number of bytes received without gaps from the beginning,
+	 * which is where a client should resume from
+	 * @return
+	 */
+	public synchronized long getContiguousBytesReceived() {
+		Map.Entry<Long, Long> first = ranges.firstEntry();
+		return first != null && first.getKey() == 0 ? first.getValue() : 0;
+	}
+
+	/**
+	 * Checks if all bytes have been received
+	 * @return
+	 */
+	public synchronized boolean isComplete() {
+		return totalBytes >= 0 && getContiguousBytesReceived() == totalBytes;
+	}
+
+	ReadWriteLock getLock() {
+		return lock;
+	}
+
+	/**
+	 * Checks if the upload has been completed, aborted or removed as expired
+	 * @return
+	 */
+	synchronized boolean isClosed() {
+		return closed;
+	}
+
+	synchronized void close() {
+		closed = true;
+	}
+
+	/**
+	 * Checks if the upload is being loaded, during which no ranges are accepted and it does not expire
+	 * @return
+	 */
+	synchronized boolean isFinishing() {
+		return finishing;
+	}
+
+	synchronized void setFinishing(boolean finishing) {
+		this.finishing = finishing;
+		lastModifiedTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Marks a range as received
+	 * @param start first byte of the range
+	 * @param end byte after the last byte of the range
+	 */
+	synchronized void addRange(long start, long end) {
+		if (start >= end) {
+			return;
+		}
+
+		Map.Entry<Long, Long> previous = ranges.floorEntry(start);
+		if (previous != null && previous.getValue() >= start) {
+			start = previous.getKey();
+			end = Math.max(end, previous.getValue());
+		}
+
+		Map.Entry<Long, Long> next = ranges.ceilingEntry(start);
+		while (next != null && next.getKey() <= end) {
+			end = Math.max(end, next.getValue());
+			ranges.remove(next.getKey());
+			next = ranges.ceilingEntry(start);
+		}
+
+		ranges.put(start, end);
+		lastModifiedTime = System.currentTimeMillis();
+	}
+
+}
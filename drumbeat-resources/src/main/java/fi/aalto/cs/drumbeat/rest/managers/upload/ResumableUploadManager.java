@@ -0,0 +1,355 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.NotFoundException;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.managers.ErrorFactory;
+
+/**
+ * Keeps uploads which clients send as byte ranges in separate requests, so that an upload interrupted
+ * by a dropped connection can be resumed from the last received byte instead of starting over.
+ *
+ * Ranges are written straight from the request stream to their position in a file in the uploads folder.
+ * Ranges may arrive in any order and may be sent again. An upload which has not received any range
+ * for {@link DrumbeatApplication#getResumableUploadRetentionMinutes()} minutes is removed with its file.
+ * An upload which is being finished is kept until its load has succeeded or has been accepted as a job,
+ * see {@link #complete(String, String)}, so that a failed finish can be retried.
+ */
+public class ResumableUploadManager {
+
+	private static final Logger logger = Logger.getLogger(ResumableUploadManager.class);
+
+	private static final String DIRECTORY_NAME = "resumable";
+	private static final String FILE_SUFFIX = ".part";
+
+	private static ResumableUploadManager instance;
+
+	public static synchronized ResumableUploadManager getInstance() {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			instance = new ResumableUploadManager(
+					new File(application.getUploadsDirPath(), DIRECTORY_NAME),
+					application.getResumableUploadRetentionMinutes());
+		}
+		return instance;
+	}
+
+	private final File directory;
+	private final long retentionMillis;
+	private final Map<String, ResumableUpload> uploads = new ConcurrentHashMap<>();
+
+	/**
+	 * @param directory
+	 * @param retentionMinutes number of minutes an upload is kept after its last received range
+	 */
+	public ResumableUploadManager(File directory, int retentionMinutes) {
+		this.directory = directory;
+		this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+		directory.mkdirs();
+	}
+
+	/**
+	 * Starts a new upload
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param totalBytes size of the whole upload, or -1 if not yet known
+	 * @return
+	 * @throws IOException
+	 */
+	public ResumableUpload create(String targetUri, long totalBytes) throws IOException {
+		removeExpiredUploads();
+
+		String id = UUID.randomUUID().toString();
+		File file = new File(directory, id + FILE_SUFFIX);
+		if (!file.createNewFile()) {
+			throw new IOException("Upload file already exists: " + file);
+		}
+
+		ResumableUpload upload = new ResumableUpload(id, targetUri, file, totalBytes);
+		uploads.put(id, upload);
+
+		logger.info(String.format("Resumable upload started: id=%s, target=%s, totalBytes=%d", id, targetUri, totalBytes));
+		return upload;
+	}
+
+	/**
+	 * Gets an upload by its id
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param uploadId
+	 * @return
+	 * @throws NotFoundException if the upload is not found, has expired or belongs to another target
+	 */
+	public ResumableUpload get(String targetUri, String uploadId) throws NotFoundException {
+		removeExpiredUploads();
+
+		ResumableUpload upload = uploads.get(uploadId);
+		if (upload == null || !upload.getTargetUri().equals(targetUri)) {
+			throw ErrorFactory.createResumableUploadNotFoundException(targetUri, uploadId);
+		}
+		return upload;
+	}
+
+	/**
+	 * Writes a range of an upload from an input stream. The bytes are transferred from the stream
+	 * to the file channel at the position of the range without going through a separate buffer.
+	 * @param upload
+	 * @param start position of the first byte of the range
+	 * @param length number of bytes in the range
+	 * @param totalBytes size of the whole upload, or -1 if not known
+	 * @param in
+	 * @return the number of bytes written, which is less than <code>length</code> if the stream ended early
+	 * @throws IllegalArgumentException if the range does not fit the size of the upload
+	 * @throws IllegalStateException if the upload is being finished
+	 * @throws NotFoundException if the upload has been completed, aborted or removed as expired
+	 * @throws IOException
+	 */
+	public long write(ResumableUpload upload, long start, long length, long totalBytes, InputStream in) throws IOException {
+		if (start < 0 || length < 0) {
+			throw new IllegalArgumentException(String.format("Invalid range: start=%d, length=%d", start, length));
+		}
+
+		Lock lock = upload.getLock().readLock();
+		lock.lock();
+		try {
+			if (upload.isClosed()) {
+				throw ErrorFactory.createResumableUploadNotFoundException(upload.getTargetUri(), upload.getId());
+			}
+			checkNotFinishing(upload);
+
+			synchronized (upload) {
+				if (totalBytes >= 0) {
+					long knownTotalBytes = upload.getTotalBytes();
+					if (knownTotalBytes >= 0 && knownTotalBytes != totalBytes) {
+						throw new IllegalArgumentException(String.format("Size of upload is %d bytes, not %d", knownTotalBytes, totalBytes));
+					}
+					upload.setTotalBytes(totalBytes);
+				}
+
+				long knownTotalBytes = upload.getTotalBytes();
+				if (knownTotalBytes >= 0 && start + length > knownTotalBytes) {
+					throw new IllegalArgumentException(String.format("Range %d-%d exceeds size of upload %d", start, start + length - 1, knownTotalBytes));
+				}
+			}
+
+			long written = 0;
+			try (FileChannel channel = FileChannel.open(upload.getFile().toPath(), StandardOpenOption.WRITE);
+					ReadableByteChannel source = Channels.newChannel(in))
+			{
+				// transferFrom() does not write past the end of the file, so extend the file up to the range first
+				if (start > channel.size()) {
+					channel.write(ByteBuffer.allocate(1), start - 1);
+				}
+
+				while (written < length) {
+					long count = channel.transferFrom(source, start + written, length - written);
+					if (count <= 0) {
+						break;
+					}
+					written += count;
+				}
+			} finally {
+				upload.addRange(start, start + written);
+			}
+
+			logger.debug(String.format("Resumable upload %s: received bytes %d-%d", upload.getId(), start, start + written - 1));
+			return written;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Starts finishing a complete upload. The upload is kept with its file, but no longer accepts ranges,
+	 * until it is either removed by {@link #remove(String, String)} when its load has succeeded or has been
+	 * accepted as a job, or opened again by {@link #reopen(String, String)} when the load has failed
+	 * @param targetUri
+	 * @param uploadId
+	 * @return the assembled file
+	 * @throws NotFoundException if the upload is not found, has expired or belongs to another target
+	 * @throws IllegalStateException if some bytes have not been received yet, or the upload is already being finished
+	 */
+	public File complete(String targetUri, String uploadId) throws NotFoundException, IllegalStateException {
+		ResumableUpload upload = get(targetUri, uploadId);
+
+		// waits for the ranges being written
+		Lock lock = upload.getLock().writeLock();
+		lock.lock();
+		try {
+			if (upload.isClosed()) {
+				throw ErrorFactory.createResumableUploadNotFoundException(targetUri, uploadId);
+			}
+
+			checkNotFinishing(upload);
+
+			if (!upload.isComplete()) {
+				throw new IllegalStateException(String.format(
+						"Upload is incomplete: received %d of %s bytes",
+						upload.getBytesReceived(),
+						upload.getTotalBytes() >= 0 ? Long.toString(upload.getTotalBytes()) : "unknown"));
+			}
+
+			upload.setFinishing(true);
+		} finally {
+			lock.unlock();
+		}
+
+		logger.info(String.format("Resumable upload completed: id=%s, target=%s, totalBytes=%d", uploadId, targetUri, upload.getTotalBytes()));
+		return upload.getFile();
+	}
+
+	/**
+	 * Removes an upload being finished, whose load has succeeded or has been accepted as a job.
+	 * The file is not deleted, it is left to the reader of the file returned by {@link #complete(String, String)}
+	 * @param targetUri
+	 * @param uploadId
+	 * @throws NotFoundException if the upload is not found or belongs to another target
+	 * @throws IllegalStateException if the upload is not being finished
+	 */
+	public void remove(String targetUri, String uploadId) throws NotFoundException, IllegalStateException {
+		ResumableUpload upload = get(targetUri, uploadId);
+		synchronized (upload) {
+			if (!upload.isFinishing()) {
+				throw new IllegalStateException("Upload is not being finished: " + uploadId);
+			}
+			upload.close();
+			uploads.remove(uploadId);
+		}
+
+		logger.info(String.format("Resumable upload removed: id=%s", uploadId));
+	}
+
+	/**
+	 * Opens an upload being finished again, after its load has failed, so that it can be finished
+	 * or aborted again, or removed when it expires
+	 * @param targetUri
+	 * @param uploadId
+	 * @throws NotFoundException if the upload is not found or belongs to another target
+	 */
+	public void reopen(String targetUri, String uploadId) throws NotFoundException {
+		get(targetUri, uploadId).setFinishing(false);
+		logger.info(String.format("Resumable upload reopened: id=%s", uploadId));
+	}
+
+	/**
+	 * Aborts an upload and deletes its file
+	 * @param targetUri
+	 * @param uploadId
+	 * @throws NotFoundException if the upload is not found, has expired or belongs to another target
+	 * @throws IllegalStateException if the upload is being finished
+	 */
+	public void abort(String targetUri, String uploadId) throws NotFoundException, IllegalStateException {
+		ResumableUpload upload = get(targetUri, uploadId);
+
+		// waits for the ranges being written
+		Lock lock = upload.getLock().writeLock();
+		lock.lock();
+		try {
+			if (upload.isClosed()) {
+				throw ErrorFactory.createResumableUploadNotFoundException(targetUri, uploadId);
+			}
+			checkNotFinishing(upload);
+
+			upload.close();
+			uploads.remove(uploadId);
+			upload.getFile().delete();
+		} finally {
+			lock.unlock();
+		}
+
+		logger.info(String.format("Resumable upload aborted: id=%s", uploadId));
+	}
+
+	/**
+	 * Gets status of an upload
+	 * @param upload
+	 * @return
+	 */
+	public Model getStatus(ResumableUpload upload) {
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+
+		Resource uploadResource = model
+				.createResource(NameFormatter.formatResumableUploadUri(upload.getTargetUri(), upload.getId()))
+				.addProperty(RDF.type, LBDHO.ResumableUpload)
+				.addProperty(LBDHO.uploadTarget, model.createResource(upload.getTargetUri()))
+				.addLiteral(LBDHO.bytesReceived, upload.getBytesReceived())
+				.addLiteral(LBDHO.submitted, model.createTypedLiteral(toCalendar(upload.getCreatedTime())))
+				.addLiteral(LBDHO.lastModified, model.createTypedLiteral(toCalendar(upload.getLastModifiedTime())));
+
+		if (upload.getTotalBytes() >= 0) {
+			uploadResource.addLiteral(LBDHO.bytesTotal, upload.getTotalBytes());
+		}
+
+		return model;
+	}
+
+	private void removeExpiredUploads() {
+		long expiredTime = System.currentTimeMillis() - retentionMillis;
+
+		List<String> expiredUploadIds = new ArrayList<>();
+		for (Iterator<ResumableUpload> it = uploads.values().iterator(); it.hasNext();) {
+			ResumableUpload upload = it.next();
+			if (upload.getLastModifiedTime() >= expiredTime || upload.isFinishing()) {
+				continue;
+			}
+
+			// an upload whose range is still being written is not expired
+			Lock lock = upload.getLock().writeLock();
+			if (!lock.tryLock()) {
+				continue;
+			}
+			try {
+				if (!upload.isClosed() && !upload.isFinishing()) {
+					upload.close();
+					it.remove();
+					upload.getFile().delete();
+					expiredUploadIds.add(upload.getId());
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		if (!expiredUploadIds.isEmpty()) {
+			logger.info("Removed expired resumable uploads: " + expiredUploadIds);
+		}
+	}
+
+	private static void checkNotFinishing(ResumableUpload upload) throws IllegalStateException {
+		if (upload.isFinishing()) {
+			throw new IllegalStateException("Upload is being finished: " + upload.getId());
+		}
+	}
+
+	private static Calendar toCalendar(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		return calendar;
+	}
+
+}
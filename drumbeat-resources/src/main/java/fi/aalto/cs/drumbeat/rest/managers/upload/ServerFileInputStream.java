@@ -0,0 +1,28 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+
+/**
+ * Input stream over a file on the server. Uploads read from such a stream may use the file directly
+ * instead of copying the stream, see {@link DataSetUploadManager}.
+ */
+public class ServerFileInputStream extends FileInputStream {
+
+	private final File file;
+
+	public ServerFileInputStream(File file) throws FileNotFoundException {
+		super(file);
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getLength() {
+		return file.length();
+	}
+
+}
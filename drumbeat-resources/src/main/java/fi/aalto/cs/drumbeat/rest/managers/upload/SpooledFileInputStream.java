@@ -0,0 +1,55 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Input stream over a temporary file created by {@link UploadJobManager#spoolToFile(java.io.InputStream)}
+ * or assembled by {@link ResumableUploadManager}.
+ * The file is deleted when the stream is closed, or when deleting is enabled after the stream has been closed.
+ */
+public class SpooledFileInputStream extends ServerFileInputStream {
+
+	private boolean deleteOnClose;
+	private boolean closed;
+
+	public SpooledFileInputStream(File file) throws FileNotFoundException {
+		this(file, true);
+	}
+
+	/**
+	 * @param file
+	 * @param deleteOnClose whether the file is deleted when the stream is closed, see {@link #setDeleteOnClose(boolean)}
+	 * @throws FileNotFoundException
+	 */
+	public SpooledFileInputStream(File file, boolean deleteOnClose) throws FileNotFoundException {
+		super(file);
+		this.deleteOnClose = deleteOnClose;
+	}
+
+	/**
+	 * Sets whether the file is deleted when the stream is closed. If the stream has already been closed,
+	 * the file is deleted at once
+	 * @param deleteOnClose
+	 */
+	public synchronized void setDeleteOnClose(boolean deleteOnClose) {
+		this.deleteOnClose = deleteOnClose;
+		if (deleteOnClose && closed) {
+			getFile().delete();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			closed = true;
+			if (deleteOnClose) {
+				getFile().delete();
+			}
+		}
+	}
+
+}
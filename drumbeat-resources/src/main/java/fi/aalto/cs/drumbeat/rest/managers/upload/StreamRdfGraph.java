@@ -0,0 +1,57 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.shared.DeleteDeniedException;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+
+/**
+ * Write-only graph that forwards every added triple to a {@link StreamRDF} sink
+ * instead of keeping it in memory.
+ *
+ * Used as the target of {@link fi.aalto.cs.drumbeat.ifc.convert.ifc2ld.Ifc2RdfModelExporter}
+ * so that exported triples go straight to a file or to the store.
+ * The graph is always empty for reading: {@link #find(Node, Node, Node)} returns no triples.
+ */
+public class StreamRdfGraph extends GraphBase {
+
+	private final StreamRDF stream;
+	private long tripleCount;
+
+	public StreamRdfGraph(StreamRDF stream) {
+		this.stream = stream;
+	}
+
+	/**
+	 * Gets the number of triples forwarded to the sink so far
+	 * @return
+	 */
+	public long getTripleCount() {
+		return tripleCount;
+	}
+
+	@Override
+	public void performAdd(Triple triple) {
+		stream.triple(triple);
+		++tripleCount;
+	}
+
+	@Override
+	public void performDelete(Triple triple) {
+		throw new DeleteDeniedException("Deleting triples from a stream graph is not supported", triple);
+	}
+
+	@Override
+	protected ExtendedIterator<Triple> graphBaseFind(Triple triplePattern) {
+		return NullIterator.instance();
+	}
+
+	@Override
+	protected int graphBaseSize() {
+		return (int)Math.min(tripleCount, Integer.MAX_VALUE);
+	}
+
+}
@@ -0,0 +1,80 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+import org.apache.jena.atlas.io.AWriter;
+import org.apache.jena.atlas.io.IO;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.lang.LangNTriples;
+import org.apache.jena.riot.out.NodeFormatter;
+import org.apache.jena.riot.out.NodeFormatterNT;
+import org.apache.jena.riot.system.ParserProfile;
+import org.apache.jena.riot.system.RiotLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.tokens.TokenizerFactory;
+import org.apache.jena.shared.JenaException;
+
+/**
+ * N-Triples work files of the loaders, in which blank nodes keep their labels,
+ * so that the triples read back equal the triples written
+ */
+final class TripleFiles {
+
+	private static final NodeFormatter nodeFormatter = new NodeFormatterNT();
+
+	private TripleFiles() {
+	}
+
+	/**
+	 * Opens a file for writing
+	 * @param file
+	 * @return
+	 * @throws JenaException if the file cannot be created
+	 */
+	static AWriter open(File file) {
+		try {
+			return IO.wrapUTF8(new BufferedOutputStream(new FileOutputStream(file)));
+		} catch (IOException e) {
+			throw new JenaException("Creating triple file failed: " + e.getMessage(), e);
+		}
+	}
+
+	static void write(AWriter out, Triple triple) {
+		nodeFormatter.format(out, triple.getSubject());
+		out.print(' ');
+		nodeFormatter.format(out, triple.getPredicate());
+		out.print(' ');
+		nodeFormatter.format(out, triple.getObject());
+		out.print(" .\n");
+	}
+
+	/**
+	 * Reads the triples of a file one by one
+	 * @param file
+	 * @param consumer
+	 * @throws JenaException if the file cannot be read
+	 */
+	static void read(File file, Consumer<Triple> consumer) {
+		ParserProfile profile = RiotLib.profile(Lang.NTRIPLES, null);
+		profile.setLabelToNode(LabelToNode.createUseLabelEncoded());
+
+		try (InputStream in = RdfCacheCompression.openInputStream(file)) {
+			new LangNTriples(TokenizerFactory.makeTokenizerUTF8(in), profile, new StreamRDFBase() {
+				@Override
+				public void triple(Triple triple) {
+					consumer.accept(triple);
+				}
+			}).parse();
+		} catch (IOException e) {
+			throw new JenaException("Reading triple file failed: " + e.getMessage(), e);
+		}
+	}
+
+}
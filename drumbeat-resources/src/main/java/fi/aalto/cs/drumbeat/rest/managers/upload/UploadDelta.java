@@ -0,0 +1,29 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+/**
+ * Numbers of triples inserted and deleted by a diff upload
+ */
+public class UploadDelta {
+
+	private final long triplesInserted;
+	private final long triplesDeleted;
+
+	public UploadDelta(long triplesInserted, long triplesDeleted) {
+		this.triplesInserted = triplesInserted;
+		this.triplesDeleted = triplesDeleted;
+	}
+
+	public long getTriplesInserted() {
+		return triplesInserted;
+	}
+
+	public long getTriplesDeleted() {
+		return triplesDeleted;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("+%d/-%d", triplesInserted, triplesDeleted);
+	}
+
+}
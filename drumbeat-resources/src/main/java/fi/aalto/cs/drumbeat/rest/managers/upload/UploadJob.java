@@ -0,0 +1,129 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Upload running in the background, see {@link UploadJobManager}
+ */
+public class UploadJob {
+
+	private static final Logger logger = Logger.getLogger(UploadJob.class);
+
+	private final String id;
+	private final String targetUri;
+	private final UploadProgress progress;
+	private final long submittedTime;
+	private final Runnable onFinish;
+	private volatile long finishedTime;
+	private volatile String errorMessage;
+	private volatile Future<?> future;
+	private boolean started;
+
+	/**
+	 * @param id
+	 * @param targetUri
+	 * @param totalBytes
+	 * @param onFinish run once when the job finishes, whether it has run or was cancelled while queued, or <code>null</code>
+	 */
+	UploadJob(String id, String targetUri, long totalBytes, Runnable onFinish) {
+		this.id = id;
+		this.targetUri = targetUri;
+		this.onFinish = onFinish;
+		this.progress = new UploadProgress();
+		this.progress.setTotalBytes(totalBytes);
+		this.submittedTime = System.currentTimeMillis();
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * Gets URI of the data set, link set or ontology which is uploaded
+	 * @return
+	 */
+	public String getTargetUri() {
+		return targetUri;
+	}
+
+	public UploadProgress getProgress() {
+		return progress;
+	}
+
+	public long getSubmittedTime() {
+		return submittedTime;
+	}
+
+	/**
+	 * Gets the time when the job finished, or 0 if it is still queued or running
+	 * @return
+	 */
+	public long getFinishedTime() {
+		return finishedTime;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public boolean isFinished() {
+		return progress.getPhase().isFinished();
+	}
+
+	/**
+	 * Requests cancellation of the job.
+	 *
+	 * A queued job is cancelled at once, a running job stops at its next cancellation check
+	 * and keeps its phase until then.
+	 * A job which has loaded its graph is not cancelled, but completes its metadata update.
+	 * @return <code>false</code> if the job has already finished or passed the loading phase
+	 */
+	public synchronized boolean cancel() {
+		if (isFinished() || !progress.cancel()) {
+			return false;
+		}
+
+		if (!started) {
+			if (future != null) {
+				future.cancel(false);
+			}
+			finish(UploadPhase.CANCELLED, null);
+		}
+		return true;
+	}
+
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	/**
+	 * Marks the job as running, unless it has been cancelled while queued
+	 * @return <code>false</code> if the job must not run
+	 */
+	synchronized boolean start() {
+		if (isFinished()) {
+			return false;
+		}
+		started = true;
+		return true;
+	}
+
+	synchronized void finish(UploadPhase phase, String errorMessage) {
+		if (!isFinished()) {
+			this.errorMessage = errorMessage;
+			this.finishedTime = System.currentTimeMillis();
+			progress.setPhase(phase);
+
+			if (onFinish != null) {
+				try {
+					onFinish.run();
+				} catch (RuntimeException e) {
+					logger.warn(String.format("Error finishing upload job %s: %s", id, e.getMessage()), e);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.NotFoundException;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.log4j.Logger;
+
+import fi.aalto.cs.drumbeat.common.file.FileManager;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.common.RequestContext;
+import fi.aalto.cs.drumbeat.rest.managers.ErrorFactory;
+
+/**
+ * Runs uploads in the background on a bounded thread pool and keeps their status.
+ *
+ * The status of a finished job is kept for {@link DrumbeatApplication#getUploadJobRetentionMinutes()} minutes.
+ */
+public class UploadJobManager {
+
+	private static final Logger logger = Logger.getLogger(UploadJobManager.class);
+
+	/**
+	 * Upload to be run by a job
+	 */
+	public interface UploadTask {
+		void run(UploadProgress progress) throws Exception;
+	}
+
+	private static UploadJobManager instance;
+
+	public static synchronized UploadJobManager getInstance() {
+		if (instance == null) {
+			DrumbeatApplication application = DrumbeatApplication.getInstance();
+			instance = new UploadJobManager(
+					application.getUploadJobThreadCount(),
+					application.getUploadJobQueueSize(),
+					application.getUploadJobRetentionMinutes());
+		}
+		return instance;
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final Map<String, UploadJob> jobs = new ConcurrentHashMap<>();
+	private final long retentionMillis;
+
+	private UploadJobManager(int threadCount, int queueSize, int retentionMinutes) {
+		logger.info(String.format("Starting upload jobs: threads=%d, queueSize=%d", threadCount, queueSize));
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "drumbeat-upload-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		executor = new ThreadPoolExecutor(
+				threadCount,
+				threadCount,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				threadFactory);
+
+		retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+	}
+
+	/**
+	 * Submits an upload to be run in the background
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param totalBytes size of the input, or -1 if unknown
+	 * @param task
+	 * @return the queued job
+	 * @throws RejectedExecutionException if too many jobs are already queued
+	 */
+	public UploadJob submit(String targetUri, long totalBytes, UploadTask task) throws RejectedExecutionException {
+		return submit(targetUri, totalBytes, task, null);
+	}
+
+	/**
+	 * Submits an upload to be run in the background
+	 * @param targetUri URI of the data set, link set or ontology which is uploaded
+	 * @param totalBytes size of the input, or -1 if unknown
+	 * @param task
+	 * @param onFinish run when the job finishes, also if it is cancelled before it runs, such as to release its input.
+	 * It is not run if the job is rejected
+	 * @return the queued job
+	 * @throws RejectedExecutionException if too many jobs are already queued
+	 */
+	public UploadJob submit(String targetUri, long totalBytes, UploadTask task, Runnable onFinish) throws RejectedExecutionException {
+		removeExpiredJobs();
+
+		UploadJob job = new UploadJob(UUID.randomUUID().toString(), targetUri, totalBytes, onFinish);
+		jobs.put(job.getId(), job);
+
+		try {
+			job.setFuture(executor.submit(RequestContext.wrap(() -> run(job, task))));
+		} catch (RejectedExecutionException e) {
+			jobs.remove(job.getId());
+			throw e;
+		}
+
+		logger.info(String.format("Upload job queued: id=%s, target=%s", job.getId(), targetUri));
+		return job;
+	}
+
+	private void run(UploadJob job, UploadTask task) {
+		if (!job.start()) {
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		logger.info(String.format("Upload job started: id=%s, target=%s", job.getId(), job.getTargetUri()));
+
+		try {
+			task.run(job.getProgress());
+			job.finish(UploadPhase.COMPLETED, null);
+			logger.info(String.format("Upload job completed: id=%s (%d ms)", job.getId(), System.currentTimeMillis() - startTime));
+		} catch (CancellationException e) {
+			job.finish(UploadPhase.CANCELLED, e.getMessage());
+			logger.info(String.format("Upload job cancelled: id=%s in phase %s", job.getId(), job.getProgress().getPhase()));
+		} catch (Exception e) {
+			job.finish(UploadPhase.FAILED, e.toString());
+			logger.error(String.format("Upload job failed: id=%s", job.getId()), e);
+		}
+	}
+
+	/**
+	 * Gets a job by its id
+	 * @param jobId
+	 * @return
+	 * @throws NotFoundException if the job is not found or has expired
+	 */
+	public UploadJob getJob(String jobId) throws NotFoundException {
+		removeExpiredJobs();
+
+		UploadJob job = jobs.get(jobId);
+		if (job == null) {
+			throw ErrorFactory.createUploadJobNotFoundException(jobId);
+		}
+		return job;
+	}
+
+	/**
+	 * Gets status of all known jobs
+	 * @return
+	 */
+	public Model getAll() {
+		removeExpiredJobs();
+
+		Model model = createModel();
+		for (UploadJob job : jobs.values()) {
+			fillJobStatus(model, job);
+		}
+		return model;
+	}
+
+	/**
+	 * Gets status of a job
+	 * @param jobId
+	 * @return
+	 * @throws NotFoundException if the job is not found or has expired
+	 */
+	public Model getById(String jobId) throws NotFoundException {
+		UploadJob job = getJob(jobId);
+
+		Model model = createModel();
+		fillJobStatus(model, job);
+		return model;
+	}
+
+	/**
+	 * Requests cancellation of a job
+	 * @param jobId
+	 * @return status of the job
+	 * @throws NotFoundException if the job is not found or has expired
+	 */
+	public Model cancel(String jobId) throws NotFoundException {
+		UploadJob job = getJob(jobId);
+		if (job.cancel()) {
+			logger.info(String.format("Upload job cancellation requested: id=%s", jobId));
+		}
+		return getById(jobId);
+	}
+
+	/**
+	 * Saves an input stream to a temporary file in the uploads folder, so that it can be read
+	 * after the request which provided it has completed
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static File spoolToFile(InputStream in) throws IOException {
+		String filePath = String.format("%s/%s.upload",
+				DrumbeatApplication.getInstance().getUploadsDirPath(),
+				UUID.randomUUID().toString());
+
+		File file = FileManager.createFile(filePath);
+		try (OutputStream out = new FileOutputStream(file)) {
+			IOUtils.copy(in, out);
+		} catch (IOException e) {
+			file.delete();
+			throw e;
+		} finally {
+			in.close();
+		}
+		return file;
+	}
+
+	private void removeExpiredJobs() {
+		long expiredTime = System.currentTimeMillis() - retentionMillis;
+
+		List<String> expiredJobIds = new ArrayList<>();
+		for (Iterator<UploadJob> it = jobs.values().iterator(); it.hasNext();) {
+			UploadJob job = it.next();
+			if (job.isFinished() && job.getFinishedTime() < expiredTime) {
+				expiredJobIds.add(job.getId());
+				it.remove();
+			}
+		}
+
+		if (!expiredJobIds.isEmpty()) {
+			logger.debug("Removed expired upload jobs: " + expiredJobIds);
+		}
+	}
+
+	private static Model createModel() {
+		Model model = ModelFactory.createDefaultModel();
+		model.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+		return model;
+	}
+
+	private static void fillJobStatus(Model model, UploadJob job) {
+		UploadProgress progress = job.getProgress();
+
+		Resource jobResource = model
+				.createResource(NameFormatter.formatUploadJobUri(job.getId()))
+				.addProperty(RDF.type, LBDHO.UploadJob)
+				.addProperty(LBDHO.uploadTarget, model.createResource(job.getTargetUri()))
+				.addProperty(LBDHO.uploadPhase, progress.getPhase().toString())
+				.addLiteral(LBDHO.bytesRead, progress.getBytesRead())
+				.addLiteral(LBDHO.triplesProcessed, progress.getTriplesProcessed())
+				.addLiteral(LBDHO.submitted, model.createTypedLiteral(toCalendar(job.getSubmittedTime())));
+
+		if (progress.getTotalBytes() >= 0) {
+			jobResource.addLiteral(LBDHO.bytesTotal, progress.getTotalBytes());
+		}
+
+		long timeRemaining = progress.getEstimatedTimeRemaining();
+		if (timeRemaining >= 0) {
+			jobResource.addLiteral(LBDHO.estimatedTimeRemaining, timeRemaining);
+		}
+
+		if (job.isFinished()) {
+			jobResource.addLiteral(LBDHO.finished, model.createTypedLiteral(toCalendar(job.getFinishedTime())));
+		}
+
+		if (job.getErrorMessage() != null) {
+			jobResource.addProperty(LBDHO.errorMessage, job.getErrorMessage());
+		}
+	}
+
+	private static Calendar toCalendar(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		return calendar;
+	}
+
+}
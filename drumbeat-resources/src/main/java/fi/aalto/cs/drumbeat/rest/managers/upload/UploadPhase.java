@@ -0,0 +1,33 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+/**
+ * Phases of an upload, in the order they are normally passed
+ */
+public enum UploadPhase {
+
+	QUEUED,
+	CACHING,
+	PARSING,
+	GROUNDING,
+	EXPORTING,
+	LOADING,
+	INDEXING,
+	UPDATING_METADATA,
+	COMPLETED,
+	FAILED,
+	CANCELLED;
+
+	public boolean isFinished() {
+		return this == COMPLETED || this == FAILED || this == CANCELLED;
+	}
+
+	/**
+	 * Whether an upload in this phase can still be cancelled. The graph has been loaded in the later phases,
+	 * so the upload is always completed to keep the metadata in line with the graph
+	 * @return
+	 */
+	public boolean isCancellable() {
+		return compareTo(LOADING) <= 0;
+	}
+
+}
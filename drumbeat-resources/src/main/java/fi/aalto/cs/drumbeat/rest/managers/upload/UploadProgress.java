@@ -0,0 +1,117 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a single upload.
+ *
+ * Updated by the upload thread and read by request threads polling the job status,
+ * so all fields are safe to access concurrently.
+ * Cancellation is cooperative: the upload checks {@link #checkCancelled()} between phases,
+ * while reading input and while loading triples. It is ignored once the upload has passed the
+ * loading phase, see {@link UploadPhase#isCancellable()}.
+ */
+public class UploadProgress {
+
+	private volatile UploadPhase phase = UploadPhase.QUEUED;
+	private volatile boolean cancelled;
+	private volatile long totalBytes = -1;
+	private volatile long startTime;
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong triplesProcessed = new AtomicLong();
+
+	public UploadPhase getPhase() {
+		return phase;
+	}
+
+	/**
+	 * Moves the upload to the next phase
+	 * @param phase
+	 * @throws CancellationException if the upload has been cancelled and the next phase can still be cancelled
+	 */
+	public synchronized void setPhase(UploadPhase phase) {
+		if (!phase.isFinished()) {
+			if (phase.isCancellable()) {
+				checkCancelled();
+			}
+			if (startTime == 0) {
+				startTime = System.currentTimeMillis();
+			}
+		}
+		this.phase = phase;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Requests cancellation of the upload
+	 * @return <code>false</code> if the upload can no longer be cancelled
+	 */
+	public synchronized boolean cancel() {
+		if (!phase.isCancellable()) {
+			return false;
+		}
+		cancelled = true;
+		return true;
+	}
+
+	/**
+	 * Throws {@link CancellationException} if the upload has been cancelled while it still can be
+	 */
+	public void checkCancelled() {
+		if (cancelled && phase.isCancellable()) {
+			throw new CancellationException("Upload has been cancelled");
+		}
+	}
+
+	/**
+	 * Gets the input size in bytes, or -1 if unknown
+	 * @return
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	public void setTotalBytes(long totalBytes) {
+		this.totalBytes = totalBytes;
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public void addBytesRead(long count) {
+		bytesRead.addAndGet(count);
+	}
+
+	public long getTriplesProcessed() {
+		return triplesProcessed.get();
+	}
+
+	public void addTriplesProcessed(long count) {
+		triplesProcessed.addAndGet(count);
+	}
+
+	/**
+	 * Estimates the remaining time from the rate at which the input has been read so far
+	 * @return the remaining time in milliseconds, or -1 if it cannot be estimated
+	 */
+	public long getEstimatedTimeRemaining() {
+		long read = bytesRead.get();
+		long total = totalBytes;
+		if (startTime == 0 || read <= 0 || total <= 0 || phase.isFinished()) {
+			return -1;
+		}
+
+		if (read >= total) {
+			return 0;
+		}
+
+		long elapsed = System.currentTimeMillis() - startTime;
+		return (long)(elapsed * ((double)(total - read) / read));
+	}
+
+}
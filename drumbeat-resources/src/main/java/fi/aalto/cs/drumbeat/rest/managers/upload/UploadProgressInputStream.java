@@ -0,0 +1,33 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.input.ProxyInputStream;
+
+/**
+ * Input stream that reports the number of bytes read to an {@link UploadProgress}
+ * and stops reading when the upload is cancelled
+ */
+public class UploadProgressInputStream extends ProxyInputStream {
+
+	private final UploadProgress progress;
+
+	public UploadProgressInputStream(InputStream in, UploadProgress progress) {
+		super(in);
+		this.progress = progress;
+	}
+
+	@Override
+	protected void beforeRead(int n) throws IOException {
+		progress.checkCancelled();
+	}
+
+	@Override
+	protected void afterRead(int n) throws IOException {
+		if (n > 0) {
+			progress.addBytesRead(n);
+		}
+	}
+
+}
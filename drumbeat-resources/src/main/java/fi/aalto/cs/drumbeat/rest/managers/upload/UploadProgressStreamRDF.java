@@ -0,0 +1,49 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+
+/**
+ * Stream that counts triples passed to the sink in an {@link UploadProgress}
+ * and stops the upload when it is cancelled
+ */
+public class UploadProgressStreamRDF extends StreamRDFWrapper implements AbortableStreamRDF {
+
+	private static final int REPORT_INTERVAL = 10000;
+
+	private final UploadProgress progress;
+	private int unreportedCount;
+
+	public UploadProgressStreamRDF(StreamRDF sink, UploadProgress progress) {
+		super(sink);
+		this.progress = progress;
+	}
+
+	@Override
+	public void triple(Triple triple) {
+		super.triple(triple);
+		if (++unreportedCount == REPORT_INTERVAL) {
+			report();
+			progress.checkCancelled();
+		}
+	}
+
+	@Override
+	public void finish() {
+		super.finish();
+		report();
+	}
+
+	@Override
+	public void abort() {
+		AbortableStreamRDF.abort(sink);
+		report();
+	}
+
+	private void report() {
+		progress.addTriplesProcessed(unreportedCount);
+		unreportedCount = 0;
+	}
+
+}
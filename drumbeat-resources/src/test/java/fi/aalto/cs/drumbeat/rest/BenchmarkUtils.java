@@ -0,0 +1,64 @@
+package fi.aalto.cs.drumbeat.rest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+public class BenchmarkUtils {
+	
+	private static final String PROC_SELF_STATUS = "/proc/self/status";
+	private static final String PEAK_RSS_KEY = "VmHWM:";
+	
+	/**
+	 * Gets the peak resident set size of the current process in bytes. <br />
+	 * Falls back to the sum of peak heap pool usages where /proc is unavailable
+	 * 
+	 * @return peak memory usage in bytes
+	 */
+	public static long getPeakRss() {
+		File statusFile = new File(PROC_SELF_STATUS);
+		if (statusFile.exists()) {
+			try (BufferedReader reader = new BufferedReader(new FileReader(statusFile))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(PEAK_RSS_KEY)) {
+						String[] tokens = line.substring(PEAK_RSS_KEY.length()).trim().split("\\s+");
+						return Long.parseLong(tokens[0]) * 1024L;
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				// fall back to JMX
+			}
+		}
+		
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peakHeap;
+	}
+	
+	/**
+	 * Resets peak usage counters of heap memory pools
+	 */
+	public static void resetPeakHeapUsage() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+	}
+	
+	public static String formatBytes(long bytes) {
+		return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+	}
+	
+	public static double perSecond(long count, long nanos) {
+		return nanos > 0 ? count * 1e9 / nanos : 0.0;
+	}
+
+}
@@ -0,0 +1,206 @@
+package fi.aalto.cs.drumbeat.rest.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.Form;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+
+import fi.aalto.cs.drumbeat.rest.DrumbeatTest;
+import fi.aalto.cs.drumbeat.rest.application.TestApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadJob;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadJobManager;
+import fi.aalto.cs.drumbeat.rest.managers.upload.UploadPhase;
+import fi.aalto.cs.drumbeat.rdf.utils.RdfIOUtils;
+
+
+public class Test_UploadJobResource extends DrumbeatTest {
+
+	private static final boolean DO_TEST = true;
+
+	private static final long JOB_TIMEOUT_MILLIS = 30000;
+
+	public Test_UploadJobResource() {
+		super(DO_TEST);
+	}
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		DrumbeatTest.setUpBeforeClass();
+		Model metaDataModel = getApplication().getMetaDataModel();
+		String testDataFilePath = getApplication().getRealServerPath(TestApplication.TEST_RDF_META_DATA_FILE_PATH);
+		RdfIOUtils.importRdfFileToJenaModel(metaDataModel, testDataFilePath);
+	}
+
+	/***************************************
+	 * getById()
+	 **************************************/
+
+	@Test(expected=NotFoundException.class)
+	public void test_getById_wrongJobId() {
+		if (!doTest()) {
+			return;
+		}
+
+		try {
+			target("jobs/job-999")
+				.request("text/turtle")
+				.get(String.class);
+		} catch (NotFoundException e) {
+			String baseUri = DrumbeatApplication.getInstance().getBaseUri();
+			String expectedMessage = String.format(
+					"%s: Upload job not found: <%sjobs/job-999>",
+					org.apache.jena.shared.NotFoundException.class,
+					baseUri);
+
+			String actualMessage = e.getResponse().readEntity(String.class);
+			assertEquals(expectedMessage, actualMessage);
+
+			throw e;
+		}
+	}
+
+	/***************************************
+	 * uploadContent(async=true)
+	 **************************************/
+
+	@Test
+	public void test_uploadContent_async_wrongDataSetId() {
+		if (!doTest()) {
+			return;
+		}
+
+		Response response = target("datasets/col-1/dso-1-1/dse-1-1-999/uploadContent")
+			.request("text/turtle")
+			.post(Entity.entity(createRdfContentForm(), MediaType.APPLICATION_FORM_URLENCODED_TYPE));
+
+		assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+	}
+
+	@Test
+	public void test_uploadContent_async_completed() throws InterruptedException {
+		if (!doTest()) {
+			return;
+		}
+
+		Response response = target("datasets/col-1/dso-1-1/dse-1-1-1/uploadContent")
+			.request("text/turtle")
+			.post(Entity.entity(createRdfContentForm(), MediaType.APPLICATION_FORM_URLENCODED_TYPE));
+
+		assertEquals(Response.Status.ACCEPTED.getStatusCode(), response.getStatus());
+
+		URI jobUri = response.getLocation();
+		assertNotNull(jobUri);
+
+		String baseUri = DrumbeatApplication.getInstance().getBaseUri();
+		String jobId = jobUri.getPath().substring(jobUri.getPath().lastIndexOf('/') + 1);
+		Resource jobResource = ResourceFactory.createResource(baseUri + "jobs/" + jobId);
+
+		long deadline = System.currentTimeMillis() + JOB_TIMEOUT_MILLIS;
+		String phase;
+		Model model;
+
+		do {
+			Thread.sleep(100);
+
+			String entity = target("jobs/" + jobId)
+				.request("text/turtle")
+				.get(String.class);
+
+			model = ModelFactory.createDefaultModel();
+			model.read(new ByteArrayInputStream(entity.getBytes()), baseUri, "TURTLE");
+
+			phase = model.getRequiredProperty(jobResource, LBDHO.uploadPhase).getString();
+		} while (!UploadPhase.valueOf(phase).isFinished() && System.currentTimeMillis() < deadline);
+
+		assertEquals(UploadPhase.COMPLETED.toString(), phase);
+		assertEquals(2L, model.getRequiredProperty(jobResource, LBDHO.triplesProcessed).getLong());
+		assertTrue(model.contains(jobResource, LBDHO.finished));
+	}
+
+	/***************************************
+	 * cancel()
+	 **************************************/
+
+	@Test
+	public void test_cancel_running() throws InterruptedException {
+		if (!doTest()) {
+			return;
+		}
+
+		CountDownLatch parsing = new CountDownLatch(1);
+		CountDownLatch resume = new CountDownLatch(1);
+		AtomicBoolean loaded = new AtomicBoolean();
+
+		String targetUri = NameFormatter.formatDataSetResourceUri("col-1", "dso-1-1", "dse-1-1-1");
+		UploadJob job = UploadJobManager.getInstance().submit(targetUri, -1, progress -> {
+			progress.setPhase(UploadPhase.PARSING);
+			parsing.countDown();
+			resume.await();
+			progress.setPhase(UploadPhase.LOADING);
+			loaded.set(true);
+		});
+
+		try {
+			assertTrue(parsing.await(JOB_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+			String baseUri = DrumbeatApplication.getInstance().getBaseUri();
+			Resource jobResource = ResourceFactory.createResource(baseUri + "jobs/" + job.getId());
+
+			String entity = target("jobs/" + job.getId())
+				.request("text/turtle")
+				.delete(String.class);
+
+			Model model = ModelFactory.createDefaultModel();
+			model.read(new ByteArrayInputStream(entity.getBytes()), baseUri, "TURTLE");
+
+			// the running job keeps its phase until its next cancellation check
+			assertEquals(UploadPhase.PARSING.toString(), model.getRequiredProperty(jobResource, LBDHO.uploadPhase).getString());
+			assertFalse(model.contains(jobResource, LBDHO.finished));
+		} finally {
+			resume.countDown();
+		}
+
+		long deadline = System.currentTimeMillis() + JOB_TIMEOUT_MILLIS;
+		while (!job.isFinished() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+		}
+
+		assertEquals(UploadPhase.CANCELLED, job.getProgress().getPhase());
+		assertFalse(loaded.get());
+	}
+
+	private static Form createRdfContentForm() {
+		Form form = new Form();
+		form.param("dataType", "RDF");
+		form.param("dataFormat", "ttl");
+		form.param("async", "true");
+		form.param("content",
+				"<http://example.org/a> <http://example.org/p> <http://example.org/b> . \n" +
+				"<http://example.org/b> <http://example.org/p> \"c\" . \n");
+		return form;
+	}
+
+}
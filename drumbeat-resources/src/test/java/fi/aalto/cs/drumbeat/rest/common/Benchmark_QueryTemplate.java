@@ -0,0 +1,80 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.IntFunction;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.junit.Test;
+
+/**
+ * Compares the CPU time of building the query of DataSetManager.getById() per request: <br />
+ * - parsed: ParameterizedSparqlString filled with the default prefixes and parsed (the way before templates) <br />
+ * - template: parameters bound to a QueryTemplate parsed once <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_QueryTemplate -Dbenchmark.iterations=20000
+ */
+public class Benchmark_QueryTemplate {
+
+	private static final String BASE_URI = "http://drumbeat.cs.hut.fi/";
+
+	private static final String COMMAND =
+			"CONSTRUCT { \n" +
+			"	?dataSetUri ?predicate ?object \n" +
+			"} WHERE { \n" +
+			"	?collectionUri a lbdho:Collection ; lbdho:hasDataSource ?dataSourceUri . \n" +
+			"	?dataSourceUri a lbdho:DataSource ; lbdho:hasDataSet ?dataSetUri . \n" +
+			"	?dataSetUri a lbdho:DataSet ; ?predicate ?object . \n" +
+			"} \n" +
+			"ORDER BY ?predicate ?object";
+
+	@Test
+	public void benchmark_asQuery() {
+		int iterations = Integer.getInteger("benchmark.iterations", 20000);
+
+		measure("parsed", iterations, i -> {
+			ParameterizedSparqlString sparql = new ParameterizedSparqlString(COMMAND);
+			sparql.setBaseUri(BASE_URI);
+			sparql.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+			sparql.setIri("collectionUri", BASE_URI + "collections/c" + i);
+			sparql.setIri("dataSourceUri", BASE_URI + "datasources/c" + i + "/s");
+			sparql.setIri("dataSetUri", BASE_URI + "datasets/c" + i + "/s/d");
+			return sparql.asQuery();
+		});
+
+		measure("template", iterations, i ->
+			QueryTemplate.get(COMMAND)
+				.setIri("collectionUri", BASE_URI + "collections/c" + i)
+				.setIri("dataSourceUri", BASE_URI + "datasources/c" + i + "/s")
+				.setIri("dataSetUri", BASE_URI + "datasets/c" + i + "/s/d")
+				.asQuery(BASE_URI));
+	}
+
+	/**
+	 * Builds the query the given number of times to warm up and then measures the same number of calls
+	 */
+	private static void measure(String name, int iterations, IntFunction<Query> builder) {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+		int count = 0;
+		for (int i = 0; i < iterations; ++i) {
+			count += builder.apply(i).isConstructType() ? 1 : 0;
+		}
+
+		long startCpuTime = threadBean.getCurrentThreadCpuTime();
+		long startTime = System.nanoTime();
+		for (int i = 0; i < iterations; ++i) {
+			count += builder.apply(i).isConstructType() ? 1 : 0;
+		}
+		long elapsed = System.nanoTime() - startTime;
+		long cpuTime = threadBean.getCurrentThreadCpuTime() - startCpuTime;
+
+		System.out.println(String.format("%s: %.2f us CPU/query, %.2f us/query (%d queries)",
+				name,
+				cpuTime / 1000.0 / iterations,
+				elapsed / 1000.0 / iterations,
+				count));
+	}
+
+}
@@ -0,0 +1,106 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+
+/**
+ * Compares writing a getAllNonBlank() response (&lt;object&gt; rdf:type &lt;type&gt;) of 1M triples: <br />
+ * - string: the model converted to a String and encoded to bytes (the way before streaming) <br />
+ * - streaming: the model written directly to the output stream <br />
+ * Reports the time to the first byte, the total time and the peak heap usage during writing. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_ResponseSerialization -Dbenchmark.triples=1000000 -Dbenchmark.mediaTypes=text/turtle,application/n-triples,text/html
+ */
+public class Benchmark_ResponseSerialization {
+
+	private static final String BASE_URI = "http://drumbeat.cs.hut.fi/";
+	private static final String OBJECT_BASE_URI = "http://example.org/objects/bench/";
+	private static final String TYPE_BASE_URI = "http://drumbeat.cs.hut.fi/owl/ifc2x3#";
+	private static final String[] TYPES = { "IfcWall", "IfcDoor", "IfcWindow", "IfcSlab", "IfcBeam", "IfcColumn" };
+
+	@Test
+	public void benchmark_writeModel() throws Exception {
+		int tripleCount = Integer.getInteger("benchmark.triples", 1000000);
+		String[] mediaTypes = System.getProperty("benchmark.mediaTypes", "text/turtle,application/n-triples,text/html").split(",");
+
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < tripleCount; ++i) {
+			Resource object = model.createResource(OBJECT_BASE_URI + String.format("%022x", i));
+			object.addProperty(RDF.type, model.createResource(TYPE_BASE_URI + TYPES[i % TYPES.length]));
+		}
+
+		for (String mediaType : mediaTypes) {
+			measure(mediaType, "string", out -> {
+				String entity = MediaTypeConverter.convertModel(model, mediaType, BASE_URI);
+				out.write(entity.getBytes(StandardCharsets.UTF_8));
+			});
+			measure(mediaType, "streaming", out ->
+				MediaTypeConverter.writeModel(model, mediaType, BASE_URI, out));
+		}
+	}
+
+	private interface Writer {
+		void write(OutputStream out) throws Exception;
+	}
+
+	private static void measure(String mediaType, String name, Writer writer) throws Exception {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+
+		CountingOutputStream out = new CountingOutputStream();
+		long startTime = System.nanoTime();
+		writer.write(out);
+		long elapsed = System.nanoTime() - startTime;
+
+		long peakHeap = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		System.out.println(String.format("%s %s: first byte %d ms, total %d ms, %d MB written, peak heap %d MB",
+				mediaType,
+				name,
+				(out.firstWriteTime - startTime) / 1000000,
+				elapsed / 1000000,
+				out.count >> 20,
+				peakHeap >> 20));
+	}
+
+	/**
+	 * Discards the bytes written and records the time of the first write
+	 */
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+		private long firstWriteTime;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (count == 0) {
+				firstWriteTime = System.nanoTime();
+			}
+			count += len;
+		}
+
+	}
+
+}
@@ -0,0 +1,67 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication.ConfigParams;
+import fi.aalto.cs.drumbeat.rest.managers.upload.RdfCacheCompression;
+
+public class Test_DrumbeatConfiguration {
+
+	private static DrumbeatConfiguration parse(String... keyValues) {
+		Properties properties = new Properties();
+		for (int i = 0; i < keyValues.length; i += 2) {
+			properties.setProperty(keyValues[i], keyValues[i + 1]);
+		}
+		return new DrumbeatConfiguration(properties, path -> "/server/" + path);
+	}
+
+	@Test
+	public void test_defaults() {
+		DrumbeatConfiguration configuration = parse();
+
+		assertNull(configuration.getBaseUri());
+		assertTrue(configuration.isBaseUriFixed());
+		assertFalse(configuration.isSparqlEndpointEnabled());
+		assertEquals(2, configuration.getSparqlMaxConcurrentQueries());
+		assertEquals(RdfCacheCompression.GZIP, configuration.getRdfCacheCompression());
+		assertFalse(configuration.isModelPoolEnabled());
+		assertEquals(8, configuration.getModelPoolMaxSize());
+	}
+
+	@Test
+	public void test_values() {
+		DrumbeatConfiguration configuration = parse(
+				ConfigParams.WEB_BASE_URI, " http://localhost:8080/drumbeat/ ",
+				ConfigParams.WEB_BASE_URI_FIXED, "false",
+				ConfigParams.Uploads.DIR_PATH, "uploads",
+				ConfigParams.Uploads.RDF_CACHE_COMPRESSION, "none",
+				ConfigParams.Objects.Links.TIMEOUT_MILLIS, " 2500 ");
+
+		assertEquals("http://localhost:8080/drumbeat/", configuration.getBaseUri());
+		assertFalse(configuration.isBaseUriFixed());
+		assertEquals("/server/uploads", configuration.getUploadsDirPath());
+		assertEquals(RdfCacheCompression.NONE, configuration.getRdfCacheCompression());
+		assertEquals(2500L, configuration.getLinkQueryTimeoutMillis());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_invalidValue() {
+		parse(ConfigParams.Sparql.MAX_ROWS, "many");
+	}
+
+	@Test
+	public void test_getProperties_returnsCopy() {
+		DrumbeatConfiguration configuration = parse(ConfigParams.WEB_BASE_URI, "http://localhost/");
+		configuration.getProperties().setProperty(ConfigParams.WEB_BASE_URI, "http://example.org/");
+
+		assertEquals("http://localhost/", configuration.getProperties().getProperty(ConfigParams.WEB_BASE_URI));
+	}
+
+}
@@ -0,0 +1,67 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class Test_EntityVersion {
+
+	private static final String DATA_SET_1 = "http://drumbeat.cs.hut.fi/datasets/c/s/d1";
+	private static final String DATA_SET_2 = "http://drumbeat.cs.hut.fi/datasets/c/s/d2";
+
+	@Test
+	public void test_build_sameDataSameTag() {
+		EntityVersion version1 = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1000L, 10L)
+				.addResource(DATA_SET_2, 2000L, 20L)
+				.build();
+		EntityVersion version2 = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1000L, 10L)
+				.addResource(DATA_SET_2, 2000L, 20L)
+				.build();
+
+		assertEquals(version1.getDigest(), version2.getDigest());
+		assertEquals(version1.getEntityTag("a"), version2.getEntityTag("a"));
+		assertNotEquals(version1.getEntityTag("a"), version1.getEntityTag("b"));
+		assertEquals(false, version1.getEntityTag("a").isWeak());
+	}
+
+	@Test
+	public void test_build_changedDataSetChangesTag() {
+		String digest = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1000L, 10L)
+				.build()
+				.getDigest();
+
+		assertNotEquals(digest, new EntityVersion.Builder().addResource(DATA_SET_1, 1000L, 11L).build().getDigest());
+		assertNotEquals(digest, new EntityVersion.Builder().addResource(DATA_SET_1, 1001L, 10L).build().getDigest());
+		assertNotEquals(digest, new EntityVersion.Builder().addResource(DATA_SET_2, 1000L, 10L).build().getDigest());
+		assertNotEquals(digest, new EntityVersion.Builder().addResource(DATA_SET_1, 1000L, 10L).addToken("links").build().getDigest());
+	}
+
+	@Test
+	public void test_build_lastModified() {
+		EntityVersion version = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1500L, 10L)
+				.addResource(DATA_SET_2, 3999L, 20L)
+				.addLastModified(2000L)
+				.build();
+		assertEquals(new Date(3000L), version.getLastModified());
+
+		version = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1500L, 10L)
+				.addResource(DATA_SET_2, null, null)
+				.build();
+		assertNull(version.getLastModified());
+
+		version = new EntityVersion.Builder()
+				.addResource(DATA_SET_1, 1500L, 10L)
+				.buildWithoutLastModified();
+		assertNull(version.getLastModified());
+	}
+
+}
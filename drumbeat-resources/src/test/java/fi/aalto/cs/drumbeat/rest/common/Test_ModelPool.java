@@ -0,0 +1,241 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+
+public class Test_ModelPool {
+
+	private static final String GRAPH_1 = "http://drumbeat.cs.hut.fi/graphs/col-1/dso-1-1/dse-1";
+	private static final String GRAPH_2 = "http://drumbeat.cs.hut.fi/graphs/col-1/dso-1-1/dse-2";
+
+	private List<Model> openedModels;
+
+	@Before
+	public void setUp() {
+		openedModels = new ArrayList<>();
+	}
+
+	private Model open(String name) {
+		Model model = ModelFactory.createDefaultModel();
+		openedModels.add(model);
+		return model;
+	}
+
+	@Test
+	public void test_borrow_reusesReleasedModel() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 2, 0, 1, 60000);
+
+		Model model = pool.borrow(GRAPH_1);
+		pool.release(GRAPH_1, model);
+
+		assertSame(model, pool.borrow(GRAPH_1));
+		assertNotSame(model, pool.borrow(GRAPH_2));
+		assertEquals(2, openedModels.size());
+		assertEquals(2, pool.getInUseCount());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void test_borrow_opensOverflowModelWhenAllInUse() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 1, 0, 1, 60000);
+
+		Model model = pool.borrow(GRAPH_1);
+		Model overflowModel = pool.borrow(GRAPH_1);
+		assertNotSame(model, overflowModel);
+		assertEquals(1, pool.getInUseCount());
+		assertEquals(1, pool.getOverflowCount());
+
+		pool.release(GRAPH_1, overflowModel);
+		assertTrue(overflowModel.isClosed());
+		assertEquals(0, pool.getOverflowCount());
+		assertEquals(0, pool.getIdleCount());
+
+		pool.release(GRAPH_1, model);
+		assertFalse(model.isClosed());
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void test_borrow_failsWhenOverflowInUse() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 1, 0, 1, 60000);
+
+		pool.borrow(GRAPH_1);
+		Model overflowModel = pool.borrow(GRAPH_1);
+		try {
+			pool.borrow(GRAPH_1);
+			fail("Model borrowed beyond the overflow limit");
+		} catch (DrumbeatException e) {
+		}
+		assertEquals(2, openedModels.size());
+
+		pool.release(GRAPH_1, overflowModel);
+		assertNotSame(overflowModel, pool.borrow(GRAPH_1));
+		assertEquals(1, pool.getOverflowCount());
+	}
+
+	@Test
+	public void test_borrow_waitsForReleasedModel() throws Exception {
+		ModelPool pool = new ModelPool(this::open, 1, 5000, 0, 60000);
+		Model model = pool.borrow(GRAPH_1);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Model> borrowed = executor.submit(() -> pool.borrow(GRAPH_1));
+			try {
+				borrowed.get(100, TimeUnit.MILLISECONDS);
+				fail("Model borrowed while all models were in use");
+			} catch (TimeoutException e) {
+			}
+
+			pool.release(GRAPH_1, model);
+			assertSame(model, borrowed.get(5, TimeUnit.SECONDS));
+			assertEquals(1, openedModels.size());
+			assertEquals(0, pool.getOverflowCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void test_borrow_opensOverflowModelAfterWait() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 1, 200, 1, 60000);
+		pool.borrow(GRAPH_1);
+
+		long startTime = System.currentTimeMillis();
+		pool.borrow(GRAPH_1);
+		assertTrue(System.currentTimeMillis() - startTime >= 200);
+		assertEquals(1, pool.getOverflowCount());
+	}
+
+	@Test
+	public void test_borrow_closesIdleModelOfOtherGraph() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 1, 0, 1, 60000);
+
+		Model model1 = pool.borrow(GRAPH_1);
+		pool.release(GRAPH_1, model1);
+
+		Model model2 = pool.borrow(GRAPH_2);
+		assertNotSame(model1, model2);
+		assertTrue(model1.isClosed());
+		assertEquals(1, pool.getInUseCount());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void test_evictIdle() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 2, 0, 1, 1000);
+
+		Model model = pool.borrow(GRAPH_1);
+		pool.release(GRAPH_1, model);
+
+		assertEquals(0, pool.evictIdle(System.currentTimeMillis()));
+		assertFalse(model.isClosed());
+
+		assertEquals(1, pool.evictIdle(System.currentTimeMillis() + 1000));
+		assertTrue(model.isClosed());
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test
+	public void test_startEviction() throws Exception {
+		ModelPool pool = new ModelPool(this::open, 2, 0, 1, 200);
+		pool.startEviction();
+		try {
+			Model model = pool.borrow(GRAPH_1);
+			pool.release(GRAPH_1, model);
+
+			Thread.sleep(600);
+			assertTrue(model.isClosed());
+			assertEquals(0, pool.getIdleCount());
+		} finally {
+			pool.stopEviction();
+		}
+	}
+
+	@Test
+	public void test_requestModelScope() throws DrumbeatException {
+		ModelPool pool = new ModelPool(this::open, 2, 0, 1, 60000);
+
+		RequestModelScope scope = RequestModelScope.begin(this::open, pool);
+		assertSame(scope, RequestModelScope.getCurrent());
+		Model model = scope.getModel(ModelPool.DEFAULT_MODEL_NAME);
+		assertSame(model, scope.getModel(ModelPool.DEFAULT_MODEL_NAME));
+		assertEquals(1, pool.getInUseCount());
+
+		scope.close();
+		assertNull(RequestModelScope.getCurrent());
+		assertEquals(0, pool.getInUseCount());
+		assertEquals(1, pool.getIdleCount());
+		assertFalse(model.isClosed());
+	}
+
+	@Test
+	public void test_requestModelScope_closesModelsWithoutPool() throws DrumbeatException {
+		RequestModelScope scope = RequestModelScope.begin(this::open, null);
+		Model model = scope.getModel(GRAPH_1);
+		scope.close();
+
+		assertTrue(model.isClosed());
+		assertEquals(1, openedModels.size());
+	}
+
+	@Test
+	public void test_requestModelScope_restoresPreviousScope() throws DrumbeatException {
+		RequestModelScope scope = RequestModelScope.begin(this::open, null);
+		RequestModelScope innerScope = RequestModelScope.begin(this::open, null);
+		assertSame(innerScope, RequestModelScope.getCurrent());
+
+		innerScope.close();
+		assertSame(scope, RequestModelScope.getCurrent());
+		scope.close();
+		assertNull(RequestModelScope.getCurrent());
+	}
+
+	@Test
+	public void test_requestModelScope_wrap() throws Exception {
+		ModelPool pool = new ModelPool(this::open, 2, 0, 1, 60000);
+		RequestModelScope scope = RequestModelScope.begin(this::open, pool);
+		try {
+			Model model = scope.getModel(GRAPH_1);
+
+			ExecutorService executor = Executors.newSingleThreadExecutor();
+			try {
+				Model taskModel = executor.submit(RequestModelScope.wrap(() -> {
+					assertNotSame(scope, RequestModelScope.getCurrent());
+					return RequestModelScope.getCurrent().getModel(GRAPH_1);
+				})).get();
+				assertNotSame(model, taskModel);
+				assertNull(executor.submit(RequestModelScope::getCurrent).get());
+			} finally {
+				executor.shutdown();
+			}
+
+			assertSame(scope, RequestModelScope.getCurrent());
+			assertEquals(1, pool.getInUseCount());
+			assertEquals(1, pool.getIdleCount());
+		} finally {
+			scope.close();
+		}
+	}
+
+}
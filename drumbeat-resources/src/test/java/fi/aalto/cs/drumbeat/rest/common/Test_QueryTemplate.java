@@ -0,0 +1,133 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.syntax.syntaxtransform.QueryTransformOps;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Test_QueryTemplate {
+
+	private static final String BASE_URI = "http://example.org/";
+	private static final String GRAPH_URI = BASE_URI + "datasets/c/s/d";
+
+	private static final String CONSTRUCT_COMMAND =
+			"CONSTRUCT { \n" +
+			"	?collectionUri ?predicate ?object \n" +
+			"} WHERE { \n" +
+			"	?collectionUri a lbdho:Collection ; ?predicate ?object . \n" +
+			"	FILTER REGEX( str(?object) , ?objectFilter ) . \n" +
+			"} \n" +
+			"ORDER BY ?predicate ?object";
+
+	private Dataset dataset;
+
+	@Before
+	public void setUp() {
+		Model model = ModelFactory.createDefaultModel();
+		for (String id : Arrays.asList("c1", "c2")) {
+			Resource collection = model.createResource(BASE_URI + "collections/" + id);
+			collection.addProperty(RDF.type, DrumbeatOntology.LBDHO.Collection);
+			collection.addProperty(DrumbeatOntology.LBDHO.name, "Collection " + id);
+		}
+
+		Model dataModel = ModelFactory.createDefaultModel();
+		dataModel.createResource(BASE_URI + "objects/o1").addProperty(RDF.type, dataModel.createResource(BASE_URI + "Wall"));
+
+		dataset = DatasetFactory.create(model);
+		dataset.addNamedModel(GRAPH_URI, dataModel);
+	}
+
+	@Test
+	public void test_get_sameTemplateForSameCommand() {
+		assertSame(QueryTemplate.get(CONSTRUCT_COMMAND), QueryTemplate.get(new String(CONSTRUCT_COMMAND)));
+	}
+
+	@Test
+	public void test_asQuery_constructSameAsParameterizedSparqlString() {
+		for (String id : Arrays.asList("c1", "c2")) {
+			String collectionUri = BASE_URI + "collections/" + id;
+
+			ParameterizedSparqlString sparql = new ParameterizedSparqlString(CONSTRUCT_COMMAND);
+			sparql.setBaseUri(BASE_URI);
+			sparql.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+			sparql.setIri("collectionUri", collectionUri);
+			sparql.setLiteral("objectFilter", "^Collection");
+
+			Query query = QueryTemplate.get(CONSTRUCT_COMMAND)
+					.setIri("collectionUri", collectionUri)
+					.setLiteral("objectFilter", "^Collection")
+					.asQuery(BASE_URI);
+
+			Model expected = execConstruct(sparql.asQuery());
+			Model actual = execConstruct(query);
+			assertEquals(1, actual.size());
+			assertTrue(actual.isIsomorphicWith(expected));
+			assertTrue(actual.contains(actual.createResource(collectionUri), DrumbeatOntology.LBDHO.name));
+		}
+	}
+
+	@Test
+	public void test_asQuery_askAndNamedGraph() {
+		QueryTemplate template = QueryTemplate.get(
+				"ASK { \n" +
+				"	GRAPH ?dataSetUri { ?objectUri a ?type } \n" +
+				"}");
+
+		assertTrue(execAsk(template.setIri("dataSetUri", GRAPH_URI).setIri("objectUri", BASE_URI + "objects/o1").asQuery(BASE_URI)));
+		assertFalse(execAsk(template.setIri("dataSetUri", GRAPH_URI).setIri("objectUri", BASE_URI + "objects/o2").asQuery(BASE_URI)));
+		assertFalse(execAsk(template.setIri("dataSetUri", BASE_URI + "other").setIri("objectUri", BASE_URI + "objects/o1").asQuery(BASE_URI)));
+	}
+
+	@Test
+	public void test_clearParam_copyBindsValuesBlock() {
+		QueryTemplate.Parameters parameters = QueryTemplate.get(CONSTRUCT_COMMAND)
+				.setIri("collectionUri", BASE_URI + "collections/c1")
+				.setLiteral("objectFilter", "^Collection");
+		Query query = parameters.copy().clearParam("collectionUri").asQuery(BASE_URI);
+
+		Var collectionUriVar = Var.alloc("collectionUri");
+		Query valuesQuery = QueryTransformOps.shallowCopy(query);
+		valuesQuery.setValuesDataBlock(
+				Collections.singletonList(collectionUriVar),
+				Arrays.asList(
+						BindingFactory.binding(collectionUriVar, NodeFactory.createURI(BASE_URI + "collections/c1")),
+						BindingFactory.binding(collectionUriVar, NodeFactory.createURI(BASE_URI + "collections/c2"))));
+
+		assertEquals(2, execConstruct(valuesQuery).size());
+		assertFalse(query.hasValues());
+		assertEquals(1, execConstruct(parameters.asQuery(BASE_URI)).size());
+	}
+
+	private Model execConstruct(Query query) {
+		try (QueryExecution queryExecution = QueryExecutionFactory.create(query, dataset)) {
+			return queryExecution.execConstruct();
+		}
+	}
+
+	private boolean execAsk(Query query) {
+		try (QueryExecution queryExecution = QueryExecutionFactory.create(query, dataset)) {
+			return queryExecution.execAsk();
+		}
+	}
+
+}
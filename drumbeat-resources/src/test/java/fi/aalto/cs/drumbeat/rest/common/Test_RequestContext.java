@@ -0,0 +1,46 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class Test_RequestContext {
+
+	@After
+	public void tearDown() {
+		RequestContext.end();
+	}
+
+	@Test
+	public void test_wrap() throws Exception {
+		RequestContext context = RequestContext.begin("http://host-1/drumbeat/");
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			assertNull(executor.submit(RequestContext::getCurrent).get());
+			assertSame(context, executor.submit(RequestContext.wrap(RequestContext::getCurrent)).get());
+			// the context is not left behind in the pool thread
+			assertNull(executor.submit(RequestContext::getCurrent).get());
+		} finally {
+			executor.shutdown();
+		}
+
+		RequestContext.end();
+		assertNull(RequestContext.getCurrent());
+	}
+
+	@Test
+	public void test_begin_replacesPreviousContext() {
+		RequestContext.begin("http://host-1/drumbeat/");
+		RequestContext.begin("http://host-2/drumbeat/");
+
+		assertEquals("http://host-2/drumbeat/", RequestContext.getCurrent().getBaseUri());
+	}
+
+}
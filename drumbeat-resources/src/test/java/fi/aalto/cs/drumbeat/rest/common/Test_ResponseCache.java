@@ -0,0 +1,125 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.common.ResponseCache.CachedResponse;
+
+public class Test_ResponseCache {
+
+	private static final int ENTRY_SIZE = 10;
+
+	private static final EntityVersion V0 = version("0");
+	private static final EntityVersion V1 = version("1");
+	private static final EntityVersion V2 = version("2");
+
+	private ResponseCache cache;
+
+	@Before
+	public void setUp() {
+		// window of 10 bytes, main region of 990 bytes
+		cache = new ResponseCache(true, 1000);
+	}
+
+	@Test
+	public void test_put_onceRequestedEntryNotAdmittedOverMoreFrequent() {
+		fill();
+
+		cache.put("x", V0, response(ENTRY_SIZE));
+		cache.put("y", V0, response(ENTRY_SIZE));
+
+		assertFalse(cache.contains("x"));
+		assertTrue(cache.contains("y"));
+		assertTrue(cache.contains("e0"));
+	}
+
+	@Test
+	public void test_put_frequentEntryEvictsLeastRecentlyUsed() {
+		fill();
+
+		for (int i = 0; i < 3; ++i) {
+			assertNull(cache.get("x", V0));
+		}
+		cache.put("x", V0, response(ENTRY_SIZE));
+		cache.put("y", V0, response(ENTRY_SIZE));
+
+		assertTrue(cache.contains("x"));
+		assertFalse(cache.contains("e0"));
+		assertNotNull(cache.get("x", V0));
+	}
+
+	@Test
+	public void test_put_sizeBounded() {
+		for (int i = 0; i < 1000; ++i) {
+			cache.get("k" + i % 150, V0);
+			cache.put("k" + i % 150, V0, response(ENTRY_SIZE + i % 7));
+			assertTrue(cache.getSize() <= 1000);
+		}
+		assertTrue(cache.getCount() > 0);
+
+		cache.put("large", V0, response(1000));
+		assertFalse(cache.contains("large"));
+		assertTrue(cache.getSize() <= 1000);
+	}
+
+	@Test
+	public void test_put_lessFrequentVictimNotEvictedWhenCandidateLoses() {
+		// e1 is requested more often than the candidate, e0 less often
+		for (int i = 0; i < 3; ++i) {
+			cache.get("e1", V0);
+		}
+		fill();
+		for (int i = 0; i < 3; ++i) {
+			cache.get("x", V0);
+		}
+
+		// x needs the room of both e0 and e1
+		cache.put("x", V0, response(2 * ENTRY_SIZE));
+
+		assertFalse(cache.contains("x"));
+		assertTrue(cache.contains("e0"));
+		assertTrue(cache.contains("e1"));
+	}
+
+	@Test
+	public void test_get_otherVersionMisses() {
+		cache.put("x", V1, response(ENTRY_SIZE));
+		cache.put("y", V1, response(ENTRY_SIZE));
+		assertNotNull(cache.get("x", V1));
+
+		// the stale entry is removed, other entries stay
+		assertNull(cache.get("x", V2));
+		assertFalse(cache.contains("x"));
+		assertNotNull(cache.get("y", V1));
+
+		cache.put("x", V2, response(ENTRY_SIZE));
+		assertNotNull(cache.get("x", V2));
+		assertNull(cache.get("x", V1));
+	}
+
+	/**
+	 * Fills the cache with entries e0 (least recently used) ... e99 requested once each
+	 */
+	private void fill() {
+		for (int i = 0; i < 100; ++i) {
+			cache.get("e" + i, V0);
+			cache.put("e" + i, V0, response(ENTRY_SIZE));
+		}
+		assertEquals(1000, cache.getSize());
+	}
+
+	private static EntityVersion version(String token) {
+		return new EntityVersion.Builder().addToken(token).build();
+	}
+
+	private static CachedResponse response(int size) {
+		return new CachedResponse(new byte[size], "text/turtle");
+	}
+
+}
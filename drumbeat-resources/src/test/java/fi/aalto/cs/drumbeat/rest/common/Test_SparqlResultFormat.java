@@ -0,0 +1,88 @@
+package fi.aalto.cs.drumbeat.rest.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.managers.SparqlQueryManager;
+
+public class Test_SparqlResultFormat {
+
+	private static final String OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/";
+
+	private Model model;
+
+	@Before
+	public void setUp() {
+		model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < 10; ++i) {
+			model.createResource(OBJECT_URI + i).addProperty(RDFS.label, "object " + i);
+		}
+	}
+
+	@Test
+	public void test_negotiate() {
+		Query select = QueryFactory.create("SELECT * WHERE { ?s ?p ?o }");
+		Query construct = QueryFactory.create("CONSTRUCT WHERE { ?s ?p ?o }");
+
+		assertEquals(SparqlResultFormat.JSON, SparqlResultFormat.negotiate(select, Arrays.asList(MediaType.WILDCARD_TYPE)));
+		assertEquals(SparqlResultFormat.TSV, SparqlResultFormat.negotiate(select,
+				Arrays.asList(MediaType.valueOf("text/html"), MediaType.valueOf("text/tab-separated-values"))));
+		assertEquals(SparqlResultFormat.NTRIPLES, SparqlResultFormat.negotiate(construct, Arrays.asList(MediaType.WILDCARD_TYPE)));
+		assertNull(SparqlResultFormat.negotiate(construct, Arrays.asList(MediaType.valueOf("application/sparql-results+json"))));
+	}
+
+	@Test
+	public void test_write_selectWithRowLimit() {
+		Query query = QueryFactory.create("SELECT ?s ?label WHERE { ?s ?p ?label }");
+		SparqlQueryManager.limitRows(query, 3);
+
+		String tsv = write(SparqlResultFormat.TSV, query);
+		// header and 3 rows
+		assertEquals(4, tsv.trim().split("\n").length);
+
+		String json = write(SparqlResultFormat.JSON, query);
+		assertTrue(json.contains("\"bindings\""));
+	}
+
+	@Test
+	public void test_limitRows_keepsSmallerLimit() {
+		Query query = QueryFactory.create("SELECT * WHERE { ?s ?p ?o } LIMIT 2");
+		SparqlQueryManager.limitRows(query, 3);
+		assertEquals(2, query.getLimit());
+
+		SparqlQueryManager.limitRows(query, 1);
+		assertEquals(1, query.getLimit());
+	}
+
+	@Test
+	public void test_write_constructAsNTriples() {
+		Query query = QueryFactory.create("CONSTRUCT WHERE { ?s ?p ?o }");
+
+		String ntriples = write(SparqlResultFormat.NTRIPLES, query);
+		assertEquals(10, ntriples.trim().split("\n").length);
+		assertTrue(ntriples.contains("<" + OBJECT_URI + "0>"));
+	}
+
+	private String write(SparqlResultFormat format, Query query) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		format.write(QueryExecutionFactory.create(query, model), query, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,123 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.DrumbeatTest;
+import fi.aalto.cs.drumbeat.rest.application.TestApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatVocabulary;
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadManager;
+import fi.aalto.cs.drumbeat.rest.managers.upload.DataSetUploadOptions;
+
+/**
+ * Measures the number of queries and the latency of getting objects of sample.ifc with their blank objects expanded. <br />
+ * A batch size of 1 queries each blank object separately, like the expansion did before batching. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_BlankObjectExpansion -Dbenchmark.batchSize=500 -Dbenchmark.objects=20
+ */
+public class Benchmark_BlankObjectExpansion extends DrumbeatTest {
+
+	private static final boolean DO_TEST = true;
+
+	private static final String GRAPH_URI = "http://drumbeat.cs.hut.fi/datasets/bench/expand/v1";
+
+	private static int batchSize;
+	private static int objectCount;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		DrumbeatTest.setUpBeforeClass();
+		batchSize = Integer.getInteger("benchmark.batchSize", 500);
+		objectCount = Integer.getInteger("benchmark.objects", 20);
+		getApplication().getConfigurationProperties().setProperty(
+				DrumbeatApplication.ConfigParams.Objects.EXPAND_BATCH_SIZE,
+				Integer.toString(batchSize));
+	}
+
+	public Benchmark_BlankObjectExpansion() {
+		super(DO_TEST);
+	}
+
+	@Test
+	public void benchmark_getByUri() throws Exception {
+		if (!doTest()) {
+			return;
+		}
+
+		File sourceFile = new File(getApplication().getRealServerPath(TestApplication.TEST_IFC_MODEL_FILE_PATH));
+
+		DataSetUploadOptions options = new DataSetUploadOptions(
+				"bench",
+				"expand",
+				"v1",
+				GRAPH_URI,
+				"http://drumbeat.cs.hut.fi/objects/bench/expand/",
+				"http://drumbeat.cs.hut.fi/objects/bench/expand/v1/" + NameFormatter.BLANK_NODE_PATH + "/",
+				DrumbeatVocabulary.DATA_TYPE_IFC,
+				sourceFile.getName(),
+				true,
+				false);
+
+		try (InputStream in = new FileInputStream(sourceFile)) {
+			new DataSetUploadManager().upload(in, options);
+		}
+
+		Model dataModel = getApplication().getDataModel(GRAPH_URI);
+		List<String> objectUris = getObjectsWithBlankObjects(dataModel, objectCount);
+
+		DataSetObjectManager objectManager = new DataSetObjectManager();
+		DrumbeatMetrics metrics = DrumbeatMetrics.getInstance();
+
+		// warm up
+		objectManager.getByUri(dataModel, objectUris.get(0), false, true, null, null, FilterMode.EXACT);
+
+		long oldQueryCount = metrics.get(DataSetObjectManager.METRIC_EXPANSION_QUERIES);
+		long tripleCount = 0;
+		long startTime = System.nanoTime();
+		for (String objectUri : objectUris) {
+			tripleCount += objectManager.getByUri(dataModel, objectUri, false, true, null, null, FilterMode.EXACT).size();
+		}
+		long elapsed = System.nanoTime() - startTime;
+		long queryCount = metrics.get(DataSetObjectManager.METRIC_EXPANSION_QUERIES) - oldQueryCount;
+
+		getLogger().info(String.format(
+				"Blank object expansion (batchSize=%d): %d objects, %d triples, %.1f expansion queries/object, %.1f ms/object",
+				batchSize,
+				objectUris.size(),
+				tripleCount,
+				(double)queryCount / objectUris.size(),
+				elapsed / 1000000.0 / objectUris.size()));
+	}
+
+	private static List<String> getObjectsWithBlankObjects(Model dataModel, int limit) {
+		String blankPath = "/" + NameFormatter.BLANK_NODE_PATH + "/";
+		String query = String.format(
+				"SELECT DISTINCT ?s WHERE { ?s ?p ?o . FILTER ( isIRI(?o) && CONTAINS(STR(?o), \"%s\") && !CONTAINS(STR(?s), \"%s\") ) } LIMIT %d",
+				blankPath,
+				blankPath,
+				limit);
+
+		List<String> objectUris = new ArrayList<>();
+		try (QueryExecution queryExecution = QueryExecutionFactory.create(query, dataModel)) {
+			ResultSet results = queryExecution.execSelect();
+			while (results.hasNext()) {
+				objectUris.add(results.next().getResource("s").getURI());
+			}
+		}
+		return objectUris;
+	}
+
+}
@@ -0,0 +1,83 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+
+/**
+ * Compares listing the non-blank objects of a data set with and without a type filter: <br />
+ * - regex: blank objects and types matched with regular expressions (the way before the type index) <br />
+ * - strstarts: blank objects excluded by the prefix of their URIs (data sets uploaded without the index) <br />
+ * - index: the type index, with exact and prefix type filters <br />
+ * The data set has one blank object per object, like IFC models with their placements. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_ObjectFilter -Dbenchmark.objects=500000
+ */
+public class Benchmark_ObjectFilter {
+
+	private static final String OBJECT_BASE_URI = "http://drumbeat.cs.hut.fi/objects/bench/dso/";
+	private static final String BLANK_OBJECT_BASE_URI = "http://drumbeat.cs.hut.fi/objects/bench/dso/dse/_BLANK/";
+	private static final String IFC = "http://drumbeat.cs.hut.fi/owl/ifc2x3#";
+	private static final String[] TYPES = { "IfcWall", "IfcWallStandardCase", "IfcDoor", "IfcWindow", "IfcSlab", "IfcBeam" };
+
+	@Test
+	public void benchmark_getAllNonBlank() {
+		int objectCount = Integer.getInteger("benchmark.objects", 500000);
+
+		Model dataModel = ModelFactory.createDefaultModel();
+		for (int i = 0; i < objectCount; ++i) {
+			Resource object = dataModel.createResource(OBJECT_BASE_URI + String.format("%022x", i));
+			object.addProperty(RDF.type, dataModel.createResource(IFC + TYPES[i % TYPES.length]));
+			Resource placement = dataModel.createResource(BLANK_OBJECT_BASE_URI + i);
+			placement.addProperty(RDF.type, dataModel.createResource(IFC + "IfcLocalPlacement"));
+			object.addProperty(dataModel.createProperty(IFC, "objectPlacement_IfcProduct"), placement);
+		}
+
+		long startTime = System.nanoTime();
+		Model indexModel = ModelFactory.createDefaultModel();
+		ObjectTypeIndex.build(dataModel, indexModel);
+		System.out.println(String.format("building index: %d ms, %d triples", (System.nanoTime() - startTime) / 1000000, indexModel.size()));
+
+		String regexBlankFilter = "	FILTER ( !regex (str(?o), \"^.*/_BLANK/.*$\" ) ) \n";
+		String prefixBlankFilter = "	FILTER ( !STRSTARTS( STR(?o) , \"" + BLANK_OBJECT_BASE_URI + "\" ) ) \n";
+
+		for (int i = 0; i < 2; ++i) {
+			measure("regex, no type filter", dataModel, regexBlankFilter, null, null);
+			measure("regex, type filter", dataModel, regexBlankFilter, FilterMode.REGEX, "IfcWall");
+			measure("strstarts, no type filter", dataModel, prefixBlankFilter, null, null);
+			measure("strstarts, exact type filter", dataModel, prefixBlankFilter, FilterMode.EXACT, "ifc:IfcWall");
+			measure("index, no type filter", indexModel, "", null, null);
+			measure("index, exact type filter", indexModel, "", FilterMode.EXACT, "ifc:IfcWall");
+			measure("index, prefix type filter", indexModel, "", FilterMode.PREFIX, "ifc:IfcWall");
+		}
+	}
+
+	private static void measure(String name, Model model, String blankFilter, FilterMode filterMode, String filterType) {
+		ParameterizedSparqlString sparql = new ParameterizedSparqlString(
+				"SELECT ?o ?type WHERE { \n" +
+				"	?o a ?type . \n" +
+				blankFilter +
+				(filterMode != null ? "	" + filterMode.formatFilter("type", "typeFilter") : "") +
+				"}");
+		if (filterMode != null) {
+			sparql.setParam("typeFilter", filterMode.createParameter(filterType));
+		}
+
+		long startTime = System.nanoTime();
+		int count = 0;
+		ResultSet resultSet = QueryExecutionFactory.create(sparql.asQuery(), model).execSelect();
+		while (resultSet.hasNext()) {
+			resultSet.next();
+			++count;
+		}
+		long elapsed = System.nanoTime() - startTime;
+
+		System.out.println(String.format("%s: %d ms, %d rows", name, elapsed / 1000000, count));
+	}
+
+}
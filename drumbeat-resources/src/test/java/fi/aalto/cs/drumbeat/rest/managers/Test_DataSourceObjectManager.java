@@ -0,0 +1,109 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.*;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.rest.DrumbeatTest;
+import fi.aalto.cs.drumbeat.rest.application.TestApplication;
+import fi.aalto.cs.drumbeat.rest.common.NameFormatter;
+import fi.aalto.cs.drumbeat.rdf.utils.RdfIOUtils;
+
+public class Test_DataSourceObjectManager extends DrumbeatTest {
+
+	private static final boolean DO_TEST = true;
+
+	private static final Resource WALL = ResourceFactory.createResource("http://drumbeat.cs.hut.fi/ifc#IfcWall");
+	private static final Property LINKED_TO = ResourceFactory.createProperty("http://drumbeat.cs.hut.fi/links#linkedTo");
+
+	private static DataSourceObjectManager dataSourceObjectManager;
+	private static String objectUri;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		DrumbeatTest.setUpBeforeClass();
+		Model metaDataModel = getApplication().getMetaDataModel();
+		String testDataFilePath = getApplication().getRealServerPath(TestApplication.TEST_RDF_META_DATA_FILE_PATH);
+		RdfIOUtils.importRdfFileToJenaModel(metaDataModel, testDataFilePath);
+
+		// dse-1-1-2 is the last data set of dso-1-1 and overwrites the whole graph of dse-1-1-1
+		objectUri = NameFormatter.formatObjectResourceUri("col-1", "dso-1-1", "object-1");
+		Model dataModel = getApplication().getDataModel(NameFormatter.formatDataSetGraphUri("col-1", "dso-1-1", "dse-1-1-2"));
+		dataModel.createResource(objectUri)
+			.addProperty(RDF.type, WALL)
+			.addProperty(RDFS.label, "wall");
+
+		Model backLinkModel = getApplication().getDataModel(NameFormatter.formatBackLinkSourceUri("col-1", "dso-1-1"));
+		backLinkModel.createResource(objectUri)
+			.addProperty(LINKED_TO, backLinkModel.createResource("http://example.org/space-1"));
+
+		dataSourceObjectManager = new DataSourceObjectManager();
+	}
+
+	public Test_DataSourceObjectManager() {
+		super(DO_TEST);
+	}
+
+
+	/***************************************
+	 * getByUriFromUnion()
+	 **************************************/
+
+	@Test
+	public void test_getByUriFromUnion_equalsDataSets() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Model unionModel = assertUnionEqualsDataSets(false, false, null);
+		assertEquals(3, unionModel.size());
+		assertTrue(unionModel.getResource(objectUri).hasProperty(LINKED_TO));
+	}
+
+	@Test
+	public void test_getByUriFromUnion_excludeProperties() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Model unionModel = assertUnionEqualsDataSets(true, false, null);
+		assertFalse(unionModel.getResource(objectUri).hasProperty(RDFS.label));
+	}
+
+	@Test
+	public void test_getByUriFromUnion_excludeLinks() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Model unionModel = assertUnionEqualsDataSets(false, true, null);
+		assertFalse(unionModel.getResource(objectUri).hasProperty(LINKED_TO));
+	}
+
+	@Test
+	public void test_getByUriFromUnion_filterProperties() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Model unionModel = assertUnionEqualsDataSets(false, true, "rdfs:label");
+		assertEquals(1, unionModel.size());
+	}
+
+	private Model assertUnionEqualsDataSets(boolean excludeProperties, boolean excludeLinks, String filterProperties) throws DrumbeatException {
+		Model unionModel = dataSourceObjectManager.getByUriFromUnion(
+				"col-1", "dso-1-1", objectUri, excludeProperties, excludeLinks, filterProperties, null, FilterMode.EXACT);
+		Model dataSetsModel = dataSourceObjectManager.getByUriFromDataSets(
+				"col-1", "dso-1-1", null, objectUri, excludeProperties, excludeLinks, false, filterProperties, null, FilterMode.EXACT).getModel();
+
+		assertNotNull(unionModel);
+		assertTrue(unionModel.isIsomorphicWith(dataSetsModel));
+		return unionModel;
+	}
+
+}
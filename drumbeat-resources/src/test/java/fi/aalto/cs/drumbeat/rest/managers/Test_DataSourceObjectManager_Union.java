@@ -0,0 +1,115 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.OWL;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology;
+
+public class Test_DataSourceObjectManager_Union {
+
+	private static final String OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/object-1";
+	// graphs named as by NameFormatter.formatDataSetGraphUri() and formatBackLinkSourceUri()
+	private static final String DATA_GRAPH_URI = "http://drumbeat.cs.hut.fi/datasets/col-1/dso-1-1/dse-1";
+	private static final String LINK_GRAPH_URI = "http://drumbeat.cs.hut.fi/datasets/col-1/dso-1-2/dse-1";
+	private static final String BACK_LINK_GRAPH_URI = "http://drumbeat.cs.hut.fi/datasources/col-1/dso-1-1_BACK_LINKS";
+
+	private static final Resource WALL = ResourceFactory.createResource("http://drumbeat.cs.hut.fi/ifc#IfcWall");
+	private static final Property LINKED_TO = ResourceFactory.createProperty("http://drumbeat.cs.hut.fi/links#linkedTo");
+
+	private Dataset dataset;
+
+	@Before
+	public void setUp() {
+		dataset = DatasetFactory.createMem();
+
+		Model dataModel = dataset.getNamedModel(DATA_GRAPH_URI);
+		dataModel.createResource(OBJECT_URI)
+			.addProperty(RDF.type, WALL)
+			.addProperty(RDFS.label, "wall");
+
+		dataset.getNamedModel(LINK_GRAPH_URI).createResource(OBJECT_URI)
+			.addProperty(OWL.sameAs, dataModel.createResource("http://example.org/wall-1"));
+
+		dataset.getNamedModel(BACK_LINK_GRAPH_URI).createResource(OBJECT_URI)
+			.addProperty(LINKED_TO, dataModel.createResource("http://example.org/space-1"));
+	}
+
+	@Test
+	public void test_readUnionResults_mergesLinks() {
+		Model resultModel = query(OBJECT_URI, false, null, null, FilterMode.EXACT);
+
+		assertEquals(4, resultModel.size());
+		Resource object = resultModel.getResource(OBJECT_URI);
+		assertTrue(object.hasProperty(RDF.type, WALL));
+		assertTrue(object.hasProperty(RDFS.label));
+		assertTrue(object.hasProperty(OWL.sameAs));
+		assertTrue(object.hasProperty(LINKED_TO));
+	}
+
+	@Test
+	public void test_readUnionResults_excludeProperties() {
+		Model resultModel = query(OBJECT_URI, true, null, null, FilterMode.EXACT);
+
+		assertEquals(3, resultModel.size());
+		Resource object = resultModel.getResource(OBJECT_URI);
+		assertTrue(object.hasProperty(RDF.type, WALL));
+		assertTrue(!object.hasProperty(RDFS.label));
+	}
+
+	@Test
+	public void test_readUnionResults_filterProperties() {
+		Model resultModel = query(OBJECT_URI, false, "rdfs:label", null, FilterMode.EXACT);
+
+		assertEquals(1, resultModel.size());
+		assertTrue(resultModel.getResource(OBJECT_URI).hasProperty(RDFS.label));
+	}
+
+	@Test
+	public void test_readUnionResults_notInDataGraph() {
+		dataset.getNamedModel(BACK_LINK_GRAPH_URI).createResource(OBJECT_URI + "-missing")
+			.addProperty(LINKED_TO, dataset.getDefaultModel().createResource("http://example.org/space-1"));
+
+		assertNull(query(OBJECT_URI + "-missing", false, null, null, FilterMode.EXACT));
+	}
+
+	private Model query(String objectUri, boolean excludeProperties, String filterProperties, String filterObjectTypes, FilterMode filterMode) {
+		ParameterizedSparqlString sparql = new ParameterizedSparqlString(
+				DataSourceObjectManager.formatUnionCommand(excludeProperties, filterProperties, filterObjectTypes, filterMode));
+		sparql.setNsPrefixes(DrumbeatOntology.getDefaultNsPrefixes());
+		sparql.setIri("objectUri", objectUri);
+		sparql.setIri("dataGraphUri", DATA_GRAPH_URI);
+		if (filterProperties != null) {
+			sparql.setParam("predicateFilter", filterMode.createParameter(filterProperties));
+		}
+		if (filterObjectTypes != null) {
+			sparql.setParam("objectTypeFilter", filterMode.createParameter(filterObjectTypes));
+		}
+
+		Query query = sparql.asQuery();
+
+		QueryExecution queryExecution = QueryExecutionFactory.create(query, dataset);
+		try {
+			return DataSourceObjectManager.readUnionResults(queryExecution.execSelect(), objectUri, DATA_GRAPH_URI);
+		} finally {
+			queryExecution.close();
+		}
+	}
+
+}
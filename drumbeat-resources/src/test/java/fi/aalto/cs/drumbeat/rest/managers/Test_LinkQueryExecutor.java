@@ -0,0 +1,95 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+
+public class Test_LinkQueryExecutor {
+
+	@Test
+	public void test_invokeAll_parallelTakesSlowestQuery() throws Exception {
+		LinkQueryExecutor executor = new LinkQueryExecutor(4, 10, 5000);
+		Model model1 = ModelFactory.createDefaultModel();
+		Model model2 = ModelFactory.createDefaultModel();
+
+		LinkedHashMap<String, LinkQueryExecutor.LinkQuery> queries = new LinkedHashMap<>();
+		queries.put("source1", () -> sleep(300, model1));
+		queries.put("source2", () -> sleep(300, model2));
+		queries.put("source3", () -> sleep(300, null));
+
+		long startTime = System.currentTimeMillis();
+		LinkQueryExecutor.Results results = executor.invokeAll(queries);
+		long elapsed = System.currentTimeMillis() - startTime;
+
+		assertTrue(results.isComplete());
+		assertEquals(3, results.getModels().size());
+		assertSame(model1, results.getModels().get(0));
+		assertSame(model2, results.getModels().get(1));
+		assertTrue("elapsed " + elapsed, elapsed < 800);
+	}
+
+	@Test
+	public void test_invokeAll_slowQueryLeftOut() throws Exception {
+		LinkQueryExecutor executor = new LinkQueryExecutor(2, 10, 200);
+		Model model = ModelFactory.createDefaultModel();
+
+		LinkedHashMap<String, LinkQueryExecutor.LinkQuery> queries = new LinkedHashMap<>();
+		queries.put("slow", () -> sleep(5000, ModelFactory.createDefaultModel()));
+		queries.put("fast", () -> model);
+
+		long startTime = System.currentTimeMillis();
+		LinkQueryExecutor.Results results = executor.invokeAll(queries);
+
+		assertFalse(results.isComplete());
+		assertEquals(1, results.getModels().size());
+		assertSame(model, results.getModels().get(0));
+		assertTrue(System.currentTimeMillis() - startTime < 2000);
+	}
+
+	@Test(expected = DrumbeatException.class)
+	public void test_invokeAll_failedQueryThrows() throws Exception {
+		LinkQueryExecutor executor = new LinkQueryExecutor(2, 10, 5000);
+
+		LinkedHashMap<String, LinkQueryExecutor.LinkQuery> queries = new LinkedHashMap<>();
+		queries.put("failing", () -> {
+			throw new DrumbeatException("Store unavailable");
+		});
+
+		executor.invokeAll(queries);
+	}
+
+	@Test
+	public void test_invokeAll_sequential() throws Exception {
+		LinkQueryExecutor executor = new LinkQueryExecutor(0, 0, 0);
+		Thread caller = Thread.currentThread();
+
+		LinkedHashMap<String, LinkQueryExecutor.LinkQuery> queries = new LinkedHashMap<>();
+		queries.put("source1", () -> {
+			assertSame(caller, Thread.currentThread());
+			return ModelFactory.createDefaultModel();
+		});
+
+		LinkQueryExecutor.Results results = executor.invokeAll(queries);
+		assertTrue(results.isComplete());
+		assertEquals(1, results.getModels().size());
+	}
+
+	private static Model sleep(long millis, Model result) throws DrumbeatException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new DrumbeatException("Interrupted", e);
+		}
+		return result;
+	}
+
+}
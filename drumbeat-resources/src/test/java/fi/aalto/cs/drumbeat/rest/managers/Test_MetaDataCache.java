@@ -0,0 +1,69 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Test_MetaDataCache {
+
+	private MetaDataCache cache;
+	private AtomicInteger loadCount;
+
+	@Before
+	public void setUp() {
+		cache = new MetaDataCache(true, 60000);
+		loadCount = new AtomicInteger();
+	}
+
+	@Test
+	public void test_getSnapshot_loadedOnceUntilInvalidated() {
+		Model first = cache.getSnapshot(this::load);
+		assertSame(first, cache.getSnapshot(this::load));
+		assertSame(first, cache.getSnapshot(this::load));
+		assertEquals(1, loadCount.get());
+
+		cache.invalidate();
+		Model second = cache.getSnapshot(this::load);
+		assertNotSame(first, second);
+		assertEquals(2, loadCount.get());
+
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(0.5, cache.getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void test_getSnapshot_invalidatedWhileLoadingNotServedAgain() {
+		cache.getSnapshot(() -> {
+			// a change is committed while the snapshot is being loaded
+			cache.invalidate();
+			return load();
+		});
+
+		cache.getSnapshot(this::load);
+		assertEquals(2, loadCount.get());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void test_getSnapshot_expiredSnapshotReloaded() throws InterruptedException {
+		cache = new MetaDataCache(true, 10);
+		Model first = cache.getSnapshot(this::load);
+		Thread.sleep(20);
+		assertNotSame(first, cache.getSnapshot(this::load));
+		assertEquals(2, loadCount.get());
+	}
+
+	private Model load() {
+		loadCount.incrementAndGet();
+		return ModelFactory.createDefaultModel();
+	}
+
+}
@@ -0,0 +1,81 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.WrappedGraph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.shared.AddDeniedException;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+
+public class Test_MetaDataUpdate {
+
+	private static final String DATA_SET_URI = "http://drumbeat.cs.hut.fi/datasets/col-1/dso-1-1/dse-1";
+
+	@Test
+	public void test_execute_replacesValues() throws DrumbeatException {
+		Model metaDataModel = ModelFactory.createDefaultModel();
+		Resource dataSet = metaDataModel.createResource(DATA_SET_URI)
+				.addProperty(LBDHO.graphUri, "old-graph")
+				.addLiteral(LBDHO.sizeInTriples, 10L)
+				.addLiteral(LBDHO.triplesInserted, 5L)
+				.addProperty(LBDHO.cachedInRdfFile, "old-file.ttl");
+		Resource otherDataSet = metaDataModel.createResource(DATA_SET_URI + "-other")
+				.addProperty(LBDHO.graphUri, "other-graph");
+
+		new MetaDataUpdate(DATA_SET_URI)
+			.set(LBDHO.graphUri, "new-graph")
+			.set(LBDHO.graphBaseUri, "new-base")
+			.set(LBDHO.lastModified, Calendar.getInstance())
+			.set(LBDHO.sizeInTriples, 20L)
+			.remove(LBDHO.triplesInserted)
+			.set(LBDHO.cachedInRdfFile, (String)null)
+			.execute(metaDataModel);
+
+		assertEquals("new-graph", dataSet.getProperty(LBDHO.graphUri).getString());
+		assertEquals(1, dataSet.listProperties(LBDHO.graphUri).toList().size());
+		assertEquals("new-base", dataSet.getProperty(LBDHO.graphBaseUri).getString());
+		assertTrue(dataSet.hasProperty(LBDHO.lastModified));
+		assertEquals(20L, dataSet.getProperty(LBDHO.sizeInTriples).getLong());
+		assertEquals(1, dataSet.listProperties(LBDHO.sizeInTriples).toList().size());
+		assertFalse(dataSet.hasProperty(LBDHO.triplesInserted));
+		assertFalse(dataSet.hasProperty(LBDHO.cachedInRdfFile));
+		assertEquals("other-graph", otherDataSet.getProperty(LBDHO.graphUri).getString());
+	}
+
+	@Test
+	public void test_asUpdate_singleOperation() {
+		assertEquals(1, new MetaDataUpdate(DATA_SET_URI)
+				.set(LBDHO.graphUri, "graph")
+				.set(LBDHO.sizeInTriples, 1L)
+				.remove(LBDHO.cachedInRdfFile)
+				.asUpdate()
+				.getOperations()
+				.size());
+	}
+
+	@Test(expected = DrumbeatException.class)
+	public void test_execute_failureThrows() throws DrumbeatException {
+		Model metaDataModel = ModelFactory.createDefaultModel();
+		metaDataModel.createResource(DATA_SET_URI).addProperty(LBDHO.graphUri, "graph");
+
+		new MetaDataUpdate(DATA_SET_URI)
+			.set(LBDHO.graphUri, "new-graph")
+			.execute(ModelFactory.createModelForGraph(new WrappedGraph(metaDataModel.getGraph()) {
+				@Override
+				public void add(Triple triple) {
+					throw new AddDeniedException("Read-only metadata");
+				}
+			}));
+	}
+
+}
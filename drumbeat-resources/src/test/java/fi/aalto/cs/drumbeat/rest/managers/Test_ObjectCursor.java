@@ -0,0 +1,128 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Base64;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+
+public class Test_ObjectCursor {
+
+	private static final String OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/";
+	private static final String TYPE_URI = "http://drumbeat.cs.hut.fi/owl/ifc2x3#";
+
+	@Test
+	public void test_format_parse() {
+		ObjectCursor cursor = new ObjectCursor("dse-1-1-1", OBJECT_URI + "obj?a=1&b=2", TYPE_URI + "IfcWall");
+		String value = cursor.format();
+		assertFalse(value.contains("/"));
+		assertFalse(value.contains("+"));
+		assertFalse(value.contains("="));
+
+		ObjectCursor parsed = ObjectCursor.parse(value);
+		assertEquals(cursor.getDataSetId(), parsed.getDataSetId());
+		assertEquals(cursor.getObjectUri(), parsed.getObjectUri());
+		assertEquals(cursor.getType(), parsed.getType());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_parse_invalidBase64() {
+		ObjectCursor.parse("not a cursor!");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_parse_missingParts() {
+		ObjectCursor.parse(Base64.getUrlEncoder().encodeToString("dse-1-1-1".getBytes()));
+	}
+
+	@Test
+	public void test_readObjectPage_nextCursorAfterLastRowOfPage() {
+		Model model = ModelFactory.createDefaultModel();
+		model.add(model.createResource(OBJECT_URI + "a"), RDF.type, model.createResource(TYPE_URI + "IfcWall"));
+		model.add(model.createResource(OBJECT_URI + "b"), RDF.type, model.createResource(TYPE_URI + "IfcDoor"));
+		model.add(model.createResource(OBJECT_URI + "b"), RDF.type, model.createResource(TYPE_URI + "IfcWall"));
+
+		ObjectPage page = DataSetObjectManager.readObjectPage(select(model, 3), "dse-1-1-1", 2);
+		assertEquals(2, page.getModel().size());
+		assertEquals("dse-1-1-1", page.getNextCursor().getDataSetId());
+		assertEquals(OBJECT_URI + "b", page.getNextCursor().getObjectUri());
+		assertEquals(TYPE_URI + "IfcDoor", page.getNextCursor().getType());
+
+		page = DataSetObjectManager.readObjectPage(select(model, 4), "dse-1-1-1", 3);
+		assertEquals(3, page.getModel().size());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	public void test_createObjectPageQuery_continuesAfterCursor() {
+		Model model = createModel();
+
+		// the rest of object b, then the objects after it
+		ObjectCursor cursor = new ObjectCursor("dse-1-1-1", OBJECT_URI + "b", TYPE_URI + "IfcDoor");
+		ObjectPage page = readPage(model, cursor, 10);
+		assertEquals(2, page.getModel().size());
+		assertTrue(page.getModel().contains(model.createResource(OBJECT_URI + "b"), RDF.type, model.createResource(TYPE_URI + "IfcWall")));
+		assertTrue(page.getModel().contains(model.createResource(OBJECT_URI + "c"), RDF.type, model.createResource(TYPE_URI + "IfcDoor")));
+		assertNull(page.getNextCursor());
+	}
+
+	@Test
+	public void test_createObjectPageQuery_pagesReadEachRowOnce() {
+		Model model = createModel();
+
+		Model pagedModel = ModelFactory.createDefaultModel();
+		int rowCount = 0;
+		ObjectCursor cursor = null;
+		do {
+			ObjectPage page = readPage(model, cursor, 1);
+			pagedModel.add(page.getModel());
+			rowCount += page.getModel().size();
+			cursor = page.getNextCursor();
+		} while (cursor != null);
+
+		assertEquals(model.size(), rowCount);
+		assertTrue(pagedModel.isIsomorphicWith(model));
+	}
+
+	private static Model createModel() {
+		Model model = ModelFactory.createDefaultModel();
+		model.add(model.createResource(OBJECT_URI + "a"), RDF.type, model.createResource(TYPE_URI + "IfcWall"));
+		model.add(model.createResource(OBJECT_URI + "b"), RDF.type, model.createResource(TYPE_URI + "IfcDoor"));
+		model.add(model.createResource(OBJECT_URI + "b"), RDF.type, model.createResource(TYPE_URI + "IfcWall"));
+		model.add(model.createResource(OBJECT_URI + "c"), RDF.type, model.createResource(TYPE_URI + "IfcDoor"));
+		return model;
+	}
+
+	private static ObjectPage readPage(Model model, ObjectCursor after, int limit) {
+		// the parameters are bound as in DataSetObjectManager.createObjectPageQuery()
+		ParameterizedSparqlString sparql = new ParameterizedSparqlString(
+				DataSetObjectManager.formatObjectPageCommand("	?o a ?type . \n", null, after != null));
+		if (after != null) {
+			sparql.setLiteral("afterObject", after.getObjectUri());
+			sparql.setIri("afterObjectUri", after.getObjectUri());
+			sparql.setLiteral("afterType", after.getType());
+		}
+
+		Query query = sparql.asQuery();
+		query.setLimit(limit + 1);
+		return DataSetObjectManager.readObjectPage(QueryExecutionFactory.create(query, model).execSelect(), "dse-1-1-1", limit);
+	}
+
+	private static ResultSet select(Model model, int limit) {
+		return QueryExecutionFactory.create(
+				"SELECT ?o ?type WHERE { ?o a ?type } ORDER BY ?o ?type LIMIT " + limit,
+				model)
+			.execSelect();
+	}
+
+}
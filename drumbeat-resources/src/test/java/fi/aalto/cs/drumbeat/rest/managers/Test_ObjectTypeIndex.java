@@ -0,0 +1,91 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jena.query.ParameterizedSparqlString;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Test_ObjectTypeIndex {
+
+	private static final String OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/";
+	private static final String BLANK_OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/dse-1-1-1/_BLANK/";
+	private static final String IFC = "http://drumbeat.cs.hut.fi/owl/ifc2x3#";
+
+	private Model dataModel;
+
+	@Before
+	public void setUp() {
+		dataModel = ModelFactory.createDefaultModel();
+		Resource wall = dataModel.createResource(OBJECT_URI + "wall");
+		wall.addProperty(RDF.type, dataModel.createResource(IFC + "IfcWall"));
+		wall.addProperty(RDF.type, dataModel.createResource(IFC + "IfcWallStandardCase"));
+		wall.addProperty(RDFS.label, "Wall");
+		dataModel.createResource(OBJECT_URI + "door").addProperty(RDF.type, dataModel.createResource(IFC + "IfcDoor"));
+		dataModel.createResource(BLANK_OBJECT_URI + "placement").addProperty(RDF.type, dataModel.createResource(IFC + "IfcLocalPlacement"));
+		dataModel.createResource().addProperty(RDF.type, dataModel.createResource(IFC + "IfcCartesianPoint"));
+	}
+
+	@Test
+	public void test_build_indexesNonBlankObjectsOnly() {
+		Model indexModel = ModelFactory.createDefaultModel();
+		indexModel.add(indexModel.createResource(OBJECT_URI + "removed"), RDF.type, indexModel.createResource(IFC + "IfcWall"));
+
+		assertEquals(3, ObjectTypeIndex.build(dataModel, indexModel));
+		assertEquals(3, indexModel.size());
+		assertTrue(indexModel.contains(indexModel.createResource(OBJECT_URI + "door"), RDF.type));
+		assertFalse(indexModel.contains(indexModel.createResource(OBJECT_URI + "removed"), RDF.type));
+		assertFalse(indexModel.contains(indexModel.createResource(BLANK_OBJECT_URI + "placement"), RDF.type));
+		assertFalse(indexModel.contains(null, RDFS.label));
+	}
+
+	@Test
+	public void test_filterMode_matchesTypes() {
+		Model indexModel = ModelFactory.createDefaultModel();
+		ObjectTypeIndex.build(dataModel, indexModel);
+
+		assertEquals(1, countTypes(indexModel, FilterMode.EXACT, "ifc:IfcWall"));
+		assertEquals(1, countTypes(indexModel, FilterMode.EXACT, IFC + "IfcDoor"));
+		assertEquals(0, countTypes(indexModel, FilterMode.EXACT, "IfcWall"));
+		assertEquals(2, countTypes(indexModel, FilterMode.PREFIX, "ifc:IfcWall"));
+		assertEquals(3, countTypes(indexModel, FilterMode.PREFIX, IFC));
+		assertEquals(3, countTypes(indexModel, FilterMode.REGEX, "Wall|Door"));
+	}
+
+	@Test
+	public void test_parse() {
+		assertEquals(FilterMode.EXACT, FilterMode.parse(null));
+		assertEquals(FilterMode.EXACT, FilterMode.parse(""));
+		assertEquals(FilterMode.PREFIX, FilterMode.parse("prefix"));
+		assertEquals(FilterMode.REGEX, FilterMode.parse(" Regex "));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void test_parse_unknownMode() {
+		FilterMode.parse("contains");
+	}
+
+	private static int countTypes(Model model, FilterMode filterMode, String filterType) {
+		ParameterizedSparqlString sparql = new ParameterizedSparqlString(
+				"SELECT ?o ?type WHERE { ?o a ?type . " + filterMode.formatFilter("type", "typeFilter") + "}");
+		sparql.setParam("typeFilter", filterMode.createParameter(filterType));
+
+		int count = 0;
+		ResultSet resultSet = QueryExecutionFactory.create(sparql.asQuery(), model).execSelect();
+		while (resultSet.hasNext()) {
+			resultSet.next();
+			++count;
+		}
+		return count;
+	}
+
+}
@@ -0,0 +1,150 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatOntology.LBDHO;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatVocabulary;
+
+public class Test_ObjectVersionIndex {
+
+	private static final String OBJECT_URI = "http://drumbeat.cs.hut.fi/objects/col-1/dso-1-1/";
+	private static final String DATA_SET_URI = "http://drumbeat.cs.hut.fi/datasets/col-1/dso-1-1/";
+	private static final String IFC = "http://drumbeat.cs.hut.fi/owl/ifc2x3#";
+
+	private Model metaDataModel;
+	private Map<String, Model> dataModels;
+	private List<String> readDataSetIds;
+
+	@Before
+	public void setUp() {
+		metaDataModel = ModelFactory.createDefaultModel();
+		dataModels = new HashMap<>();
+		readDataSetIds = new ArrayList<>();
+	}
+
+	@Test
+	public void test_update_replacesEntriesOfDataSet() {
+		Model indexModel = ModelFactory.createDefaultModel();
+		ObjectVersionIndex.update(data("dse-1", "wall", "door"), indexModel, DATA_SET_URI + "dse-1");
+		ObjectVersionIndex.update(data("dse-2", "wall"), indexModel, DATA_SET_URI + "dse-2");
+
+		List<String> dataSetUris = Arrays.asList(DATA_SET_URI + "dse-2", DATA_SET_URI + "dse-1");
+		assertEquals(2, ObjectVersionIndex.getDataSetsContaining(indexModel, OBJECT_URI + "wall", dataSetUris).size());
+
+		ObjectVersionIndex.update(data("dse-2", "door"), indexModel, DATA_SET_URI + "dse-2");
+		Set<String> containing = ObjectVersionIndex.getDataSetsContaining(indexModel, OBJECT_URI + "wall", dataSetUris);
+		assertEquals(1, containing.size());
+		assertTrue(containing.contains(DATA_SET_URI + "dse-1"));
+
+		ObjectVersionIndex.remove(indexModel, DATA_SET_URI + "dse-2");
+		assertNull(ObjectVersionIndex.getDataSetsContaining(indexModel, OBJECT_URI + "wall", dataSetUris));
+	}
+
+	@Test
+	public void test_readDataSets_overwriteObjectsReadsLatestContainingDataSetOnly() throws Exception {
+		List<Resource> chain = chain(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_OBJECTS, "dse-3", "dse-2", "dse-1");
+		dataModels.put("dse-3", data("dse-3", "door"));
+		dataModels.put("dse-2", data("dse-2", "wall"));
+		dataModels.put("dse-1", data("dse-1", "wall", "window"));
+
+		Model indexModel = ModelFactory.createDefaultModel();
+		for (Map.Entry<String, Model> entry : dataModels.entrySet()) {
+			ObjectVersionIndex.update(entry.getValue(), indexModel, DATA_SET_URI + entry.getKey());
+		}
+		Set<String> containing = ObjectVersionIndex.getDataSetsContaining(indexModel, OBJECT_URI + "wall", uris(chain));
+
+		Model result = DataSourceObjectManager.readDataSets(chain, this::read, Model::isEmpty, DataSourceObjectManager::mergeTriples, containing::contains);
+		assertEquals(Arrays.asList("dse-2"), readDataSetIds);
+		assertEquals("dse-2", label(result, "wall"));
+
+		readDataSetIds.clear();
+		result = DataSourceObjectManager.readDataSets(chain, this::read, Model::isEmpty, DataSourceObjectManager::mergeTriples, null);
+		assertEquals(Arrays.asList("dse-3", "dse-2"), readDataSetIds);
+	}
+
+	@Test
+	public void test_readDataSets_overwriteTriplesMergesProperties() throws Exception {
+		List<Resource> chain = chain(DrumbeatVocabulary.OVERWRITING_METHOD_OVERWRITE_TRIPLES, "dse-2", "dse-1");
+		dataModels.put("dse-2", ModelFactory.createDefaultModel()
+				.add(ResourceFactory.createResource(OBJECT_URI + "wall"), RDFS.label, "dse-2"));
+		Model older = data("dse-1", "wall");
+		Property height = older.createProperty(IFC, "height");
+		older.addLiteral(older.createResource(OBJECT_URI + "wall"), height, 3L);
+		dataModels.put("dse-1", older);
+
+		Model result = DataSourceObjectManager.readDataSets(chain, this::read, Model::isEmpty, DataSourceObjectManager::mergeTriples, null);
+
+		assertEquals(Arrays.asList("dse-2", "dse-1"), readDataSetIds);
+		assertEquals("dse-2", label(result, "wall"));
+		assertEquals(1, result.listObjectsOfProperty(result.createResource(OBJECT_URI + "wall"), RDFS.label).toList().size());
+		assertTrue(result.contains(result.createResource(OBJECT_URI + "wall"), height));
+		assertTrue(result.contains(result.createResource(OBJECT_URI + "wall"), RDF.type));
+	}
+
+	private Model read(String dataSetId) {
+		readDataSetIds.add(dataSetId);
+		Model dataModel = dataModels.get(dataSetId);
+		Model result = ModelFactory.createDefaultModel();
+		result.add(dataModel.listStatements(dataModel.createResource(OBJECT_URI + "wall"), null, (Resource)null));
+		return result;
+	}
+
+	/**
+	 * Creates a model with the objects, each labelled with the id of the data set it is added to
+	 */
+	private static Model data(String dataSetId, String... objectIds) {
+		Model model = ModelFactory.createDefaultModel();
+		for (String objectId : objectIds) {
+			model.createResource(OBJECT_URI + objectId)
+				.addProperty(RDF.type, model.createResource(IFC + "IfcBuildingElement"))
+				.addProperty(RDFS.label, dataSetId);
+		}
+		return model;
+	}
+
+	private List<Resource> chain(String overwritingMethod, String... dataSetIds) {
+		List<Resource> chain = new ArrayList<>();
+		for (int i = 0; i < dataSetIds.length; ++i) {
+			Resource dataSet = metaDataModel.createResource(DATA_SET_URI + dataSetIds[i]);
+			if (i + 1 < dataSetIds.length) {
+				dataSet
+					.addProperty(LBDHO.overwritingMethod, overwritingMethod)
+					.addProperty(LBDHO.overwrites, metaDataModel.createResource(DATA_SET_URI + dataSetIds[i + 1]));
+			}
+			chain.add(dataSet);
+		}
+		return chain;
+	}
+
+	private static List<String> uris(List<Resource> resources) {
+		List<String> uris = new ArrayList<>();
+		for (Resource resource : resources) {
+			uris.add(resource.getURI());
+		}
+		return uris;
+	}
+
+	private static String label(Model model, String objectId) {
+		return model.createResource(OBJECT_URI + objectId).getProperty(RDFS.label).getString();
+	}
+
+}
@@ -0,0 +1,162 @@
+package fi.aalto.cs.drumbeat.rest.managers;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Semaphore;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.NotFoundException;
+
+import fi.aalto.cs.drumbeat.common.DrumbeatException;
+import fi.aalto.cs.drumbeat.rdf.jena.provider.JenaProvider;
+import fi.aalto.cs.drumbeat.rest.DrumbeatTest;
+import fi.aalto.cs.drumbeat.rest.application.TestApplication;
+import fi.aalto.cs.drumbeat.rest.managers.SparqlQueryManager.RunningQuery;
+import fi.aalto.cs.drumbeat.rdf.utils.RdfIOUtils;
+
+public class Test_SparqlQueryManager extends DrumbeatTest {
+
+	private static final boolean DO_TEST = true;
+
+	private static final String QUERY = "SELECT * WHERE { ?s ?p ?o }";
+
+	private static Model metaDataModel;
+	private static JenaProvider jenaProvider;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		DrumbeatTest.setUpBeforeClass();
+		metaDataModel = getApplication().getMetaDataModel();
+		jenaProvider = getApplication().getJenaProvider();
+		String testDataFilePath = getApplication().getRealServerPath(TestApplication.TEST_RDF_META_DATA_FILE_PATH);
+		RdfIOUtils.importRdfFileToJenaModel(metaDataModel, testDataFilePath);
+	}
+
+	public Test_SparqlQueryManager() {
+		super(DO_TEST);
+	}
+
+	private SparqlQueryManager createManager(Semaphore permits) {
+		return new SparqlQueryManager(metaDataModel, jenaProvider, permits);
+	}
+
+
+	/***************************************
+	 * hasServiceCall()
+	 **************************************/
+
+	@Test
+	public void test_hasServiceCall() {
+		if (!doTest()) {
+			return;
+		}
+		assertFalse(SparqlQueryManager.hasServiceCall(QueryFactory.create(QUERY)));
+		assertTrue(SparqlQueryManager.hasServiceCall(QueryFactory.create(
+				"SELECT * WHERE { SERVICE <http://example.org/sparql> { ?s ?p ?o } }")));
+		assertTrue(SparqlQueryManager.hasServiceCall(QueryFactory.create(
+				"SELECT * WHERE { { SELECT * WHERE { SERVICE <http://example.org/sparql> { ?s ?p ?o } } } }")));
+		assertTrue(SparqlQueryManager.hasServiceCall(QueryFactory.create(
+				"SELECT * WHERE { ?s ?p ?o FILTER EXISTS { SERVICE <http://example.org/sparql> { ?s ?p ?x } } }")));
+	}
+
+
+	/***************************************
+	 * start()
+	 **************************************/
+
+	@Test
+	public void test_start_rejectedWhenNoPermitFree() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Semaphore permits = new Semaphore(1);
+		SparqlQueryManager manager = createManager(permits);
+
+		RunningQuery runningQuery = manager.start(QueryFactory.create(QUERY), null, null, null);
+		assertNotNull(runningQuery);
+		assertNull(manager.start(QueryFactory.create(QUERY), null, null, null));
+
+		runningQuery.close();
+		runningQuery = manager.start(QueryFactory.create(QUERY), null, null, null);
+		assertNotNull(runningQuery);
+		runningQuery.close();
+	}
+
+	@Test
+	public void test_start_permitReleasedOnClose() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Semaphore permits = new Semaphore(1);
+
+		RunningQuery runningQuery = createManager(permits).start(QueryFactory.create(QUERY), null, null, null);
+		assertEquals(0, permits.availablePermits());
+
+		runningQuery.close();
+		runningQuery.close();
+		assertEquals(1, permits.availablePermits());
+	}
+
+	@Test
+	public void test_start_permitReleasedOnRuntimeException() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Semaphore permits = new Semaphore(1);
+		SparqlQueryManager manager = new SparqlQueryManager(metaDataModel, jenaProvider, permits) {
+			@Override
+			protected QueryExecution createQueryExecution(Query query, Model model) {
+				throw new IllegalStateException("Store unavailable");
+			}
+		};
+
+		try {
+			manager.start(QueryFactory.create(QUERY), null, null, null);
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(1, permits.availablePermits());
+	}
+
+	@Test(expected=NotFoundException.class)
+	public void test_start_wrongDataSetId() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		createManager(new Semaphore(1)).start(QueryFactory.create(QUERY), "col-1", "dso-1-1", "dse-1-1-999");
+	}
+
+	@Test(expected=NotFoundException.class)
+	public void test_start_wrongDataSourceId() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		createManager(new Semaphore(1)).start(QueryFactory.create(QUERY), "col-1", "dso-1-999", null);
+	}
+
+	@Test
+	public void test_start_serviceCallRejected() throws DrumbeatException {
+		if (!doTest()) {
+			return;
+		}
+		Semaphore permits = new Semaphore(1);
+
+		try {
+			createManager(permits).start(
+					QueryFactory.create("SELECT * WHERE { SERVICE <http://example.org/sparql> { ?s ?p ?o } }"),
+					null,
+					null,
+					null);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(1, permits.availablePermits());
+	}
+
+}
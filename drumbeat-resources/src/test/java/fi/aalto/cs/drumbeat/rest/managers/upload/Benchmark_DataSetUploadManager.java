@@ -0,0 +1,177 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.jena.rdf.model.Model;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.BenchmarkUtils;
+import fi.aalto.cs.drumbeat.rest.DrumbeatTest;
+import fi.aalto.cs.drumbeat.rest.application.TestApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatApplication;
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatVocabulary;
+
+/**
+ * Measures peak RSS and triples/s of IFC uploads on a scaled-up copy of sample.ifc. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_DataSetUploadManager -Dbenchmark.scale=1000 -Dbenchmark.streaming=true -Dbenchmark.pipeline=true
+ */
+public class Benchmark_DataSetUploadManager extends DrumbeatTest {
+	
+	private static final boolean DO_TEST = true;
+	
+	private static final Pattern ENTITY_ID_PATTERN = Pattern.compile("#(\\d+)");
+	private static final Pattern GLOBAL_ID_PATTERN = Pattern.compile("(=\\s*IFC\\w+\\(\\s*)'([0-9A-Za-z_$]{22})'");
+	private static final String GLOBAL_ID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz_$";
+	private static final String GRAPH_URI = "http://drumbeat.cs.hut.fi/datasets/bench/ifc/v1";
+	
+	private static int scale;
+	private static boolean streaming;
+	private static boolean pipeline;
+	
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		DrumbeatTest.setUpBeforeClass();
+		scale = Integer.getInteger("benchmark.scale", 100);
+		streaming = Boolean.parseBoolean(System.getProperty("benchmark.streaming", "true"));
+		getApplication().getConfigurationProperties().setProperty(
+				DrumbeatApplication.ConfigParams.Uploads.IFC_STREAMING_ENABLED,
+				Boolean.toString(streaming));
+		pipeline = Boolean.parseBoolean(System.getProperty("benchmark.pipeline", "true"));
+		getApplication().getConfigurationProperties().setProperty(
+				DrumbeatApplication.ConfigParams.Uploads.Pipeline.ENABLED,
+				Boolean.toString(pipeline));
+	}
+	
+	public Benchmark_DataSetUploadManager() {
+		super(DO_TEST);
+	}
+	
+	@Test
+	public void benchmark_uploadIfc() throws Exception {
+		if (!doTest()) {
+			return;
+		}
+		
+		File sourceFile = new File(getApplication().getRealServerPath(TestApplication.TEST_IFC_MODEL_FILE_PATH));
+		File scaledFile = createScaledIfcFile(sourceFile, scale);
+		long scaledFileSize = scaledFile.length();
+		
+		DataSetUploadOptions options = new DataSetUploadOptions(
+				"bench",
+				"ifc",
+				"v1",
+				GRAPH_URI,
+				"http://drumbeat.cs.hut.fi/objects/bench/ifc/",
+				"http://drumbeat.cs.hut.fi/objects/bench/ifc/v1/_BLANK/",
+				DrumbeatVocabulary.DATA_TYPE_IFC,
+				scaledFile.getName(),
+				true,
+				false);
+		
+		long startTime = System.nanoTime();
+		try (InputStream in = new FileInputStream(scaledFile)) {
+			new DataSetUploadManager().upload(in, options);
+		} finally {
+			scaledFile.delete();
+		}
+		long elapsed = System.nanoTime() - startTime;
+		
+		Model targetModel = getApplication().getDataModel(GRAPH_URI);
+		long tripleCount = targetModel.size();
+		
+		getLogger().info(String.format(
+				"IFC upload (streaming=%s, pipeline=%s, scale=%d, size=%s): %d triples in %d ms, %.0f triples/s, peak RSS %s",
+				streaming,
+				pipeline,
+				scale,
+				BenchmarkUtils.formatBytes(scaledFileSize),
+				tripleCount,
+				elapsed / 1000000,
+				BenchmarkUtils.perSecond(tripleCount, elapsed),
+				BenchmarkUtils.formatBytes(BenchmarkUtils.getPeakRss())));
+	}
+	
+	/**
+	 * Creates a copy of the IFC file with the DATA section repeated <code>scale</code> times.
+	 * Entity ids of each copy are shifted so that references stay inside the copy, and the GlobalIds
+	 * of each copy after the first are replaced, so that the copies are converted to different objects.
+	 */
+	private static File createScaledIfcFile(File sourceFile, int scale) throws IOException {
+		String content = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.UTF_8);
+		
+		int dataStart = content.indexOf("DATA;") + "DATA;".length();
+		int dataEnd = content.lastIndexOf("ENDSEC;");
+		String header = content.substring(0, dataStart);
+		String data = content.substring(dataStart, dataEnd);
+		String footer = content.substring(dataEnd);
+		
+		long maxId = 0;
+		Matcher matcher = ENTITY_ID_PATTERN.matcher(data);
+		while (matcher.find()) {
+			maxId = Math.max(maxId, Long.parseLong(matcher.group(1)));
+		}
+		
+		Map<String, Long> globalIdNumbers = new HashMap<>();
+		matcher = GLOBAL_ID_PATTERN.matcher(data);
+		while (matcher.find()) {
+			globalIdNumbers.putIfAbsent(matcher.group(2), (long)globalIdNumbers.size());
+		}
+		
+		File scaledFile = File.createTempFile("benchmark-", ".ifc");
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(scaledFile.toPath(), StandardCharsets.UTF_8))) {
+			writer.print(header);
+			for (int i = 0; i < scale; ++i) {
+				long offset = i * maxId;
+				matcher = ENTITY_ID_PATTERN.matcher(data);
+				StringBuffer sb = new StringBuffer();
+				while (matcher.find()) {
+					matcher.appendReplacement(sb, "#" + (Long.parseLong(matcher.group(1)) + offset));
+				}
+				matcher.appendTail(sb);
+				
+				String copy = sb.toString();
+				if (i > 0) {
+					long globalIdOffset = i * (long)globalIdNumbers.size();
+					matcher = GLOBAL_ID_PATTERN.matcher(copy);
+					sb = new StringBuffer();
+					while (matcher.find()) {
+						String globalId = formatGlobalId(globalIdNumbers.get(matcher.group(2)) + globalIdOffset);
+						matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group(1) + "'" + globalId + "'"));
+					}
+					matcher.appendTail(sb);
+					copy = sb.toString();
+				}
+				writer.print(copy);
+			}
+			writer.print(footer);
+		}
+		return scaledFile;
+	}
+	
+	/**
+	 * Formats a number as a 22-character GlobalId in the IFC base64 alphabet
+	 */
+	private static String formatGlobalId(long number) {
+		char[] chars = new char[22];
+		for (int i = chars.length - 1; i >= 0; --i) {
+			chars[i] = GLOBAL_ID_CHARS.charAt((int)(number % GLOBAL_ID_CHARS.length()));
+			number /= GLOBAL_ID_CHARS.length();
+		}
+		// the first character of a GlobalId holds only 2 bits
+		chars[0] = '3';
+		return new String(chars);
+	}
+
+}
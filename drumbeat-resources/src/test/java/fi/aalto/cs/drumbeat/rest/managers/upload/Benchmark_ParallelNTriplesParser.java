@@ -0,0 +1,107 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.BenchmarkUtils;
+
+/**
+ * Compares N-Triples parsing throughput of the sequential parser and of the parallel parser
+ * with 1, 2, 4 and 8 workers. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_ParallelNTriplesParser -Dbenchmark.triples=2000000 -Dbenchmark.iterations=5
+ */
+public class Benchmark_ParallelNTriplesParser {
+
+	private static final int[] WORKER_COUNTS = {1, 2, 4, 8};
+	private static final int CHUNK_SIZE = 1024 * 1024;
+	private static final String BASE_URI = "http://drumbeat.cs.hut.fi/objects/bench/nt/";
+
+	@Test
+	public void benchmark_parse() throws IOException {
+		int tripleCount = Integer.getInteger("benchmark.triples", 1000000);
+		int iterations = Integer.getInteger("benchmark.iterations", 3);
+
+		byte[] content = createNTriples(tripleCount);
+		System.out.println(String.format("Input: %d triples, %s", tripleCount, BenchmarkUtils.formatBytes(content.length)));
+
+		double sequentialRate = measure(content, iterations, null);
+		System.out.println(String.format("sequential: %.0f triples/s", sequentialRate));
+
+		for (int workerCount : WORKER_COUNTS) {
+			ParallelNTriplesParser parser = new ParallelNTriplesParser(workerCount, CHUNK_SIZE);
+			try {
+				double rate = measure(content, iterations, parser);
+				System.out.println(String.format("workers=%d: %.0f triples/s (x%.2f)", workerCount, rate, rate / sequentialRate));
+			} finally {
+				parser.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Parses the content once to warm up and then the given number of times
+	 * @return average number of triples parsed per second
+	 */
+	private static double measure(byte[] content, int iterations, ParallelNTriplesParser parser) throws IOException {
+		parse(content, parser);
+
+		long totalTriples = 0;
+		long totalNanos = 0;
+		for (int i = 0; i < iterations; ++i) {
+			long startTime = System.nanoTime();
+			totalTriples += parse(content, parser);
+			totalNanos += System.nanoTime() - startTime;
+		}
+		return BenchmarkUtils.perSecond(totalTriples, totalNanos);
+	}
+
+	private static long parse(byte[] content, ParallelNTriplesParser parser) throws IOException {
+		AtomicLong count = new AtomicLong();
+		StreamRDF sink = new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				count.incrementAndGet();
+			}
+		};
+
+		if (parser != null) {
+			parser.parse(sink, new ByteArrayInputStream(content), BASE_URI, Lang.NTRIPLES);
+		} else {
+			RDFDataMgr.parse(sink, new ByteArrayInputStream(content), BASE_URI, Lang.NTRIPLES);
+		}
+		return count.get();
+	}
+
+	private static byte[] createNTriples(int tripleCount) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < tripleCount; ++i) {
+			int entity = i / 4;
+			switch (i % 4) {
+			case 0:
+				builder.append(String.format("<%se%d> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://example.org/ifc#IfcWall> .\n", BASE_URI, entity));
+				break;
+			case 1:
+				builder.append(String.format("<%se%d> <http://example.org/ifc#name> \"Wall %d\"@en .\n", BASE_URI, entity, entity));
+				break;
+			case 2:
+				builder.append(String.format("<%se%d> <http://example.org/ifc#placement> _:p%d .\n", BASE_URI, entity, entity));
+				break;
+			default:
+				builder.append(String.format("_:p%d <http://example.org/ifc#height> \"%d.5\"^^<http://www.w3.org/2001/XMLSchema#double> .\n", entity, entity));
+				break;
+			}
+		}
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,142 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.BenchmarkUtils;
+
+/**
+ * Compares the ways an uncompressed N-Triples file on the server is read by an upload: <br />
+ * - cached: copied to a gzipped cache file, which is then parsed (the path used before direct uploads) <br />
+ * - copied: copied to an uncompressed cache file with FileChannel.transferTo (bulk loading outside the uploads folder) <br />
+ * - mapped: parsed straight from a memory-mapped file <br />
+ * Prints read throughput and the temporary disk space used. <br />
+ * Not run by surefire, run explicitly: <br />
+ * mvn test -Dtest=Benchmark_ServerFileUpload -Dbenchmark.triples=5000000 -Dbenchmark.iterations=3
+ */
+public class Benchmark_ServerFileUpload {
+
+	private static final String BASE_URI = "http://drumbeat.cs.hut.fi/objects/bench/file/";
+
+	private interface Path {
+		/**
+		 * @return number of bytes written to temporary files
+		 */
+		long run(File sourceFile, File tempDir, StreamRDF sink) throws IOException;
+	}
+
+	@Test
+	public void benchmark_read() throws IOException {
+		int tripleCount = Integer.getInteger("benchmark.triples", 1000000);
+		int iterations = Integer.getInteger("benchmark.iterations", 3);
+
+		File tempDir = Files.createTempDirectory("server-file").toFile();
+		try {
+			File sourceFile = createNTriplesFile(new File(tempDir, "source.nt"), tripleCount);
+			System.out.println(String.format("Input: %d triples, %s", tripleCount, BenchmarkUtils.formatBytes(sourceFile.length())));
+
+			measure("cached", sourceFile, tempDir, iterations, (file, dir, sink) -> {
+				File cacheFile = new File(dir, "cache.nt.gz");
+				try (InputStream in = new FileInputStream(file); OutputStream out = RdfCacheCompression.GZIP.openOutputStream(cacheFile)) {
+					IOUtils.copy(in, out);
+				}
+				try (InputStream in = new BufferedInputStream(RdfCacheCompression.openInputStream(cacheFile))) {
+					RDFDataMgr.parse(sink, in, BASE_URI, Lang.NTRIPLES);
+				}
+				long length = cacheFile.length();
+				cacheFile.delete();
+				return length;
+			});
+
+			measure("copied", sourceFile, tempDir, iterations, (file, dir, sink) -> {
+				File cacheFile = new File(dir, "cache.nt");
+				try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+						FileChannel target = FileChannel.open(cacheFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+				{
+					long position = 0;
+					while (position < source.size()) {
+						position += source.transferTo(position, source.size() - position, target);
+					}
+				}
+				try (InputStream in = new BufferedInputStream(new FileInputStream(cacheFile))) {
+					RDFDataMgr.parse(sink, in, BASE_URI, Lang.NTRIPLES);
+				}
+				long length = cacheFile.length();
+				cacheFile.delete();
+				return length;
+			});
+
+			measure("mapped", sourceFile, tempDir, iterations, (file, dir, sink) -> {
+				try (InputStream in = new MappedFileInputStream(file)) {
+					RDFDataMgr.parse(sink, in, BASE_URI, Lang.NTRIPLES);
+				}
+				return 0;
+			});
+
+		} finally {
+			FileUtils.deleteDirectory(tempDir);
+		}
+	}
+
+	/**
+	 * Runs the path once to warm up and then the given number of times
+	 */
+	private static void measure(String name, File sourceFile, File tempDir, int iterations, Path path) throws IOException {
+		AtomicLong count = new AtomicLong();
+		StreamRDF sink = new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				count.incrementAndGet();
+			}
+		};
+
+		path.run(sourceFile, tempDir, sink);
+
+		long totalNanos = 0;
+		long tempBytes = 0;
+		for (int i = 0; i < iterations; ++i) {
+			long startTime = System.nanoTime();
+			tempBytes = path.run(sourceFile, tempDir, sink);
+			totalNanos += System.nanoTime() - startTime;
+		}
+
+		System.out.println(String.format("%s: %s/s, temp disk %s",
+				name,
+				BenchmarkUtils.formatBytes((long)BenchmarkUtils.perSecond(sourceFile.length() * iterations, totalNanos)),
+				BenchmarkUtils.formatBytes(tempBytes)));
+	}
+
+	private static File createNTriplesFile(File file, int tripleCount) throws IOException {
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			for (int i = 0; i < tripleCount; ++i) {
+				int entity = i / 2;
+				if (i % 2 == 0) {
+					writer.print(String.format("<%se%d> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://example.org/ifc#IfcWall> .\n", BASE_URI, entity));
+				} else {
+					writer.print(String.format("<%se%d> <http://example.org/ifc#name> \"Wall %d\"@en .\n", BASE_URI, entity, entity));
+				}
+			}
+		}
+		return file;
+	}
+
+}
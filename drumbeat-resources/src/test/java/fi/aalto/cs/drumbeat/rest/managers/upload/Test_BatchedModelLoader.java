@@ -0,0 +1,197 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.WrappedGraph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.Test;
+
+public class Test_BatchedModelLoader {
+
+	private static final int TRIPLE_COUNT = 2500;
+	private static final int BATCH_SIZE = 1000;
+
+	@Test
+	public void test_allTriplesLoaded() {
+		Model model = ModelFactory.createDefaultModel();
+
+		BatchedModelLoader loader = new BatchedModelLoader(model, BATCH_SIZE, 0, 0);
+		load(loader, TRIPLE_COUNT);
+
+		assertEquals(TRIPLE_COUNT, loader.getTripleCount());
+		assertEquals(TRIPLE_COUNT, model.size());
+	}
+
+	@Test
+	public void test_failedBatchRetried() {
+		FailingGraph graph = new FailingGraph(GraphFactory.createGraphMem(), 2);
+		Model model = ModelFactory.createModelForGraph(graph);
+
+		BatchedModelLoader loader = new BatchedModelLoader(model, BATCH_SIZE, 2, 1);
+		load(loader, TRIPLE_COUNT);
+
+		assertEquals(TRIPLE_COUNT, model.size());
+	}
+
+	@Test(expected=JenaException.class)
+	public void test_failedBatchRetriesExhausted() {
+		FailingGraph graph = new FailingGraph(GraphFactory.createGraphMem(), 3);
+		Model model = ModelFactory.createModelForGraph(graph);
+
+		BatchedModelLoader loader = new BatchedModelLoader(model, BATCH_SIZE, 2, 1);
+		load(loader, TRIPLE_COUNT);
+	}
+
+	@Test
+	public void test_failureAfterCommittedBatch_rolledBack() throws IOException {
+		assertRolledBack(false, false);
+	}
+
+	@Test
+	public void test_failureAfterCommittedBatch_replacedContentRestored() throws IOException {
+		assertRolledBack(true, false);
+	}
+
+	@Test
+	public void test_abortAfterCommittedBatch_rolledBack() throws IOException {
+		assertRolledBack(false, true);
+	}
+
+	@Test
+	public void test_abortAfterCommittedBatch_replacedContentRestored() throws IOException {
+		assertRolledBack(true, true);
+	}
+
+	@Test
+	public void test_replace() throws IOException {
+		Graph base = createGraph(10, 3000);
+		Model model = ModelFactory.createModelForGraph(base);
+		File workDir = new File(Files.createTempDirectory("load").toFile(), "work");
+
+		BatchedModelLoader loader = new BatchedModelLoader(model, BATCH_SIZE, 0, 0, workDir, true);
+		load(loader, TRIPLE_COUNT);
+
+		assertEquals(TRIPLE_COUNT, model.size());
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	/**
+	 * Loads into a model holding triples of its own and one triple which is loaded again,
+	 * and fails or aborts the loading after the first batch has been committed
+	 * @param replace
+	 * @param abort
+	 */
+	private void assertRolledBack(boolean replace, boolean abort) throws IOException {
+		Graph base = createGraph(10, 1);
+		Model expectedModel = ModelFactory.createModelForGraph(createGraph(10, 1));
+
+		int failureCount = abort ? 0 : 1;
+		Model model = ModelFactory.createModelForGraph(new FailingGraph(base, BATCH_SIZE + 1, failureCount));
+		File workDir = new File(Files.createTempDirectory("load").toFile(), "work");
+
+		BatchedModelLoader loader = new BatchedModelLoader(model, BATCH_SIZE, 0, 0, workDir, replace);
+		try {
+			if (abort) {
+				loader.start();
+				for (int i = 0; i < BATCH_SIZE + BATCH_SIZE / 2; ++i) {
+					loader.triple(createTriple(i));
+				}
+				loader.abort();
+			} else {
+				load(loader, TRIPLE_COUNT);
+				fail("Expected JenaException");
+			}
+		} catch (JenaException e) {
+			AbortableStreamRDF.abort(loader);
+		}
+
+		assertTrue(loader.getTripleCount() >= BATCH_SIZE);
+		assertTrue(model.isIsomorphicWith(expectedModel));
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	/**
+	 * Creates a graph holding triples of its own and one of the loaded triples
+	 * @param tripleCount
+	 * @param loadedTripleIndex
+	 * @return
+	 */
+	private static Graph createGraph(int tripleCount, int loadedTripleIndex) {
+		Graph graph = GraphFactory.createGraphMem();
+		for (int i = 0; i < tripleCount; ++i) {
+			graph.add(Triple.create(
+					NodeFactory.createURI("http://example.org/old" + i),
+					NodeFactory.createURI("http://example.org/p"),
+					NodeFactory.createBlankNode()));
+		}
+		graph.add(createTriple(loadedTripleIndex));
+		return graph;
+	}
+
+	private static void load(BatchedModelLoader loader, int tripleCount) {
+		loader.start();
+		for (int i = 0; i < tripleCount; ++i) {
+			loader.triple(createTriple(i));
+		}
+		loader.finish();
+	}
+
+	private static Triple createTriple(int i) {
+		return Triple.create(
+				NodeFactory.createURI("http://example.org/s" + i),
+				NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createLiteral(Integer.toString(i)));
+	}
+
+	/**
+	 * Graph which fails to add a triple a number of times, after adding a number of triples
+	 */
+	private static class FailingGraph extends WrappedGraph {
+
+		private int successCount;
+		private int failureCount;
+
+		FailingGraph(Graph base, int failureCount) {
+			this(base, 0, failureCount);
+		}
+
+		FailingGraph(Graph base, int successCount, int failureCount) {
+			super(base);
+			this.successCount = successCount;
+			this.failureCount = failureCount;
+		}
+
+		@Override
+		public void add(Triple triple) {
+			if (successCount > 0) {
+				--successCount;
+			} else if (failureCount > 0) {
+				--failureCount;
+				throw new JenaException("Simulated failure");
+			}
+			super.add(triple);
+		}
+
+		@Override
+		public void performAdd(Triple triple) {
+			add(triple);
+		}
+
+	}
+
+}
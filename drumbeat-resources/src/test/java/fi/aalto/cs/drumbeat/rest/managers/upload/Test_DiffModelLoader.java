@@ -0,0 +1,180 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.WrappedGraph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.shared.JenaException;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.Test;
+
+public class Test_DiffModelLoader {
+
+	private static final int OBJECT_COUNT = 100;
+	private static final int PARTITION_SIZE = 50;
+
+	@Test
+	public void test_onlyDifferenceApplied() throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			model.getGraph().add(createTriple(i, "name", "old" + (i % 10 == 0 ? "-changed" : "")));
+			model.getGraph().add(createTriple(i, "type", "wall"));
+		}
+		Node blankNode = NodeFactory.createBlankNode();
+		model.getGraph().add(Triple.create(blankNode, NodeFactory.createURI("http://example.org/p"), NodeFactory.createLiteral("blank")));
+
+		File workDir = new File(Files.createTempDirectory("diff").toFile(), "work");
+		DiffModelLoader loader = new DiffModelLoader(model, workDir, PARTITION_SIZE, 7, 0, 0);
+
+		loader.start();
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			loader.triple(createTriple(i, "name", "old"));
+			loader.triple(createTriple(i, "type", "wall"));
+		}
+		loader.triple(createTriple(OBJECT_COUNT, "type", "door"));
+		loader.finish();
+
+		// every 10th name changed, one object added, the blank node triple removed
+		assertEquals(OBJECT_COUNT / 10 + 1, loader.getDelta().getTriplesInserted());
+		assertEquals(OBJECT_COUNT / 10 + 1, loader.getDelta().getTriplesDeleted());
+
+		assertEquals(2 * OBJECT_COUNT + 1, model.size());
+		assertTrue(model.getGraph().contains(createTriple(0, "name", "old")));
+		assertFalse(model.getGraph().contains(createTriple(0, "name", "old-changed")));
+		assertTrue(model.getGraph().contains(createTriple(OBJECT_COUNT, "type", "door")));
+		assertFalse(model.getGraph().contains(blankNode, Node.ANY, Node.ANY));
+
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	@Test
+	public void test_newTriplesSplitIntoMorePartitions() throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		model.getGraph().add(createTriple(0, "name", "old"));
+
+		File workDir = new File(Files.createTempDirectory("diff").toFile(), "work");
+		DiffModelLoader loader = new DiffModelLoader(model, workDir, 10, 7, 0, 0);
+
+		loader.start();
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			loader.triple(createTriple(i, "name", "new"));
+		}
+		loader.finish();
+
+		assertEquals(OBJECT_COUNT, loader.getDelta().getTriplesInserted());
+		assertEquals(1, loader.getDelta().getTriplesDeleted());
+		assertEquals(OBJECT_COUNT, model.size());
+
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	@Test
+	public void test_failedInsertReverted() throws IOException {
+		Graph graph = new FailingGraph(GraphFactory.createGraphMem());
+		Model model = ModelFactory.createModelForGraph(graph);
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			graph.add(createTriple(i, "name", "old"));
+		}
+		Node blankNode = NodeFactory.createBlankNode();
+		graph.add(Triple.create(blankNode, NodeFactory.createURI("http://example.org/p"), NodeFactory.createLiteral("blank")));
+		Model oldModel = ModelFactory.createDefaultModel().add(model);
+
+		File workDir = new File(Files.createTempDirectory("diff").toFile(), "work");
+		DiffModelLoader loader = new DiffModelLoader(model, workDir, PARTITION_SIZE, 7, 0, 0);
+
+		loader.start();
+		for (int i = 0; i < OBJECT_COUNT; ++i) {
+			loader.triple(createTriple(i, "name", i % 2 == 0 ? "old" : "new"));
+		}
+
+		((FailingGraph)graph).failAfter(20);
+		try {
+			loader.finish();
+			fail("Expected the diff to fail");
+		} catch (JenaException e) {
+		}
+
+		assertTrue(model.isIsomorphicWith(oldModel));
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	@Test
+	public void test_abortLeavesModelUntouched() throws IOException {
+		Model model = ModelFactory.createDefaultModel();
+		model.getGraph().add(createTriple(0, "name", "old"));
+
+		File workDir = new File(Files.createTempDirectory("diff").toFile(), "work");
+		DiffModelLoader loader = new DiffModelLoader(model, workDir, PARTITION_SIZE, 7, 0, 0);
+
+		loader.start();
+		loader.triple(createTriple(1, "name", "new"));
+		loader.abort();
+
+		assertEquals(1, model.size());
+		assertTrue(model.getGraph().contains(createTriple(0, "name", "old")));
+		assertFalse(workDir.exists());
+		workDir.getParentFile().delete();
+	}
+
+	private static Triple createTriple(int object, String property, String value) {
+		return Triple.create(
+				NodeFactory.createURI("http://example.org/objects/" + object),
+				NodeFactory.createURI("http://example.org/" + property),
+				NodeFactory.createLiteral(value));
+	}
+
+	/**
+	 * Graph which fails to add triples once a number of them has been added
+	 */
+	private static class FailingGraph extends WrappedGraph {
+
+		private int remainingAdds = -1;
+
+		FailingGraph(Graph base) {
+			super(base);
+		}
+
+		void failAfter(int addCount) {
+			remainingAdds = addCount;
+		}
+
+		@Override
+		public void add(Triple triple) {
+			countAdd();
+			super.add(triple);
+		}
+
+		@Override
+		public void performAdd(Triple triple) {
+			countAdd();
+			super.performAdd(triple);
+		}
+
+		private void countAdd() {
+			if (remainingAdds == 0) {
+				remainingAdds = -1;
+				throw new JenaException("Simulated failure");
+			}
+			if (remainingAdds > 0) {
+				--remainingAdds;
+			}
+		}
+
+	}
+
+}
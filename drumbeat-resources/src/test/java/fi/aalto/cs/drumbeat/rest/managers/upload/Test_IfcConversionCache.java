@@ -0,0 +1,139 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fi.aalto.cs.drumbeat.rest.common.DrumbeatMetrics;
+
+public class Test_IfcConversionCache {
+
+	private static final byte[] FINGERPRINT = {1, 2, 3};
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("ifc-cache").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void test_createKey_dependsOnContentAndContext() {
+		IfcConversionCache cache = new IfcConversionCache(directory, Long.MAX_VALUE, FINGERPRINT);
+		IfcConversionCache otherContextCache = new IfcConversionCache(directory, Long.MAX_VALUE, new byte[] {4});
+
+		byte[] contentDigest = digest("content");
+
+		assertEquals(cache.createKey(contentDigest), cache.createKey(digest("content")));
+		assertNotEquals(cache.createKey(contentDigest), cache.createKey(digest("other content")));
+		assertNotEquals(cache.createKey(contentDigest), otherContextCache.createKey(contentDigest));
+	}
+
+	@Test
+	public void test_get_hitAfterPut() throws IOException {
+		IfcConversionCache cache = new IfcConversionCache(directory, Long.MAX_VALUE, FINGERPRINT);
+		String key = cache.createKey(digest("content"));
+
+		long oldMisses = DrumbeatMetrics.getInstance().get(IfcConversionCache.METRIC_MISSES);
+		long oldHits = DrumbeatMetrics.getInstance().get(IfcConversionCache.METRIC_HITS);
+
+		assertNull(cache.get(key, 100));
+		cache.put(key, writeTempFile(cache, "_:a <http://example.org/p> \"a\" .\n"));
+		assertNotNull(cache.get(key, 100));
+
+		assertEquals(oldMisses + 1, DrumbeatMetrics.getInstance().get(IfcConversionCache.METRIC_MISSES));
+		assertEquals(oldHits + 1, DrumbeatMetrics.getInstance().get(IfcConversionCache.METRIC_HITS));
+	}
+
+	@Test
+	public void test_put_evictsLeastRecentlyUsed() throws IOException {
+		IfcConversionCache cache = new IfcConversionCache(directory, 1, FINGERPRINT);
+		String oldKey = cache.createKey(digest("old"));
+		String newKey = cache.createKey(digest("new"));
+
+		File oldEntry = cache.put(oldKey, writeTempFile(cache, "_:a <http://example.org/p> \"a\" .\n"));
+		cache.release(oldEntry);
+		oldEntry.setLastModified(oldEntry.lastModified() - 10000);
+		File newEntry = cache.put(newKey, writeTempFile(cache, "_:b <http://example.org/p> \"b\" .\n"));
+
+		assertFalse(oldEntry.exists());
+		assertTrue(newEntry.exists());
+	}
+
+	@Test
+	public void test_put_keepsPinnedEntryUntilReleased() throws IOException {
+		IfcConversionCache cache = new IfcConversionCache(directory, 1, FINGERPRINT);
+		String oldKey = cache.createKey(digest("old"));
+		String newKey = cache.createKey(digest("new"));
+
+		File oldEntry = cache.put(oldKey, writeTempFile(cache, "_:a <http://example.org/p> \"a\" .\n"));
+		cache.release(oldEntry);
+		assertNotNull(cache.get(oldKey, 100));
+		oldEntry.setLastModified(oldEntry.lastModified() - 10000);
+
+		File newEntry = cache.put(newKey, writeTempFile(cache, "_:b <http://example.org/p> \"b\" .\n"));
+		assertTrue(oldEntry.exists());
+		cache.release(newEntry);
+
+		cache.release(oldEntry);
+		newEntry = cache.put(newKey, writeTempFile(cache, "_:b <http://example.org/p> \"b\" .\n"));
+		assertFalse(oldEntry.exists());
+		assertTrue(newEntry.exists());
+	}
+
+	@Test
+	public void test_send_replacesPlaceholderNamespaces() throws IOException {
+		IfcConversionCache cache = new IfcConversionCache(directory, Long.MAX_VALUE, FINGERPRINT);
+		String key = cache.createKey(digest("content"));
+
+		File entry = cache.put(key, writeTempFile(cache, String.format(
+				"<%swall> <http://example.org/p> <%sguid> .\n",
+				IfcConversionCache.OBJECT_BASE_URI_PLACEHOLDER,
+				IfcConversionCache.BLANK_OBJECT_BASE_URI_PLACEHOLDER)));
+
+		Graph graph = GraphFactory.createGraphMem();
+		IfcConversionCache.send(entry, StreamRDFLib.graph(graph), "http://example.org/objects/", "http://example.org/objects/v1/_BLANK/");
+
+		assertTrue(graph.contains(Triple.create(
+				NodeFactory.createURI("http://example.org/objects/wall"),
+				NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createURI("http://example.org/objects/v1/_BLANK/guid"))));
+	}
+
+	private static File writeTempFile(IfcConversionCache cache, String content) throws IOException {
+		File file = cache.createTempFile();
+		try (OutputStream out = RdfCacheCompression.FAST.openOutputStream(file)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+
+	private static byte[] digest(String content) {
+		return IfcConversionCache.createDigest().digest(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
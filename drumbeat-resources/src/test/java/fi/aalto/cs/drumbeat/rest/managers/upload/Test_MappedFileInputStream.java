@@ -0,0 +1,74 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Test_MappedFileInputStream {
+
+	private static final int SEGMENT_SIZE = 100;
+
+	private File file;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		content = new byte[SEGMENT_SIZE * 3 + 17];
+		for (int i = 0; i < content.length; ++i) {
+			content[i] = (byte)(i * 7);
+		}
+		file = File.createTempFile("mapped", ".nt");
+		Files.write(file.toPath(), content);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void test_read_acrossSegments() throws IOException {
+		try (InputStream in = new MappedFileInputStream(file, SEGMENT_SIZE)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[33];
+			int count;
+			while ((count = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, count);
+			}
+			assertArrayEquals(content, out.toByteArray());
+			assertEquals(-1, in.read());
+		}
+	}
+
+	@Test
+	public void test_skip_andReadSingleBytes() throws IOException {
+		try (InputStream in = new MappedFileInputStream(file, SEGMENT_SIZE)) {
+			assertEquals(SEGMENT_SIZE + 50, in.skip(SEGMENT_SIZE + 50));
+			assertEquals(content[SEGMENT_SIZE + 50] & 0xFF, in.read());
+			assertEquals(content.length - SEGMENT_SIZE - 51, in.available());
+
+			byte[] rest = IOUtils.toByteArray(in);
+			assertEquals(content.length - SEGMENT_SIZE - 51, rest.length);
+			assertEquals(content[content.length - 1], rest[rest.length - 1]);
+		}
+	}
+
+	@Test
+	public void test_read_emptyFile() throws IOException {
+		Files.write(file.toPath(), new byte[0]);
+		try (InputStream in = new MappedFileInputStream(file, SEGMENT_SIZE)) {
+			assertEquals(-1, in.read());
+		}
+	}
+
+}
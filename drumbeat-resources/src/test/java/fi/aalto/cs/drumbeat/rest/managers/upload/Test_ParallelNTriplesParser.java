@@ -0,0 +1,86 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class Test_ParallelNTriplesParser {
+
+	private static final int ENTITY_COUNT = 500;
+	private static final int CHUNK_SIZE = 256;
+	private static final String BASE_URI = "http://example.org/";
+
+	private static ParallelNTriplesParser parser;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		parser = new ParallelNTriplesParser(4, CHUNK_SIZE);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		parser.shutdown();
+	}
+
+	@Test
+	public void test_sameGraphAsSequentialParser() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < ENTITY_COUNT; ++i) {
+			builder.append(String.format("<http://example.org/e%d> <http://example.org/p> _:b%d .\n", i, i));
+			builder.append(String.format("_:b%d <http://example.org/q> \"%d\" .\n", i, i));
+		}
+		// blank node referenced again far from its first use, in a different chunk
+		builder.append("<http://example.org/last> <http://example.org/p> _:b0 .\n");
+		// line longer than a chunk
+		builder.append(String.format("<http://example.org/long> <http://example.org/q> \"%0" + (2 * CHUNK_SIZE) + "d\" .", 0));
+		byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+		Graph expected = GraphFactory.createGraphMem();
+		RDFDataMgr.parse(StreamRDFLib.graph(expected), new ByteArrayInputStream(content), BASE_URI, Lang.NTRIPLES);
+
+		Graph actual = GraphFactory.createGraphMem();
+		parser.parse(StreamRDFLib.graph(actual), new ByteArrayInputStream(content), BASE_URI, Lang.NTRIPLES);
+
+		assertEquals(2 * ENTITY_COUNT + 2, actual.size());
+		assertTrue(expected.isIsomorphicWith(actual));
+	}
+
+	@Test
+	public void test_emptyInput() throws IOException {
+		Graph actual = GraphFactory.createGraphMem();
+		parser.parse(StreamRDFLib.graph(actual), new ByteArrayInputStream(new byte[0]), BASE_URI, Lang.NTRIPLES);
+
+		assertEquals(0, actual.size());
+	}
+
+	@Test(expected=RiotException.class)
+	public void test_syntaxError() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < ENTITY_COUNT; ++i) {
+			builder.append(String.format("<http://example.org/e%d> <http://example.org/p> \"%d\" .\n", i, i));
+		}
+		builder.append("<http://example.org/bad> <http://example.org/p> .\n");
+		byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+		parser.parse(StreamRDFLib.graph(GraphFactory.createGraphMem()), new ByteArrayInputStream(content), BASE_URI, Lang.NTRIPLES);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void test_unsupportedLang() throws IOException {
+		parser.parse(StreamRDFLib.graph(GraphFactory.createGraphMem()), new ByteArrayInputStream(new byte[0]), BASE_URI, Lang.TURTLE);
+	}
+
+}
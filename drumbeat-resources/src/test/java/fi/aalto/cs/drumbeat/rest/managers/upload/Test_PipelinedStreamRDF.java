@@ -0,0 +1,138 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.junit.Test;
+
+public class Test_PipelinedStreamRDF {
+
+	private static final int TRIPLE_COUNT = 10500;
+
+	@Test
+	public void test_triplesArriveInOrder() {
+		List<Triple> received = new ArrayList<>();
+		StreamRDF sink = new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				received.add(triple);
+			}
+		};
+
+		PipelinedStreamRDF stream = new PipelinedStreamRDF(sink, 2, 100, "test-sink");
+		stream.start();
+		for (int i = 0; i < TRIPLE_COUNT; ++i) {
+			stream.triple(createTriple(i));
+		}
+		stream.finish();
+
+		assertEquals(TRIPLE_COUNT, received.size());
+		for (int i = 0; i < TRIPLE_COUNT; ++i) {
+			assertEquals(createTriple(i), received.get(i));
+		}
+	}
+
+	@Test
+	public void test_sinkFailureIsRethrown() {
+		StreamRDF sink = new StreamRDFBase() {
+			@Override
+			public void triple(Triple triple) {
+				throw new IllegalStateException("sink failed");
+			}
+		};
+
+		PipelinedStreamRDF stream = new PipelinedStreamRDF(sink, 2, 100, "test-sink");
+		stream.start();
+
+		IllegalStateException failure = null;
+		try {
+			for (int i = 0; i < TRIPLE_COUNT; ++i) {
+				stream.triple(createTriple(i));
+			}
+			stream.finish();
+		} catch (IllegalStateException e) {
+			failure = e;
+		}
+
+		assertTrue(failure != null);
+		assertEquals("sink failed", failure.getMessage());
+	}
+
+	@Test
+	public void test_failingProducerLeavesModelUntouched() throws Exception {
+		Model model = ModelFactory.createDefaultModel();
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 500; ++i) {
+			input.append(String.format("<http://example.org/s%d> <http://example.org/p> \"%d\" .%n", i, i));
+		}
+		input.append("<http://example.org/broken> <http://example.org/p> .\n");
+
+		// the parser finishes its stream even when it fails
+		PipelinedStreamRDF stream = new PipelinedStreamRDF(new BatchedModelLoader(model, 1000, 0, 0), 2, 100, "test-sink");
+		RiotException failure = null;
+		try {
+			AbortableStreamRDF.send(stream, producerStream -> RDFDataMgr.parse(
+					producerStream,
+					new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)),
+					Lang.NTRIPLES));
+		} catch (RiotException e) {
+			failure = e;
+		}
+
+		assertTrue(failure != null);
+		assertEquals(0, model.size());
+	}
+
+	@Test
+	public void test_abortDoesNotFinishSink() {
+		boolean[] finished = new boolean[1];
+		boolean[] aborted = new boolean[1];
+		StreamRDF sink = new AbortableSink() {
+			@Override
+			public void finish() {
+				finished[0] = true;
+			}
+
+			@Override
+			public void abort() {
+				aborted[0] = true;
+			}
+		};
+
+		PipelinedStreamRDF stream = new PipelinedStreamRDF(sink, 2, 100, "test-sink");
+		stream.start();
+		for (int i = 0; i < TRIPLE_COUNT; ++i) {
+			stream.triple(createTriple(i));
+		}
+		stream.abort();
+
+		assertFalse(finished[0]);
+		assertTrue(aborted[0]);
+	}
+
+	private static abstract class AbortableSink extends StreamRDFBase implements AbortableStreamRDF {
+	}
+
+	private static Triple createTriple(int i) {
+		return Triple.create(
+				NodeFactory.createURI("http://example.org/s" + i),
+				NodeFactory.createURI("http://example.org/p"),
+				NodeFactory.createLiteral(Integer.toString(i)));
+	}
+
+}
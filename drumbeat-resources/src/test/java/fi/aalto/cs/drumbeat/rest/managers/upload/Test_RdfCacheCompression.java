@@ -0,0 +1,67 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class Test_RdfCacheCompression {
+
+	private static final byte[] CONTENT =
+			"<http://example.org/a> <http://example.org/p> <http://example.org/b> .\n".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	public void test_none_writesPlainFile() throws IOException {
+		File file = writeFile(RdfCacheCompression.NONE);
+		try {
+			assertEquals(".nt", file.getName().substring(file.getName().lastIndexOf('.')));
+			assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+			assertArrayEquals(CONTENT, readFile(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void test_fast_readBack() throws IOException {
+		File file = writeFile(RdfCacheCompression.FAST);
+		try {
+			assertArrayEquals(CONTENT, readFile(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void test_gzip_readBack() throws IOException {
+		File file = writeFile(RdfCacheCompression.GZIP);
+		try {
+			assertArrayEquals(CONTENT, readFile(file));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static File writeFile(RdfCacheCompression compression) throws IOException {
+		File file = File.createTempFile("cache", ".nt" + compression.getFileSuffix());
+		try (OutputStream out = compression.openOutputStream(file)) {
+			out.write(CONTENT);
+		}
+		return file;
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		try (InputStream in = RdfCacheCompression.openInputStream(file)) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+}
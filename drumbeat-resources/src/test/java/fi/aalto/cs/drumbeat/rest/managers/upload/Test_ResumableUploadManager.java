@@ -0,0 +1,219 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.shared.NotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Test_ResumableUploadManager {
+
+	private static final String TARGET_URI = "http://example.org/datasets/c/s/d";
+	private static final int TOTAL_BYTES = 10000;
+
+	private File directory;
+	private ResumableUploadManager manager;
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("resumable").toFile();
+		manager = new ResumableUploadManager(directory, 60);
+
+		content = new byte[TOTAL_BYTES];
+		for (int i = 0; i < TOTAL_BYTES; ++i) {
+			content[i] = (byte)i;
+		}
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void test_write_rangesInAnyOrderAssembled() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, -1);
+
+		write(upload, 6000, TOTAL_BYTES, TOTAL_BYTES);
+		assertEquals(0, upload.getContiguousBytesReceived());
+
+		write(upload, 0, 3000, -1);
+		write(upload, 2000, 6500, -1);
+		assertEquals(TOTAL_BYTES, upload.getContiguousBytesReceived());
+		assertEquals(TOTAL_BYTES, upload.getBytesReceived());
+		assertTrue(upload.isComplete());
+
+		File file = manager.complete(TARGET_URI, upload.getId());
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void test_complete_failsWhenIncomplete() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		write(upload, 0, 5000, -1);
+
+		try {
+			manager.complete(TARGET_URI, upload.getId());
+			fail("Incomplete upload completed");
+		} catch (IllegalStateException e) {
+		}
+
+		// an interrupted range keeps the bytes received before the interruption
+		long written = manager.write(upload, 5000, 5000, -1, new ByteArrayInputStream(content, 5000, 1000));
+		assertEquals(1000, written);
+		assertEquals(6000, upload.getContiguousBytesReceived());
+		assertFalse(upload.isComplete());
+	}
+
+	@Test
+	public void test_complete_keptUntilRemoved() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		write(upload, 0, TOTAL_BYTES, -1);
+
+		File file = manager.complete(TARGET_URI, upload.getId());
+		assertEquals(upload, manager.get(TARGET_URI, upload.getId()));
+
+		try {
+			write(upload, 0, 1000, -1);
+			fail("Range written to an upload being finished");
+		} catch (IllegalStateException e) {
+		}
+
+		try {
+			manager.abort(TARGET_URI, upload.getId());
+			fail("Upload being finished aborted");
+		} catch (IllegalStateException e) {
+		}
+
+		manager.remove(TARGET_URI, upload.getId());
+		try {
+			manager.get(TARGET_URI, upload.getId());
+			fail("Removed upload found");
+		} catch (NotFoundException e) {
+		}
+
+		// the file is left to its reader
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void test_reopen_finishedAgain() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		write(upload, 0, TOTAL_BYTES, -1);
+
+		File file = manager.complete(TARGET_URI, upload.getId());
+		manager.reopen(TARGET_URI, upload.getId());
+
+		assertEquals(file, manager.complete(TARGET_URI, upload.getId()));
+		manager.reopen(TARGET_URI, upload.getId());
+
+		manager.abort(TARGET_URI, upload.getId());
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void test_write_rangeExceedingTotalRejected() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+
+		try {
+			write(upload, TOTAL_BYTES - 10, TOTAL_BYTES + 10, -1);
+			fail("Range exceeding upload accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(0, upload.getBytesReceived());
+	}
+
+	@Test(expected = NotFoundException.class)
+	public void test_get_otherTargetNotFound() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		manager.get(TARGET_URI + "2", upload.getId());
+	}
+
+	@Test
+	public void test_abort_deletesFile() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		write(upload, 0, 100, -1);
+
+		manager.abort(TARGET_URI, upload.getId());
+		assertFalse(upload.getFile().exists());
+	}
+
+	@Test
+	public void test_write_afterAbortNotFound() throws IOException {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+		manager.abort(TARGET_URI, upload.getId());
+
+		try {
+			write(upload, 0, 100, -1);
+			fail("Range of aborted upload accepted");
+		} catch (NotFoundException e) {
+		}
+		assertFalse(upload.getFile().exists());
+	}
+
+	@Test
+	public void test_abort_waitsForRangeBeingWritten() throws Exception {
+		ResumableUpload upload = manager.create(TARGET_URI, TOTAL_BYTES);
+
+		CountDownLatch reading = new CountDownLatch(1);
+		CountDownLatch released = new CountDownLatch(1);
+		InputStream in = new ByteArrayInputStream(content, 0, 100) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				reading.countDown();
+				try {
+					released.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.read(b, off, len);
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Long> written = executor.submit(() -> manager.write(upload, 0, 100, -1, in));
+			assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+			Future<?> aborted = executor.submit(() -> manager.abort(TARGET_URI, upload.getId()));
+			try {
+				aborted.get(100, TimeUnit.MILLISECONDS);
+				fail("Upload aborted while a range was being written");
+			} catch (TimeoutException e) {
+			}
+
+			released.countDown();
+			assertEquals(100, (long)written.get(5, TimeUnit.SECONDS));
+			aborted.get(5, TimeUnit.SECONDS);
+			assertFalse(upload.getFile().exists());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void write(ResumableUpload upload, int start, int end, long totalBytes) throws IOException {
+		byte[] range = Arrays.copyOfRange(content, start, end);
+		assertEquals(range.length, manager.write(upload, start, range.length, totalBytes, new ByteArrayInputStream(range)));
+	}
+
+}
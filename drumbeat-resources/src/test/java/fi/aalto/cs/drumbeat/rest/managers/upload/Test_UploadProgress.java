@@ -0,0 +1,46 @@
+package fi.aalto.cs.drumbeat.rest.managers.upload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+public class Test_UploadProgress {
+
+	@Test(expected = CancellationException.class)
+	public void test_cancel_whileLoading() {
+		UploadProgress progress = new UploadProgress();
+		progress.setPhase(UploadPhase.LOADING);
+
+		assertTrue(progress.cancel());
+		progress.checkCancelled();
+	}
+
+	@Test
+	public void test_cancel_ignoredAfterLoading() {
+		UploadProgress progress = new UploadProgress();
+		progress.setPhase(UploadPhase.INDEXING);
+
+		assertFalse(progress.cancel());
+		progress.checkCancelled();
+		progress.setPhase(UploadPhase.UPDATING_METADATA);
+		assertEquals(UploadPhase.UPDATING_METADATA, progress.getPhase());
+	}
+
+	@Test
+	public void test_cancel_duringLoadingIgnoredByLaterPhases() {
+		UploadProgress progress = new UploadProgress();
+		progress.setPhase(UploadPhase.LOADING);
+		assertTrue(progress.cancel());
+
+		// the graph has been loaded when the upload moves on, so the metadata is still updated
+		progress.setPhase(UploadPhase.INDEXING);
+		progress.checkCancelled();
+		progress.setPhase(UploadPhase.UPDATING_METADATA);
+		assertEquals(UploadPhase.UPDATING_METADATA, progress.getPhase());
+	}
+
+}